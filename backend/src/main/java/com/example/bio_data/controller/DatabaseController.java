@@ -1,16 +1,29 @@
 package com.example.bio_data.controller;
 
+import com.example.bio_data.service.BulkheadService;
 import com.example.bio_data.service.DatabaseService;
+import com.example.bio_data.service.ImportJobService;
+import com.example.bio_data.service.MultiDataSourceService;
+import com.example.bio_data.service.MultipartStreamReader;
 import com.example.bio_data.service.PermissionService;
 import com.example.bio_data.service.ExportService;
+import com.example.bio_data.service.RowCountService;
+import com.example.bio_data.service.StreamingImportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
@@ -18,7 +31,10 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 
 import java.io.IOException;
-import java.util.concurrent.CompletableFuture;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +54,83 @@ public class DatabaseController {
     @Autowired
     private ExportService exportService;
     
+    @Autowired
+    private StreamingImportService streamingImportService;
+
+    @Autowired
+    private ImportJobService importJobService;
+
+    @Autowired
+    private MultiDataSourceService multiDataSourceService;
+
+    @Autowired
+    private BulkheadService bulkheadService;
+    
+    /**
+     * 搜索、导出、导入并发已满时返回429，Retry-After给出建议的重试秒数
+     */
+    @ExceptionHandler(BulkheadService.BulkheadFullException.class)
+    public ResponseEntity<Map<String, Object>> handleBulkheadFull(BulkheadService.BulkheadFullException e) {
+        logger.warn("请求被拒绝: {}", e.getMessage());
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of(
+                    "success", false,
+                    "error", e.getMessage(),
+                    "retryAfter", e.getRetryAfterSeconds()
+                ));
+    }
+
+    /**
+     * 占用一个操作名额，流式响应写完（或写出失败）后归还
+     * 客户端在写出开始前断开、异步请求超时或出错时写出不会执行，由异步请求的回调归还名额；
+     * 写出已经开始时仍由写出结束时归还，避免写出还占着连接时名额被提前让出
+     */
+    private StreamingResponseBody withPermit(String operation, StreamingResponseBody body) {
+        BulkheadService.Permit permit = bulkheadService.acquire(operation);
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        try {
+            HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
+            WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(permit, new CallableProcessingInterceptor() {
+                @Override
+                public <T> Object handleTimeout(NativeWebRequest webRequest, Callable<T> task) {
+                    releaseUnclaimed();
+                    return RESULT_NONE;
+                }
+
+                @Override
+                public <T> Object handleError(NativeWebRequest webRequest, Callable<T> task, Throwable t) {
+                    releaseUnclaimed();
+                    return RESULT_NONE;
+                }
+
+                @Override
+                public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                    releaseUnclaimed();
+                }
+
+                private void releaseUnclaimed() {
+                    if (claimed.compareAndSet(false, true)) {
+                        permit.close();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+        return outputStream -> {
+            if (!claimed.compareAndSet(false, true)) {
+                // 请求已经结束，名额已归还
+                return;
+            }
+            try (permit) {
+                body.writeTo(outputStream);
+            }
+        };
+    }
+
     /**
      * 安全地从请求中获取userId
      */
@@ -174,6 +267,23 @@ public class DatabaseController {
         }
     }
 
+    /**
+     * 获取各数据库连接池的使用情况（仅管理员）
+     */
+    @GetMapping("/datasources/pools")
+    public ResponseEntity<?> getDataSourcePoolStats(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String userType) {
+        try {
+            if (!permissionService.isAdmin(userId, userType)) {
+                return ResponseEntity.status(403).body(Map.of("error", "权限不足，只有管理员可以查看连接池状态"));
+            }
+            return ResponseEntity.ok(multiDataSourceService.getPoolStats());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "获取连接池状态失败: " + e.getMessage()));
+        }
+    }
+
 
 
     // =============================================================================
@@ -312,6 +422,35 @@ public class DatabaseController {
 
 
 
+    /**
+     * 游标分页获取表数据（键集分页，深分页与第一页代价相同）
+     */
+    @GetMapping("/tables/{tableName}/data/cursor")
+    public ResponseEntity<Map<String, Object>> getTableDataWithCursor(
+            @PathVariable String tableName,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String dataSource,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String userType) {
+        try {
+            // 权限验证
+            ResponseEntity<?> permissionCheck = validatePermission(userId, userType, dataSource, "read");
+            if (permissionCheck != null) {
+                return ResponseEntity.status(permissionCheck.getStatusCode()).body(Map.of("error", "权限不足"));
+            }
+            
+            if (size > 100) size = 100; // 限制每页最大100条
+            
+            Map<String, Object> result = databaseService.getTableDataWithCursor(dataSource, tableName, cursor, size);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "获取数据失败: " + e.getMessage()));
+        }
+    }
+
     /**
      * 带进度的字段值搜索（Server-Sent Events）
      */
@@ -339,11 +478,31 @@ public class DatabaseController {
             throw new RuntimeException("权限验证失败");
         }
         
-        // 创建SSE发射器，设置30分钟超时
-        SseEmitter emitter = new SseEmitter(1800000L);
+        // 创建SSE发射器，超时为搜索超时再留出1分钟发送结果
+        SseEmitter emitter = new SseEmitter(DatabaseService.PROGRESS_SEARCH_TIMEOUT_MS + 60000L);
+        
+        // 连接超时或出错时中断搜索线程：取消在途的表查询并归还搜索名额，不再占用到搜索自身超时
+        AtomicBoolean clientGone = new AtomicBoolean(false);
+        Thread[] searchThread = new Thread[1];
+        Runnable stopSearch = () -> {
+            synchronized (searchThread) {
+                clientGone.set(true);
+                if (searchThread[0] != null) {
+                    searchThread[0].interrupt();
+                }
+            }
+        };
+        emitter.onTimeout(stopSearch);
+        emitter.onError(error -> stopSearch.run());
         
-        // 异步执行搜索
-        CompletableFuture.runAsync(() -> {
+        // 在搜索专用线程中异步执行，并发已满时直接返回429
+        bulkheadService.execute(BulkheadService.SEARCH, () -> {
+            synchronized (searchThread) {
+                if (clientGone.get()) {
+                    return;
+                }
+                searchThread[0] = Thread.currentThread();
+            }
             try {
                 if (dataSource != null && !dataSource.trim().isEmpty()) {
                     databaseService.findTablesByValueWithProgress(dataSource, searchValue, searchMode, searchType, emitter);
@@ -360,6 +519,12 @@ public class DatabaseController {
                 } catch (IOException ioException) {
                     emitter.completeWithError(ioException);
                 }
+            } finally {
+                synchronized (searchThread) {
+                    searchThread[0] = null;
+                    // 清除可能残留的中断标记，线程归还线程池后不影响下一个任务
+                    Thread.interrupted();
+                }
             }
         });
         
@@ -370,6 +535,7 @@ public class DatabaseController {
      * 根据字段值获取表中包含该值的数据记录
      */
     @GetMapping("/search/data-by-value")
+    @SuppressWarnings("try")
     public ResponseEntity<?> getTableDataByValue(
             @RequestParam String tableName,
             @RequestParam String searchValue,
@@ -398,36 +564,140 @@ public class DatabaseController {
             
             // 如果传入了page和size参数，使用分页模式；否则使用limit模式保持向后兼容
             Map<String, Object> result;
-            if (page > 1 || size != 50) {
-                // 分页模式
-                if (size > 1000) size = 1000;
-                if (size < 1) size = 50;
-                if (page < 1) page = 1;
+            try (BulkheadService.Permit permit = bulkheadService.acquire(BulkheadService.QUERY)) {
+                if (page > 1 || size != 50) {
+                    // 分页模式
+                    if (size > 1000) size = 1000;
+                    if (size < 1) size = 50;
+                    if (page < 1) page = 1;
                 
-                if (dataSource != null && !dataSource.trim().isEmpty()) {
-                    result = databaseService.getTableDataByValueWithPagination(dataSource, tableName, searchValue, page, size, searchMode, searchType);
+                    if (dataSource != null && !dataSource.trim().isEmpty()) {
+                        result = databaseService.getTableDataByValueWithPagination(dataSource, tableName, searchValue, page, size, searchMode, searchType);
+                    } else {
+                        result = databaseService.getTableDataByValueWithPagination(null, tableName, searchValue, page, size, searchMode, searchType);
+                    }
                 } else {
-                    result = databaseService.getTableDataByValueWithPagination(null, tableName, searchValue, page, size, searchMode, searchType);
-                }
-            } else {
-                // 传统limit模式，保持向后兼容
-                if (limit > 10000) limit = 10000;
-                if (limit < 1) limit = 100;
+                    // 传统limit模式，保持向后兼容
+                    if (limit > 10000) limit = 10000;
+                    if (limit < 1) limit = 100;
                 
-                if (dataSource != null && !dataSource.trim().isEmpty()) {
-                    result = databaseService.getTableDataByValue(dataSource, tableName, searchValue, limit);
-                } else {
-                    result = databaseService.getTableDataByValue(null, tableName, searchValue, limit);
+                    if (dataSource != null && !dataSource.trim().isEmpty()) {
+                        result = databaseService.getTableDataByValue(dataSource, tableName, searchValue, limit);
+                    } else {
+                        result = databaseService.getTableDataByValue(null, tableName, searchValue, limit);
+                    }
                 }
             }
             
             return ResponseEntity.ok(result);
             
+        } catch (BulkheadService.BulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "数据查询失败: " + e.getMessage()));
         }
     }
 
+    /**
+     * 游标分页获取表中包含指定值的数据记录
+     */
+    @GetMapping("/search/data-by-value/cursor")
+    @SuppressWarnings("try")
+    public ResponseEntity<?> getTableDataByValueWithCursor(
+            @RequestParam String tableName,
+            @RequestParam String searchValue,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String dataSource,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String userType,
+            @RequestParam(required = false, defaultValue = "auto") String searchMode,
+            @RequestParam(required = false, defaultValue = "fuzzy") String searchType) {
+        try {
+            // 权限验证
+            ResponseEntity<?> permissionCheck = validatePermission(userId, userType, dataSource, "read");
+            if (permissionCheck != null) {
+                return permissionCheck;
+            }
+            
+            Map<String, Object> result;
+            try (BulkheadService.Permit permit = bulkheadService.acquire(BulkheadService.QUERY)) {
+                result = databaseService.getTableDataByValueWithCursor(
+                        dataSource, tableName, searchValue, searchMode, searchType, cursor, size);
+            }
+            return ResponseEntity.ok(result);
+            
+        } catch (BulkheadService.BulkheadFullException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "数据查询失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 获取字段值索引状态
+     */
+    @GetMapping("/search/value-index/status")
+    public ResponseEntity<?> getValueIndexStatus(
+            @RequestParam(required = false) String dataSource,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String userType) {
+        try {
+            // 权限验证
+            ResponseEntity<?> permissionCheck = validatePermission(userId, userType, dataSource, "read");
+            if (permissionCheck != null) {
+                return permissionCheck;
+            }
+            
+            Map<String, Object> status = databaseService.getValueIndexStatus(dataSource);
+            return ResponseEntity.ok(status);
+            
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "获取索引状态失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 重建数据库的字段值索引
+     */
+    @PostMapping("/search/value-index/rebuild")
+    public ResponseEntity<?> rebuildValueIndex(@RequestBody Map<String, Object> request) {
+        try {
+            Long userId = extractUserId(request);
+            String userType = (String) request.get("userType");
+            String dataSource = (String) request.get("dataSource");
+            
+            if (dataSource == null || dataSource.trim().isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "数据库名称不能为空"));
+            }
+            
+            // 权限验证
+            ResponseEntity<?> permissionCheck = validatePermission(userId, userType, dataSource, "write");
+            if (permissionCheck != null) {
+                return permissionCheck;
+            }
+            
+            int tableCount = databaseService.rebuildValueIndex(dataSource);
+            
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "已安排后台重建索引",
+                "dataSource", dataSource,
+                "tableCount", tableCount
+            ));
+            
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "error", "重建索引失败: " + e.getMessage()
+            ));
+        }
+    }
+
     /**
      * 向表中插入数据
      */
@@ -942,6 +1212,7 @@ public class DatabaseController {
      * 批量插入表数据
      */
     @PostMapping("/tables/{tableName}/batch-insert")
+    @SuppressWarnings("try")
     public ResponseEntity<?> batchInsertTableData(
             @PathVariable String tableName,
             @RequestBody Map<String, Object> request) {
@@ -981,12 +1252,14 @@ public class DatabaseController {
             Map<String, Object> result;
             String actualDataSource = (dataSource != null && !dataSource.trim().isEmpty()) ? dataSource : "login";
             
-            if (useTransaction != null && useTransaction) {
-                // 使用事务性批量插入
-                result = databaseService.batchInsertTableDataTransactionWithStrategy(actualDataSource, tableName, dataList, importStrategy);
-            } else {
-                // 使用非事务性批量插入
-                result = databaseService.batchInsertTableDataWithStrategy(actualDataSource, tableName, dataList, importStrategy);
+            try (BulkheadService.Permit permit = bulkheadService.acquire(BulkheadService.IMPORT)) {
+                if (useTransaction != null && useTransaction) {
+                    // 使用事务性批量插入
+                    result = databaseService.batchInsertTableDataTransactionWithStrategy(actualDataSource, tableName, dataList, importStrategy);
+                } else {
+                    // 使用非事务性批量插入
+                    result = databaseService.batchInsertTableDataWithStrategy(actualDataSource, tableName, dataList, importStrategy);
+                }
             }
             
             return ResponseEntity.ok(Map.of(
@@ -995,6 +1268,8 @@ public class DatabaseController {
                 "result", result
             ));
             
+        } catch (BulkheadService.BulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             String errorMessage = e.getMessage();
             String friendlyMessage = translateDataInsertError(errorMessage);
@@ -1006,10 +1281,311 @@ public class DatabaseController {
         }
     }
 
+    /**
+     * 流式导入CSV/TSV文件（multipart上传）
+     * 文件边读边解析，按批次写入，不需要先在浏览器中把整个文件转换为JSON；
+     * 请求体直接从连接上流式读取，不经过容器的multipart解析（不落临时文件），参数可放在查询串或文件之前的表单字段中
+     */
+    @PostMapping(value = "/tables/{tableName}/import/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> streamImportFile(@PathVariable String tableName, HttpServletRequest request) {
+        try {
+            Map<String, String> params = queryParameters(request);
+            MultipartStreamReader reader = new MultipartStreamReader(
+                    streamingImportService.limitUploadSize(request.getInputStream()),
+                    MultipartStreamReader.boundaryOf(request.getContentType()));
+            MultipartStreamReader.Part filePart = readUntilFilePart(reader, params);
+            if (filePart == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "上传文件不能为空"));
+            }
+            if (params.get("userId") == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "缺少参数: userId"));
+            }
+            return streamImport(tableName, filePart.getInputStream(), filePart.getFileName(), params.get("dataSource"),
+                    Long.valueOf(params.get("userId")), params.getOrDefault("importStrategy", "append"),
+                    params.get("delimiter"), params.get("encoding"), booleanParameter(params.get("hasHeader"), true),
+                    booleanParameter(params.get("bulkLoad"), false), params.get("nullValue"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        } catch (IOException e) {
+            if (isUploadTooLarge(e)) {
+                return ResponseEntity.status(413).body(Map.of("success", false, "error", e.getMessage()));
+            }
+            return ResponseEntity.status(500).body(Map.of("success", false, "error", "读取上传文件失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 流式导入CSV/TSV文件（请求体直接为文件内容）
+     */
+    @PostMapping(value = "/tables/{tableName}/import/stream",
+            consumes = {"text/csv", "text/tab-separated-values", MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> streamImportBody(
+            @PathVariable String tableName,
+            HttpServletRequest request,
+            @RequestParam(required = false) String dataSource,
+            @RequestParam Long userId,
+            @RequestParam(defaultValue = "append") String importStrategy,
+            @RequestParam(required = false) String delimiter,
+            @RequestParam(required = false) String encoding,
+            @RequestParam(defaultValue = "true") boolean hasHeader,
+            @RequestParam(required = false) String fileName,
+            @RequestParam(defaultValue = "false") boolean bulkLoad,
+            @RequestParam(required = false) String nullValue) {
+        if (delimiter == null && fileName == null && "text/tab-separated-values".equals(request.getContentType())) {
+            delimiter = "tab";
+        }
+        try (InputStream inputStream = streamingImportService.limitUploadSize(request.getInputStream())) {
+            return streamImport(tableName, inputStream, fileName, dataSource, userId,
+                    importStrategy, delimiter, encoding, hasHeader, bulkLoad, nullValue);
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("success", false, "error", "读取请求内容失败: " + e.getMessage()));
+        }
+    }
+
+    @SuppressWarnings("try")
+    private ResponseEntity<?> streamImport(String tableName, InputStream inputStream, String fileName,
+                                           String dataSource, Long userId, String importStrategy,
+                                           String delimiter, String encoding, boolean hasHeader, boolean bulkLoad,
+                                           String nullValue) {
+        try {
+            ResponseEntity<?> permissionCheck = validateTablePermission(userId, dataSource, tableName, "write");
+            if (permissionCheck != null) {
+                return permissionCheck;
+            }
+            
+            if (!"append".equals(importStrategy) && !"overwrite".equals(importStrategy) && !"upsert".equals(importStrategy)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "不支持的导入策略: " + importStrategy));
+            }
+            
+            String actualDataSource = (dataSource != null && !dataSource.trim().isEmpty()) ? dataSource : "login";
+            StreamingImportService.ImportOptions options = new StreamingImportService.ImportOptions();
+            options.setFileName(fileName);
+            options.setDelimiter(delimiter);
+            options.setEncoding(encoding);
+            options.setHasHeader(hasHeader);
+            options.setImportStrategy(importStrategy);
+            options.setBulkLoad(bulkLoad);
+            options.setNullValue(nullValue);
+            
+            Map<String, Object> result;
+            try (BulkheadService.Permit permit = bulkheadService.acquire(BulkheadService.IMPORT)) {
+                result = streamingImportService.importStream(actualDataSource, tableName, inputStream, options);
+            }
+            
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "流式导入完成",
+                "result", result
+            ));
+            
+        } catch (BulkheadService.BulkheadFullException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        } catch (Exception e) {
+            if (isUploadTooLarge(e)) {
+                return ResponseEntity.status(413).body(Map.of("success", false, "error", e.getMessage()));
+            }
+            logger.error("流式导入失败 - 表: {}, 错误: {}", tableName, e.getMessage());
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "error", translateDataInsertError(e.getMessage())
+            ));
+        }
+    }
+
+    /**
+     * 提交异步导入任务：文件保存后立即返回任务ID，导入在后台执行
+     * 与流式导入一样直接读取multipart请求体，文件只写入任务目录一次
+     */
+    @PostMapping(value = "/tables/{tableName}/import-jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> submitImportJob(@PathVariable String tableName, HttpServletRequest request) {
+        try {
+            Map<String, String> params = queryParameters(request);
+            MultipartStreamReader reader = new MultipartStreamReader(
+                    streamingImportService.limitUploadSize(request.getInputStream()),
+                    MultipartStreamReader.boundaryOf(request.getContentType()));
+            MultipartStreamReader.Part filePart = readUntilFilePart(reader, params);
+            if (filePart == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "上传文件不能为空"));
+            }
+
+            String dataSource = params.get("dataSource");
+            Long userId = params.get("userId") != null ? Long.valueOf(params.get("userId")) : null;
+            ResponseEntity<?> permissionCheck = validateTablePermission(userId, dataSource, tableName, "write");
+            if (permissionCheck != null) {
+                return permissionCheck;
+            }
+
+            String importStrategy = params.getOrDefault("importStrategy", "append");
+            if (!"append".equals(importStrategy) && !"overwrite".equals(importStrategy) && !"upsert".equals(importStrategy)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "不支持的导入策略: " + importStrategy));
+            }
+
+            String actualDataSource = (dataSource != null && !dataSource.trim().isEmpty()) ? dataSource : "login";
+            ImportJobService.ImportJob job = importJobService.submit(actualDataSource, tableName, userId,
+                    filePart.getInputStream(), filePart.getFileName(), params.get("delimiter"), params.get("encoding"),
+                    booleanParameter(params.get("hasHeader"), true), importStrategy,
+                    booleanParameter(params.get("bulkLoad"), false), params.get("nullValue"));
+
+            return ResponseEntity.accepted().body(Map.of(
+                "success", true,
+                "message", "导入任务已提交",
+                "jobId", job.getJobId(),
+                "job", job.toMap()
+            ));
+
+        } catch (BulkheadService.BulkheadFullException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        } catch (Exception e) {
+            if (isUploadTooLarge(e)) {
+                return ResponseEntity.status(413).body(Map.of("success", false, "error", e.getMessage()));
+            }
+            logger.error("提交导入任务失败 - 表: {}, 错误: {}", tableName, e.getMessage());
+            return ResponseEntity.status(500).body(Map.of("success", false, "error", "提交导入任务失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 解析查询串中的参数
+     * 不能调用request.getParameter()：multipart请求上调用它会让容器先把整个请求体解析到临时文件
+     */
+    private Map<String, String> queryParameters(HttpServletRequest request) {
+        Map<String, String> params = new HashMap<>();
+        String query = request.getQueryString();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.putIfAbsent(name, value);
+        }
+        return params;
+    }
+
+    /**
+     * 依次读取文件之前的表单字段（查询串中已有的参数优先），返回名为file的文件部分；没有文件部分时返回null
+     */
+    private MultipartStreamReader.Part readUntilFilePart(MultipartStreamReader reader, Map<String, String> params) throws IOException {
+        MultipartStreamReader.Part part;
+        while ((part = reader.nextPart()) != null) {
+            if ("file".equals(part.getName())) {
+                return part;
+            }
+            if (part.getName() != null && !part.isFile()) {
+                params.putIfAbsent(part.getName(), part.readString(StandardCharsets.UTF_8));
+            }
+        }
+        return null;
+    }
+
+    private boolean booleanParameter(String value, boolean defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        String normalized = value.trim().toLowerCase();
+        if ("true".equals(normalized) || "on".equals(normalized) || "yes".equals(normalized) || "1".equals(normalized)) {
+            return true;
+        }
+        if ("false".equals(normalized) || "off".equals(normalized) || "no".equals(normalized) || "0".equals(normalized)) {
+            return false;
+        }
+        throw new IllegalArgumentException("参数值无效: " + value);
+    }
+
+    private boolean isUploadTooLarge(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof StreamingImportService.UploadTooLargeException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取用户的导入任务列表
+     */
+    @GetMapping("/import-jobs")
+    public ResponseEntity<?> listImportJobs(@RequestParam Long userId) {
+        return ResponseEntity.ok(Map.of("success", true, "jobs", importJobService.listJobs(userId)));
+    }
+
+    /**
+     * 获取导入任务状态
+     */
+    @GetMapping("/import-jobs/{jobId}")
+    public ResponseEntity<?> getImportJob(@PathVariable String jobId, @RequestParam Long userId) {
+        try {
+            return ResponseEntity.ok(Map.of("success", true, "job", importJobService.getJob(jobId, userId).toMap()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 订阅导入任务进度（SSE）
+     * 事件：progress（进度快照），complete / error / cancelled（任务结束）
+     */
+    @GetMapping(value = "/import-jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeImportJob(@PathVariable String jobId, @RequestParam Long userId) {
+        try {
+            return importJobService.subscribe(jobId, userId);
+        } catch (IllegalArgumentException e) {
+            SseEmitter emitter = new SseEmitter(0L);
+            try {
+                emitter.send(SseEmitter.event().name("error").data(Map.of("error", e.getMessage())));
+                emitter.complete();
+            } catch (IOException ioException) {
+                emitter.completeWithError(ioException);
+            }
+            return emitter;
+        }
+    }
+
+    /**
+     * 取消导入任务，已写入的数据保留，之后可以从断点继续
+     */
+    @PostMapping("/import-jobs/{jobId}/cancel")
+    public ResponseEntity<?> cancelImportJob(@PathVariable String jobId, @RequestParam Long userId) {
+        try {
+            ImportJobService.ImportJob job = importJobService.cancel(jobId, userId);
+            return ResponseEntity.ok(Map.of("success", true, "message", "已请求取消导入任务", "job", job.toMap()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 从断点继续失败或已取消的导入任务
+     */
+    @PostMapping("/import-jobs/{jobId}/resume")
+    public ResponseEntity<?> resumeImportJob(@PathVariable String jobId, @RequestParam Long userId) {
+        try {
+            ImportJobService.ImportJob existing = importJobService.getJob(jobId, userId);
+            ResponseEntity<?> permissionCheck = validateTablePermission(userId, existing.getDataSource(), existing.getTableName(), "write");
+            if (permissionCheck != null) {
+                return permissionCheck;
+            }
+
+            ImportJobService.ImportJob job = importJobService.resume(jobId, userId);
+            return ResponseEntity.accepted().body(Map.of("success", true, "message", "导入任务已继续", "job", job.toMap()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
     /**
      * 自动建表并导入CSV数据
      */
     @PostMapping("/auto-create-table-import")
+    @SuppressWarnings("try")
     public ResponseEntity<?> autoCreateTableAndImport(@RequestBody Map<String, Object> request) {
         try {
             String dataSource = (String) request.get("dataSource");
@@ -1064,12 +1640,14 @@ public class DatabaseController {
             String actualDataSource = (dataSource != null && !dataSource.trim().isEmpty()) ? dataSource : "login";
             
             Map<String, Object> result;
-            if (useTransaction != null && useTransaction) {
-                // 使用事务性自动建表并导入
-                result = databaseService.autoCreateTableAndImportDataTransaction(actualDataSource, tableName, csvData, csvColumns, importStrategy);
-            } else {
-                // 使用非事务性自动建表并导入
-                result = databaseService.autoCreateTableAndImportData(actualDataSource, tableName, csvData, csvColumns, importStrategy);
+            try (BulkheadService.Permit permit = bulkheadService.acquire(BulkheadService.IMPORT)) {
+                if (useTransaction != null && useTransaction) {
+                    // 使用事务性自动建表并导入
+                    result = databaseService.autoCreateTableAndImportDataTransaction(actualDataSource, tableName, csvData, csvColumns, importStrategy);
+                } else {
+                    // 使用非事务性自动建表并导入
+                    result = databaseService.autoCreateTableAndImportData(actualDataSource, tableName, csvData, csvColumns, importStrategy);
+                }
             }
             
             return ResponseEntity.ok(Map.of(
@@ -1078,6 +1656,8 @@ public class DatabaseController {
                 "result", result
             ));
             
+        } catch (BulkheadService.BulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             String errorMessage = e.getMessage();
             String friendlyMessage = translateDataInsertError(errorMessage);
@@ -1491,12 +2071,15 @@ public class DatabaseController {
                 return permissionCheck;
             }
             
-            // 获取表行数
-            Integer rowCount = databaseService.getTableRowCount(dataSource, tableName);
+            // 获取表行数（缓存的精确值或估算值，不阻塞）
+            RowCountService.RowCount rowCount = databaseService.getTableRowCountInfo(dataSource, tableName);
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
-                "rowCount", rowCount,
+                "rowCount", rowCount.getCount() != null ? rowCount.getCount() : 0,
+                "isApproximate", rowCount.isApproximate(),
+                "isStale", rowCount.isStale(),
+                "countPending", rowCount.isPending(),
                 "tableName", tableName,
                 "dataSource", dataSource
             ));
@@ -1601,8 +2184,9 @@ public class DatabaseController {
 
             String actualDataSource = (dataSource != null && !dataSource.trim().isEmpty()) ? dataSource : "login";
             
-            StreamingResponseBody responseBody = exportService.exportTableToCsv(
-                actualDataSource, tableName, userId, userType, limit);
+            // 名额在响应写完后归还
+            StreamingResponseBody responseBody = withPermit(BulkheadService.EXPORT, exportService.exportTableToCsv(
+                actualDataSource, tableName, userId, userType, limit));
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
@@ -1613,6 +2197,8 @@ public class DatabaseController {
                     .headers(headers)
                     .body(responseBody);
 
+        } catch (BulkheadService.BulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("CSV导出失败: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body(null);
@@ -1638,8 +2224,9 @@ public class DatabaseController {
 
             String actualDataSource = (dataSource != null && !dataSource.trim().isEmpty()) ? dataSource : "login";
             
-            StreamingResponseBody responseBody = exportService.exportTableToExcel(
-                actualDataSource, tableName, userId, userType, limit);
+            // 名额在响应写完后归还
+            StreamingResponseBody responseBody = withPermit(BulkheadService.EXPORT, exportService.exportTableToExcel(
+                actualDataSource, tableName, userId, userType, limit));
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
@@ -1650,6 +2237,8 @@ public class DatabaseController {
                     .headers(headers)
                     .body(responseBody);
 
+        } catch (BulkheadService.BulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Excel导出失败: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body(null);
@@ -1702,7 +2291,8 @@ public class DatabaseController {
             @RequestParam(required = false) String userType,
             @RequestParam String searchValue,
             @RequestParam(required = false, defaultValue = "fuzzy") String searchType,
-            @RequestParam(required = false, defaultValue = "10000") Integer limit) {
+            @RequestParam(required = false, defaultValue = "0") Integer limit,
+            @RequestParam(required = false) String exportId) {
         try {
             // 权限验证
             ResponseEntity<?> permissionCheck = validatePermission(userId, userType, dataSource, "read");
@@ -1711,11 +2301,14 @@ public class DatabaseController {
             }
 
             String actualDataSource = (dataSource != null && !dataSource.trim().isEmpty()) ? dataSource : "login";
+            String actualExportId = (exportId != null && !exportId.trim().isEmpty()) ? exportId : exportService.newExportId();
             
-            StreamingResponseBody responseBody = exportService.exportSearchResultToCsv(
-                actualDataSource, tableName, userId, userType, searchValue, searchType, limit);
+            // 名额在响应写完后归还
+            StreamingResponseBody responseBody = withPermit(BulkheadService.EXPORT, exportService.exportSearchResultToCsv(
+                actualDataSource, tableName, userId, userType, searchValue, searchType, limit, actualExportId));
 
             HttpHeaders headers = new HttpHeaders();
+            headers.set("X-Export-Id", actualExportId);
             headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
             headers.setContentDispositionFormData("attachment", tableName + "_search_result_export.csv");
             headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
@@ -1724,6 +2317,8 @@ public class DatabaseController {
                     .headers(headers)
                     .body(responseBody);
 
+        } catch (BulkheadService.BulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("搜索结果CSV导出失败: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body(null);
@@ -1741,7 +2336,8 @@ public class DatabaseController {
             @RequestParam(required = false) String userType,
             @RequestParam String searchValue,
             @RequestParam(required = false, defaultValue = "fuzzy") String searchType,
-            @RequestParam(required = false, defaultValue = "10000") Integer limit) {
+            @RequestParam(required = false, defaultValue = "0") Integer limit,
+            @RequestParam(required = false) String exportId) {
         try {
             // 权限验证
             ResponseEntity<?> permissionCheck = validatePermission(userId, userType, dataSource, "read");
@@ -1750,11 +2346,14 @@ public class DatabaseController {
             }
 
             String actualDataSource = (dataSource != null && !dataSource.trim().isEmpty()) ? dataSource : "login";
+            String actualExportId = (exportId != null && !exportId.trim().isEmpty()) ? exportId : exportService.newExportId();
             
-            StreamingResponseBody responseBody = exportService.exportSearchResultToExcel(
-                actualDataSource, tableName, userId, userType, searchValue, searchType, limit);
+            // 名额在响应写完后归还
+            StreamingResponseBody responseBody = withPermit(BulkheadService.EXPORT, exportService.exportSearchResultToExcel(
+                actualDataSource, tableName, userId, userType, searchValue, searchType, limit, actualExportId));
 
             HttpHeaders headers = new HttpHeaders();
+            headers.set("X-Export-Id", actualExportId);
             headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
             headers.setContentDispositionFormData("attachment", tableName + "_search_result_export.xlsx");
             headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
@@ -1763,12 +2362,43 @@ public class DatabaseController {
                     .headers(headers)
                     .body(responseBody);
 
+        } catch (BulkheadService.BulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("搜索结果Excel导出失败: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body(null);
         }
     }
 
+    /**
+     * 获取搜索结果导出进度
+     */
+    @GetMapping("/export/progress/{exportId}")
+    public ResponseEntity<?> getExportProgress(
+            @PathVariable String exportId,
+            @RequestParam(required = false) String dataSource,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String userType) {
+        // 权限验证
+        ResponseEntity<?> permissionCheck = validatePermission(userId, userType, dataSource, "read");
+        if (permissionCheck != null) {
+            return permissionCheck;
+        }
+
+        // 只能查询自己发起的导出，其他用户的导出按不存在处理
+        Map<String, Object> progress = exportService.getExportProgress(exportId, userId);
+        if (progress == null) {
+            return ResponseEntity.status(404).body(Map.of(
+                "success", false,
+                "error", "导出任务不存在或已过期"
+            ));
+        }
+        return ResponseEntity.ok(Map.of(
+            "success", true,
+            "progress", progress
+        ));
+    }
+
     /**
      * 获取搜索结果导出信息
      */
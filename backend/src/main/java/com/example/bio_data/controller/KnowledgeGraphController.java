@@ -1,10 +1,13 @@
 package com.example.bio_data.controller;
 
 import com.example.bio_data.service.KnowledgeGraphService;
+import com.example.bio_data.service.KnowledgeGraphStore;
 import com.example.bio_data.service.PermissionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -20,6 +23,9 @@ public class KnowledgeGraphController {
     @Autowired
     private PermissionService permissionService;
 
+    @Autowired
+    private KnowledgeGraphStore knowledgeGraphStore;
+
     /**
      * 安全地从请求中获取userId
      */
@@ -61,6 +67,17 @@ public class KnowledgeGraphController {
         return null; // 权限验证通过
     }
 
+    /**
+     * 把图谱保存到服务端，返回graphId
+     */
+    private String storeGraph(Long userId, Map<String, Object> graphData) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> nodes = (List<Map<String, Object>>) graphData.get("nodes");
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> links = (List<Map<String, Object>>) graphData.get("links");
+        return knowledgeGraphStore.put(userId, nodes, links);
+    }
+
     /**
      * 解析JSON格式的知识图谱文件
      */
@@ -84,6 +101,9 @@ public class KnowledgeGraphController {
             }
             
             Map<String, Object> result = knowledgeGraphService.parseJsonKnowledgeGraph(jsonContent, fileName);
+            if (Boolean.TRUE.equals(request.get("store")) && result.containsKey("nodes")) {
+                result.put("graphId", storeGraph(userId, result));
+            }
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -91,6 +111,8 @@ public class KnowledgeGraphController {
                 "data", result
             ));
             
+        } catch (KnowledgeGraphStore.GraphTooLargeException e) {
+            return ResponseEntity.status(413).body(Map.of("success", false, "error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of(
                 "success", false,
@@ -123,6 +145,9 @@ public class KnowledgeGraphController {
             }
             
             Map<String, Object> result = knowledgeGraphService.parseCsvKnowledgeGraph(csvData, fileName);
+            if (Boolean.TRUE.equals(request.get("store")) && result.containsKey("nodes")) {
+                result.put("graphId", storeGraph(userId, result));
+            }
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -130,6 +155,8 @@ public class KnowledgeGraphController {
                 "data", result
             ));
             
+        } catch (KnowledgeGraphStore.GraphTooLargeException e) {
+            return ResponseEntity.status(413).body(Map.of("success", false, "error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of(
                 "success", false,
@@ -155,18 +182,23 @@ public class KnowledgeGraphController {
             
             @SuppressWarnings("unchecked")
             Map<String, Object> graphData = (Map<String, Object>) request.get("graphData");
+            String graphId = (String) request.get("graphId");
             
-            if (graphData == null) {
+            if (graphData == null && graphId == null) {
                 return ResponseEntity.badRequest().body(Map.of("error", "图谱数据不能为空"));
             }
             
-            Map<String, Object> statistics = knowledgeGraphService.calculateStatistics(graphData);
+            Map<String, Object> statistics = graphId != null
+                    ? knowledgeGraphService.calculateStatistics(knowledgeGraphStore.get(userId, graphId))
+                    : knowledgeGraphService.calculateStatistics(graphData);
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
                 "statistics", statistics
             ));
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of(
                 "success", false,
@@ -194,10 +226,14 @@ public class KnowledgeGraphController {
             
             @SuppressWarnings("unchecked")
             Map<String, Object> graphData = (Map<String, Object>) request.get("graphData");
+            String graphId = (String) request.get("graphId");
             String nodeId = (String) request.get("nodeId");
             Integer depth = (Integer) request.get("depth"); // 邻居深度，默认为1
+            Integer maxFanOut = (Integer) request.get("maxFanOut"); // 每个节点每跳最多扩展的邻居数
+            @SuppressWarnings("unchecked")
+            List<String> relationTypes = (List<String>) request.get("relationTypes");
             
-            if (graphData == null) {
+            if (graphData == null && graphId == null) {
                 return ResponseEntity.badRequest().body(Map.of("error", "图谱数据不能为空"));
             }
             
@@ -208,8 +244,11 @@ public class KnowledgeGraphController {
             if (depth == null || depth < 1) {
                 depth = 1;
             }
+            int fanOut = maxFanOut != null ? Math.max(0, maxFanOut) : 0;
             
-            Map<String, Object> neighbors = knowledgeGraphService.getNodeNeighbors(graphData, nodeId, depth);
+            Map<String, Object> neighbors = graphId != null
+                    ? knowledgeGraphService.getNodeNeighbors(knowledgeGraphStore.get(userId, graphId), nodeId, depth, fanOut, relationTypes)
+                    : knowledgeGraphService.getNodeNeighbors(graphData, nodeId, depth, fanOut, relationTypes);
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -218,6 +257,10 @@ public class KnowledgeGraphController {
                 "depth", depth
             ));
             
+        } catch (KnowledgeGraphStore.GraphTooLargeException e) {
+            return ResponseEntity.status(413).body(Map.of("success", false, "error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of(
                 "success", false,
@@ -226,5 +269,164 @@ public class KnowledgeGraphController {
         }
     }
 
+    /**
+     * 以JSON流输出节点的邻居子图（graphId或graphData二选一），适合邻居数量很大的查询
+     */
+    @PostMapping(value = "/neighbors/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamNodeNeighbors(@RequestBody Map<String, Object> request) {
+        Long userId = extractUserId(request);
+        String userType = (String) request.get("userType");
+        
+        // 权限验证
+        ResponseEntity<?> permissionCheck = validatePermission(userId, userType, "read");
+        if (permissionCheck != null) {
+            return ResponseEntity.status(permissionCheck.getStatusCode()).body(null);
+        }
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Object> graphData = (Map<String, Object>) request.get("graphData");
+        String graphId = (String) request.get("graphId");
+        String nodeId = (String) request.get("nodeId");
+        Integer depth = (Integer) request.get("depth");
+        Integer maxFanOut = (Integer) request.get("maxFanOut");
+        @SuppressWarnings("unchecked")
+        List<String> relationTypes = (List<String>) request.get("relationTypes");
+        
+        if ((graphData == null && graphId == null) || nodeId == null || nodeId.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        
+        KnowledgeGraphStore.CompactGraph graph;
+        try {
+            if (graphId != null) {
+                graph = knowledgeGraphStore.get(userId, graphId);
+            } else {
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> nodes = (List<Map<String, Object>>) graphData.get("nodes");
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> links = (List<Map<String, Object>>) graphData.get("links");
+                graph = knowledgeGraphStore.compactWithinBudget(nodes, links);
+            }
+        } catch (KnowledgeGraphStore.GraphTooLargeException e) {
+            return ResponseEntity.status(413).body(null);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(null);
+        }
+        
+        int actualDepth = depth != null && depth >= 1 ? depth : 1;
+        int fanOut = maxFanOut != null ? Math.max(0, maxFanOut) : 0;
+        StreamingResponseBody responseBody = outputStream -> knowledgeGraphService.writeNodeNeighbors(
+                graph, nodeId, actualDepth, fanOut, relationTypes, outputStream);
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(responseBody);
+    }
 
-}
\ No newline at end of file
+    /**
+     * 过滤知识图谱（graphId或graphData二选一）
+     */
+    @PostMapping("/filter")
+    public ResponseEntity<?> filterKnowledgeGraph(@RequestBody Map<String, Object> request) {
+        try {
+            Long userId = extractUserId(request);
+            String userType = (String) request.get("userType");
+            
+            // 权限验证
+            ResponseEntity<?> permissionCheck = validatePermission(userId, userType, "read");
+            if (permissionCheck != null) {
+                return permissionCheck;
+            }
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Object> graphData = (Map<String, Object>) request.get("graphData");
+            String graphId = (String) request.get("graphId");
+            @SuppressWarnings("unchecked")
+            Map<String, Object> filters = (Map<String, Object>) request.get("filters");
+            
+            if (graphData == null && graphId == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "图谱数据不能为空"));
+            }
+            if (filters == null) {
+                filters = Map.of();
+            }
+            
+            Map<String, Object> filtered = graphId != null
+                    ? knowledgeGraphService.filterKnowledgeGraph(knowledgeGraphStore.get(userId, graphId), filters)
+                    : knowledgeGraphService.filterKnowledgeGraph(graphData, filters);
+            
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", filtered
+            ));
+            
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "error", "图谱过滤失败: " + e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * 上传图谱保存到服务端，之后的统计、邻居、过滤查询只需要传graphId
+     */
+    @PostMapping("/graphs")
+    public ResponseEntity<?> storeKnowledgeGraph(@RequestBody Map<String, Object> request) {
+        try {
+            Long userId = extractUserId(request);
+            String userType = (String) request.get("userType");
+            
+            // 权限验证
+            ResponseEntity<?> permissionCheck = validatePermission(userId, userType, "read");
+            if (permissionCheck != null) {
+                return permissionCheck;
+            }
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Object> graphData = (Map<String, Object>) request.get("graphData");
+            if (graphData == null || graphData.get("nodes") == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "图谱数据不能为空"));
+            }
+            
+            String graphId = storeGraph(userId, graphData);
+            KnowledgeGraphStore.CompactGraph graph = knowledgeGraphStore.get(userId, graphId);
+            
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "graphId", graphId,
+                "nodeCount", graph.getNodeRowCount(),
+                "linkCount", graph.getLinkRowCount()
+            ));
+            
+        } catch (KnowledgeGraphStore.GraphTooLargeException e) {
+            return ResponseEntity.status(413).body(Map.of("success", false, "error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "error", "保存图谱失败: " + e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * 删除服务端保存的图谱
+     */
+    @DeleteMapping("/graphs/{graphId}")
+    public ResponseEntity<?> deleteKnowledgeGraph(
+            @PathVariable String graphId,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String userType) {
+        ResponseEntity<?> permissionCheck = validatePermission(userId, userType, "read");
+        if (permissionCheck != null) {
+            return permissionCheck;
+        }
+        
+        if (!knowledgeGraphStore.remove(userId, graphId)) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "error", "图谱不存在或已过期: " + graphId));
+        }
+        return ResponseEntity.ok(Map.of("success", true));
+    }
+}
@@ -0,0 +1,498 @@
+package com.example.bio_data.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 批量插入引擎
+ * 所有导入策略共用的插入实现：使用单行INSERT的预编译语句加addBatch，由驱动
+ * （rewriteBatchedStatements）改写为多行INSERT，语句文本固定，可以命中预编译语句缓存。
+ * 每批行数根据行宽和max_allowed_packet估算初值，再按每批的实际耗时调整，
+ * 调整后的批大小按表记住，供后续导入使用
+ */
+@Service
+public class BatchInsertEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchInsertEngine.class);
+
+    // 估算行宽时采样的行数
+    private static final int ROW_SAMPLE_SIZE = 200;
+
+    // 去重用的会话级临时表，每个连接各自一份
+    private static final String STAGING_TABLE = "`import_dedup_staging`";
+
+    // 更新导入的批大小单独记录：语句和执行方式与插入不同，耗时不能互相参考
+    private static final String UPSERT_LEARN_SUFFIX = "#upsert";
+
+    // 单条语句的占位符数量上限（服务端预编译时为65535）
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    // 单批目标字节数（不超过max_allowed_packet的一半）
+    @Value("${import.batch.target-bytes:4194304}")
+    private long targetBatchBytes;
+
+    // 单批目标耗时，实际耗时偏离时按比例调整下一批的行数
+    @Value("${import.batch.target-latency-ms:1000}")
+    private long targetLatencyMs;
+
+    @Value("${import.batch.min-rows:100}")
+    private int minBatchRows;
+
+    @Value("${import.batch.max-rows:20000}")
+    private int maxBatchRows;
+
+    // 按JdbcTemplate缓存服务器的max_allowed_packet
+    private final Map<JdbcTemplate, Long> maxPacketCache = new ConcurrentHashMap<>();
+    // 按表记住上次调整后的批大小
+    private final Map<String, Integer> learnedBatchRows = new ConcurrentHashMap<>();
+    // 按表串行执行去重合并，并行的插入线程不会同时通过NOT EXISTS检查而写入相同的行
+    private final Map<String, ReentrantLock> mergeLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 插入结果
+     */
+    public static class InsertResult {
+        private int successCount;
+        private int failureCount;
+        private int batchCount;
+        private int skippedCount;
+        private int updatedCount;
+        private int unchangedCount;
+        private final List<String> errors = new ArrayList<>();
+
+        public int getSuccessCount() { return successCount; }
+        public int getFailureCount() { return failureCount; }
+        public int getBatchCount() { return batchCount; }
+        public int getSkippedCount() { return skippedCount; }
+        public int getUpdatedCount() { return updatedCount; }
+        public int getUnchangedCount() { return unchangedCount; }
+        public int getInsertedCount() { return successCount - updatedCount - unchangedCount; }
+        public List<String> getErrors() { return errors; }
+
+        void addSkippedCount(int count) { skippedCount += count; }
+    }
+
+    /**
+     * 批量插入数据
+     * @param qualifiedTableName 已加反引号的表名（可带库名）
+     * @param rows 每行的值，顺序与columnNames一致
+     * @param atomic 为true时任一批失败立即抛出异常（由调用方的事务回滚），否则记录错误后继续下一批
+     */
+    public InsertResult insert(JdbcTemplate jdbcTemplate, String qualifiedTableName, List<String> columnNames,
+                               List<Object[]> rows, boolean atomic) {
+        if (rows.isEmpty()) {
+            return new InsertResult();
+        }
+
+        String sql = buildInsertSql(qualifiedTableName, columnNames);
+        int maxRows = maxRowsByBytes(jdbcTemplate, rows);
+        int initialBatchRows = initialBatchRows(qualifiedTableName, maxRows);
+
+        return jdbcTemplate.execute((ConnectionCallback<InsertResult>) connection ->
+                insertBatches(connection, sql, qualifiedTableName, rows, atomic, initialBatchRows, maxRows));
+    }
+
+    /**
+     * 只插入表中不存在的行（按columnNames全部列比较，NULL与NULL视为相同）
+     * 数据先分批写入会话级临时表，再用一条INSERT ... SELECT DISTINCT ... WHERE NOT EXISTS在数据库中完成去重，
+     * 临时表与目标表的比较和写入都在同一个连接上执行，同一批内重复的行只插入一次。
+     * 并行写入同一张表时合并语句按表逐条执行，自动提交的连接上后一条合并能看到前一条已插入的行；
+     * 在调用方事务中执行时，其他连接要等事务提交后才能看到本次插入的行
+     * @return successCount为实际插入的行数，skippedCount为已存在而跳过的行数
+     */
+    public InsertResult insertIfAbsent(JdbcTemplate jdbcTemplate, String qualifiedTableName, List<String> columnNames,
+                                       List<Object[]> rows, boolean atomic) {
+        InsertResult result = new InsertResult();
+        if (rows.isEmpty()) {
+            return result;
+        }
+
+        String columns = columnNames.stream().map(column -> "`" + column + "`").collect(Collectors.joining(", "));
+        String createSql = "CREATE TEMPORARY TABLE " + STAGING_TABLE + " AS SELECT " + columns
+                + " FROM " + qualifiedTableName + " LIMIT 0";
+        String mergeSql = "INSERT INTO " + qualifiedTableName + " (" + columns + ") SELECT DISTINCT "
+                + columnNames.stream().map(column -> "s.`" + column + "`").collect(Collectors.joining(", "))
+                + " FROM " + STAGING_TABLE + " s WHERE NOT EXISTS (SELECT 1 FROM " + qualifiedTableName + " t WHERE "
+                + columnNames.stream().map(column -> "t.`" + column + "` <=> s.`" + column + "`").collect(Collectors.joining(" AND "))
+                + ")";
+        String stagingInsertSql = buildInsertSql(STAGING_TABLE, columnNames);
+        int maxRows = maxRowsByBytes(jdbcTemplate, rows);
+        int initialBatchRows = initialBatchRows(qualifiedTableName, maxRows);
+
+        return jdbcTemplate.execute((ConnectionCallback<InsertResult>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                // 连接来自连接池，上次使用遗留的临时表先删除
+                statement.execute("DROP TEMPORARY TABLE IF EXISTS " + STAGING_TABLE);
+                statement.execute(createSql);
+                try {
+                    InsertResult staged = insertBatches(connection, stagingInsertSql, qualifiedTableName, rows, atomic,
+                            initialBatchRows, maxRows);
+                    result.failureCount = staged.failureCount;
+                    result.batchCount = staged.batchCount;
+                    result.errors.addAll(staged.errors);
+                    if (staged.successCount > 0) {
+                        long mergeStart = System.nanoTime();
+                        int inserted;
+                        ReentrantLock mergeLock = mergeLocks.computeIfAbsent(qualifiedTableName, key -> new ReentrantLock());
+                        mergeLock.lock();
+                        try {
+                            inserted = statement.executeUpdate(mergeSql);
+                        } finally {
+                            mergeLock.unlock();
+                        }
+                        result.successCount = inserted;
+                        result.skippedCount = staged.successCount - inserted;
+                        logger.debug("临时表去重完成 - 暂存: {}, 插入: {}, 跳过: {}, 耗时: {}ms",
+                                staged.successCount, inserted, result.skippedCount, (System.nanoTime() - mergeStart) / 1_000_000);
+                    }
+                } finally {
+                    try {
+                        statement.execute("DROP TEMPORARY TABLE IF EXISTS " + STAGING_TABLE);
+                    } catch (SQLException e) {
+                        logger.warn("删除去重临时表失败: {}", e.getMessage());
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 按主键插入或更新：每批生成一条多行INSERT ... ON DUPLICATE KEY UPDATE，
+     * 主键已存在的行用导入的值更新非主键列，值没有变化的行不产生写入
+     * 每批执行前按主键查询已存在的行数（SELECT ... FOR UPDATE），结合语句返回的影响行数拆分出插入、更新和未变化的行数
+     * （连接未设置useAffectedRows，插入和未变化的行影响行数为1，更新的行为2）。
+     * 连接处于自动提交时每批在一个READ COMMITTED事务中执行，查询锁住已存在的行直到本批写入完成，
+     * 不加间隙锁，并行写入同一张表的批次不会因此互相死锁；查询之后其他会话新插入的同主键行仍会被计为插入。
+     * 由调用方管理事务时按调用方的隔离级别加锁
+     * @param keyColumns 主键列，必须包含在columnNames中
+     */
+    public InsertResult upsert(JdbcTemplate jdbcTemplate, String qualifiedTableName, List<String> columnNames,
+                               List<String> keyColumns, List<Object[]> rows, boolean atomic) {
+        InsertResult result = new InsertResult();
+        if (rows.isEmpty()) {
+            return result;
+        }
+
+        int[] keyIndexes = keyColumns.stream().mapToInt(columnNames::indexOf).toArray();
+        String rowPlaceholders = "(" + columnNames.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+        String keyPlaceholders = "(" + keyColumns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+        String insertPrefix = "INSERT INTO " + qualifiedTableName + " ("
+                + columnNames.stream().map(column -> "`" + column + "`").collect(Collectors.joining(", "))
+                + ") VALUES ";
+        List<String> updateColumns = columnNames.stream().filter(column -> !keyColumns.contains(column)).collect(Collectors.toList());
+        // 只有主键列时，已存在的行保持不变
+        String updateClause = " ON DUPLICATE KEY UPDATE " + (updateColumns.isEmpty()
+                ? "`" + keyColumns.get(0) + "` = `" + keyColumns.get(0) + "`"
+                : updateColumns.stream().map(column -> "`" + column + "` = VALUES(`" + column + "`)").collect(Collectors.joining(", ")));
+        String existingPrefix = "SELECT COUNT(*) FROM " + qualifiedTableName + " WHERE ("
+                + keyColumns.stream().map(column -> "`" + column + "`").collect(Collectors.joining(", ")) + ") IN (";
+        String learnKey = qualifiedTableName + UPSERT_LEARN_SUFFIX;
+        // 多行语句中每行的值都在语句里，按字节预算和占位符上限限制每批行数
+        int maxRows = Math.min(maxRowsByBytes(jdbcTemplate, rows), Math.max(1, MAX_PLACEHOLDERS / columnNames.size()));
+        int initialBatchRows = initialBatchRows(learnKey, maxRows);
+
+        return jdbcTemplate.execute((ConnectionCallback<InsertResult>) connection -> {
+            boolean localTransaction = connection.getAutoCommit();
+            int originalIsolation = connection.getTransactionIsolation();
+            if (localTransaction) {
+                connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+                connection.setAutoCommit(false);
+            }
+            try {
+                int batchRows = initialBatchRows;
+                int start = 0;
+                while (start < rows.size()) {
+                    int end = Math.min(start + batchRows, rows.size());
+                    long batchStart = System.nanoTime();
+                    try {
+                        upsertBatch(connection, existingPrefix, keyPlaceholders, keyIndexes,
+                                insertPrefix, rowPlaceholders, updateClause, rows, start, end, localTransaction, result);
+                    } catch (SQLException e) {
+                        if (localTransaction) {
+                            rollbackQuietly(connection);
+                        }
+                        if (atomic) {
+                            throw e;
+                        }
+                        result.failureCount += end - start;
+                        String error = String.format("批次 %d-%d 写入失败: %s", start + 1, end, rootMessage(e));
+                        result.errors.add(error);
+                        logger.error(error);
+                    }
+                    result.batchCount++;
+
+                    long elapsedMs = (System.nanoTime() - batchStart) / 1_000_000;
+                    batchRows = nextBatchRows(batchRows, end - start, elapsedMs, maxRows);
+                    start = end;
+                }
+                learnedBatchRows.put(learnKey, batchRows);
+                return result;
+            } finally {
+                if (localTransaction) {
+                    try {
+                        connection.setAutoCommit(true);
+                        connection.setTransactionIsolation(originalIsolation);
+                    } catch (SQLException e) {
+                        logger.warn("恢复连接的事务设置失败: {}", e.getMessage());
+                        evictConnection(jdbcTemplate, connection);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 写入一批行：先锁住并统计已存在的行，再执行多行INSERT ... ON DUPLICATE KEY UPDATE；
+     * commit为true时提交后才计入结果
+     */
+    private void upsertBatch(Connection connection, String existingPrefix, String keyPlaceholders, int[] keyIndexes,
+                             String insertPrefix, String rowPlaceholders, String updateClause,
+                             List<Object[]> rows, int start, int end, boolean commit, InsertResult result) throws SQLException {
+        int count = end - start;
+        int existing;
+        try (PreparedStatement statement = connection.prepareStatement(
+                existingPrefix + String.join(", ", Collections.nCopies(count, keyPlaceholders)) + ") FOR UPDATE")) {
+            int index = 1;
+            for (int i = start; i < end; i++) {
+                for (int keyIndex : keyIndexes) {
+                    statement.setObject(index++, rows.get(i)[keyIndex]);
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                existing = resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+
+        int affected;
+        try (PreparedStatement statement = connection.prepareStatement(
+                insertPrefix + String.join(", ", Collections.nCopies(count, rowPlaceholders)) + updateClause)) {
+            int index = 1;
+            for (int i = start; i < end; i++) {
+                for (Object value : rows.get(i)) {
+                    statement.setObject(index++, value);
+                }
+            }
+            affected = statement.executeUpdate();
+        }
+        if (commit) {
+            connection.commit();
+        }
+
+        // 同一批中主键重复的行会使统计略有偏差，按范围截断
+        int updated = Math.max(0, Math.min(existing, affected - count));
+        result.successCount += count;
+        result.updatedCount += updated;
+        result.unchangedCount += Math.max(0, existing - updated);
+    }
+
+    private void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.warn("回滚失败: {}", e.getMessage());
+        }
+    }
+
+    private String buildInsertSql(String qualifiedTableName, List<String> columnNames) {
+        return "INSERT INTO " + qualifiedTableName + " ("
+                + columnNames.stream().map(column -> "`" + column + "`").collect(Collectors.joining(", "))
+                + ") VALUES ("
+                + columnNames.stream().map(column -> "?").collect(Collectors.joining(", "))
+                + ")";
+    }
+
+    /**
+     * 在给定连接上分批执行插入，批大小按耗时调整后记到learnKey对应的表上
+     */
+    private InsertResult insertBatches(Connection connection, String sql, String learnKey, List<Object[]> rows,
+                                       boolean atomic, int initialBatchRows, int maxRows) throws SQLException {
+        InsertResult result = new InsertResult();
+        int batchRows = initialBatchRows;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int start = 0;
+            while (start < rows.size()) {
+                int end = Math.min(start + batchRows, rows.size());
+                long batchStart = System.nanoTime();
+                try {
+                    for (int i = start; i < end; i++) {
+                        Object[] row = rows.get(i);
+                        for (int j = 0; j < row.length; j++) {
+                            statement.setObject(j + 1, row[j]);
+                        }
+                        statement.addBatch();
+                    }
+                    result.successCount += countSuccess(statement.executeBatch(), end - start);
+                } catch (SQLException e) {
+                    statement.clearBatch();
+                    if (atomic) {
+                        throw e;
+                    }
+                    int succeeded = e instanceof BatchUpdateException
+                            ? countPartialSuccess(((BatchUpdateException) e).getUpdateCounts()) : 0;
+                    result.successCount += succeeded;
+                    result.failureCount += (end - start) - succeeded;
+                    String error = String.format("批次 %d-%d 插入失败: %s", start + 1, end, rootMessage(e));
+                    result.errors.add(error);
+                    logger.error(error);
+                }
+                result.batchCount++;
+
+                long elapsedMs = (System.nanoTime() - batchStart) / 1_000_000;
+                batchRows = nextBatchRows(batchRows, end - start, elapsedMs, maxRows);
+                logger.debug("批量插入进度: {}/{}，本批 {} 行耗时 {}ms，下一批 {} 行",
+                        end, rows.size(), end - start, elapsedMs, batchRows);
+                start = end;
+            }
+        }
+        learnedBatchRows.put(learnKey, batchRows);
+        return result;
+    }
+
+    /**
+     * 会话设置没能恢复的连接从连接池中移除（Hikari在连接归还时关闭它），不会带着修改过的设置被其他请求借出；
+     * 不是Hikari连接池时中止物理连接
+     */
+    private void evictConnection(JdbcTemplate jdbcTemplate, Connection connection) {
+        Connection target = connection instanceof ConnectionProxy ? ((ConnectionProxy) connection).getTargetConnection() : connection;
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)) {
+                dataSource.unwrap(HikariDataSource.class).evictConnection(target);
+            } else {
+                target.abort(Runnable::run);
+            }
+            logger.warn("已从连接池移除会话设置未恢复的连接");
+        } catch (SQLException e) {
+            logger.error("移除连接失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按采样行宽和单批目标字节数（不超过max_allowed_packet的一半）估算本次数据单批最多的行数
+     * 行宽较大时可能小于minBatchRows，以字节上限为准
+     */
+    private int maxRowsByBytes(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        long budget = Math.min(targetBatchBytes, getMaxAllowedPacket(jdbcTemplate) / 2);
+        long rowBytes = Math.max(1, estimateRowBytes(rows));
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, budget / rowBytes));
+    }
+
+    /**
+     * 初始批大小：优先使用该表上次调整后的值，否则取字节上限对应的行数；两者都不超过本次数据的字节上限
+     */
+    private int initialBatchRows(String qualifiedTableName, int maxRows) {
+        Integer learned = learnedBatchRows.get(qualifiedTableName);
+        return Math.min(maxRows, clamp(learned != null ? learned : maxRows));
+    }
+
+    /**
+     * 按本批耗时调整下一批行数，每次最多放大一倍或缩小一半，且不超过字节上限对应的行数
+     */
+    int nextBatchRows(int currentRows, int executedRows, long elapsedMs, int maxRows) {
+        if (executedRows < currentRows) {
+            // 最后一批不足额，耗时不具参考性
+            return Math.min(maxRows, currentRows);
+        }
+        double ratio = (double) targetLatencyMs / Math.max(1, elapsedMs);
+        ratio = Math.max(0.5, Math.min(2.0, ratio));
+        return Math.min(maxRows, clamp((int) (currentRows * ratio)));
+    }
+
+    private int clamp(int rows) {
+        return Math.max(minBatchRows, Math.min(maxBatchRows, rows));
+    }
+
+    /**
+     * 估算采样行在改写后的INSERT语句中占用的字节数
+     */
+    private long estimateRowBytes(List<Object[]> rows) {
+        int sampleSize = Math.min(ROW_SAMPLE_SIZE, rows.size());
+        long totalBytes = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            // 括号和逗号分隔
+            totalBytes += 3;
+            for (Object value : rows.get(i)) {
+                if (value == null) {
+                    totalBytes += 5;
+                } else if (value instanceof Number && !(value instanceof BigDecimal)) {
+                    totalBytes += 21;
+                } else {
+                    // 转义和多字节字符按两倍估算
+                    totalBytes += value.toString().length() * 2L + 3;
+                }
+            }
+        }
+        return totalBytes / sampleSize;
+    }
+
+    private long getMaxAllowedPacket(JdbcTemplate jdbcTemplate) {
+        return maxPacketCache.computeIfAbsent(jdbcTemplate, template -> {
+            try {
+                Long value = template.queryForObject("SELECT @@max_allowed_packet", Long.class);
+                return value != null ? value : 4L * 1024 * 1024;
+            } catch (Exception e) {
+                logger.warn("获取max_allowed_packet失败，使用默认值4MB: {}", e.getMessage());
+                return 4L * 1024 * 1024;
+            }
+        });
+    }
+
+    private int countSuccess(int[] updateCounts, int batchRows) {
+        int success = 0;
+        for (int count : updateCounts) {
+            if (count == Statement.SUCCESS_NO_INFO) {
+                // 驱动改写为多行INSERT后不返回逐行的影响行数
+                return batchRows;
+            }
+            success += Math.max(count, 0);
+        }
+        return success;
+    }
+
+    private int countPartialSuccess(int[] updateCounts) {
+        int success = 0;
+        if (updateCounts == null) {
+            return 0;
+        }
+        for (int count : updateCounts) {
+            if (count == Statement.SUCCESS_NO_INFO) {
+                success++;
+            } else if (count > 0) {
+                success += count;
+            }
+        }
+        return success;
+    }
+
+    private String rootMessage(Throwable e) {
+        Throwable rootCause = e;
+        while (rootCause.getCause() != null) {
+            rootCause = rootCause.getCause();
+        }
+        return rootCause.getMessage();
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.bio_data.service;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 批量装载服务（LOAD DATA LOCAL INFILE）
+ * 把待导入的行按MySQL默认的LOAD DATA文本格式编码，通过Connector/J的setLocalInfileInputStream
+ * 作为输入流直接交给服务器装载，避免逐批拼接和解析大量参数的INSERT语句。
+ * 需要在数据源URL中开启allowLoadLocalInfile=true并在服务器上开启local_infile，默认关闭
+ */
+@Service
+public class BulkLoadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkLoadService.class);
+
+    // 唯一键冲突的警告，对应的行被跳过
+    private static final int ER_DUP_ENTRY = 1062;
+    // 警告信息中的行号（"at row 12"、"Row 12 doesn't contain..."）
+    private static final Pattern WARNING_ROW = Pattern.compile("(?i)\\brow (\\d+)");
+    // 会话能保留的警告条数上限（max_error_count的最大值）
+    private static final int MAX_ERROR_COUNT = 65535;
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Value("${import.bulk-load.enabled:false}")
+    private boolean enabled;
+
+    // 服务器或驱动拒绝LOCAL INFILE后不再尝试，直到应用重启
+    private volatile boolean localInfileRejected = false;
+
+    /**
+     * 待装载行的来源，返回null表示结束
+     */
+    public interface RowSource {
+        Object[] nextRow() throws IOException;
+    }
+
+    /**
+     * 服务器或驱动未开启LOCAL INFILE，且输入流尚未被读取，调用方可以改用普通批量插入
+     */
+    public static class BulkLoadUnavailableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public BulkLoadUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * 装载结果
+     * failedRows为值被截断、转换或置为默认值后写入的行数（已包含在loadedRows中），warnings为这些问题的说明
+     */
+    public static class LoadResult {
+        private final long rowsSent;
+        private final long loadedRows;
+        private final long failedRows;
+        private final List<String> warnings;
+
+        LoadResult(long rowsSent, long loadedRows, long failedRows, List<String> warnings) {
+            this.rowsSent = rowsSent;
+            this.loadedRows = loadedRows;
+            this.failedRows = failedRows;
+            this.warnings = warnings;
+        }
+
+        public long getRowsSent() { return rowsSent; }
+        public long getLoadedRows() { return loadedRows; }
+        public long getFailedRows() { return failedRows; }
+        public List<String> getWarnings() { return warnings; }
+    }
+
+    public boolean isAvailable() {
+        return enabled && !localInfileRejected;
+    }
+
+    /**
+     * 把行来源中的全部数据装载到表中
+     * LOCAL装载时服务器总是按IGNORE处理，不能用严格模式让出错的行失败：与已有数据唯一键冲突的行被忽略
+     * （计入rowsSent但不计入loadedRows），无法转换的值被截断或置为默认值后照常写入，只产生警告。
+     * 装载后逐条读取警告，把这类行作为失败的行返回
+     * @param columns 行数据对应的列名，顺序与RowSource返回的数组一致
+     * @param maxWarnings 最多返回的警告条数
+     */
+    public LoadResult load(String dataSourceName, String tableName, List<String> columns,
+                           RowSource source, int maxWarnings) {
+        return load(dataSourceName, tableName, databaseService.qualifiedTableName(dataSourceName, tableName),
+                columns, source, maxWarnings);
+    }
+
+    /**
+     * 装载到指定的表（覆盖导入时写入影子表），连接池按tableName所在的数据源选择
+     */
+    public LoadResult load(String dataSourceName, String tableName, String qualifiedTarget, List<String> columns,
+                           RowSource source, int maxWarnings) {
+        if (!isAvailable()) {
+            throw new BulkLoadUnavailableException("批量装载未开启", null);
+        }
+
+        String columnList = columns.stream().map(column -> "`" + column + "`").collect(Collectors.joining(", "));
+        String sql = "LOAD DATA LOCAL INFILE 'stream' IGNORE INTO TABLE "
+                + qualifiedTarget
+                + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' ("
+                + columnList + ")";
+
+        long startTime = System.currentTimeMillis();
+        LoadResult result = databaseService.getTableJdbcTemplate(dataSourceName).execute((ConnectionCallback<LoadResult>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                LoadDataInputStream inputStream = new LoadDataInputStream(source, columns.size());
+                statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(inputStream);
+
+                // 默认只保留1024条警告，重复行的警告较多时会挤掉数据转换的警告；连接归还连接池前恢复
+                statement.execute("SET SESSION max_error_count = " + MAX_ERROR_COUNT);
+                try {
+                    long loadedRows;
+                    try {
+                        loadedRows = statement.executeLargeUpdate(sql);
+                    } catch (SQLException e) {
+                        if (inputStream.getSourceException() != null) {
+                            throw new RuntimeException("读取导入数据失败: " + inputStream.getSourceException().getMessage(),
+                                    inputStream.getSourceException());
+                        }
+                        if (inputStream.getRowsSent() == 0 && isLocalInfileDisabled(e)) {
+                            localInfileRejected = true;
+                            logger.warn("服务器或驱动未开启LOCAL INFILE，批量装载已停用: {}", e.getMessage());
+                            throw new BulkLoadUnavailableException("LOCAL INFILE未开启: " + e.getMessage(), e);
+                        }
+                        throw e;
+                    }
+                    if (inputStream.getSourceException() != null) {
+                        throw new RuntimeException("读取导入数据失败: " + inputStream.getSourceException().getMessage(),
+                                inputStream.getSourceException());
+                    }
+                    return readWarnings(statement, inputStream.getRowsSent(), loadedRows, maxWarnings);
+                } finally {
+                    statement.execute("SET SESSION max_error_count = DEFAULT");
+                }
+            }
+        });
+
+        databaseService.clearTableSearchCache(dataSourceName, tableName, result.getLoadedRows());
+        logger.info("批量装载完成 - 表: {}, 发送行数: {}, 装载行数: {}, 其中值被转换的行数: {}, 耗时: {}ms",
+                tableName, result.getRowsSent(), result.getLoadedRows(), result.getFailedRows(),
+                System.currentTimeMillis() - startTime);
+        return result;
+    }
+
+    /**
+     * 读取装载产生的全部警告：唯一键冲突的行已按跳过统计，其余警告对应的行按失败统计
+     */
+    private LoadResult readWarnings(Statement statement, long rowsSent, long loadedRows, int maxWarnings) throws SQLException {
+        List<String> warnings = new ArrayList<>();
+        Set<Long> failedRows = new HashSet<>();
+        long rowlessWarnings = 0;
+        long listedWarnings = 0;
+        try (ResultSet rs = statement.executeQuery("SHOW WARNINGS")) {
+            while (rs.next()) {
+                listedWarnings++;
+                int code = rs.getInt("Code");
+                if (code == ER_DUP_ENTRY) {
+                    continue;
+                }
+                String message = rs.getString("Message");
+                Matcher matcher = WARNING_ROW.matcher(message == null ? "" : message);
+                if (matcher.find()) {
+                    long row = Long.parseLong(matcher.group(1));
+                    if (!failedRows.add(row)) {
+                        continue;
+                    }
+                } else {
+                    rowlessWarnings++;
+                }
+                if (warnings.size() < maxWarnings) {
+                    warnings.add("值已被转换后写入 - " + rs.getString("Level") + " " + code + ": " + message);
+                }
+            }
+        }
+
+        // SHOW COUNT(*) WARNINGS是诊断语句，不会清除上面读取的警告
+        long totalWarnings = listedWarnings;
+        try (ResultSet rs = statement.executeQuery("SHOW COUNT(*) WARNINGS")) {
+            if (rs.next()) {
+                totalWarnings = rs.getLong(1);
+            }
+        }
+        if (totalWarnings > listedWarnings && warnings.size() < maxWarnings) {
+            warnings.add("另有 " + (totalWarnings - listedWarnings) + " 条警告超出服务器保留上限，未能逐条检查");
+        }
+        return new LoadResult(rowsSent, loadedRows, Math.min(loadedRows, failedRows.size() + rowlessWarnings), warnings);
+    }
+
+    /**
+     * 判断是否为LOCAL INFILE未开启导致的错误
+     * 1148/3948为服务器端拒绝，驱动端未开启时只有错误信息
+     */
+    private boolean isLocalInfileDisabled(SQLException e) {
+        if (e.getErrorCode() == 1148 || e.getErrorCode() == 3948) {
+            return true;
+        }
+        String message = e.getMessage() == null ? "" : e.getMessage().toLowerCase();
+        return message.contains("local data") || message.contains("local infile");
+    }
+
+    /**
+     * 按需从行来源编码数据的输入流（字段以TAB分隔、行以LF结束，NULL写作\N，特殊字符用反斜杠转义）
+     */
+    private static class LoadDataInputStream extends InputStream {
+        private final RowSource source;
+        private final int columnCount;
+        private final StringBuilder line = new StringBuilder(256);
+        private byte[] buffer = new byte[0];
+        private int position = 0;
+        private long rowsSent = 0;
+        private boolean finished = false;
+        private IOException sourceException;
+
+        LoadDataInputStream(RowSource source, int columnCount) {
+            this.source = source;
+            this.columnCount = columnCount;
+        }
+
+        long getRowsSent() {
+            return rowsSent;
+        }
+
+        IOException getSourceException() {
+            return sourceException;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureData()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int total = 0;
+            while (total < length && ensureData()) {
+                int count = Math.min(length - total, buffer.length - position);
+                System.arraycopy(buffer, position, target, offset + total, count);
+                position += count;
+                total += count;
+            }
+            return total == 0 ? -1 : total;
+        }
+
+        /**
+         * 当前编码的数据读完后编码下一批行（每次约64KB）
+         */
+        private boolean ensureData() throws IOException {
+            if (position < buffer.length) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            line.setLength(0);
+            while (line.length() < 64 * 1024) {
+                Object[] row;
+                try {
+                    row = source.nextRow();
+                } catch (IOException e) {
+                    // 记录下来由调用方抛出，驱动读取失败时只会给出笼统的错误信息
+                    sourceException = e;
+                    throw e;
+                }
+                if (row == null) {
+                    finished = true;
+                    break;
+                }
+                for (int i = 0; i < columnCount; i++) {
+                    if (i > 0) {
+                        line.append('\t');
+                    }
+                    appendValue(i < row.length ? row[i] : null);
+                }
+                line.append('\n');
+                rowsSent++;
+            }
+            buffer = line.toString().getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            return buffer.length > 0;
+        }
+
+        private void appendValue(Object value) {
+            if (value == null) {
+                line.append("\\N");
+                return;
+            }
+            String text;
+            if (value instanceof BigDecimal) {
+                text = ((BigDecimal) value).toPlainString();
+            } else if (value instanceof Boolean) {
+                text = (Boolean) value ? "1" : "0";
+            } else {
+                text = value.toString();
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '\\': line.append("\\\\"); break;
+                    case '\t': line.append("\\t"); break;
+                    case '\n': line.append("\\n"); break;
+                    case '\r': line.append("\\r"); break;
+                    case '\0': line.append("\\0"); break;
+                    default: line.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.bio_data.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 重负载操作隔离（舱壁）
+ * 搜索、导出、导入各自有独立的并发上限、等待队列和后台线程，某一类操作占满时只影响同类请求，
+ * 超出队列的请求立即拒绝（HTTP 429并给出建议的重试时间），不会耗尽登录和元数据查询需要的连接。
+ * 单表的分页查询耗时短，使用单独的query类，不与长时间运行的跨表搜索争用名额
+ */
+@Service
+public class BulkheadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkheadService.class);
+
+    public static final String SEARCH = "search";
+    public static final String EXPORT = "export";
+    public static final String IMPORT = "import";
+    public static final String QUERY = "query";
+
+    // 还没有耗时统计时按5秒估算重试时间
+    private static final long DEFAULT_DURATION_MS = 5000;
+    private static final int MAX_RETRY_AFTER_SECONDS = 300;
+
+    private final DataSource loginDataSource;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // 未开启每个库独立连接池时，为登录、元数据等轻量请求预留的login连接数
+    @Value("${bulkhead.reserved-connections:4}")
+    private int reservedConnections;
+
+    // 与Spring Boot的虚拟线程开关一致：开启且运行在JDK 21以上时，后台任务每个使用一个虚拟线程
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+
+    public BulkheadService(@Qualifier("loginDataSource") DataSource loginDataSource) {
+        this.loginDataSource = loginDataSource;
+    }
+
+    /**
+     * 操作类已满，请求被拒绝
+     */
+    public static class BulkheadFullException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final String operation;
+        private final int retryAfterSeconds;
+
+        public BulkheadFullException(String operation, int retryAfterSeconds) {
+            super("系统繁忙，当前" + operation + "操作过多，请" + retryAfterSeconds + "秒后重试");
+            this.operation = operation;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public String getOperation() { return operation; }
+        public int getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+
+    /**
+     * 一次操作占用的名额，关闭时归还，重复关闭无影响
+     */
+    public static class Permit implements AutoCloseable {
+        private final Bulkhead bulkhead;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Permit(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release(System.currentTimeMillis() - startTime);
+            }
+        }
+    }
+
+    /**
+     * 一类操作的并发上限和等待队列
+     * admission限制正在执行和排队的总数，running限制同时执行的数量
+     */
+    private static class Bulkhead {
+        private final String name;
+        private final int maxConcurrent;
+        private final int connectionsPerOperation;
+        private final int queueSize;
+        private final long queueTimeoutMs;
+        private final Semaphore admission;
+        private final Semaphore running;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final ExecutorService executor;
+        private volatile long averageDurationMs = DEFAULT_DURATION_MS;
+        private Counter rejectedCounter;
+
+        Bulkhead(String name, int maxConcurrent, int connectionsPerOperation, int queueSize, long queueTimeoutMs,
+                 boolean virtualThreads) {
+            this.name = name;
+            this.maxConcurrent = maxConcurrent;
+            this.connectionsPerOperation = connectionsPerOperation;
+            this.queueSize = queueSize;
+            this.queueTimeoutMs = queueTimeoutMs;
+            this.admission = new Semaphore(maxConcurrent + queueSize);
+            this.running = new Semaphore(maxConcurrent, true);
+
+            // 排队的任务在线程中等待running名额，线程数为并发上限加队列长度（由admission保证）
+            if (virtualThreads) {
+                this.executor = VirtualThreads.newThreadPerTaskExecutor("bulkhead-" + name + "-");
+                return;
+            }
+            AtomicInteger threadIndex = new AtomicInteger();
+            int threads = maxConcurrent + queueSize;
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "bulkhead-" + name + "-" + threadIndex.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+        }
+
+        void admit() {
+            if (!admission.tryAcquire()) {
+                if (rejectedCounter != null) {
+                    rejectedCounter.increment();
+                }
+                throw new BulkheadFullException(name, retryAfterSeconds());
+            }
+        }
+
+        void release(long durationMs) {
+            // 指数加权平均，用于估算重试时间
+            averageDurationMs = (averageDurationMs * 4 + durationMs) / 5;
+            running.release();
+            admission.release();
+        }
+
+        int active() {
+            return maxConcurrent - running.availablePermits();
+        }
+
+        /**
+         * 按平均耗时和排在前面的请求数估算多久后会有空位
+         */
+        int retryAfterSeconds() {
+            double rounds = (double) (queued.get() + 1) / maxConcurrent;
+            long seconds = (long) Math.ceil(averageDurationMs * rounds / 1000.0);
+            return (int) Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, seconds));
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        int poolSize = 10;
+        if (loginDataSource instanceof HikariDataSource) {
+            poolSize = ((HikariDataSource) loginDataSource).getMaximumPoolSize();
+        }
+        boolean databasePools = environment.getProperty("datasource.pools.enabled", Boolean.class, true);
+        int budget = connectionBudget(databasePools,
+                environment.getProperty("datasource.pools.maximum-pool-size", Integer.class, 5),
+                environment.getProperty("datasource.pools.max-pools", Integer.class, 20),
+                poolSize, reservedConnections);
+
+        // {并发上限, 排队数, 每个操作占用的连接数}：一次搜索并行探测多张表，一次导入有多个插入线程，导出和分页查询只用一个连接
+        Map<String, int[]> limits = new LinkedHashMap<>();
+        limits.put(SEARCH, new int[]{environment.getProperty("bulkhead.search.max-concurrent", Integer.class, 4),
+                environment.getProperty("bulkhead.search.queue-size", Integer.class, 8),
+                environment.getProperty("bulkhead.search.connections-per-operation", Integer.class,
+                        environment.getProperty("search.parallel.per-search-concurrency", Integer.class, 4))});
+        limits.put(EXPORT, new int[]{environment.getProperty("bulkhead.export.max-concurrent", Integer.class, 3),
+                environment.getProperty("bulkhead.export.queue-size", Integer.class, 6),
+                environment.getProperty("bulkhead.export.connections-per-operation", Integer.class, 1)});
+        limits.put(IMPORT, new int[]{environment.getProperty("bulkhead.import.max-concurrent", Integer.class, 3),
+                environment.getProperty("bulkhead.import.queue-size", Integer.class, 6),
+                environment.getProperty("bulkhead.import.connections-per-operation", Integer.class,
+                        environment.getProperty("import.pipeline.insert-workers", Integer.class, 4))});
+        limits.put(QUERY, new int[]{environment.getProperty("bulkhead.query.max-concurrent", Integer.class, 8),
+                environment.getProperty("bulkhead.query.queue-size", Integer.class, 16),
+                environment.getProperty("bulkhead.query.connections-per-operation", Integer.class, 1)});
+
+        boolean virtualThreads = virtualThreadsEnabled && VirtualThreads.isAvailable();
+        if (virtualThreadsEnabled && !virtualThreads) {
+            logger.warn("spring.threads.virtual.enabled已开启，但当前JVM不支持虚拟线程（需要JDK 21及以上），继续使用平台线程");
+        }
+
+        int[] maxConcurrent = scaleToBudget(limits, budget);
+        int index = 0;
+        for (Map.Entry<String, int[]> entry : limits.entrySet()) {
+            int queueSize = Math.max(0, entry.getValue()[1]);
+            int connections = Math.max(1, entry.getValue()[2]);
+            long queueTimeoutMs = environment.getProperty("bulkhead." + entry.getKey() + ".queue-timeout-ms", Long.class,
+                    QUERY.equals(entry.getKey()) ? 5000L : 10000L);
+            Bulkhead bulkhead = new Bulkhead(entry.getKey(), maxConcurrent[index++], connections, queueSize, queueTimeoutMs,
+                    virtualThreads);
+            registerMetrics(bulkhead);
+            bulkheads.put(entry.getKey(), bulkhead);
+        }
+
+        int used = bulkheads.values().stream().mapToInt(b -> b.maxConcurrent * b.connectionsPerOperation).sum();
+        if (used > budget) {
+            logger.warn("操作隔离 - 每类操作至少保留1个并发名额，同时占用的连接数({})超过可用连接数({})，请增大连接池或减少每个操作的连接数",
+                    used, budget);
+        }
+        logger.info("初始化操作隔离 - 可用连接数: {}（{}）, 虚拟线程: {}, 并发上限/排队数/每个操作的连接数: {}",
+                budget, databasePools ? "每个库独立连接池" : "login连接池 " + poolSize + " 减去预留 " + reservedConnections, virtualThreads,
+                bulkheads.values().stream().map(b -> b.name + "=" + b.maxConcurrent + "/" + b.queueSize + "/" + b.connectionsPerOperation)
+                        .reduce((a, b) -> a + ", " + b).orElse(""));
+    }
+
+    /**
+     * 各类操作可以同时占用的连接数
+     * 开启每个库独立的连接池时，搜索、导出和导入访问用户数据库都使用该库自己的连接池，按单个连接池大小乘以连接池数量计算，
+     * 登录和元数据查询使用的login连接池不受影响；未开启时这些操作都使用login连接池，扣除预留的连接
+     */
+    static int connectionBudget(boolean databasePools, int databasePoolSize, int maxPools, int loginPoolSize,
+                                int reservedConnections) {
+        int connections = databasePools ? databasePoolSize * maxPools : loginPoolSize - reservedConnections;
+        return Math.max(3, connections);
+    }
+
+    /**
+     * 按每个操作占用的连接数计算各类操作的并发上限：同时占用的连接数之和超过budget时按比例缩减，每类至少1个
+     */
+    static int[] scaleToBudget(Map<String, int[]> limits, int budget) {
+        int[] result = new int[limits.size()];
+        int total = 0;
+        int i = 0;
+        for (int[] limit : limits.values()) {
+            result[i] = Math.max(1, limit[0]);
+            total += result[i++] * Math.max(1, limit[2]);
+        }
+        if (total > budget) {
+            i = 0;
+            for (int[] limit : limits.values()) {
+                result[i] = Math.max(1, result[i] * budget / total);
+                i++;
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkheads.values().forEach(bulkhead -> bulkhead.executor.shutdownNow());
+    }
+
+    /**
+     * 同步获取名额：有空位立即返回，队列未满时最多等待queue-timeout-ms，否则抛出BulkheadFullException
+     * 调用方用完后必须关闭返回的Permit
+     */
+    public Permit acquire(String operation) {
+        Bulkhead bulkhead = getBulkhead(operation);
+        bulkhead.admit();
+        boolean acquired = false;
+        bulkhead.queued.incrementAndGet();
+        try {
+            acquired = bulkhead.running.tryAcquire(bulkhead.queueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            bulkhead.queued.decrementAndGet();
+        }
+        if (!acquired) {
+            bulkhead.admission.release();
+            if (bulkhead.rejectedCounter != null) {
+                bulkhead.rejectedCounter.increment();
+            }
+            throw new BulkheadFullException(operation, bulkhead.retryAfterSeconds());
+        }
+        return new Permit(bulkhead);
+    }
+
+    /**
+     * 在该类操作自己的线程中异步执行任务，队列已满时立即抛出BulkheadFullException
+     */
+    public void execute(String operation, Runnable task) {
+        Bulkhead bulkhead = getBulkhead(operation);
+        bulkhead.admit();
+        bulkhead.queued.incrementAndGet();
+        try {
+            bulkhead.executor.execute(() -> {
+                try {
+                    bulkhead.running.acquire();
+                } catch (InterruptedException e) {
+                    bulkhead.queued.decrementAndGet();
+                    bulkhead.admission.release();
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                bulkhead.queued.decrementAndGet();
+                Permit permit = new Permit(bulkhead);
+                try {
+                    task.run();
+                } finally {
+                    permit.close();
+                }
+            });
+        } catch (RuntimeException e) {
+            bulkhead.queued.decrementAndGet();
+            bulkhead.admission.release();
+            throw e;
+        }
+    }
+
+    private Bulkhead getBulkhead(String operation) {
+        Bulkhead bulkhead = bulkheads.get(operation);
+        if (bulkhead == null) {
+            throw new IllegalArgumentException("未知的操作类型: " + operation);
+        }
+        return bulkhead;
+    }
+
+    private void registerMetrics(Bulkhead bulkhead) {
+        if (meterRegistry == null) {
+            return;
+        }
+        Gauge.builder("bulkhead.active", bulkhead, Bulkhead::active).tag("operation", bulkhead.name).register(meterRegistry);
+        Gauge.builder("bulkhead.queued", bulkhead.queued, AtomicInteger::get).tag("operation", bulkhead.name).register(meterRegistry);
+        bulkhead.rejectedCounter = Counter.builder("bulkhead.rejected").tag("operation", bulkhead.name).register(meterRegistry);
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.bio_data.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式CSV/TSV分词器
+ * 直接在固定大小的读缓冲区上扫描分隔符，字段内容只在生成字段字符串时复制一次；
+ * 支持双引号包裹（字段内的分隔符、换行和转义的双引号""）、CRLF/LF换行以及UTF-8 BOM
+ */
+public class CsvTokenizer implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    private boolean firstRead = true;
+
+    // 跨缓冲区的字段内容
+    private final StringBuilder fieldBuilder = new StringBuilder();
+    private final List<String> fields = new ArrayList<>();
+    private long lineNumber = 0;
+
+    public CsvTokenizer(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * 当前记录结束时所在的物理行号（从1开始），用于错误提示
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * 读取下一条记录，文件结束时返回null；空行被跳过
+     */
+    public String[] nextRecord() throws IOException {
+        while (true) {
+            fields.clear();
+            if (!readRecord()) {
+                return null;
+            }
+            // 跳过空行
+            if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                continue;
+            }
+            return fields.toArray(new String[0]);
+        }
+    }
+
+    private boolean readRecord() throws IOException {
+        if (!ensureData()) {
+            return false;
+        }
+        lineNumber++;
+        while (true) {
+            if (!ensureData()) {
+                // 文件结束但没有换行符
+                fields.add(takeField(position, position));
+                return true;
+            }
+            if (buffer[position] == '"') {
+                position++;
+                readQuotedField();
+            } else {
+                readPlainField();
+            }
+            // 字段之后是分隔符、换行或文件结束
+            if (!ensureData()) {
+                return true;
+            }
+            char c = buffer[position];
+            if (c == delimiter) {
+                position++;
+                if (!ensureData()) {
+                    // 以分隔符结尾，最后一个字段为空
+                    fields.add("");
+                    return true;
+                }
+                continue;
+            }
+            if (c == '\r') {
+                position++;
+                if (ensureData() && buffer[position] == '\n') {
+                    position++;
+                }
+                return true;
+            }
+            if (c == '\n') {
+                position++;
+                return true;
+            }
+            // 引号字段之后的多余字符，按普通字符追加到上一个字段
+            String previous = fields.remove(fields.size() - 1);
+            fieldBuilder.append(previous);
+            readPlainField();
+        }
+    }
+
+    /**
+     * 读取未加引号的字段，直到分隔符或换行
+     */
+    private void readPlainField() throws IOException {
+        int start = position;
+        while (true) {
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == delimiter || c == '\n' || c == '\r') {
+                    fields.add(takeField(start, position));
+                    return;
+                }
+                position++;
+            }
+            // 缓冲区用完，保存已扫描的部分后继续读取
+            fieldBuilder.append(buffer, start, position - start);
+            if (!fill()) {
+                fields.add(takeField(position, position));
+                return;
+            }
+            start = position;
+        }
+    }
+
+    /**
+     * 读取加引号的字段（起始引号已消费），直到匹配的结束引号
+     */
+    private void readQuotedField() throws IOException {
+        int start = position;
+        while (true) {
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '"') {
+                    fieldBuilder.append(buffer, start, position - start);
+                    position++;
+                    if (!ensureData() || buffer[position] != '"') {
+                        fields.add(takeField(position, position));
+                        return;
+                    }
+                    // 转义的双引号
+                    fieldBuilder.append('"');
+                    position++;
+                    start = position;
+                    continue;
+                }
+                if (c == '\n') {
+                    lineNumber++;
+                }
+                position++;
+            }
+            fieldBuilder.append(buffer, start, position - start);
+            if (!fill()) {
+                // 引号未闭合，保留已读取的内容
+                fields.add(takeField(position, position));
+                return;
+            }
+            start = position;
+        }
+    }
+
+    /**
+     * 生成字段字符串：没有跨缓冲区内容时直接从缓冲区复制
+     */
+    private String takeField(int start, int end) {
+        if (fieldBuilder.length() == 0) {
+            return new String(buffer, start, end - start);
+        }
+        fieldBuilder.append(buffer, start, end - start);
+        String value = fieldBuilder.toString();
+        fieldBuilder.setLength(0);
+        return value;
+    }
+
+    private boolean ensureData() throws IOException {
+        return position < limit || fill();
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            eof = true;
+            position = 0;
+            limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        // 跳过UTF-8 BOM
+        if (firstRead) {
+            firstRead = false;
+            if (buffer[0] == '\uFEFF') {
+                position = 1;
+                return position < limit || fill();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
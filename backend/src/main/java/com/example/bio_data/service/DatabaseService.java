@@ -1,13 +1,27 @@
 package com.example.bio_data.service;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 import java.util.*;
 
@@ -22,9 +36,49 @@ public class DatabaseService {
     @Autowired
     private SearchCacheService searchCacheService;
 
+    @Autowired
+    private ParallelSearchExecutor parallelSearchExecutor;
+
+    @Autowired
+    private ValueIndexService valueIndexService;
+
+    @Autowired
+    private RowCountService rowCountService;
+
+    @Autowired
+    private SchemaMetadataCache schemaMetadataCache;
+
+    @Autowired
+    private BatchInsertEngine batchInsertEngine;
+
+    @Autowired
+    private ImportPipeline importPipeline;
+
+    @Autowired
+    private ShadowTableService shadowTableService;
+
+    // 导入流水线每个数据块的行数
+    @Value("${import.pipeline.chunk-rows:5000}")
+    private int pipelineChunkRows;
+
+    // 无主键表的追加去重使用临时表在数据库中完成，关闭后使用逐批查询比较
+    @Value("${import.dedup.staging-table:true}")
+    private boolean stagingDedup;
+
+    // 覆盖导入写入影子表后用RENAME TABLE交换，关闭后使用DELETE清空原表再写入
+    @Value("${import.overwrite.shadow-table:true}")
+    private boolean shadowOverwrite;
+
+    // 自动建表导入时先只建主键，数据写入后再用一条ALTER TABLE建立外键及其索引
+    @Value("${import.auto-create.defer-indexes:true}")
+    private boolean deferAutoCreateIndexes;
+
     // 默认数据源名称
     private static final String DEFAULT_DATASOURCE = "login";
 
+    // 带进度的字段值搜索的超时时间（10分钟），SSE连接的超时按此设置
+    public static final long PROGRESS_SEARCH_TIMEOUT_MS = 600000;
+
     /**
      * 获取JdbcTemplate，如果数据源名称为空则使用默认数据源
      */
@@ -34,6 +88,40 @@ public class DatabaseService {
         return multiDataSourceService.getJdbcTemplate(actualDataSourceName);
     }
 
+    /**
+     * 元数据缓存使用的库名：用户创建的数据库即为库名本身，配置的数据源使用数据源名称
+     */
+    private String schemaKey(String dataSourceName) {
+        return (dataSourceName == null || dataSourceName.trim().isEmpty()) ? DEFAULT_DATASOURCE : dataSourceName;
+    }
+
+    /**
+     * 获取访问表数据使用的JdbcTemplate：用户创建的数据库使用该库自己的连接池
+     */
+    public JdbcTemplate getTableJdbcTemplate(String dataSourceName) {
+        String actualDataSourceName = schemaKey(dataSourceName);
+        return isUserCreatedDatabase(actualDataSourceName)
+                ? multiDataSourceService.getDatabaseJdbcTemplate(actualDataSourceName) : getJdbcTemplate(actualDataSourceName);
+    }
+
+    /**
+     * 导入等长时间操作在开始时获取表所在连接池的租约，操作期间连接池不会被淘汰关闭
+     */
+    public MultiDataSourceService.PoolLease leaseTablePool(String dataSourceName) {
+        String actualDataSourceName = schemaKey(dataSourceName);
+        return multiDataSourceService.leaseDatabasePool(isUserCreatedDatabase(actualDataSourceName) ? actualDataSourceName : null);
+    }
+
+    /**
+     * SQL中引用表的名称：用户创建的数据库需要带库名
+     */
+    public String qualifiedTableName(String dataSourceName, String tableName) {
+        String actualDataSourceName = schemaKey(dataSourceName);
+        return isUserCreatedDatabase(actualDataSourceName)
+                ? String.format("`%s`.`%s`", actualDataSourceName, tableName)
+                : String.format("`%s`", tableName);
+    }
+
     // =============================================================================
     // 多数据源版本的方法（新版本）
     // =============================================================================
@@ -42,9 +130,16 @@ public class DatabaseService {
      * 获取指定数据源中所有表的信息
      */
     public List<Map<String, Object>> getAllTables(String dataSourceName) {
+        return schemaMetadataCache.getTables(schemaKey(dataSourceName), () -> queryAllTables(dataSourceName));
+    }
+
+    /**
+     * 从information_schema查询所有表的信息
+     */
+    private List<Map<String, Object>> queryAllTables(String dataSourceName) {
         // 检查是否为用户创建的数据库
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接，但查询指定数据库
+            // 用户创建的数据库，使用该库自己的连接池查询information_schema
             String sql = "SELECT " +
                     "TABLE_NAME, " +
                     "TABLE_ROWS, " +
@@ -55,7 +150,7 @@ public class DatabaseService {
                     "WHERE TABLE_SCHEMA = ? " +
                     "ORDER BY TABLE_NAME";
             
-            return getJdbcTemplate(DEFAULT_DATASOURCE).queryForList(sql, dataSourceName);
+            return getTableJdbcTemplate(dataSourceName).queryForList(sql, dataSourceName);
         } else {
             // 配置的数据源，使用原来的逻辑
             String sql = "SELECT " +
@@ -73,36 +168,51 @@ public class DatabaseService {
     }
     
     /**
-     * 获取指定表的准确行数
+     * 获取指定表的行数（不阻塞：优先返回缓存的精确值，否则返回information_schema估算值并在后台统计）
      */
     public Integer getTableRowCount(String dataSourceName, String tableName) {
         try {
-            JdbcTemplate jdbcTemplate;
-            String countSql;
-            
-            if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
-                countSql = String.format("SELECT COUNT(*) FROM `%s`.`%s`", dataSourceName, tableName);
-            } else {
-                jdbcTemplate = getJdbcTemplate(dataSourceName);
-                countSql = String.format("SELECT COUNT(*) FROM `%s`", tableName);
-            }
-            
-            Integer rowCount = jdbcTemplate.queryForObject(countSql, Integer.class);
-            return rowCount != null ? rowCount : 0;
+            Long rowCount = getTableRowCountInfo(dataSourceName, tableName).getCount();
+            return rowCount != null ? rowCount.intValue() : 0;
         } catch (Exception e) {
-            logger.warn("无法获取表 {} 的准确行数: {}", tableName, e.getMessage());
+            logger.warn("无法获取表 {} 的行数: {}", tableName, e.getMessage());
             return 0;
         }
     }
 
+    /**
+     * 获取指定表的行数及其来源（精确值/估算值、是否过期、是否正在后台统计）
+     */
+    public RowCountService.RowCount getTableRowCountInfo(String dataSourceName, String tableName) {
+        final String ds = schemaKey(dataSourceName);
+        return rowCountService.getTableCount(ds, tableName,
+                () -> countWithWhere(ds, tableName, null, Collections.emptyList()).longValue(),
+                () -> estimateTableRows(ds, tableName));
+    }
+
     /**
      * 获取指定数据源中指定表的列信息
      */
     public List<Map<String, Object>> getTableColumns(String dataSourceName, String tableName) {
+        return schemaMetadataCache.getColumnMaps(schemaKey(dataSourceName), tableName, 
+                () -> queryTableColumns(dataSourceName, tableName));
+    }
+
+    /**
+     * 获取指定表的不可变列描述（带缓存）
+     */
+    public List<SchemaMetadataCache.ColumnDescriptor> getColumnDescriptors(String dataSourceName, String tableName) {
+        return schemaMetadataCache.getColumns(schemaKey(dataSourceName), tableName, 
+                () -> queryTableColumns(dataSourceName, tableName));
+    }
+
+    /**
+     * 从information_schema查询表的列信息
+     */
+    private List<Map<String, Object>> queryTableColumns(String dataSourceName, String tableName) {
         // 检查是否为用户创建的数据库
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接，但查询指定数据库
+            // 用户创建的数据库，使用该库自己的连接池查询information_schema
             String sql = "SELECT " +
                     "COLUMN_NAME, " +
                     "DATA_TYPE, " +
@@ -116,7 +226,7 @@ public class DatabaseService {
                     "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? " +
                     "ORDER BY ORDINAL_POSITION";
             
-            return getJdbcTemplate(DEFAULT_DATASOURCE).queryForList(sql, dataSourceName, tableName);
+            return getTableJdbcTemplate(dataSourceName).queryForList(sql, dataSourceName, tableName);
         } else {
             // 配置的数据源，使用原来的逻辑
             String sql = "SELECT " +
@@ -142,9 +252,9 @@ public class DatabaseService {
     public List<Map<String, Object>> getTableData(String dataSourceName, String tableName, int limit) {
         // 检查是否为用户创建的数据库
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接，但查询指定数据库的表
+            // 用户创建的数据库，使用该库的连接池
             String sql = String.format("SELECT * FROM `%s`.`%s` LIMIT ?", dataSourceName, tableName);
-            return getJdbcTemplate(DEFAULT_DATASOURCE).queryForList(sql, limit);
+            return multiDataSourceService.getReadJdbcTemplate(dataSourceName).queryForList(sql, limit);
         } else {
             // 配置的数据源，使用原来的逻辑
             String sql = String.format("SELECT * FROM `%s` LIMIT ?", tableName);
@@ -152,18 +262,86 @@ public class DatabaseService {
         }
     }
 
+    /**
+     * 流式读取回调，每读取一行调用一次
+     */
+    @FunctionalInterface
+    public interface RowStreamHandler {
+        void processRow(ResultSet resultSet, long rowNumber) throws Exception;
+    }
+
+    /**
+     * 以流式结果集逐行读取表数据（用于大表导出）
+     * MySQL驱动在fetchSize为Integer.MIN_VALUE时逐行从服务器读取，不会把整张表加载到内存中
+     * @param whereClause 为空时读取全表
+     * @param limit 为空或小于等于0时不限制行数
+     * @return 实际读取的行数
+     */
+    public long streamTableData(String dataSourceName, String tableName, String whereClause, 
+                                List<Object> params, Integer limit, RowStreamHandler handler) {
+        String sql;
+        JdbcTemplate jdbcTemplate;
+        if (isUserCreatedDatabase(dataSourceName)) {
+            sql = String.format("SELECT * FROM `%s`.`%s`", dataSourceName, tableName);
+            jdbcTemplate = multiDataSourceService.getReadJdbcTemplate(dataSourceName);
+        } else {
+            sql = String.format("SELECT * FROM `%s`", tableName);
+            jdbcTemplate = getJdbcTemplate(dataSourceName);
+        }
+        if (whereClause != null && !whereClause.trim().isEmpty()) {
+            sql += " WHERE " + whereClause;
+        }
+        List<Object> sqlParams = params != null ? new ArrayList<>(params) : new ArrayList<>();
+        if (limit != null && limit > 0) {
+            sql += " LIMIT ?";
+            sqlParams.add(limit);
+        }
+        final String querySql = sql;
+
+        Long rowCount = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(querySql, 
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(Integer.MIN_VALUE);
+                for (int i = 0; i < sqlParams.size(); i++) {
+                    statement.setObject(i + 1, sqlParams.get(i));
+                }
+                long count = 0;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    try {
+                        while (resultSet.next()) {
+                            handler.processRow(resultSet, ++count);
+                        }
+                    } catch (Exception e) {
+                        // 中途失败（如客户端断开）时取消查询，否则关闭流式结果集需要读完剩余的所有行
+                        try {
+                            statement.cancel();
+                        } catch (SQLException cancelError) {
+                            logger.debug("取消流式查询失败: {}", cancelError.getMessage());
+                        }
+                        if (e instanceof SQLException) {
+                            throw (SQLException) e;
+                        }
+                        throw new RuntimeException("流式读取表数据失败: " + e.getMessage(), e);
+                    }
+                }
+                return count;
+            }
+        });
+        return rowCount != null ? rowCount : 0;
+    }
+
     /**
      * 根据WHERE条件获取表数据（用于导出）
      */
     public List<Map<String, Object>> getTableDataWithWhere(String dataSourceName, String tableName, String whereClause, Integer limit) {
         // 检查是否为用户创建的数据库
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接，但查询指定数据库的表
+            // 用户创建的数据库，使用该库的连接池
             String sql = String.format("SELECT * FROM `%s`.`%s` WHERE %s", dataSourceName, tableName, whereClause);
             if (limit != null && limit > 0) {
                 sql += " LIMIT " + limit;
             }
-            return getJdbcTemplate(DEFAULT_DATASOURCE).queryForList(sql);
+            return multiDataSourceService.getReadJdbcTemplate(dataSourceName).queryForList(sql);
         } else {
             // 配置的数据源，使用原来的逻辑
             String sql = String.format("SELECT * FROM `%s` WHERE %s", tableName, whereClause);
@@ -180,9 +358,9 @@ public class DatabaseService {
     public Integer getTableDataCountWithWhere(String dataSourceName, String tableName, String whereClause) {
         // 检查是否为用户创建的数据库
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接，但查询指定数据库的表
+            // 用户创建的数据库，使用该库的连接池
             String sql = String.format("SELECT COUNT(*) FROM `%s`.`%s` WHERE %s", dataSourceName, tableName, whereClause);
-            return getJdbcTemplate(DEFAULT_DATASOURCE).queryForObject(sql, Integer.class);
+            return multiDataSourceService.getReadJdbcTemplate(dataSourceName).queryForObject(sql, Integer.class);
         } else {
             // 配置的数据源，使用原来的逻辑
             String sql = String.format("SELECT COUNT(*) FROM `%s` WHERE %s", tableName, whereClause);
@@ -197,23 +375,15 @@ public class DatabaseService {
         // 检查是否为用户创建的数据库
         JdbcTemplate jdbcTemplate;
         String dataSql;
-        String approxCountSql;
-        String countSql;
         
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接
-            jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+            // 用户创建的数据库，使用该库的连接池
+            jdbcTemplate = multiDataSourceService.getReadJdbcTemplate(dataSourceName);
             dataSql = String.format("SELECT * FROM `%s`.`%s` LIMIT ?, ?", dataSourceName, tableName);
-            approxCountSql = "SELECT TABLE_ROWS FROM information_schema.TABLES " +
-                    "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?";
-            countSql = String.format("SELECT COUNT(*) FROM `%s`.`%s`", dataSourceName, tableName);
         } else {
             // 配置的数据源，使用原来的逻辑
             jdbcTemplate = getJdbcTemplate(dataSourceName);
             dataSql = String.format("SELECT * FROM `%s` LIMIT ?, ?", tableName);
-            approxCountSql = "SELECT TABLE_ROWS FROM information_schema.TABLES " +
-                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
-            countSql = String.format("SELECT COUNT(*) FROM `%s`", tableName);
         }
         
         // 限制每页最大数据量，防止内存溢出
@@ -228,30 +398,20 @@ public class DatabaseService {
             // 获取分页数据
             List<Map<String, Object>> data = jdbcTemplate.queryForList(dataSql, offset, size);
             
-            // 获取总记录数 - 总是使用准确的COUNT查询
+            // 获取总记录数 - 使用缓存的精确行数，未统计完成前使用information_schema估算值，不阻塞当前页
             Integer totalCount;
+            RowCountService.RowCount rowCount = null;
             try {
-                // 直接使用COUNT(*)查询获取准确的行数，而不是依赖information_schema的估算值
-                totalCount = jdbcTemplate.queryForObject(countSql, Integer.class);
-                if (totalCount == null) {
-                    totalCount = 0;
-                }
+                rowCount = getTableRowCountInfo(dataSourceName, tableName);
+                totalCount = rowCount.getCount() != null ? rowCount.getCount().intValue() : null;
             } catch (Exception e) {
-                // 如果COUNT查询失败，尝试使用information_schema的估算值作为备选
-                try {
-                    if (isUserCreatedDatabase(dataSourceName)) {
-                        totalCount = jdbcTemplate.queryForObject(approxCountSql, Integer.class, dataSourceName, tableName);
-                    } else {
-                        totalCount = jdbcTemplate.queryForObject(approxCountSql, Integer.class, tableName);
-                    }
-                    
-                    if (totalCount == null || totalCount == 0) {
-                        totalCount = (page * size) + (data.size() == size ? size : 0);
-                    }
-                } catch (Exception fallbackException) {
-                    totalCount = (page * size) + (data.size() == size ? size : 0);
-                    logger.warn("无法获取表 {} 的行数，使用估算值: {}", tableName, totalCount);
-                }
+                logger.warn("无法获取表 {} 的行数: {}", tableName, e.getMessage());
+                totalCount = null;
+            }
+            // 估算值可能明显偏小，至少保证能翻到已读取到的数据之后
+            int minimumCount = offset + data.size() + (data.size() == size ? 1 : 0);
+            if (totalCount == null || totalCount < minimumCount) {
+                totalCount = minimumCount;
             }
             
             // 计算总页数
@@ -264,7 +424,9 @@ public class DatabaseService {
             result.put("currentPage", page);
             result.put("pageSize", size);
             result.put("dataSource", dataSourceName);
-            result.put("isApproximate", false); // 现在总是尝试获取准确的行数
+            result.put("isApproximate", rowCount == null || rowCount.isApproximate());
+            result.put("isStale", rowCount != null && rowCount.isStale());
+            result.put("countPending", rowCount != null && rowCount.isPending());
             
             return result;
             
@@ -278,6 +440,333 @@ public class DatabaseService {
 
 
 
+    // =============================================================================
+    // 键集（游标）分页
+    // =============================================================================
+
+    private static final ObjectMapper CURSOR_MAPPER = new ObjectMapper();
+    private static final DateTimeFormatter CURSOR_DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+    // 不能作为键集分页游标值的列类型
+    private static final Set<String> NON_CURSOR_TYPES = Set.of(
+            "binary", "varbinary", "tinyblob", "blob", "mediumblob", "longblob", "bit", "geometry", "json",
+            "float", "double");
+
+    /**
+     * 游标分页获取表数据
+     * 按主键（或非空唯一索引）排序，以上一页最后一行的键值作为起点，深分页与第一页代价相同；
+     * 表没有可用的唯一键时退化为LIMIT偏移分页
+     * @param cursor 上一页返回的nextCursor，第一页传null
+     */
+    public Map<String, Object> getTableDataWithCursor(String dataSourceName, String tableName, String cursor, int size) {
+        final String ds = schemaKey(dataSourceName);
+        Map<String, Object> result = queryCursorPage(ds, tableName, null, Collections.emptyList(), cursor, size);
+        
+        putRowCount(result, getTableRowCountInfo(ds, tableName));
+        return result;
+    }
+
+    /**
+     * 游标分页获取表内搜索结果
+     * 搜索条件与普通分页搜索共用缓存；总记录数未缓存时在后台计算，不阻塞当前页
+     */
+    public Map<String, Object> getTableDataByValueWithCursor(String dataSourceName, String tableName, String searchValue, 
+                                                             String searchMode, String searchType, String cursor, int size) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("表名不能为空");
+        }
+        if (searchValue == null || searchValue.trim().isEmpty()) {
+            throw new IllegalArgumentException("搜索值不能为空");
+        }
+        final String ds = schemaKey(dataSourceName);
+        
+        SearchCacheService.SearchCacheEntry cacheEntry = searchCacheService.getSearchCache(ds, tableName, searchValue, searchMode, searchType);
+        
+        String whereClause;
+        List<Object> params;
+        if (cacheEntry != null) {
+            whereClause = cacheEntry.getWhereClause();
+            params = cacheEntry.getParams();
+        } else {
+            params = new ArrayList<>();
+            whereClause = buildSearchWhereClause(ds, tableName, searchValue, searchMode, searchType, params);
+        }
+        
+        Map<String, Object> result = queryCursorPage(ds, tableName, whereClause, params, cursor, size);
+        result.put("searchValue", searchValue);
+        
+        if (cacheEntry != null && cacheEntry.getTotalCount() != null) {
+            result.put("totalCount", cacheEntry.getTotalCount());
+            result.put("isApproximate", false);
+            result.put("isStale", false);
+            result.put("countPending", false);
+        } else {
+            // 后台计算总数，当前页不等待
+            final String finalWhereClause = whereClause;
+            final List<Object> finalParams = params;
+            // 计数按实际的查询条件区分
+            String conditionKey = whereClause + "\u0000" + params;
+            RowCountService.RowCount rowCount = rowCountService.getCount(ds, tableName, conditionKey, 
+                    () -> countWithWhere(ds, tableName, finalWhereClause, finalParams).longValue(), null);
+            putRowCount(result, rowCount);
+        }
+        return result;
+    }
+
+    private void putRowCount(Map<String, Object> result, RowCountService.RowCount rowCount) {
+        result.put("totalCount", rowCount.getCount());
+        result.put("isApproximate", rowCount.isApproximate());
+        result.put("isStale", rowCount.isStale());
+        result.put("countPending", rowCount.isPending());
+    }
+
+    /**
+     * 从information_schema读取表行数估算值
+     */
+    private Long estimateTableRows(String dataSourceName, String tableName) {
+        for (Map<String, Object> table : getAllTables(dataSourceName)) {
+            if (tableName.equalsIgnoreCase((String) table.get("TABLE_NAME"))) {
+                Object rows = table.get("TABLE_ROWS");
+                return rows instanceof Number ? ((Number) rows).longValue() : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 查询一页游标分页数据
+     */
+    private Map<String, Object> queryCursorPage(String dataSourceName, String tableName, String whereClause, 
+                                                List<Object> params, String cursor, int size) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("表名不能为空");
+        }
+        if (size > 1000) {
+            size = 1000;
+        }
+        if (size < 1) {
+            size = 50;
+        }
+        
+        List<String> keyColumns = getKeysetColumns(dataSourceName, tableName);
+        boolean keyset = !keyColumns.isEmpty();
+        CursorPosition position = decodeCursor(cursor, tableName, keyColumns);
+        
+        String fromClause = isUserCreatedDatabase(dataSourceName)
+                ? String.format("`%s`.`%s`", dataSourceName, tableName)
+                : String.format("`%s`", tableName);
+        JdbcTemplate jdbcTemplate = isUserCreatedDatabase(dataSourceName)
+                ? multiDataSourceService.getReadJdbcTemplate(dataSourceName) : getJdbcTemplate(dataSourceName);
+        
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(fromClause);
+        List<Object> sqlParams = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (whereClause != null && !whereClause.isEmpty()) {
+            conditions.add("(" + whereClause + ")");
+            sqlParams.addAll(params);
+        }
+        
+        long offset = 0;
+        if (keyset) {
+            List<Object> lastKey = position != null ? position.k : null;
+            if (lastKey != null) {
+                // (k1 > ?) OR (k1 = ? AND k2 > ?) OR ...
+                StringBuilder seek = new StringBuilder("(");
+                for (int i = 0; i < keyColumns.size(); i++) {
+                    if (i > 0) seek.append(" OR ");
+                    seek.append("(");
+                    for (int j = 0; j < i; j++) {
+                        seek.append("`").append(keyColumns.get(j)).append("` = ? AND ");
+                        sqlParams.add(lastKey.get(j));
+                    }
+                    seek.append("`").append(keyColumns.get(i)).append("` > ?)");
+                    sqlParams.add(lastKey.get(i));
+                }
+                seek.append(")");
+                conditions.add(seek.toString());
+            }
+        } else if (position != null) {
+            offset = position.o;
+        }
+        
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (keyset) {
+            sql.append(" ORDER BY ");
+            for (int i = 0; i < keyColumns.size(); i++) {
+                if (i > 0) sql.append(", ");
+                sql.append("`").append(keyColumns.get(i)).append("`");
+            }
+            sql.append(" LIMIT ?");
+        } else {
+            sql.append(" LIMIT ?, ?");
+            sqlParams.add(offset);
+        }
+        // 多取一行用于判断是否还有下一页
+        sqlParams.add(size + 1);
+        
+        List<Map<String, Object>> data = jdbcTemplate.queryForList(sql.toString(), sqlParams.toArray());
+        boolean hasMore = data.size() > size;
+        if (hasMore) {
+            data = new ArrayList<>(data.subList(0, size));
+        }
+        
+        String nextCursor = null;
+        if (hasMore) {
+            CursorPosition next = new CursorPosition();
+            next.t = tableName.toLowerCase();
+            if (keyset) {
+                Map<String, Object> lastRow = data.get(data.size() - 1);
+                List<Object> lastKey = new ArrayList<>();
+                for (String keyColumn : keyColumns) {
+                    lastKey.add(toCursorValue(lastRow.get(keyColumn)));
+                }
+                next.c = keyColumns;
+                next.k = lastKey;
+            } else {
+                next.o = offset + size;
+            }
+            nextCursor = encodeCursor(next);
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("data", data);
+        result.put("tableName", tableName);
+        result.put("dataSource", dataSourceName);
+        result.put("pageSize", size);
+        result.put("returnedCount", data.size());
+        result.put("hasMore", hasMore);
+        result.put("nextCursor", nextCursor);
+        result.put("paginationMode", keyset ? "keyset" : "offset");
+        result.put("keyColumns", keyColumns);
+        return result;
+    }
+
+    /**
+     * 获取用于键集分页的唯一键列：优先主键，其次所有列均非空的唯一索引
+     */
+    public List<String> getKeysetColumns(String dataSourceName, String tableName) {
+        return schemaMetadataCache.getKeyColumns(schemaKey(dataSourceName), tableName, 
+                () -> queryKeysetColumns(dataSourceName, tableName));
+    }
+
+    private List<String> queryKeysetColumns(String dataSourceName, String tableName) {
+        Map<String, SchemaMetadataCache.ColumnDescriptor> columnsByName = new HashMap<>();
+        for (SchemaMetadataCache.ColumnDescriptor column : getColumnDescriptors(dataSourceName, tableName)) {
+            columnsByName.put(column.getColumnName().toLowerCase(), column);
+        }
+        
+        // 按索引名分组，保持索引内列的顺序
+        Map<String, TreeMap<Integer, String>> uniqueIndexes = new LinkedHashMap<>();
+        for (Map<String, Object> index : getTableIndexes(dataSourceName, tableName)) {
+            Object nonUnique = index.get("Non_unique");
+            if (nonUnique == null || Integer.parseInt(nonUnique.toString()) != 0) {
+                continue;
+            }
+            String keyName = (String) index.get("Key_name");
+            Object seq = index.get("Seq_in_index");
+            String columnName = (String) index.get("Column_name");
+            if (columnName == null) {
+                // 函数索引
+                uniqueIndexes.put(keyName, null);
+                continue;
+            }
+            if (uniqueIndexes.containsKey(keyName) && uniqueIndexes.get(keyName) == null) {
+                continue;
+            }
+            uniqueIndexes.computeIfAbsent(keyName, k -> new TreeMap<>())
+                    .put(Integer.parseInt(seq.toString()), columnName);
+        }
+        
+        List<String> candidates = new ArrayList<>();
+        if (uniqueIndexes.containsKey("PRIMARY")) {
+            candidates.add("PRIMARY");
+        }
+        for (String keyName : uniqueIndexes.keySet()) {
+            if (!"PRIMARY".equals(keyName)) {
+                candidates.add(keyName);
+            }
+        }
+        
+        for (String keyName : candidates) {
+            TreeMap<Integer, String> indexColumns = uniqueIndexes.get(keyName);
+            if (indexColumns == null) {
+                continue;
+            }
+            boolean usable = true;
+            for (String columnName : indexColumns.values()) {
+                SchemaMetadataCache.ColumnDescriptor column = columnsByName.get(columnName.toLowerCase());
+                if (column == null || column.isNullable() 
+                        || NON_CURSOR_TYPES.contains(column.getDataType().toLowerCase())) {
+                    usable = false;
+                    break;
+                }
+            }
+            if (usable) {
+                return new ArrayList<>(indexColumns.values());
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private Object toCursorValue(Object value) {
+        if (value instanceof Number && !(value instanceof java.math.BigDecimal)) {
+            return value;
+        }
+        if (value instanceof java.sql.Timestamp) {
+            return ((java.sql.Timestamp) value).toLocalDateTime().format(CURSOR_DATETIME_FORMAT);
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).format(CURSOR_DATETIME_FORMAT);
+        }
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * 分页游标的内容：t为表名；键集分页时c为唯一键列、k为上一页最后一行的键值，偏移分页时o为偏移量
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class CursorPosition {
+        public String t;
+        public List<String> c;
+        public List<Object> k;
+        public Long o;
+    }
+
+    private String encodeCursor(CursorPosition position) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(CURSOR_MAPPER.writeValueAsBytes(position));
+        } catch (Exception e) {
+            throw new RuntimeException("生成分页游标失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解析分页游标，游标与当前表或唯一键不匹配时视为无效
+     */
+    private CursorPosition decodeCursor(String cursor, String tableName, List<String> keyColumns) {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            return null;
+        }
+        CursorPosition position;
+        try {
+            position = CURSOR_MAPPER.readValue(Base64.getUrlDecoder().decode(cursor.trim()), CursorPosition.class);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+        if (position == null || !tableName.toLowerCase().equals(position.t)) {
+            throw new IllegalArgumentException("分页游标与表不匹配");
+        }
+        if (!keyColumns.isEmpty()) {
+            if (!keyColumns.equals(position.c) || position.k == null || position.k.size() != keyColumns.size()) {
+                throw new IllegalArgumentException("分页游标已失效，请从第一页重新查询");
+            }
+        } else if (position.o == null || position.o < 0) {
+            throw new IllegalArgumentException("分页游标已失效，请从第一页重新查询");
+        }
+        return position;
+    }
+
     /**
      * 根据字段名搜索包含该字段的表
      */
@@ -291,7 +780,7 @@ public class DatabaseService {
         
         // 检查是否为用户创建的数据库
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接
+            // 用户创建的数据库，使用该库自己的连接池
             sql = "SELECT DISTINCT " +
                     "c.TABLE_NAME, " +
                     "t.TABLE_ROWS, " +
@@ -306,7 +795,7 @@ public class DatabaseService {
                     "LEFT JOIN information_schema.TABLES t ON c.TABLE_SCHEMA = t.TABLE_SCHEMA AND c.TABLE_NAME = t.TABLE_NAME " +
                     "WHERE c.TABLE_SCHEMA = ? AND c.COLUMN_NAME LIKE ? " +
                     "ORDER BY c.TABLE_NAME, c.ORDINAL_POSITION";
-            jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+            jdbcTemplate = getTableJdbcTemplate(dataSourceName);
             return jdbcTemplate.queryForList(sql, dataSourceName, "%" + columnName + "%");
         } else {
             // 配置的数据源，使用原来的逻辑
@@ -354,6 +843,7 @@ public class DatabaseService {
         List<Map<String, Object>> resultTables = new ArrayList<>();
         long startTime = System.currentTimeMillis();
         final long TIMEOUT_MS = 600000; // 10分钟超时
+        final String finalSearchMode = searchMode;
         
         try {
             // 获取数据库中的所有表
@@ -361,58 +851,45 @@ public class DatabaseService {
             logger.info("开始字段值搜索，数据库：{}，搜索值：{}，搜索模式：{}，总表数：{}", 
                     dataSourceName, searchValue, searchMode, allTables.size());
             
-            int searchedCount = 0;
-            int foundCount = 0;
+            // 并行探测各表，结果按表的原始顺序返回
+            ParallelSearchExecutor.FanOutResult<Integer> fanOutResult = parallelSearchExecutor.fanOut(allTables,
+                    (table, context) -> searchSingleTable(dataSourceName, (String) table.get("TABLE_NAME"),
+                            searchValue, finalSearchMode, searchType, context),
+                    TIMEOUT_MS, null);
             
-            for (Map<String, Object> table : allTables) {
-                // 检查超时
-                if (System.currentTimeMillis() - startTime > TIMEOUT_MS) {
-                    logger.warn("字段值搜索超时，已搜索 {} 个表，找到 {} 个匹配表", searchedCount, foundCount);
-                    break;
+            List<Integer> matchCounts = fanOutResult.getResults();
+            for (int i = 0; i < allTables.size(); i++) {
+                Integer actualCount = matchCounts.get(i);
+                if (actualCount == null) {
+                    continue;
                 }
                 
-                String tableName = (String) table.get("TABLE_NAME");
-                searchedCount++;
+                Map<String, Object> table = allTables.get(i);
+                Map<String, Object> resultTable = new HashMap<>();
+                resultTable.put("TABLE_NAME", table.get("TABLE_NAME"));
+                resultTable.put("TABLE_ROWS", table.get("TABLE_ROWS"));
+                resultTable.put("TABLE_COMMENT", table.get("TABLE_COMMENT"));
+                resultTable.put("MATCH_COUNT", actualCount);
+                resultTable.put("SEARCH_VALUE", searchValue);
+                resultTable.put("DATA_SOURCE", dataSourceName);
+                resultTable.put("SEARCH_MODE", searchMode);
+                resultTable.put("IS_COMPLETE", true);
                 
-                logger.info("正在搜索表 {} ({}/{})", tableName, searchedCount, allTables.size());
+                // 根据搜索模式设置搜索类型信息
+                String searchTypeInfo = getSearchTypeInfo(searchMode, searchValue);
+                resultTable.put("SEARCH_TYPE", searchTypeInfo);
                 
-                try {
-                    // 检查表是否包含匹配值（支持搜索模式和搜索类型）
-                    boolean hasMatch = checkTableForValueWithMode(dataSourceName, tableName, searchValue, searchMode, searchType);
-                    
-                    if (hasMatch) {
-                        foundCount++;
-                        // 获取匹配记录的准确数量
-                        int actualCount = getActualMatchCountWithMode(dataSourceName, tableName, searchValue, searchMode, searchType);
-                        
-                        Map<String, Object> resultTable = new HashMap<>();
-                        resultTable.put("TABLE_NAME", tableName);
-                        resultTable.put("TABLE_ROWS", table.get("TABLE_ROWS"));
-                        resultTable.put("TABLE_COMMENT", table.get("TABLE_COMMENT"));
-                        resultTable.put("MATCH_COUNT", actualCount);
-                        resultTable.put("SEARCH_VALUE", searchValue);
-                        resultTable.put("DATA_SOURCE", dataSourceName);
-                        resultTable.put("SEARCH_MODE", searchMode);
-                        resultTable.put("IS_COMPLETE", true);
-                        
-                        // 根据搜索模式设置搜索类型信息
-                        String searchTypeInfo = getSearchTypeInfo(searchMode, searchValue);
-                        resultTable.put("SEARCH_TYPE", searchTypeInfo);
-                        
-                        resultTables.add(resultTable);
-                        
-                        logger.info("在表 {} 中找到 {} 条匹配记录", tableName, actualCount);
-                    }
-                    
-                } catch (Exception e) {
-                    // 某个表查询失败，记录日志但继续处理其他表
-                    logger.warn("搜索表 {} 时出现错误: {}", tableName, e.getMessage());
-                }
+                resultTables.add(resultTable);
+            }
+            
+            if (fanOutResult.isTimedOut()) {
+                logger.warn("字段值搜索超时，已搜索 {} 个表，找到 {} 个匹配表", 
+                        fanOutResult.getCompletedCount(), resultTables.size());
             }
             
             long endTime = System.currentTimeMillis();
             logger.info("字段值搜索完成，搜索模式：{}，用时：{}ms，搜索了 {} 个表，找到 {} 个匹配表", 
-                    searchMode, (endTime - startTime), searchedCount, foundCount);
+                    searchMode, (endTime - startTime), fanOutResult.getCompletedCount(), resultTables.size());
             
         } catch (Exception e) {
             logger.error("执行字段值搜索时发生错误: {}", e.getMessage());
@@ -422,6 +899,52 @@ public class DatabaseService {
         return resultTables;
     }
     
+    /**
+     * 搜索单个表：先用EXISTS判断是否匹配，匹配时再统计准确数量
+     * 在并行搜索的工作线程上执行，未匹配或已取消时返回null
+     */
+    private Integer searchSingleTable(String dataSourceName, String tableName, String searchValue, 
+                                      String searchMode, String searchType, ParallelSearchExecutor.SearchContext context) {
+        logger.debug("正在搜索表 {}", tableName);
+        
+        // 字段值索引可用时优先使用索引，模糊搜索由三元组索引回答
+        ValueIndexService.ValueIndexMatch indexMatch = lookupValueIndex(dataSourceName, tableName, searchValue, searchMode, searchType);
+        if (indexMatch != null) {
+            return indexMatch.getCount() > 0 ? indexMatch.getCount() : null;
+        }
+        
+        // 检查表是否包含匹配值（支持搜索模式和搜索类型）
+        boolean hasMatch = checkTableForValueWithMode(dataSourceName, tableName, searchValue, searchMode, searchType, context);
+        if (!hasMatch || context.isCancelled()) {
+            return null;
+        }
+        
+        // 获取匹配记录的准确数量
+        int actualCount = getActualMatchCountWithMode(dataSourceName, tableName, searchValue, searchMode, searchType, context);
+        logger.info("在表 {} 中找到 {} 条匹配记录", tableName, actualCount);
+        return actualCount;
+    }
+    
+    /**
+     * 通过字段值索引查找匹配行，索引未启用、未就绪或搜索类型不支持时返回null
+     */
+    private ValueIndexService.ValueIndexMatch lookupValueIndex(String dataSourceName, String tableName, String searchValue, 
+                                                              String searchMode, String searchType) {
+        if (!valueIndexService.isEnabled() || !valueIndexService.supportsSearchType(searchType) 
+                || !isUserCreatedDatabase(dataSourceName)) {
+            return null;
+        }
+        
+        List<Map<String, Object>> filteredColumns = filterColumnsBySearchMode(
+                getTableColumns(dataSourceName, tableName), searchValue, searchMode);
+        List<String> columnNames = new ArrayList<>();
+        for (Map<String, Object> column : filteredColumns) {
+            columnNames.add((String) column.get("COLUMN_NAME"));
+        }
+        
+        return valueIndexService.lookup(dataSourceName, tableName, searchValue, searchType, columnNames);
+    }
+    
     /**
      * 保持向后兼容的方法
      */
@@ -443,13 +966,15 @@ public class DatabaseService {
     @Deprecated
     @SuppressWarnings("unused")
     private boolean checkTableForValueWithMode(String dataSourceName, String tableName, String searchValue, String searchMode) {
-        return checkTableForValueWithMode(dataSourceName, tableName, searchValue, searchMode, "fuzzy");
+        return checkTableForValueWithMode(dataSourceName, tableName, searchValue, searchMode, "fuzzy", null);
     }
     
     /**
      * 检查表中是否包含指定值（支持搜索模式和搜索类型）
+     * context不为空时按搜索剩余时间设置语句超时，并允许搜索取消时终止查询
      */
-    private boolean checkTableForValueWithMode(String dataSourceName, String tableName, String searchValue, String searchMode, String searchType) {
+    private boolean checkTableForValueWithMode(String dataSourceName, String tableName, String searchValue, String searchMode, String searchType,
+                                               ParallelSearchExecutor.SearchContext context) {
         try {
             // 获取表的所有字段信息
             List<Map<String, Object>> columns = getTableColumns(dataSourceName, tableName);
@@ -493,21 +1018,21 @@ public class DatabaseService {
             if (isUserCreatedDatabase(dataSourceName)) {
                 existsSql = String.format("SELECT EXISTS(SELECT 1 FROM `%s`.`%s` WHERE %s)", 
                         dataSourceName, tableName, whereClause.toString());
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getReadJdbcTemplate(dataSourceName);
             } else {
                 existsSql = String.format("SELECT EXISTS(SELECT 1 FROM `%s` WHERE %s)", 
                         tableName, whereClause.toString());
                 jdbcTemplate = getJdbcTemplate(dataSourceName);
             }
             
-            Boolean exists = jdbcTemplate.queryForObject(existsSql, Boolean.class, params.toArray());
+            boolean exists = queryForSearch(jdbcTemplate, existsSql, params, context) > 0;
             
-            if (exists != null && exists) {
+            if (exists) {
                 logger.debug("表 {} 在搜索模式 {} 下找到匹配，过滤了 {} 个字段，实际搜索 {} 个字段", 
                         tableName, searchMode, columns.size() - filteredColumns.size(), filteredColumns.size());
             }
             
-            return exists != null && exists;
+            return exists;
             
         } catch (Exception e) {
             logger.warn("检查表 {} 是否包含值时出错: {}", tableName, e.getMessage());
@@ -516,12 +1041,39 @@ public class DatabaseService {
     }
     
     /**
-     * 根据搜索模式过滤字段
+     * 执行跨表搜索的单值查询（EXISTS或COUNT）
+     * 语句超时取搜索剩余时间，并登记到搜索上下文，超时或取消时由数据库端终止查询
      */
-    private List<Map<String, Object>> filterColumnsBySearchMode(List<Map<String, Object>> columns, String searchValue, String searchMode) {
-        List<Map<String, Object>> filteredColumns = new ArrayList<>();
-        
-        for (Map<String, Object> column : columns) {
+    private long queryForSearch(JdbcTemplate jdbcTemplate, String sql, List<Object> params,
+                                ParallelSearchExecutor.SearchContext context) {
+        Long value = jdbcTemplate.execute((Connection connection) -> connection.prepareStatement(sql),
+                (PreparedStatement ps) -> {
+                    for (int i = 0; i < params.size(); i++) {
+                        ps.setObject(i + 1, params.get(i));
+                    }
+                    if (context == null) {
+                        try (ResultSet rs = ps.executeQuery()) {
+                            return rs.next() ? rs.getLong(1) : 0L;
+                        }
+                    }
+                    ps.setQueryTimeout(context.queryTimeoutSeconds());
+                    context.register(ps);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getLong(1) : 0L;
+                    } finally {
+                        context.unregister(ps);
+                    }
+                });
+        return value != null ? value : 0L;
+    }
+    
+    /**
+     * 根据搜索模式过滤字段
+     */
+    private List<Map<String, Object>> filterColumnsBySearchMode(List<Map<String, Object>> columns, String searchValue, String searchMode) {
+        List<Map<String, Object>> filteredColumns = new ArrayList<>();
+        
+        for (Map<String, Object> column : columns) {
             String dataType = (String) column.get("DATA_TYPE");
             boolean isNumeric = isNumericType(dataType);
             
@@ -625,17 +1177,16 @@ public class DatabaseService {
     @Deprecated
     @SuppressWarnings("unused")
     private int getActualMatchCountWithMode(String dataSourceName, String tableName, String searchValue, String searchMode) {
-        return getActualMatchCountWithMode(dataSourceName, tableName, searchValue, searchMode, "fuzzy");
+        return getActualMatchCountWithMode(dataSourceName, tableName, searchValue, searchMode, "fuzzy", null);
     }
     
     /**
      * 获取匹配记录的准确数量（支持搜索模式和搜索类型）并同时建立搜索缓存
      */
-    private int getActualMatchCountWithMode(String dataSourceName, String tableName, String searchValue, String searchMode, String searchType) {
+    private int getActualMatchCountWithMode(String dataSourceName, String tableName, String searchValue, String searchMode, String searchType,
+                                            ParallelSearchExecutor.SearchContext context) {
         try {
-            // 缓存键包含搜索模式和搜索类型，以区分不同模式和类型的搜索结果
-            String cacheKey = searchValue + "_mode_" + searchMode + "_type_" + searchType;
-            SearchCacheService.SearchCacheEntry cacheEntry = searchCacheService.getSearchCache(dataSourceName, tableName, cacheKey);
+            SearchCacheService.SearchCacheEntry cacheEntry = searchCacheService.getSearchCache(dataSourceName, tableName, searchValue, searchMode, searchType);
             if (cacheEntry != null) {
                 logger.debug("从缓存中获取表 {} 的匹配记录数 (模式: {}): {}", tableName, searchMode, cacheEntry.getTotalCount());
                 return cacheEntry.getTotalCount();
@@ -678,19 +1229,18 @@ public class DatabaseService {
             if (isUserCreatedDatabase(dataSourceName)) {
                 countSql = String.format("SELECT COUNT(*) FROM `%s`.`%s` WHERE %s", 
                         dataSourceName, tableName, whereClause.toString());
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getReadJdbcTemplate(dataSourceName);
             } else {
                 countSql = String.format("SELECT COUNT(*) FROM `%s` WHERE %s", 
                         tableName, whereClause.toString());
                 jdbcTemplate = getJdbcTemplate(dataSourceName);
             }
             
-            Integer count = jdbcTemplate.queryForObject(countSql, Integer.class, params.toArray());
-            int finalCount = count != null ? count : 0;
+            int finalCount = (int) queryForSearch(jdbcTemplate, countSql, params, context);
             
             
             // 将搜索条件和结果缓存起来，以便后续快速分页
-            searchCacheService.putSearchCache(dataSourceName, tableName, cacheKey, whereClause.toString(), params, finalCount);
+            searchCacheService.putSearchCache(dataSourceName, tableName, searchValue, searchMode, searchType, whereClause.toString(), params, finalCount);
             logger.debug("为表 {} 建立搜索缓存 (模式: {})，搜索值: {}, 过滤字段数: {}, 匹配记录数: {}", 
                     tableName, searchMode, searchValue, filteredColumns.size(), finalCount);
             
@@ -747,16 +1297,16 @@ public class DatabaseService {
                             params.add(Double.parseDouble(searchValue));
                         } else {
                             whereClause.append("CAST(`").append(columnName).append("` AS CHAR) LIKE ?");
-                            params.add("%" + searchValue + "%");
+                            params.add("%" + escapeLikePattern(searchValue) + "%");
                         }
                     } catch (NumberFormatException e) {
                         whereClause.append("CAST(`").append(columnName).append("` AS CHAR) LIKE ?");
-                        params.add("%" + searchValue + "%");
+                        params.add("%" + escapeLikePattern(searchValue) + "%");
                     }
                 } else {
                     // 字符串类型：使用LIKE模糊匹配
                     whereClause.append("CAST(`").append(columnName).append("` AS CHAR CHARACTER SET utf8) COLLATE utf8_general_ci LIKE ?");
-                    params.add("%" + searchValue + "%");
+                    params.add("%" + escapeLikePattern(searchValue) + "%");
                 }
             }
             
@@ -769,7 +1319,7 @@ public class DatabaseService {
                         dataSourceName, tableName, whereClause.toString());
                 countSql = String.format("SELECT COUNT(*) FROM `%s`.`%s` WHERE %s", 
                         dataSourceName, tableName, whereClause.toString());
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getReadJdbcTemplate(dataSourceName);
             } else {
                 sql = String.format("SELECT * FROM `%s` WHERE %s LIMIT ?", 
                         tableName, whereClause.toString());
@@ -809,6 +1359,125 @@ public class DatabaseService {
         return getTableDataByValueWithPagination(dataSourceName, tableName, searchValue, page, size, "auto", "fuzzy");
     }
     
+    /**
+     * 获取表内搜索的WHERE条件和总记录数，优先使用搜索缓存
+     */
+    public SearchCacheService.SearchCacheEntry getSearchCondition(String dataSourceName, String tableName, String searchValue, String searchMode, String searchType) {
+        SearchCacheService.SearchCacheEntry cacheEntry = searchCacheService.getSearchCache(dataSourceName, tableName, searchValue, searchMode, searchType);
+        if (cacheEntry != null) {
+            return cacheEntry;
+        }
+        return buildAndCacheSearchCondition(dataSourceName, tableName, searchValue, searchMode, searchType);
+    }
+
+    /**
+     * 搜索缓存中的匹配总数，未缓存时返回null（不执行COUNT）
+     */
+    public Integer getCachedSearchCount(String dataSourceName, String tableName, String searchValue, String searchMode, String searchType) {
+        SearchCacheService.SearchCacheEntry cacheEntry = searchCacheService.getSearchCache(dataSourceName, tableName, searchValue, searchMode, searchType);
+        return cacheEntry != null ? cacheEntry.getTotalCount() : null;
+    }
+
+    /**
+     * 构建表内搜索的WHERE条件并执行COUNT查询，结果写入搜索缓存
+     */
+    private SearchCacheService.SearchCacheEntry buildAndCacheSearchCondition(String dataSourceName, String tableName, String searchValue, String searchMode, String searchType) {
+        // 缓存中没有，需要构建搜索条件
+        logger.debug("构建新的搜索条件并缓存: {}:{}", tableName, searchValue);
+        
+        List<Object> params = new ArrayList<>();
+        String whereClause = buildSearchWhereClause(dataSourceName, tableName, searchValue, searchMode, searchType, params);
+        // 没有可搜索的字段时条件为空，匹配0行而不是全表
+        Integer totalCount = whereClause.isEmpty() ? 0 : countWithWhere(dataSourceName, tableName, whereClause, params);
+        
+        // 缓存搜索条件和总记录数
+        searchCacheService.putSearchCache(dataSourceName, tableName, searchValue, searchMode, searchType, whereClause, params, totalCount);
+        return new SearchCacheService.SearchCacheEntry(whereClause, params, totalCount);
+    }
+
+    /**
+     * 构建表内搜索的WHERE条件（多个字段之间为OR关系），参数追加到params中
+     */
+    private String buildSearchWhereClause(String dataSourceName, String tableName, String searchValue, 
+                                          String searchMode, String searchType, List<Object> params) {
+        // 获取表的所有字段信息
+        List<Map<String, Object>> columns = getTableColumns(dataSourceName, tableName);
+        
+        // 根据搜索模式过滤字段
+        columns = filterColumnsBySearchMode(columns, searchValue, searchMode);
+        
+        // 构建动态搜索SQL
+        StringBuilder whereClauseBuilder = new StringBuilder();
+        
+        for (int i = 0; i < columns.size(); i++) {
+            Map<String, Object> column = columns.get(i);
+            String columnName = (String) column.get("COLUMN_NAME");
+            String dataType = (String) column.get("DATA_TYPE");
+            
+            if (whereClauseBuilder.length() > 0) {
+                whereClauseBuilder.append(" OR ");
+            }
+            
+            // 根据搜索类型构建不同的搜索条件
+            buildSearchCondition(whereClauseBuilder, params, columnName, dataType, searchValue, searchType);
+        }
+        
+        return whereClauseBuilder.toString();
+    }
+
+    /**
+     * 执行带WHERE条件的COUNT查询，whereClause为空时统计全表
+     */
+    private Integer countWithWhere(String dataSourceName, String tableName, String whereClause, List<Object> params) {
+        String countSql;
+        JdbcTemplate jdbcTemplate;
+        
+        if (isUserCreatedDatabase(dataSourceName)) {
+            countSql = String.format("SELECT COUNT(*) FROM `%s`.`%s`", dataSourceName, tableName);
+            jdbcTemplate = multiDataSourceService.getReadJdbcTemplate(dataSourceName);
+        } else {
+            countSql = String.format("SELECT COUNT(*) FROM `%s`", tableName);
+            jdbcTemplate = getJdbcTemplate(dataSourceName);
+        }
+        if (whereClause != null && !whereClause.isEmpty()) {
+            countSql += " WHERE " + whereClause;
+        }
+        
+        Integer count = jdbcTemplate.queryForObject(countSql, Integer.class, params.toArray());
+        return count != null ? count : 0;
+    }
+
+    /**
+     * 以流式结果集读取表内全部搜索结果（用于搜索结果导出），复用搜索缓存中的WHERE条件，未缓存时只构建条件不执行COUNT
+     * 没有可搜索的字段时条件为空，不导出任何行
+     * @param limit 为空或小于等于0时导出全部匹配行
+     * @return 实际读取的行数
+     */
+    public long streamSearchResults(String dataSourceName, String tableName, String searchValue, String searchMode, 
+                                    String searchType, Integer limit, RowStreamHandler handler) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("表名不能为空");
+        }
+        if (searchValue == null || searchValue.trim().isEmpty()) {
+            throw new IllegalArgumentException("搜索值不能为空");
+        }
+        SearchCacheService.SearchCacheEntry cacheEntry = searchCacheService.getSearchCache(dataSourceName, tableName, searchValue, searchMode, searchType);
+        String whereClause;
+        List<Object> params;
+        if (cacheEntry != null) {
+            whereClause = cacheEntry.getWhereClause();
+            params = cacheEntry.getParams();
+        } else {
+            params = new ArrayList<>();
+            whereClause = buildSearchWhereClause(dataSourceName, tableName, searchValue, searchMode, searchType, params);
+        }
+        // streamTableData在条件为空时读取全表
+        if (whereClause == null || whereClause.trim().isEmpty()) {
+            return 0;
+        }
+        return streamTableData(dataSourceName, tableName, whereClause, params, limit, handler);
+    }
+
     /**
      * 根据字段值获取表中包含该值的数据记录（分页版本，带缓存优化，支持搜索模式和搜索类型）
      */
@@ -832,98 +1501,83 @@ public class DatabaseService {
         int offset = (page - 1) * size;
         
         try {
-            // 尝试从缓存获取搜索条件和总记录数，缓存键包含搜索模式和搜索类型
-            String cacheKey = searchValue + "_mode_" + searchMode + "_type_" + searchType;
-            SearchCacheService.SearchCacheEntry cacheEntry = searchCacheService.getSearchCache(dataSourceName, tableName, cacheKey);
+            // 字段值索引可用时优先使用索引，只按主键读取当前页的行
+            ValueIndexService.ValueIndexMatch indexMatch = lookupValueIndex(dataSourceName, tableName, searchValue, searchMode, searchType);
+            if (indexMatch != null) {
+                List<Map<String, Object>> data = valueIndexService.fetchRows(indexMatch, offset, size);
+                int totalCount = indexMatch.getCount();
+                
+                Map<String, Object> result = new HashMap<>();
+                result.put("data", data);
+                result.put("tableName", tableName);
+                result.put("searchValue", searchValue);
+                result.put("totalCount", totalCount);
+                result.put("returnedCount", data.size());
+                result.put("dataSource", dataSourceName);
+                result.put("currentPage", page);
+                result.put("pageSize", size);
+                result.put("totalPages", (int) Math.ceil((double) totalCount / size));
+                result.put("cached", false);
+                result.put("indexed", true);
+                return result;
+            }
             
-            String whereClause;
-            List<Object> params;
-            Integer totalCount;
+            // 尝试从缓存获取搜索条件和总记录数，缓存按搜索值、搜索模式和搜索类型区分
+            SearchCacheService.SearchCacheEntry cacheEntry = searchCacheService.getSearchCache(dataSourceName, tableName, searchValue, searchMode, searchType);
             
+            SearchCacheService.SearchCacheEntry condition;
             if (cacheEntry != null) {
                 // 使用缓存的搜索条件
-                whereClause = cacheEntry.getWhereClause();
-                params = cacheEntry.getParams();
-                totalCount = cacheEntry.getTotalCount();
+                condition = cacheEntry;
                 logger.debug("使用缓存的搜索条件进行分页查询: {}:{}", tableName, searchValue);
             } else {
-                // 缓存中没有，需要构建搜索条件
-                logger.debug("构建新的搜索条件并缓存: {}:{}", tableName, searchValue);
-                
-                // 获取表的所有字段信息
-                List<Map<String, Object>> columns = getTableColumns(dataSourceName, tableName);
-                
-                // 根据搜索模式过滤字段
-                columns = filterColumnsBySearchMode(columns, searchMode, searchValue);
-                
-                // 构建动态搜索SQL
-                StringBuilder whereClauseBuilder = new StringBuilder();
-                params = new ArrayList<>();
-                
-                for (int i = 0; i < columns.size(); i++) {
-                    Map<String, Object> column = columns.get(i);
-                    String columnName = (String) column.get("COLUMN_NAME");
-                    String dataType = (String) column.get("DATA_TYPE");
-                    
-                    if (whereClauseBuilder.length() > 0) {
-                        whereClauseBuilder.append(" OR ");
-                    }
-                    
-                    // 根据搜索类型构建不同的搜索条件
-                    buildSearchCondition(whereClauseBuilder, params, columnName, dataType, searchValue, searchType);
-                }
-                
-                whereClause = whereClauseBuilder.toString();
-                
-                // 执行COUNT查询获取总记录数
-                String countSql;
+                condition = buildAndCacheSearchCondition(dataSourceName, tableName, searchValue, searchMode, searchType);
+            }
+            String whereClause = condition.getWhereClause();
+            List<Object> params = condition.getParams();
+            Integer totalCount = condition.getTotalCount();
+            
+            // 前几页的查询结果可能已经缓存
+            boolean pageCacheable = searchCacheService.isPageCacheable(page);
+            List<Map<String, Object>> data = pageCacheable 
+                    ? searchCacheService.getCachedPage(dataSourceName, tableName, searchValue, searchMode, searchType, offset, size) : null;
+            boolean pageCached = data != null;
+            
+            if (data == null) {
+                // 执行分页查询
+                String sql;
                 JdbcTemplate jdbcTemplate;
                 
                 if (isUserCreatedDatabase(dataSourceName)) {
-                    countSql = String.format("SELECT COUNT(*) FROM `%s`.`%s` WHERE %s", 
+                    sql = String.format("SELECT * FROM `%s`.`%s` WHERE %s LIMIT ?, ?", 
                             dataSourceName, tableName, whereClause);
-                    jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                    jdbcTemplate = multiDataSourceService.getReadJdbcTemplate(dataSourceName);
                 } else {
-                    countSql = String.format("SELECT COUNT(*) FROM `%s` WHERE %s", 
+                    sql = String.format("SELECT * FROM `%s` WHERE %s LIMIT ?, ?", 
                             tableName, whereClause);
                     jdbcTemplate = getJdbcTemplate(dataSourceName);
                 }
                 
-                totalCount = jdbcTemplate.queryForObject(countSql, Integer.class, params.toArray());
+                // 添加分页参数
+                List<Object> sqlParams = new ArrayList<>(params);
+                sqlParams.add(offset);
+                sqlParams.add(size);
                 
-                // 缓存搜索条件和总记录数，使用包含搜索类型的缓存键
-                searchCacheService.putSearchCache(dataSourceName, tableName, cacheKey, whereClause, params, totalCount);
-            }
-            
-            // 执行分页查询
-            String sql;
-            JdbcTemplate jdbcTemplate;
-            
-            if (isUserCreatedDatabase(dataSourceName)) {
-                sql = String.format("SELECT * FROM `%s`.`%s` WHERE %s LIMIT ?, ?", 
-                        dataSourceName, tableName, whereClause);
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
-            } else {
-                sql = String.format("SELECT * FROM `%s` WHERE %s LIMIT ?, ?", 
-                        tableName, whereClause);
-                jdbcTemplate = getJdbcTemplate(dataSourceName);
+                // 添加调试日志
+                logger.info("=== 精确搜索调试信息 ===");
+                logger.info("搜索类型: {}, 搜索值: '{}'", searchType, searchValue);
+                logger.info("WHERE子句: {}", whereClause);
+                logger.info("SQL参数: {}", sqlParams);
+                logger.info("完整SQL: {}", sql);
+                
+                data = jdbcTemplate.queryForList(sql, sqlParams.toArray());
+                logger.info("SQL查询返回 {} 条记录", data.size());
+                
+                if (pageCacheable) {
+                    searchCacheService.putCachedPage(dataSourceName, tableName, searchValue, searchMode, searchType, offset, size, data);
+                }
             }
             
-            // 添加分页参数
-            List<Object> sqlParams = new ArrayList<>(params);
-            sqlParams.add(offset);
-            sqlParams.add(size);
-            
-            // 添加调试日志
-            logger.info("=== 精确搜索调试信息 ===");
-            logger.info("搜索类型: {}, 搜索值: '{}'", searchType, searchValue);
-            logger.info("WHERE子句: {}", whereClause);
-            logger.info("SQL参数: {}", sqlParams);
-            logger.info("完整SQL: {}", sql);
-            
-            List<Map<String, Object>> data = jdbcTemplate.queryForList(sql, sqlParams.toArray());
-            logger.info("SQL查询返回 {} 条记录", data.size());
-            
             
             // 计算总页数
             int totalPages = (int) Math.ceil((double) (totalCount != null ? totalCount : 0) / size);
@@ -939,6 +1593,7 @@ public class DatabaseService {
             result.put("pageSize", size);
             result.put("totalPages", totalPages);
             result.put("cached", cacheEntry != null); // 标记是否使用了缓存
+            result.put("pageCached", pageCached);
             
             return result;
             
@@ -978,6 +1633,14 @@ public class DatabaseService {
                 whereClause.append("CAST(`").append(columnName).append("` AS CHAR) = ?");
                 params.add(searchValue);
             }
+        } else if ("prefix".equals(searchType)) {
+            // 前缀搜索：以搜索值开头
+            if (isNumericType(dataType)) {
+                whereClause.append("CAST(`").append(columnName).append("` AS CHAR) LIKE ?");
+            } else {
+                whereClause.append("CAST(`").append(columnName).append("` AS CHAR CHARACTER SET utf8) COLLATE utf8_general_ci LIKE ?");
+            }
+            params.add(escapeLikePattern(searchValue) + "%");
         } else {
             // 模糊搜索：包含匹配（默认）
             if (isNumericType(dataType)) {
@@ -986,26 +1649,33 @@ public class DatabaseService {
                     if (isInteger(searchValue)) {
                         whereClause.append("(`").append(columnName).append("` = ? OR CAST(`").append(columnName).append("` AS CHAR) LIKE ?)");
                         params.add(Long.parseLong(searchValue));
-                        params.add("%" + searchValue + "%");
+                        params.add("%" + escapeLikePattern(searchValue) + "%");
                     } else if (isDecimal(searchValue)) {
                         whereClause.append("(`").append(columnName).append("` = ? OR CAST(`").append(columnName).append("` AS CHAR) LIKE ?)");
                         params.add(Double.parseDouble(searchValue));
-                        params.add("%" + searchValue + "%");
+                        params.add("%" + escapeLikePattern(searchValue) + "%");
                     } else {
                         whereClause.append("CAST(`").append(columnName).append("` AS CHAR) LIKE ?");
-                        params.add("%" + searchValue + "%");
+                        params.add("%" + escapeLikePattern(searchValue) + "%");
                     }
                 } catch (NumberFormatException e) {
                     whereClause.append("CAST(`").append(columnName).append("` AS CHAR) LIKE ?");
-                    params.add("%" + searchValue + "%");
+                    params.add("%" + escapeLikePattern(searchValue) + "%");
                 }
             } else {
                 // 字符串类型：使用LIKE模糊匹配
                 whereClause.append("CAST(`").append(columnName).append("` AS CHAR CHARACTER SET utf8) COLLATE utf8_general_ci LIKE ?");
-                params.add("%" + searchValue + "%");
+                params.add("%" + escapeLikePattern(searchValue) + "%");
             }
         }
     }
+    
+    /**
+     * 转义LIKE中的通配符，搜索值中的%和_按字面匹配（与字段值索引的前缀、包含匹配一致）
+     */
+    private String escapeLikePattern(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 
     /**
      * 判断数据类型是否为数值类型
@@ -1073,10 +1743,10 @@ public class DatabaseService {
             
             // 检查是否为用户创建的数据库
             if (isUserCreatedDatabase(dataSourceName)) {
-                // 用户创建的数据库，使用默认数据源连接
+                // 用户创建的数据库，使用该库的连接池
                 sql = String.format("SELECT * FROM `%s`.`%s` WHERE `%s` IS NOT NULL ORDER BY `%s` LIMIT ?", 
                         dataSourceName, tableName, columnName, columnName);
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getReadJdbcTemplate(dataSourceName);
             } else {
                 // 配置的数据源，使用原来的逻辑
                 sql = String.format("SELECT * FROM `%s` WHERE `%s` IS NOT NULL ORDER BY `%s` LIMIT ?", 
@@ -1093,7 +1763,7 @@ public class DatabaseService {
             if (isUserCreatedDatabase(dataSourceName)) {
                 countSql = String.format("SELECT COUNT(*) FROM `%s`.`%s` WHERE `%s` IS NOT NULL", 
                         dataSourceName, tableName, columnName);
-                totalCount = getJdbcTemplate(DEFAULT_DATASOURCE).queryForObject(countSql, Integer.class);
+                totalCount = multiDataSourceService.getReadJdbcTemplate(dataSourceName).queryForObject(countSql, Integer.class);
             } else {
                 countSql = String.format("SELECT COUNT(*) FROM `%s` WHERE `%s` IS NOT NULL", tableName, columnName);
                 totalCount = getJdbcTemplate(dataSourceName).queryForObject(countSql, Integer.class);
@@ -1122,9 +1792,9 @@ public class DatabaseService {
     public List<Map<String, Object>> getTableIndexes(String dataSourceName, String tableName) {
         // 检查是否为用户创建的数据库
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接
+            // 用户创建的数据库，使用该库的连接池
             String sql = String.format("SHOW INDEX FROM `%s`.`%s`", dataSourceName, tableName);
-            return getJdbcTemplate(DEFAULT_DATASOURCE).queryForList(sql);
+            return multiDataSourceService.getReadJdbcTemplate(dataSourceName).queryForList(sql);
         } else {
             // 配置的数据源，使用原来的逻辑
             String sql = "SHOW INDEX FROM " + tableName;
@@ -1160,10 +1830,10 @@ public class DatabaseService {
         
         // 检查是否为用户创建的数据库
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接
+            // 用户创建的数据库，使用该库的连接池
             sql = String.format("INSERT INTO `%s`.`%s` (%s) VALUES (%s)", 
                     dataSourceName, tableName, columns.toString(), values.toString());
-            jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+            jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(dataSourceName);
         } else {
             // 配置的数据源，使用原来的逻辑
             sql = String.format("INSERT INTO `%s` (%s) VALUES (%s)", 
@@ -1172,10 +1842,26 @@ public class DatabaseService {
         }
         
         try {
-            int result = jdbcTemplate.update(sql, params.toArray());
+            // 字段值索引已加载该表时记下新行的主键，插入数据不含主键时取回自增主键
+            List<String> primaryKeys = valueIndexService.getIndexedPrimaryKeys(dataSourceName, tableName);
+            Map<String, Object> rowKey = primaryKeys != null ? extractRowKey(data, primaryKeys) : null;
+            int result;
+            if (primaryKeys != null && rowKey == null && primaryKeys.size() == 1) {
+                KeyHolder keyHolder = new GeneratedKeyHolder();
+                String insertSql = sql;
+                result = jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
+                    new ArgumentPreparedStatementSetter(params.toArray()).setValues(ps);
+                    return ps;
+                }, keyHolder);
+                Number generatedKey = keyHolder.getKey();
+                rowKey = generatedKey != null ? Map.of(primaryKeys.get(0), generatedKey) : null;
+            } else {
+                result = jdbcTemplate.update(sql, params.toArray());
+            }
             
             // 清除该表的搜索缓存，确保搜索结果反映最新数据
-            clearTableSearchCache(dataSourceName, tableName);
+            clearTableSearchCache(dataSourceName, tableName, result, rowKey != null ? List.of(rowKey) : null);
             
             return result;
         } catch (Exception e) {
@@ -1230,19 +1916,20 @@ public class DatabaseService {
         
         // 检查是否为用户创建的数据库
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接
+            // 用户创建的数据库，使用该库的连接池
             sql = String.format("DELETE FROM `%s`.`%s` WHERE %s", dataSourceName, tableName, whereClause.toString());
-            jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+            jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(dataSourceName);
         } else {
             // 配置的数据源，使用原来的逻辑
             sql = String.format("DELETE FROM `%s` WHERE %s", tableName, whereClause.toString());
             jdbcTemplate = getJdbcTemplate(dataSourceName);
         }
         
+        List<Map<String, Object>> rowKeys = selectIndexedRowKeys(dataSourceName, tableName, jdbcTemplate, whereClause, params);
         int result = jdbcTemplate.update(sql, params.toArray());
         
         // 清除该表的搜索缓存，确保搜索结果反映最新数据
-        clearTableSearchCache(dataSourceName, tableName);
+        clearTableSearchCache(dataSourceName, tableName, -result, rowKeys);
         
         return result;
     }
@@ -1273,23 +1960,25 @@ public class DatabaseService {
         }
 
         // 构建WHERE子句
+        List<Object> whereParams = new ArrayList<>();
         for (Map.Entry<String, Object> entry : whereConditions.entrySet()) {
             if (whereClause.length() > 0) {
                 whereClause.append(" AND ");
             }
             whereClause.append("`").append(entry.getKey()).append("` = ?");
-            params.add(entry.getValue());
+            whereParams.add(entry.getValue());
         }
+        params.addAll(whereParams);
 
         String sql;
         JdbcTemplate jdbcTemplate;
         
         // 检查是否为用户创建的数据库
         if (isUserCreatedDatabase(dataSourceName)) {
-            // 用户创建的数据库，使用默认数据源连接
+            // 用户创建的数据库，使用该库的连接池
             sql = String.format("UPDATE `%s`.`%s` SET %s WHERE %s", 
                     dataSourceName, tableName, setClause.toString(), whereClause.toString());
-            jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+            jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(dataSourceName);
         } else {
             // 配置的数据源，使用原来的逻辑
             sql = String.format("UPDATE `%s` SET %s WHERE %s", 
@@ -1297,14 +1986,77 @@ public class DatabaseService {
             jdbcTemplate = getJdbcTemplate(dataSourceName);
         }
         
+        List<Map<String, Object>> rowKeys = selectIndexedRowKeys(dataSourceName, tableName, jdbcTemplate, whereClause, whereParams);
         int result = jdbcTemplate.update(sql, params.toArray());
+        if (rowKeys != null && !rowKeys.isEmpty()) {
+            // 更新了主键列时，修改后的主键同样是变更行
+            Map<String, Object> updatedColumns = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            updatedColumns.putAll(updateData);
+            Map<String, Object> keyUpdates = new LinkedHashMap<>();
+            for (String keyColumn : rowKeys.get(0).keySet()) {
+                if (updatedColumns.containsKey(keyColumn)) {
+                    keyUpdates.put(keyColumn, updatedColumns.get(keyColumn));
+                }
+            }
+            if (!keyUpdates.isEmpty()) {
+                List<Map<String, Object>> updatedKeys = new ArrayList<>();
+                for (Map<String, Object> rowKey : rowKeys) {
+                    Map<String, Object> updatedKey = new LinkedHashMap<>(rowKey);
+                    updatedKey.putAll(keyUpdates);
+                    updatedKeys.add(updatedKey);
+                }
+                rowKeys.addAll(updatedKeys);
+            }
+        }
         
         // 清除该表的搜索缓存，确保搜索结果反映最新数据
-        clearTableSearchCache(dataSourceName, tableName);
+        clearTableSearchCache(dataSourceName, tableName, 0, rowKeys);
         
         return result;
     }
 
+    /**
+     * 字段值索引已加载该表时，查出满足写入条件的行的主键，写入后用于增量更新索引；未加载或行数过多时返回null
+     */
+    private List<Map<String, Object>> selectIndexedRowKeys(String dataSourceName, String tableName, JdbcTemplate jdbcTemplate,
+                                                           CharSequence whereClause, List<Object> whereParams) {
+        List<String> primaryKeys = valueIndexService.getIndexedPrimaryKeys(dataSourceName, tableName);
+        if (primaryKeys == null) {
+            return null;
+        }
+        StringBuilder keyColumns = new StringBuilder();
+        for (String primaryKey : primaryKeys) {
+            if (keyColumns.length() > 0) {
+                keyColumns.append(", ");
+            }
+            keyColumns.append("`").append(primaryKey).append("`");
+        }
+        String table = isUserCreatedDatabase(dataSourceName)
+                ? String.format("`%s`.`%s`", dataSourceName, tableName) : String.format("`%s`", tableName);
+        int maxRows = valueIndexService.getMaxDeltaRows();
+        List<Map<String, Object>> rowKeys = jdbcTemplate.queryForList(
+                String.format("SELECT %s FROM %s WHERE %s LIMIT %d", keyColumns, table, whereClause, maxRows + 1),
+                whereParams.toArray());
+        return rowKeys.size() > maxRows ? null : rowKeys;
+    }
+
+    /**
+     * 从写入的数据中取出主键值，主键不完整时返回null
+     */
+    private Map<String, Object> extractRowKey(Map<String, Object> data, List<String> primaryKeys) {
+        Map<String, Object> columns = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        columns.putAll(data);
+        Map<String, Object> rowKey = new LinkedHashMap<>();
+        for (String primaryKey : primaryKeys) {
+            Object value = columns.get(primaryKey);
+            if (value == null) {
+                return null;
+            }
+            rowKey.put(primaryKey, value);
+        }
+        return rowKey;
+    }
+
     // =============================================================================
     // 兼容性方法（保持向后兼容，使用默认数据源）
     // =============================================================================
@@ -1496,6 +2248,7 @@ public class DatabaseService {
             
             // 执行创建数据库的SQL
             jdbcTemplate.execute(sql.toString());
+            schemaMetadataCache.invalidateDatabase(databaseName);
             
             logger.info("成功创建数据库: {}", databaseName);
             return true;
@@ -1531,6 +2284,10 @@ public class DatabaseService {
             // 执行删除数据库的SQL
             String sql = "DROP DATABASE `" + databaseName + "`";
             jdbcTemplate.execute(sql);
+            valueIndexService.removeDatabase(databaseName);
+            schemaMetadataCache.invalidateDatabase(databaseName);
+            rowCountService.invalidateDatabase(databaseName);
+            multiDataSourceService.evictDatabase(databaseName);
             
             logger.info("成功删除数据库: {}", databaseName);
             return true;
@@ -1694,8 +2451,8 @@ public class DatabaseService {
             
             // 检查是否为用户创建的数据库
             if (isUserCreatedDatabase(databaseName)) {
-                // 用户创建的数据库，使用默认数据源连接
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                // 用户创建的数据库，使用该库的连接池
+                jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(databaseName);
                 sql.append("CREATE TABLE `").append(databaseName).append("`.`").append(tableName).append("` (");
             } else {
                 // 配置的数据源
@@ -1789,6 +2546,7 @@ public class DatabaseService {
             
             // 执行创建表的SQL
             jdbcTemplate.execute(sql.toString());
+            schemaMetadataCache.invalidateTable(isUserCreatedDatabase(databaseName) ? databaseName : schemaKey(dataSourceName), tableName);
             
             logger.info("成功创建表: {}.{}", databaseName, tableName);
             return true;
@@ -1966,20 +2724,8 @@ public class DatabaseService {
      */
     public boolean tableExists(String dataSourceName, String databaseName, String tableName) {
         try {
-            JdbcTemplate jdbcTemplate;
-            String sql;
-            
-            if (isUserCreatedDatabase(databaseName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
-                sql = "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?";
-                Integer count = jdbcTemplate.queryForObject(sql, Integer.class, databaseName, tableName);
-                return count != null && count > 0;
-            } else {
-                jdbcTemplate = getJdbcTemplate(dataSourceName);
-                sql = "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
-                Integer count = jdbcTemplate.queryForObject(sql, Integer.class, tableName);
-                return count != null && count > 0;
-            }
+            String schemaName = isUserCreatedDatabase(databaseName) ? databaseName : schemaKey(dataSourceName);
+            return schemaMetadataCache.tableExists(schemaName, tableName, () -> queryAllTables(schemaName));
         } catch (Exception e) {
             logger.error("检查表是否存在时发生错误: {}", e.getMessage());
             return false;
@@ -2003,7 +2749,7 @@ public class DatabaseService {
             String sql;
             
             if (isUserCreatedDatabase(databaseName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(databaseName);
                 sql = "DROP TABLE `" + databaseName + "`.`" + tableName + "`";
             } else {
                 jdbcTemplate = getJdbcTemplate(dataSourceName);
@@ -2011,6 +2757,9 @@ public class DatabaseService {
             }
             
             jdbcTemplate.execute(sql);
+            valueIndexService.removeTable(databaseName, tableName);
+            schemaMetadataCache.invalidateTable(isUserCreatedDatabase(databaseName) ? databaseName : schemaKey(dataSourceName), tableName);
+            rowCountService.invalidateTable(isUserCreatedDatabase(databaseName) ? databaseName : schemaKey(dataSourceName), tableName);
             
             logger.info("成功删除表: {}.{}", databaseName, tableName);
             return true;
@@ -2141,7 +2890,7 @@ public class DatabaseService {
             String sql;
             
             if (isUserCreatedDatabase(databaseName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = getTableJdbcTemplate(databaseName);
                 sql = "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? AND COLUMN_NAME = ?";
                 Integer count = jdbcTemplate.queryForObject(sql, Integer.class, databaseName, tableName, columnName);
                 return count != null && count > 0;
@@ -2206,7 +2955,7 @@ public class DatabaseService {
             String sql;
             
             if (isUserCreatedDatabase(databaseName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = getTableJdbcTemplate(databaseName);
                 sql = "SELECT DATA_TYPE, COLUMN_TYPE, CHARACTER_MAXIMUM_LENGTH, NUMERIC_PRECISION, NUMERIC_SCALE " +
                       "FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? AND COLUMN_NAME = ?";
                 List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, databaseName, tableName, columnName);
@@ -2307,7 +3056,34 @@ public class DatabaseService {
      * 清理特定表的搜索缓存
      */
     public void clearTableSearchCache(String dataSource, String tableName) {
+        clearTableSearchCache(dataSource, tableName, 0);
+    }
+
+    /**
+     * 表数据写入后清理相关缓存
+     * @param rowDelta 写入导致的行数变化（插入为正、删除为负，未知时为0），用于调整缓存的行数
+     */
+    public void clearTableSearchCache(String dataSource, String tableName, long rowDelta) {
+        clearTableSearchCache(dataSource, tableName, rowDelta, null);
+    }
+
+    /**
+     * 表数据写入后清理相关缓存
+     * @param changedRowKeys 变更行的主键，字段值索引据此只更新这些行；为null时整表重建
+     */
+    public void clearTableSearchCache(String dataSource, String tableName, long rowDelta,
+                                      Collection<Map<String, Object>> changedRowKeys) {
         searchCacheService.clearTableCache(dataSource, tableName);
+        // 表的行数等统计信息已变化
+        schemaMetadataCache.invalidateTableList(schemaKey(dataSource));
+        if (changedRowKeys != null) {
+            valueIndexService.onRowsChanged(dataSource, tableName, changedRowKeys);
+        } else {
+            // 不知道变更了哪些行，字段值索引整表重建
+            valueIndexService.onTableChanged(dataSource, tableName);
+        }
+        // 调整缓存的行数并标记为过期，由后台刷新精确值
+        rowCountService.recordWrite(schemaKey(dataSource), tableName, rowDelta);
     }
 
     /**
@@ -2324,11 +3100,37 @@ public class DatabaseService {
         return searchCacheService.getCacheStats();
     }
 
+    /**
+     * 获取表结构元数据缓存统计信息
+     */
+    public Map<String, Object> getMetadataCacheStats() {
+        return schemaMetadataCache.getStats();
+    }
+
+    /**
+     * 获取字段值索引状态
+     */
+    public Map<String, Object> getValueIndexStatus(String databaseName) {
+        return valueIndexService.getStatus(databaseName);
+    }
+
+    /**
+     * 重建数据库的字段值索引（后台执行），返回安排重建的表数量
+     */
+    public int rebuildValueIndex(String databaseName) {
+        return valueIndexService.rebuildDatabase(databaseName);
+    }
+
     /**
      * 验证数据库和表是否存在
      */
     private void validateDatabaseAndTable(String dataSourceName, String tableName) {
         try {
+            // 表存在即说明数据库存在，命中元数据缓存时无需再查询information_schema
+            if (checkTableExists(dataSourceName, tableName)) {
+                return;
+            }
+            
             // 如果是用户创建的数据库，验证数据库是否存在
             if (isUserCreatedDatabase(dataSourceName)) {
                 JdbcTemplate jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
@@ -2368,345 +3170,284 @@ public class DatabaseService {
      * 批量插入表数据（支持百万级数据优化）
      */
     public Map<String, Object> batchInsertTableData(String dataSourceName, String tableName, List<Map<String, Object>> dataList) {
+        return insertRows(dataSourceName, tableName, dataList, false);
+    }
+
+    /**
+     * 事务性批量插入表数据（确保数据一致性）
+     */
+    @Transactional
+    public Map<String, Object> batchInsertTableDataTransaction(String dataSourceName, String tableName, List<Map<String, Object>> dataList) {
+        return insertRows(dataSourceName, tableName, dataList, true);
+    }
+
+    /**
+     * 批量插入的统一实现，由BatchInsertEngine分批执行
+     * @param atomic 为true时任一批失败即抛出异常，由外层事务回滚；否则失败的批次计入failureCount后继续
+     */
+    private Map<String, Object> insertRows(String dataSourceName, String tableName, List<Map<String, Object>> dataList, boolean atomic) {
+        return insertRows(dataSourceName, tableName, qualifiedTableName(dataSourceName, tableName), dataList, atomic);
+    }
+
+    /**
+     * @param qualifiedTarget 实际写入的表（影子表导入时与tableName不同，列类型按tableName获取）
+     */
+    private Map<String, Object> insertRows(String dataSourceName, String tableName, String qualifiedTarget,
+                                           List<Map<String, Object>> dataList, boolean atomic) {
         if (dataList == null || dataList.isEmpty()) {
             throw new IllegalArgumentException("插入数据不能为空");
         }
 
+        String label = atomic ? "事务性批量插入" : "批量插入";
         long startTime = System.currentTimeMillis();
         int totalRecords = dataList.size();
-        int successCount = 0;
-        int failureCount = 0;
-        List<String> errors = new ArrayList<>();
-        
-        // 批处理大小，避免内存溢出
-        int batchSize = 5000;
         
-        logger.info("开始批量插入 - 数据源: {}, 表名: {}, 记录数: {}", dataSourceName, tableName, totalRecords);
+        logger.info("开始{} - 数据源: {}, 表名: {}, 记录数: {}", label, dataSourceName, tableName, totalRecords);
         
         try {
             // 验证数据库和表是否存在
             validateDatabaseAndTable(dataSourceName, tableName);
             
-            JdbcTemplate jdbcTemplate;
-            String sqlTemplate;
-            
-            // 检查是否为用户创建的数据库
-            if (isUserCreatedDatabase(dataSourceName)) {
-                // 用户创建的数据库，使用默认数据源连接
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
-                sqlTemplate = "INSERT INTO `%s`.`%s` (%s) VALUES %s";
-                logger.info("使用用户创建的数据库模式 - 数据源: {}, 表名: {}", dataSourceName, tableName);
-            } else {
-                // 配置的数据源，使用原来的逻辑
-                jdbcTemplate = getJdbcTemplate(dataSourceName);
-                sqlTemplate = "INSERT INTO `%s` (%s) VALUES %s";
-                logger.info("使用配置的数据源模式 - 数据源: {}, 表名: {}", dataSourceName, tableName);
-            }
-            
             // 获取第一条记录的列名，用于构建SQL
-            Map<String, Object> firstRecord = dataList.get(0);
-            List<String> columnNames = new ArrayList<>(firstRecord.keySet());
-            String columnsStr = columnNames.stream()
-                    .map(col -> "`" + col + "`")
-                    .collect(java.util.stream.Collectors.joining(", "));
-            
-            logger.info("列名映射: {}", columnNames);
+            List<String> columnNames = new ArrayList<>(dataList.get(0).keySet());
             
-            // 获取表的列信息用于数据类型检查
-            Map<String, String> columnTypes = new HashMap<>();
-            try {
-                String getColumnTypesSql;
-                if (isUserCreatedDatabase(dataSourceName)) {
-                    getColumnTypesSql = "SELECT COLUMN_NAME, DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?";
-                    List<Map<String, Object>> columnInfo = jdbcTemplate.queryForList(getColumnTypesSql, dataSourceName, tableName);
-                    for (Map<String, Object> row : columnInfo) {
-                        columnTypes.put((String) row.get("COLUMN_NAME"), (String) row.get("DATA_TYPE"));
-                    }
-                } else {
-                    getColumnTypesSql = "SELECT COLUMN_NAME, DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
-                    List<Map<String, Object>> columnInfo = jdbcTemplate.queryForList(getColumnTypesSql, tableName);
-                    for (Map<String, Object> row : columnInfo) {
-                        columnTypes.put((String) row.get("COLUMN_NAME"), (String) row.get("DATA_TYPE"));
-                    }
-                }
-                logger.info("获取到的列类型信息: {}", columnTypes);
-            } catch (Exception e) {
-                logger.warn("获取列类型信息失败，将使用默认处理: {}", e.getMessage());
+            // 非事务导入的数据量超过一个数据块时使用并行流水线
+            if (!atomic && totalRecords > pipelineChunkRows) {
+                return runImportPipeline(dataSourceName, tableName, columnNames, listChunkSource(dataList),
+                        null, null, Integer.MAX_VALUE, null, qualifiedTarget);
             }
             
-            // 分批处理数据
-            for (int i = 0; i < totalRecords; i += batchSize) {
-                int endIndex = Math.min(i + batchSize, totalRecords);
-                List<Map<String, Object>> batch = dataList.subList(i, endIndex);
-                
-                try {
-                    // 构建批量插入SQL
-                    StringBuilder valuesBuilder = new StringBuilder();
-                    List<Object> params = new ArrayList<>();
-                    
-                    for (int j = 0; j < batch.size(); j++) {
-                        if (j > 0) {
-                            valuesBuilder.append(", ");
-                        }
-                        valuesBuilder.append("(");
-                        
-                        Map<String, Object> record = batch.get(j);
-                        for (int k = 0; k < columnNames.size(); k++) {
-                            if (k > 0) {
-                                valuesBuilder.append(", ");
-                            }
-                            valuesBuilder.append("?");
-                            
-                            // 处理空字符串问题 - 对于数字类型列，将空字符串转换为null
-                            String columnName = columnNames.get(k);
-                            Object value = record.get(columnName);
-                            
-                            // 检查是否是空字符串并且是数字类型
-                            if (value != null && "".equals(value.toString().trim())) {
-                                String columnType = columnTypes.get(columnName);
-                                if (columnType != null && isNumericType(columnType)) {
-                                    // 数字类型的空字符串转换为null
-                                    value = null;
-                                    logger.debug("将列 {} ({}) 的空字符串转换为null", columnName, columnType);
-                                }
-                            }
-                            
-                            params.add(value);
-                        }
-                        valuesBuilder.append(")");
-                    }
-                    
-                    String sql;
-                    if (isUserCreatedDatabase(dataSourceName)) {
-                        sql = String.format(sqlTemplate, dataSourceName, tableName, columnsStr, valuesBuilder.toString());
-                    } else {
-                        sql = String.format(sqlTemplate, tableName, columnsStr, valuesBuilder.toString());
-                    }
-                    
-                    // 记录即将执行的SQL（仅前200个字符用于调试）
-                    logger.info("执行批量插入SQL（前200字符）: {}", sql.length() > 200 ? sql.substring(0, 200) + "..." : sql);
-                    
-                    // 记录参数类型和前几个参数的值
-                    if (i == 0) {
-                        logger.info("参数总数: {}", params.size());
-                        logger.info("列名数量: {}", columnNames.size());
-                        logger.info("批次大小: {}", batch.size());
-                        
-                        // 记录第一行数据的参数
-                        if (!params.isEmpty()) {
-                            logger.info("第一行数据参数类型和值:");
-                            for (int p = 0; p < Math.min(columnNames.size(), params.size()); p++) {
-                                Object paramValue = params.get(p);
-                                String paramType = paramValue != null ? paramValue.getClass().getSimpleName() : "null";
-                                logger.info("  {}: {} ({})", columnNames.get(p), paramValue, paramType);
-                            }
-                        }
-                    }
-                    
-                    // 执行批量插入
-                    int affectedRows = jdbcTemplate.update(sql, params.toArray());
-                    successCount += affectedRows;
-                    
-                    logger.info("批量插入进度: {}/{} 条记录已处理，本批次成功: {}", i + batch.size(), totalRecords, affectedRows);
-                    
-                } catch (Exception e) {
-                    failureCount += batch.size();
-                    
-                    // 详细的错误信息记录
-                    String errorDetail = "";
-                    if (e instanceof org.springframework.dao.DataAccessException) {
-                        Throwable rootCause = e;
-                        while (rootCause.getCause() != null) {
-                            rootCause = rootCause.getCause();
-                        }
-                        errorDetail = rootCause.getMessage();
-                    } else {
-                        errorDetail = e.getMessage();
-                    }
-                    
-                    String error = String.format("批次 %d-%d 插入失败: %s", i + 1, endIndex, errorDetail);
-                    errors.add(error);
-                    logger.error(error, e);
-                    
-                    // 记录第一批失败的详细信息
-                    if (i == 0) {
-                        logger.error("第一批数据示例: {}", batch.get(0));
-                        logger.error("失败的SQL模板: {}", sqlTemplate);
-                        logger.error("参数类型: dataSourceName={}, tableName={}", dataSourceName, tableName);
-                        logger.error("isUserCreatedDatabase({}) = {}", dataSourceName, isUserCreatedDatabase(dataSourceName));
-                        logger.error("错误的根本原因: {}", errorDetail);
-                        
-                        // 如果是SQL异常，尝试提供更多信息
-                        if (e instanceof org.springframework.dao.DataAccessException) {
-                            logger.error("数据访问异常详情:", e);
-                            
-                            // 检查是否是表不存在的问题
-                            if (errorDetail != null && errorDetail.toLowerCase().contains("doesn't exist")) {
-                                logger.error("表可能不存在，请检查数据库 '{}' 中是否存在表 '{}'", dataSourceName, tableName);
-                            }
-                            
-                            // 检查是否是字段不匹配的问题
-                            if (errorDetail != null && errorDetail.toLowerCase().contains("unknown column")) {
-                                logger.error("字段不匹配，请检查表 '{}' 的字段定义", tableName);
-                                logger.error("CSV文件列名: {}", columnNames);
-                            }
-                            
-                            // 检查是否是数据类型错误
-                            if (errorDetail != null && (errorDetail.toLowerCase().contains("data too long") || 
-                                                       errorDetail.toLowerCase().contains("incorrect") ||
-                                                       errorDetail.toLowerCase().contains("invalid"))) {
-                                logger.error("数据类型或长度错误，请检查数据格式");
-                            }
-                            
-                            // 检查是否是整数范围错误
-                            if (errorDetail != null && (errorDetail.toLowerCase().contains("out of range value") ||
-                                                       errorDetail.toLowerCase().contains("incorrect integer value"))) {
-                                logger.error("整数范围错误：某些整数字段的值超出了定义的数据类型范围。建议使用BIGINT类型或检查数据。");
-                            }
-                            
-                            // 检查是否是约束冲突
-                            if (errorDetail != null && (errorDetail.toLowerCase().contains("duplicate") || 
-                                                       errorDetail.toLowerCase().contains("constraint"))) {
-                                logger.error("约束冲突，可能是主键重复或其他约束问题");
-                            }
-                        }
-                    }
-                }
+            boolean[] numericColumns = numericColumnFlags(dataSourceName, tableName, columnNames);
+            List<Object[]> rows = new ArrayList<>(totalRecords);
+            for (Map<String, Object> record : dataList) {
+                rows.add(toInsertArgs(record, columnNames, numericColumns));
             }
             
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
+            BatchInsertEngine.InsertResult insertResult = batchInsertEngine.insert(
+                    getTableJdbcTemplate(dataSourceName), qualifiedTarget, columnNames, rows, atomic);
+            
+            long duration = System.currentTimeMillis() - startTime;
             
             Map<String, Object> result = new HashMap<>();
             result.put("totalRecords", totalRecords);
-            result.put("successCount", successCount);
-            result.put("failureCount", failureCount);
+            result.put("successCount", insertResult.getSuccessCount());
+            result.put("failureCount", insertResult.getFailureCount());
+            result.put("batchCount", insertResult.getBatchCount());
             result.put("duration", duration);
-            result.put("errors", errors);
+            result.put("errors", insertResult.getErrors());
             result.put("tableName", tableName);
             result.put("dataSource", dataSourceName);
             
             // 清除该表的搜索缓存，确保搜索结果反映最新数据
-            clearTableSearchCache(dataSourceName, tableName);
+            clearTableSearchCache(dataSourceName, tableName, insertResult.getSuccessCount());
             
-            logger.info("批量插入完成 - 表: {}, 总记录数: {}, 成功: {}, 失败: {}, 耗时: {}ms", 
-                    tableName, totalRecords, successCount, failureCount, duration);
+            logger.info("{}完成 - 表: {}, 总记录数: {}, 成功: {}, 失败: {}, 批次: {}, 耗时: {}ms", label,
+                    tableName, totalRecords, insertResult.getSuccessCount(), insertResult.getFailureCount(),
+                    insertResult.getBatchCount(), duration);
             
             return result;
             
         } catch (Exception e) {
-            logger.error("批量插入失败 - 表: {}, 错误: {}", tableName, e.getMessage(), e);
-            throw new RuntimeException("批量插入失败: " + e.getMessage(), e);
+            logger.error("{}失败 - 表: {}, 错误: {}", label, tableName, e.getMessage(), e);
+            throw new RuntimeException(label + "失败: " + e.getMessage(), e);
         }
     }
 
     /**
-     * 事务性批量插入表数据（确保数据一致性）
+     * 通过分阶段流水线导入：读取在调用线程中执行，去重和类型转换在转换线程中执行，插入由多个线程并行执行
+     * @param dedupKeys 追加模式检测已存在数据使用的主键列，空列表表示按全部字段比较，null表示不检测
      */
-    @Transactional
-    public Map<String, Object> batchInsertTableDataTransaction(String dataSourceName, String tableName, List<Map<String, Object>> dataList) {
-        if (dataList == null || dataList.isEmpty()) {
-            throw new IllegalArgumentException("插入数据不能为空");
+    public Map<String, Object> pipelinedInsert(String dataSourceName, String tableName, List<String> columnNames,
+                                               ImportPipeline.ChunkSource<Map<String, Object>> source,
+                                               List<String> dedupKeys, int maxErrors) {
+        return pipelinedInsert(dataSourceName, tableName, columnNames, source, dedupKeys, maxErrors, null);
+    }
+
+    /**
+     * 流水线导入，listener在连续完成写入的数据块数增加时被调用，用于记录断点
+     */
+    public Map<String, Object> pipelinedInsert(String dataSourceName, String tableName, List<String> columnNames,
+                                               ImportPipeline.ChunkSource<Map<String, Object>> source,
+                                               List<String> dedupKeys, int maxErrors, ImportPipeline.ChunkListener listener) {
+        return runImportPipeline(dataSourceName, tableName, columnNames, source, dedupKeys, null, maxErrors, listener, null);
+    }
+
+    /**
+     * 流水线导入到指定的表（覆盖导入时写入影子表），列类型按tableName获取，不检测已存在的数据
+     */
+    public Map<String, Object> pipelinedInsertInto(String dataSourceName, String tableName, String qualifiedTarget,
+                                                   List<String> columnNames, ImportPipeline.ChunkSource<Map<String, Object>> source,
+                                                   int maxErrors, ImportPipeline.ChunkListener listener) {
+        return runImportPipeline(dataSourceName, tableName, columnNames, source, null, null, maxErrors, listener, qualifiedTarget);
+    }
+
+    /**
+     * 流水线方式按主键插入或更新（INSERT ... ON DUPLICATE KEY UPDATE）
+     * @param keyColumns 主键列，必须包含在columnNames中
+     */
+    public Map<String, Object> pipelinedUpsert(String dataSourceName, String tableName, List<String> columnNames,
+                                               ImportPipeline.ChunkSource<Map<String, Object>> source,
+                                               List<String> keyColumns, int maxErrors, ImportPipeline.ChunkListener listener) {
+        return runImportPipeline(dataSourceName, tableName, columnNames, source, null, keyColumns, maxErrors, listener, null);
+    }
+
+    @SuppressWarnings("try")
+    private Map<String, Object> runImportPipeline(String dataSourceName, String tableName, List<String> columnNames,
+                                                  ImportPipeline.ChunkSource<Map<String, Object>> source,
+                                                  List<String> dedupKeys, List<String> upsertKeys, int maxErrors,
+                                                  ImportPipeline.ChunkListener listener, String qualifiedTarget) {
+        try (MultiDataSourceService.PoolLease lease = leaseTablePool(dataSourceName)) {
+            return runImportPipelineLeased(dataSourceName, tableName, columnNames, source, dedupKeys, upsertKeys,
+                    maxErrors, listener, qualifiedTarget);
         }
+    }
 
+    private Map<String, Object> runImportPipelineLeased(String dataSourceName, String tableName, List<String> columnNames,
+                                                        ImportPipeline.ChunkSource<Map<String, Object>> source,
+                                                        List<String> dedupKeys, List<String> upsertKeys, int maxErrors,
+                                                        ImportPipeline.ChunkListener listener, String qualifiedTarget) {
         long startTime = System.currentTimeMillis();
-        int totalRecords = dataList.size();
+        boolean[] numericColumns = numericColumnFlags(dataSourceName, tableName, columnNames);
+        JdbcTemplate jdbcTemplate = getTableJdbcTemplate(dataSourceName);
+        String qualifiedName = qualifiedTarget != null ? qualifiedTarget : qualifiedTableName(dataSourceName, tableName);
         
+        // 全字段去重使用临时表时，去重在插入阶段由数据库完成
+        boolean dedupInDatabase = dedupKeys != null && dedupKeys.isEmpty() && stagingDedup;
+        
+        // 数据块只和表中已有的数据比较，前面的数据块可能还在插入队列中，另外按指纹记录已转换的行，过滤文件内的重复
+        boolean dedupInMemory = dedupKeys != null && !dedupInDatabase;
+        List<String> seenColumns = dedupKeys != null && !dedupKeys.isEmpty() ? dedupKeys : columnNames;
+        boolean[] seenNumericColumns = dedupInMemory ? numericColumnFlags(dataSourceName, tableName, seenColumns) : null;
+        RowFingerprint.FingerprintSet seenRows = dedupInMemory ? new RowFingerprint.FingerprintSet() : null;
+        
+        ImportPipeline.PipelineResult pipelineResult = importPipeline.run(source,
+                chunk -> {
+                    List<Map<String, Object>> records = chunk;
+                    if (dedupInMemory) {
+                        records = dedupKeys.isEmpty()
+                                ? filterDuplicatesByAllColumns(dataSourceName, tableName, chunk)
+                                : filterDuplicatesByPrimaryKeys(dataSourceName, tableName, chunk, dedupKeys);
+                        records = filterSeenRows(records, seenRows, seenColumns, seenNumericColumns);
+                    }
+                    List<Object[]> rows = new ArrayList<>(records.size());
+                    for (Map<String, Object> record : records) {
+                        rows.add(toInsertArgs(record, columnNames, numericColumns));
+                    }
+                    return rows;
+                },
+                rows -> upsertKeys != null
+                        ? batchInsertEngine.upsert(jdbcTemplate, qualifiedName, columnNames, upsertKeys, rows, false)
+                        : dedupInDatabase
+                        ? insertAbsentRows(dataSourceName, tableName, columnNames, rows, false)
+                        : batchInsertEngine.insert(jdbcTemplate, qualifiedName, columnNames, rows, false),
+                maxErrors, listener);
+        
+        long duration = System.currentTimeMillis() - startTime;
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalRecords", pipelineResult.getTotalRecords());
+        result.put("successCount", pipelineResult.getSuccessCount());
+        result.put("failureCount", pipelineResult.getFailureCount());
+        result.put("batchCount", pipelineResult.getBatchCount());
+        result.put("duration", duration);
+        result.put("errors", new ArrayList<>(pipelineResult.getErrors()));
+        result.put("tableName", tableName);
+        result.put("dataSource", dataSourceName);
+        result.put("pipeline", pipelineResult.getStageStats());
+        if (dedupKeys != null) {
+            result.put("skippedCount", pipelineResult.getSkippedCount());
+        }
+        if (upsertKeys != null) {
+            result.put("insertedCount", pipelineResult.getSuccessCount() - pipelineResult.getUpdatedCount() - pipelineResult.getUnchangedCount());
+            result.put("updatedCount", pipelineResult.getUpdatedCount());
+            result.put("unchangedCount", pipelineResult.getUnchangedCount());
+        }
+        
+        // 清除该表的搜索缓存，确保搜索结果反映最新数据
+        clearTableSearchCache(dataSourceName, tableName,
+                pipelineResult.getSuccessCount() - pipelineResult.getUpdatedCount() - pipelineResult.getUnchangedCount());
+        
+        logger.info("流水线导入完成 - 表: {}, 总记录数: {}, 成功: {}, 失败: {}, 跳过: {}, 并行: {}, 耗时: {}ms",
+                tableName, pipelineResult.getTotalRecords(), pipelineResult.getSuccessCount(), pipelineResult.getFailureCount(),
+                pipelineResult.getSkippedCount(), pipelineResult.isParallel(), duration);
+        return result;
+    }
+
+    /**
+     * 只插入表中不存在的行（按全部导入列比较），使用临时表在数据库中去重；
+     * 临时表不可用时（如缺少CREATE TEMPORARY TABLES权限）回退到逐批查询比较
+     */
+    private BatchInsertEngine.InsertResult insertAbsentRows(String dataSourceName, String tableName, List<String> columnNames,
+                                                            List<Object[]> rows, boolean atomic) {
+        JdbcTemplate jdbcTemplate = getTableJdbcTemplate(dataSourceName);
+        String qualifiedName = qualifiedTableName(dataSourceName, tableName);
         try {
-            JdbcTemplate jdbcTemplate;
-            String sqlTemplate;
-            
-            // 检查是否为用户创建的数据库
-            if (isUserCreatedDatabase(dataSourceName)) {
-                // 用户创建的数据库，使用默认数据源连接
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
-                sqlTemplate = "INSERT INTO `%s`.`%s` (%s) VALUES (%s)";
-            } else {
-                // 配置的数据源，使用原来的逻辑
-                jdbcTemplate = getJdbcTemplate(dataSourceName);
-                sqlTemplate = "INSERT INTO `%s` (%s) VALUES (%s)";
-            }
-            
-            // 获取第一条记录的列名，用于构建SQL
-            Map<String, Object> firstRecord = dataList.get(0);
-            List<String> columnNames = new ArrayList<>(firstRecord.keySet());
-            String columnsStr = columnNames.stream()
-                    .map(col -> "`" + col + "`")
-                    .collect(java.util.stream.Collectors.joining(", "));
-            
-            String placeholders = columnNames.stream()
-                    .map(col -> "?")
-                    .collect(java.util.stream.Collectors.joining(", "));
-            
-            String sql;
-            if (isUserCreatedDatabase(dataSourceName)) {
-                sql = String.format(sqlTemplate, dataSourceName, tableName, columnsStr, placeholders);
-            } else {
-                sql = String.format(sqlTemplate, tableName, columnsStr, placeholders);
-            }
-            
-            // 获取表列信息，用于数据类型处理
-            List<Map<String, Object>> columns = getTableColumns(dataSourceName, tableName);
-            Map<String, String> columnTypeMap = new HashMap<>();
-            for (Map<String, Object> column : columns) {
-                String columnName = (String) column.get("COLUMN_NAME");
-                String dataType = (String) column.get("DATA_TYPE");
-                columnTypeMap.put(columnName, dataType);
-            }
-            
-            // 准备批量参数
-            List<Object[]> batchArgs = new ArrayList<>();
-            for (Map<String, Object> record : dataList) {
-                Object[] args = new Object[columnNames.size()];
+            return batchInsertEngine.insertIfAbsent(jdbcTemplate, qualifiedName, columnNames, rows, atomic);
+        } catch (Exception e) {
+            logger.warn("临时表去重失败，改用查询比较 - 表: {}, 错误: {}", tableName, e.getMessage());
+            List<Map<String, Object>> records = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                Map<String, Object> record = new LinkedHashMap<>();
                 for (int i = 0; i < columnNames.size(); i++) {
-                    String columnName = columnNames.get(i);
-                    Object value = record.get(columnName);
-                    
-                    // 处理空字符串值
-                    if (value != null && value.toString().trim().isEmpty()) {
-                        String dataType = columnTypeMap.get(columnName);
-                        if (dataType != null && isNumericType(dataType)) {
-                            // 数字类型的空字符串转换为null
-                            args[i] = null;
-                        } else {
-                            // 非数字类型保持原值
-                            args[i] = value;
-                        }
-                    } else {
-                        args[i] = value;
-                    }
+                    record.put(columnNames.get(i), row[i]);
                 }
-                batchArgs.add(args);
+                records.add(record);
             }
-            
-            // 执行批量插入
-            int[] updateCounts = jdbcTemplate.batchUpdate(sql, batchArgs);
-            int successCount = java.util.Arrays.stream(updateCounts).sum();
-            
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            
-            Map<String, Object> result = new HashMap<>();
-            result.put("totalRecords", totalRecords);
-            result.put("successCount", successCount);
-            result.put("failureCount", totalRecords - successCount);
-            result.put("duration", duration);
-            result.put("errors", new ArrayList<>());
-            result.put("tableName", tableName);
-            result.put("dataSource", dataSourceName);
-            
-            // 清除该表的搜索缓存，确保搜索结果反映最新数据
-            clearTableSearchCache(dataSourceName, tableName);
-            
-            logger.info("事务性批量插入完成 - 表: {}, 总记录数: {}, 成功: {}, 耗时: {}ms", 
-                    tableName, totalRecords, successCount, duration);
-            
+            List<Map<String, Object>> uniqueRecords = filterDuplicatesByAllColumns(dataSourceName, tableName, records);
+            List<Object[]> uniqueRows = new ArrayList<>(uniqueRecords.size());
+            for (Map<String, Object> record : uniqueRecords) {
+                uniqueRows.add(columnNames.stream().map(record::get).toArray());
+            }
+            BatchInsertEngine.InsertResult result = batchInsertEngine.insert(jdbcTemplate, qualifiedName, columnNames, uniqueRows, atomic);
+            result.addSkippedCount(rows.size() - uniqueRows.size());
             return result;
-            
+        }
+    }
+
+    /**
+     * 把内存中的数据列表按数据块大小切分
+     */
+    private ImportPipeline.ChunkSource<Map<String, Object>> listChunkSource(List<Map<String, Object>> dataList) {
+        int[] position = {0};
+        return () -> {
+            if (position[0] >= dataList.size()) {
+                return null;
+            }
+            int end = Math.min(position[0] + pipelineChunkRows, dataList.size());
+            List<Map<String, Object>> chunk = dataList.subList(position[0], end);
+            position[0] = end;
+            return chunk;
+        };
+    }
+
+    /**
+     * 标记数字类型的列，这些列的空字符串插入时转换为null
+     */
+    private boolean[] numericColumnFlags(String dataSourceName, String tableName, List<String> columnNames) {
+        Map<String, String> columnTypes = new HashMap<>();
+        try {
+            for (SchemaMetadataCache.ColumnDescriptor column : getColumnDescriptors(dataSourceName, tableName)) {
+                columnTypes.put(column.getColumnName(), column.getDataType());
+            }
         } catch (Exception e) {
-            logger.error("事务性批量插入失败 - 表: {}, 错误: {}", tableName, e.getMessage(), e);
-            throw new RuntimeException("事务性批量插入失败: " + e.getMessage(), e);
+            logger.warn("获取列类型信息失败，将使用默认处理: {}", e.getMessage());
         }
+        boolean[] numericColumns = new boolean[columnNames.size()];
+        for (int i = 0; i < columnNames.size(); i++) {
+            numericColumns[i] = isNumericType(columnTypes.get(columnNames.get(i)));
+        }
+        return numericColumns;
+    }
+
+    private Object[] toInsertArgs(Map<String, Object> record, List<String> columnNames, boolean[] numericColumns) {
+        Object[] args = new Object[columnNames.size()];
+        for (int i = 0; i < columnNames.size(); i++) {
+            Object value = record.get(columnNames.get(i));
+            if (value != null && numericColumns[i] && value.toString().trim().isEmpty()) {
+                value = null;
+            }
+            args[i] = value;
+        }
+        return args;
     }
     
     /**
@@ -2717,6 +3458,8 @@ public class DatabaseService {
         
         if ("overwrite".equals(importStrategy)) {
             return batchInsertTableDataWithOverwrite(dataSourceName, tableName, dataList);
+        } else if ("upsert".equals(importStrategy)) {
+            return upsertRows(dataSourceName, tableName, dataList, getTablePrimaryKeys(dataSourceName, tableName), false, "更新模式");
         } else {
             // 默认为追加模式
             return batchInsertTableDataWithAppend(dataSourceName, tableName, dataList);
@@ -2732,145 +3475,239 @@ public class DatabaseService {
         
         if ("overwrite".equals(importStrategy)) {
             return batchInsertTableDataTransactionWithOverwrite(dataSourceName, tableName, dataList);
+        } else if ("upsert".equals(importStrategy)) {
+            return upsertRows(dataSourceName, tableName, dataList, getTablePrimaryKeys(dataSourceName, tableName), true, "事务性更新模式");
         } else {
             // 默认为追加模式
             return batchInsertTableDataTransactionWithAppend(dataSourceName, tableName, dataList);
         }
     }
     
+    /**
+     * 清空表数据（覆盖模式导入前调用），返回删除的行数
+     */
+    public int deleteAllTableData(String dataSourceName, String tableName) {
+        JdbcTemplate jdbcTemplate;
+        String deleteSql;
+        if (isUserCreatedDatabase(dataSourceName)) {
+            jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(dataSourceName);
+            deleteSql = String.format("DELETE FROM `%s`.`%s`", dataSourceName, tableName);
+        } else {
+            jdbcTemplate = getJdbcTemplate(dataSourceName);
+            deleteSql = String.format("DELETE FROM `%s`", tableName);
+        }
+        
+        logger.info("覆盖模式：清空表数据 - SQL: {}", deleteSql);
+        int deletedRows = jdbcTemplate.update(deleteSql);
+        clearTableSearchCache(dataSourceName, tableName, -deletedRows);
+        logger.info("覆盖模式：已删除 {} 行数据", deletedRows);
+        return deletedRows;
+    }
+
     /**
      * 覆盖模式的批量插入（清空表后重新导入）
      */
     private Map<String, Object> batchInsertTableDataWithOverwrite(String dataSourceName, String tableName, List<Map<String, Object>> dataList) {
+        return overwriteRows(dataSourceName, tableName, dataList, false);
+    }
+    
+    /**
+     * 事务性覆盖模式的批量插入
+     */
+    @Transactional
+    private Map<String, Object> batchInsertTableDataTransactionWithOverwrite(String dataSourceName, String tableName, List<Map<String, Object>> dataList) {
+        return overwriteRows(dataSourceName, tableName, dataList, true);
+    }
+
+    private Map<String, Object> overwriteRows(String dataSourceName, String tableName, List<Map<String, Object>> dataList, boolean atomic) {
+        String label = atomic ? "事务性覆盖模式" : "覆盖模式";
         long startTime = System.currentTimeMillis();
         
-        try {
-            JdbcTemplate jdbcTemplate;
-            String deleteTemplate;
-            
-            // 检查是否为用户创建的数据库
-            if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
-                deleteTemplate = "DELETE FROM `%s`.`%s`";
-            } else {
-                jdbcTemplate = getJdbcTemplate(dataSourceName);
-                deleteTemplate = "DELETE FROM `%s`";
-            }
-            
-            // 清空表数据
-            String deleteSql;
-            if (isUserCreatedDatabase(dataSourceName)) {
-                deleteSql = String.format(deleteTemplate, dataSourceName, tableName);
-            } else {
-                deleteSql = String.format(deleteTemplate, tableName);
+        if (shadowOverwrite) {
+            try {
+                return overwriteViaShadowTable(dataSourceName, tableName, dataList, atomic, label, startTime);
+            } catch (ShadowTableService.ShadowTableUnavailableException e) {
+                logger.warn("{}：无法使用影子表，改用清空原表后写入 - 表: {}, 原因: {}", label, tableName, e.getMessage());
             }
-            
-            logger.info("覆盖模式：清空表数据 - SQL: {}", deleteSql);
-            int deletedRows = jdbcTemplate.update(deleteSql);
-            logger.info("覆盖模式：已删除 {} 行数据", deletedRows);
+        }
+        
+        try {
+            int deletedRows = deleteAllTableData(dataSourceName, tableName);
             
             // 然后调用正常的批量插入
-            Map<String, Object> insertResult = batchInsertTableData(dataSourceName, tableName, dataList);
+            Map<String, Object> insertResult = insertRows(dataSourceName, tableName, dataList, atomic);
             
             // 更新结果信息
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            insertResult.put("duration", duration);
+            insertResult.put("duration", System.currentTimeMillis() - startTime);
             insertResult.put("deletedRows", deletedRows);
             insertResult.put("importStrategy", "overwrite");
             
-            logger.info("覆盖模式批量插入完成 - 删除行数: {}, 插入结果: {}", deletedRows, insertResult);
+            logger.info("{}批量插入完成 - 删除行数: {}, 插入结果: {}", label, deletedRows, insertResult);
             
             return insertResult;
             
         } catch (Exception e) {
-            logger.error("覆盖模式批量插入失败: {}", e.getMessage(), e);
-            throw new RuntimeException("覆盖模式批量插入失败: " + e.getMessage(), e);
+            logger.error("{}批量插入失败: {}", label, e.getMessage(), e);
+            throw new RuntimeException(label + "批量插入失败: " + e.getMessage(), e);
         }
     }
     
     /**
-     * 事务性覆盖模式的批量插入
+     * 覆盖导入使用的影子表：不能使用影子表（已关闭、有外键或触发器等）时返回null，调用方改用deleteAllTableData清空原表。
+     * 数据写入影子表后调用swapOverwriteShadow交换，导入失败或取消时调用discardOverwriteShadow，
+     * 从创建到交换或删除期间调用方需持有leaseTablePool返回的租约
      */
-    @Transactional
-    private Map<String, Object> batchInsertTableDataTransactionWithOverwrite(String dataSourceName, String tableName, List<Map<String, Object>> dataList) {
-        long startTime = System.currentTimeMillis();
-        
+    public ShadowTableService.ShadowTable beginOverwriteShadow(String dataSourceName, String tableName) {
+        if (!shadowOverwrite) {
+            return null;
+        }
         try {
-            JdbcTemplate jdbcTemplate;
-            String deleteTemplate;
-            
-            // 检查是否为用户创建的数据库
-            if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
-                deleteTemplate = "DELETE FROM `%s`.`%s`";
-            } else {
-                jdbcTemplate = getJdbcTemplate(dataSourceName);
-                deleteTemplate = "DELETE FROM `%s`";
-            }
-            
-            // 清空表数据
-            String deleteSql;
-            if (isUserCreatedDatabase(dataSourceName)) {
-                deleteSql = String.format(deleteTemplate, dataSourceName, tableName);
-            } else {
-                deleteSql = String.format(deleteTemplate, tableName);
+            return createOverwriteShadow(dataSourceName, tableName);
+        } catch (ShadowTableService.ShadowTableUnavailableException e) {
+            logger.warn("覆盖导入无法使用影子表，改用清空原表后写入 - 表: {}, 原因: {}", tableName, e.getMessage());
+            return null;
+        }
+    }
+
+    private ShadowTableService.ShadowTable createOverwriteShadow(String dataSourceName, String tableName) {
+        return shadowTableService.create(getTableJdbcTemplate(dataSourceName),
+                isUserCreatedDatabase(schemaKey(dataSourceName)) ? schemaKey(dataSourceName) : null, tableName);
+    }
+
+    /**
+     * 建立影子表延后的索引并与原表交换，返回被替换掉的行数（估算值）
+     */
+    public long swapOverwriteShadow(String dataSourceName, ShadowTableService.ShadowTable shadow) {
+        shadowTableService.buildIndexes(shadow);
+        long deletedRows = shadowTableService.swap(shadow);
+        
+        // 表已被替换，结构缓存和行数需要重新获取
+        String tableName = shadow.getTableName();
+        schemaMetadataCache.invalidateTable(schemaKey(dataSourceName), tableName);
+        rowCountService.invalidateTable(schemaKey(dataSourceName), tableName);
+        clearTableSearchCache(dataSourceName, tableName);
+        return deletedRows;
+    }
+
+    public void discardOverwriteShadow(ShadowTableService.ShadowTable shadow) {
+        shadowTableService.discard(shadow);
+    }
+    
+    /**
+     * 影子表覆盖：数据写入影子表并建立索引后与原表交换，导入失败时原表保持不变
+     */
+    @SuppressWarnings("try")
+    private Map<String, Object> overwriteViaShadowTable(String dataSourceName, String tableName, List<Map<String, Object>> dataList,
+                                                        boolean atomic, String label, long startTime) {
+        if (dataList == null || dataList.isEmpty()) {
+            throw new IllegalArgumentException("插入数据不能为空");
+        }
+        validateDatabaseAndTable(dataSourceName, tableName);
+        
+        Map<String, Object> insertResult;
+        long deletedRows;
+        // 影子表从创建到交换都使用同一个连接池，期间不能被淘汰
+        try (MultiDataSourceService.PoolLease lease = leaseTablePool(dataSourceName)) {
+            ShadowTableService.ShadowTable shadow = createOverwriteShadow(dataSourceName, tableName);
+            try {
+                insertResult = insertRows(dataSourceName, tableName, shadow.getQualifiedShadowName(), dataList, atomic);
+                deletedRows = swapOverwriteShadow(dataSourceName, shadow);
+            } catch (Exception e) {
+                shadowTableService.discard(shadow);
+                logger.error("{}影子表导入失败，原表未改变: {}", label, e.getMessage(), e);
+                throw new RuntimeException(label + "批量插入失败: " + e.getMessage(), e);
             }
-            
-            logger.info("事务性覆盖模式：清空表数据 - SQL: {}", deleteSql);
-            int deletedRows = jdbcTemplate.update(deleteSql);
-            logger.info("事务性覆盖模式：已删除 {} 行数据", deletedRows);
-            
-            // 然后调用事务性批量插入
-            Map<String, Object> insertResult = batchInsertTableDataTransaction(dataSourceName, tableName, dataList);
-            
-            // 更新结果信息
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            insertResult.put("duration", duration);
-            insertResult.put("deletedRows", deletedRows);
-            insertResult.put("importStrategy", "overwrite");
-            
-            logger.info("事务性覆盖模式批量插入完成 - 删除行数: {}, 插入结果: {}", deletedRows, insertResult);
-            
-            return insertResult;
-            
-        } catch (Exception e) {
-            logger.error("事务性覆盖模式批量插入失败: {}", e.getMessage(), e);
-            throw new RuntimeException("事务性覆盖模式批量插入失败: " + e.getMessage(), e);
         }
+        
+        insertResult.put("duration", System.currentTimeMillis() - startTime);
+        insertResult.put("deletedRows", deletedRows);
+        insertResult.put("importStrategy", "overwrite");
+        insertResult.put("overwriteMethod", "shadow-table");
+        
+        logger.info("{}影子表导入完成 - 表: {}, 插入结果: {}", label, tableName, insertResult);
+        return insertResult;
     }
     
     /**
      * 追加模式的批量插入（检测重复数据，只导入不同的数据）
      */
     private Map<String, Object> batchInsertTableDataWithAppend(String dataSourceName, String tableName, List<Map<String, Object>> dataList) {
+        return appendRows(dataSourceName, tableName, dataList, getTablePrimaryKeys(dataSourceName, tableName), false, "追加模式");
+    }
+    
+    /**
+     * 事务性追加模式的批量插入
+     */
+    @Transactional
+    private Map<String, Object> batchInsertTableDataTransactionWithAppend(String dataSourceName, String tableName, List<Map<String, Object>> dataList) {
+        return appendRows(dataSourceName, tableName, dataList, getTablePrimaryKeys(dataSourceName, tableName), true, "事务性追加模式");
+    }
+
+    /**
+     * 追加模式的统一实现：按主键（为空时按全部字段）过滤已存在的数据后插入
+     */
+    private Map<String, Object> appendRows(String dataSourceName, String tableName, List<Map<String, Object>> dataList,
+                                           List<String> primaryKeys, boolean atomic, String label) {
         long startTime = System.currentTimeMillis();
         int totalRecords = dataList.size();
-        int skippedCount = 0;
-        List<String> errors = new ArrayList<>();
         
         try {
-            logger.info("追加模式：开始检测重复数据 - 数据源: {}, 表名: {}, 记录数: {}", dataSourceName, tableName, totalRecords);
-            
-            // 获取表的主键列信息
-            List<String> primaryKeys = getTablePrimaryKeys(dataSourceName, tableName);
-            
-            List<Map<String, Object>> uniqueDataList = new ArrayList<>();
+            logger.info("{}：开始检测重复数据 - 数据源: {}, 表名: {}, 记录数: {}", label, dataSourceName, tableName, totalRecords);
+            
+            // 非事务导入的数据量超过一个数据块时，在流水线的转换阶段按数据块去重
+            if (!atomic && totalRecords > pipelineChunkRows) {
+                validateDatabaseAndTable(dataSourceName, tableName);
+                Map<String, Object> insertResult = pipelinedInsert(dataSourceName, tableName,
+                        new ArrayList<>(dataList.get(0).keySet()), listChunkSource(dataList), primaryKeys, Integer.MAX_VALUE);
+                insertResult.put("duration", System.currentTimeMillis() - startTime);
+                insertResult.put("importStrategy", "append");
+                return insertResult;
+            }
+            
+            if (primaryKeys.isEmpty() && stagingDedup) {
+                // 没有主键，通过临时表在数据库中按全部导入列去重并插入
+                logger.info("{}：没有主键，使用临时表全行比较检测重复", label);
+                validateDatabaseAndTable(dataSourceName, tableName);
+                List<String> columnNames = new ArrayList<>(dataList.get(0).keySet());
+                boolean[] numericColumns = numericColumnFlags(dataSourceName, tableName, columnNames);
+                List<Object[]> rows = new ArrayList<>(totalRecords);
+                for (Map<String, Object> record : dataList) {
+                    rows.add(toInsertArgs(record, columnNames, numericColumns));
+                }
+                BatchInsertEngine.InsertResult insertResult = insertAbsentRows(dataSourceName, tableName, columnNames, rows, atomic);
+                
+                Map<String, Object> result = new HashMap<>();
+                result.put("totalRecords", totalRecords);
+                result.put("successCount", insertResult.getSuccessCount());
+                result.put("failureCount", insertResult.getFailureCount());
+                result.put("skippedCount", insertResult.getSkippedCount());
+                result.put("batchCount", insertResult.getBatchCount());
+                result.put("duration", System.currentTimeMillis() - startTime);
+                result.put("errors", insertResult.getErrors());
+                result.put("tableName", tableName);
+                result.put("dataSource", dataSourceName);
+                result.put("importStrategy", "append");
+                
+                clearTableSearchCache(dataSourceName, tableName, insertResult.getSuccessCount());
+                
+                logger.info("{}批量插入完成 - 插入: {}, 跳过重复: {}, 失败: {}", label,
+                        insertResult.getSuccessCount(), insertResult.getSkippedCount(), insertResult.getFailureCount());
+                return result;
+            }
             
+            List<Map<String, Object>> uniqueDataList;
             if (primaryKeys.isEmpty()) {
                 // 没有主键，使用所有列进行重复检测
-                logger.info("追加模式：表没有主键，使用全行比较检测重复");
+                logger.info("{}：没有主键，使用全行比较检测重复", label);
                 uniqueDataList = filterDuplicatesByAllColumns(dataSourceName, tableName, dataList);
-                skippedCount = totalRecords - uniqueDataList.size();
             } else {
                 // 有主键，使用主键进行重复检测
-                logger.info("追加模式：使用主键进行重复检测 - 主键列: {}", primaryKeys);
+                logger.info("{}：使用主键进行重复检测 - 主键列: {}", label, primaryKeys);
                 uniqueDataList = filterDuplicatesByPrimaryKeys(dataSourceName, tableName, dataList, primaryKeys);
-                skippedCount = totalRecords - uniqueDataList.size();
             }
+            int skippedCount = totalRecords - uniqueDataList.size();
             
-            logger.info("追加模式：重复检测完成 - 原始记录: {}, 去重后: {}, 跳过: {}", totalRecords, uniqueDataList.size(), skippedCount);
+            logger.info("{}：重复检测完成 - 原始记录: {}, 去重后: {}, 跳过: {}", label, totalRecords, uniqueDataList.size(), skippedCount);
             
             if (uniqueDataList.isEmpty()) {
                 // 所有数据都是重复的
@@ -2880,111 +3717,108 @@ public class DatabaseService {
                 result.put("failureCount", 0);
                 result.put("skippedCount", skippedCount);
                 result.put("duration", System.currentTimeMillis() - startTime);
-                result.put("errors", errors);
+                result.put("errors", new ArrayList<>());
                 result.put("importStrategy", "append");
                 result.put("message", "所有数据都已存在，无需导入");
                 
-                logger.info("追加模式：所有数据都是重复的，跳过导入");
+                logger.info("{}：所有数据都是重复的，跳过导入", label);
                 return result;
             }
             
-            // 调用正常的批量插入处理去重后的数据
-            Map<String, Object> insertResult = batchInsertTableData(dataSourceName, tableName, uniqueDataList);
+            // 调用批量插入处理去重后的数据
+            Map<String, Object> insertResult = insertRows(dataSourceName, tableName, uniqueDataList, atomic);
             
             // 更新结果信息
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            insertResult.put("duration", duration);
+            insertResult.put("duration", System.currentTimeMillis() - startTime);
             insertResult.put("skippedCount", skippedCount);
             insertResult.put("importStrategy", "append");
             
-            logger.info("追加模式批量插入完成 - 跳过重复: {}, 插入结果: {}", skippedCount, insertResult);
+            logger.info("{}批量插入完成 - 跳过重复: {}, 插入结果: {}", label, skippedCount, insertResult);
             
             return insertResult;
             
         } catch (Exception e) {
-            logger.error("追加模式批量插入失败: {}", e.getMessage(), e);
-            throw new RuntimeException("追加模式批量插入失败: " + e.getMessage(), e);
+            logger.error("{}批量插入失败: {}", label, e.getMessage(), e);
+            throw new RuntimeException(label + "批量插入失败: " + e.getMessage(), e);
         }
     }
     
     /**
-     * 事务性追加模式的批量插入
+     * 更新模式：按主键插入新行、更新已存在的行（INSERT ... ON DUPLICATE KEY UPDATE），
+     * 只有变化的行产生写入，适合参考表的增量刷新
      */
-    @Transactional
-    private Map<String, Object> batchInsertTableDataTransactionWithAppend(String dataSourceName, String tableName, List<Map<String, Object>> dataList) {
+    private Map<String, Object> upsertRows(String dataSourceName, String tableName, List<Map<String, Object>> dataList,
+                                           List<String> primaryKeys, boolean atomic, String label) {
+        if (dataList == null || dataList.isEmpty()) {
+            throw new IllegalArgumentException("插入数据不能为空");
+        }
+        if (primaryKeys.isEmpty()) {
+            throw new IllegalArgumentException("表 " + tableName + " 没有主键，无法使用更新导入策略");
+        }
+        List<String> columnNames = new ArrayList<>(dataList.get(0).keySet());
+        List<String> missingKeys = primaryKeys.stream().filter(pk -> !columnNames.contains(pk)).collect(java.util.stream.Collectors.toList());
+        if (!missingKeys.isEmpty()) {
+            throw new IllegalArgumentException("导入数据缺少主键列: " + String.join(", ", missingKeys));
+        }
+        
         long startTime = System.currentTimeMillis();
         int totalRecords = dataList.size();
-        int skippedCount = 0;
+        logger.info("{}：开始导入 - 数据源: {}, 表名: {}, 记录数: {}, 主键列: {}", label, dataSourceName, tableName, totalRecords, primaryKeys);
         
         try {
-            logger.info("事务性追加模式：开始检测重复数据 - 数据源: {}, 表名: {}, 记录数: {}", dataSourceName, tableName, totalRecords);
-            
-            // 获取表的主键列信息
-            List<String> primaryKeys = getTablePrimaryKeys(dataSourceName, tableName);
-            
-            List<Map<String, Object>> uniqueDataList = new ArrayList<>();
-            
-            if (primaryKeys.isEmpty()) {
-                // 没有主键，使用所有列进行重复检测
-                logger.info("事务性追加模式：表没有主键，使用全行比较检测重复");
-                uniqueDataList = filterDuplicatesByAllColumns(dataSourceName, tableName, dataList);
-                skippedCount = totalRecords - uniqueDataList.size();
-            } else {
-                // 有主键，使用主键进行重复检测
-                logger.info("事务性追加模式：使用主键进行重复检测 - 主键列: {}", primaryKeys);
-                uniqueDataList = filterDuplicatesByPrimaryKeys(dataSourceName, tableName, dataList, primaryKeys);
-                skippedCount = totalRecords - uniqueDataList.size();
-            }
-            
-            logger.info("事务性追加模式：重复检测完成 - 原始记录: {}, 去重后: {}, 跳过: {}", totalRecords, uniqueDataList.size(), skippedCount);
+            validateDatabaseAndTable(dataSourceName, tableName);
             
-            if (uniqueDataList.isEmpty()) {
-                // 所有数据都是重复的
-                Map<String, Object> result = new HashMap<>();
+            Map<String, Object> result;
+            if (!atomic && totalRecords > pipelineChunkRows) {
+                result = pipelinedUpsert(dataSourceName, tableName, columnNames, listChunkSource(dataList), primaryKeys, Integer.MAX_VALUE, null);
+            } else {
+                boolean[] numericColumns = numericColumnFlags(dataSourceName, tableName, columnNames);
+                List<Object[]> rows = new ArrayList<>(totalRecords);
+                for (Map<String, Object> record : dataList) {
+                    rows.add(toInsertArgs(record, columnNames, numericColumns));
+                }
+                BatchInsertEngine.InsertResult upsertResult = batchInsertEngine.upsert(getTableJdbcTemplate(dataSourceName),
+                        qualifiedTableName(dataSourceName, tableName), columnNames, primaryKeys, rows, atomic);
+                
+                result = new HashMap<>();
                 result.put("totalRecords", totalRecords);
-                result.put("successCount", 0);
-                result.put("failureCount", 0);
-                result.put("skippedCount", skippedCount);
-                result.put("duration", System.currentTimeMillis() - startTime);
-                result.put("errors", new ArrayList<>());
-                result.put("importStrategy", "append");
-                result.put("message", "所有数据都已存在，无需导入");
+                result.put("successCount", upsertResult.getSuccessCount());
+                result.put("failureCount", upsertResult.getFailureCount());
+                result.put("insertedCount", upsertResult.getInsertedCount());
+                result.put("updatedCount", upsertResult.getUpdatedCount());
+                result.put("unchangedCount", upsertResult.getUnchangedCount());
+                result.put("batchCount", upsertResult.getBatchCount());
+                result.put("errors", upsertResult.getErrors());
+                result.put("tableName", tableName);
+                result.put("dataSource", dataSourceName);
                 
-                logger.info("事务性追加模式：所有数据都是重复的，跳过导入");
-                return result;
+                clearTableSearchCache(dataSourceName, tableName, upsertResult.getInsertedCount());
             }
+            result.put("duration", System.currentTimeMillis() - startTime);
+            result.put("importStrategy", "upsert");
             
-            // 调用事务性批量插入处理去重后的数据
-            Map<String, Object> insertResult = batchInsertTableDataTransaction(dataSourceName, tableName, uniqueDataList);
-            
-            // 更新结果信息
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            insertResult.put("duration", duration);
-            insertResult.put("skippedCount", skippedCount);
-            insertResult.put("importStrategy", "append");
-            
-            logger.info("事务性追加模式批量插入完成 - 跳过重复: {}, 插入结果: {}", skippedCount, insertResult);
-            
-            return insertResult;
+            logger.info("{}导入完成 - 表: {}, 插入: {}, 更新: {}, 未变化: {}, 失败: {}", label, tableName,
+                    result.get("insertedCount"), result.get("updatedCount"), result.get("unchangedCount"), result.get("failureCount"));
+            return result;
             
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("事务性追加模式批量插入失败: {}", e.getMessage(), e);
-            throw new RuntimeException("事务性追加模式批量插入失败: " + e.getMessage(), e);
+            logger.error("{}导入失败: {}", label, e.getMessage(), e);
+            throw new RuntimeException(label + "导入失败: " + e.getMessage(), e);
         }
     }
     
     /**
      * 获取表的主键列
      */
-    private List<String> getTablePrimaryKeys(String dataSourceName, String tableName) {
+    public List<String> getTablePrimaryKeys(String dataSourceName, String tableName) {
         try {
             JdbcTemplate jdbcTemplate;
             String sql;
             
             if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = getTableJdbcTemplate(dataSourceName);
                 sql = "SELECT COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE " +
                       "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? AND CONSTRAINT_NAME = 'PRIMARY' " +
                       "ORDER BY ORDINAL_POSITION";
@@ -3002,6 +3836,14 @@ public class DatabaseService {
         }
     }
     
+    /**
+     * 自动建表更新模式使用的主键：优先使用用户选择的主键列，表已存在且未选择时使用表的主键
+     */
+    private List<String> autoCreateUpsertKeys(String dataSourceName, String tableName, List<Map<String, Object>> csvColumns) {
+        List<String> primaryKeys = getUserSelectedPrimaryKeys(csvColumns);
+        return primaryKeys.isEmpty() ? getTablePrimaryKeys(dataSourceName, tableName) : primaryKeys;
+    }
+    
     /**
      * 获取用户选择的主键列（用于自动建表的重复检测）
      */
@@ -3019,6 +3861,23 @@ public class DatabaseService {
         return primaryKeys;
     }
     
+    /**
+     * 过滤与之前的数据块或本块中靠前的行重复的记录；转换线程可能有多个，集合加锁访问
+     */
+    private List<Map<String, Object>> filterSeenRows(List<Map<String, Object>> records, RowFingerprint.FingerprintSet seenRows,
+                                                     List<String> keyColumns, boolean[] numericColumns) {
+        RowFingerprint fingerprint = new RowFingerprint(numericColumns);
+        List<Map<String, Object>> uniqueList = new ArrayList<>(records.size());
+        synchronized (seenRows) {
+            for (Map<String, Object> record : records) {
+                if (seenRows.add(fingerprint.compute(record, keyColumns))) {
+                    uniqueList.add(record);
+                }
+            }
+        }
+        return uniqueList;
+    }
+    
     /**
      * 基于主键过滤重复数据（优化版本 - 批量检测）
      */
@@ -3054,15 +3913,17 @@ public class DatabaseService {
             }
             
             // 批量查询已存在的主键值
-            Set<String> existingPrimaryKeys = batchCheckExistingPrimaryKeys(dataSourceName, tableName, validRecords, primaryKeys);
+            RowFingerprint fingerprint = new RowFingerprint(numericColumnFlags(dataSourceName, tableName, primaryKeys));
+            RowFingerprint.FingerprintSet existingPrimaryKeys = batchCheckExistingPrimaryKeys(
+                    dataSourceName, tableName, validRecords, primaryKeys, fingerprint);
             
             // 在内存中过滤重复数据
-            List<Map<String, Object>> uniqueList = validRecords.stream()
-                    .filter(record -> {
-                        String compositeKey = buildCompositePrimaryKey(record, primaryKeys);
-                        return !existingPrimaryKeys.contains(compositeKey);
-                    })
-                    .collect(java.util.stream.Collectors.toList());
+            List<Map<String, Object>> uniqueList = new ArrayList<>(validRecords.size());
+            for (Map<String, Object> record : validRecords) {
+                if (!existingPrimaryKeys.contains(fingerprint.compute(record, primaryKeys))) {
+                    uniqueList.add(record);
+                }
+            }
             
             long endTime = System.currentTimeMillis();
             logger.info("批量检测重复数据完成 - 原始: {}, 有效: {}, 去重后: {}, 耗时: {}ms", 
@@ -3080,25 +3941,25 @@ public class DatabaseService {
     /**
      * 批量检查已存在的主键值
      */
-    private Set<String> batchCheckExistingPrimaryKeys(String dataSourceName, String tableName, 
-            List<Map<String, Object>> dataList, List<String> primaryKeys) {
+    private RowFingerprint.FingerprintSet batchCheckExistingPrimaryKeys(String dataSourceName, String tableName, 
+            List<Map<String, Object>> dataList, List<String> primaryKeys, RowFingerprint fingerprint) {
         
         if (dataList.isEmpty() || primaryKeys.isEmpty()) {
-            return new HashSet<>();
+            return new RowFingerprint.FingerprintSet();
         }
         
         try {
             JdbcTemplate jdbcTemplate;
             
             if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(dataSourceName);
             } else {
                 jdbcTemplate = getJdbcTemplate(dataSourceName);
             }
             
             // 分批查询以避免IN子句过长
             int batchSize = 1000;
-            Set<String> existingKeys = new HashSet<>();
+            RowFingerprint.FingerprintSet existingKeys = new RowFingerprint.FingerprintSet();
             
             for (int i = 0; i < dataList.size(); i += batchSize) {
                 int endIndex = Math.min(i + batchSize, dataList.size());
@@ -3122,10 +3983,9 @@ public class DatabaseService {
                 // 执行查询
                 List<Map<String, Object>> existingRecords = jdbcTemplate.queryForList(sql, params.toArray());
                 
-                // 构建复合主键字符串
+                // 记录已存在主键的指纹
                 for (Map<String, Object> record : existingRecords) {
-                    String compositeKey = buildCompositePrimaryKey(record, primaryKeys);
-                    existingKeys.add(compositeKey);
+                    existingKeys.add(fingerprint.compute(record, primaryKeys));
                 }
             }
             
@@ -3134,7 +3994,7 @@ public class DatabaseService {
             
         } catch (Exception e) {
             logger.error("批量检查主键失败: {}", e.getMessage(), e);
-            return new HashSet<>();
+            return new RowFingerprint.FingerprintSet();
         }
     }
     
@@ -3164,18 +4024,6 @@ public class DatabaseService {
         }
     }
     
-    /**
-     * 构建复合主键字符串
-     */
-    private String buildCompositePrimaryKey(Map<String, Object> record, List<String> primaryKeys) {
-        return primaryKeys.stream()
-                .map(pk -> {
-                    Object value = record.get(pk);
-                    return value != null ? value.toString() : "NULL";
-                })
-                .collect(java.util.stream.Collectors.joining("||"));
-    }
-    
     /**
      * 旧版逐条检测方法（作为备用）
      */
@@ -3198,7 +4046,7 @@ public class DatabaseService {
                     .collect(java.util.stream.Collectors.joining(" AND "));
             
             if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(dataSourceName);
                 sql = String.format("SELECT COUNT(*) FROM `%s`.`%s` WHERE %s", dataSourceName, tableName, whereClause);
             } else {
                 jdbcTemplate = getJdbcTemplate(dataSourceName);
@@ -3272,15 +4120,17 @@ public class DatabaseService {
             }
             
             // 批量查询已存在的记录
-            Set<String> existingRowKeys = batchCheckExistingRows(dataSourceName, tableName, dataList, columnNames);
+            RowFingerprint fingerprint = new RowFingerprint(numericColumnFlags(dataSourceName, tableName, columnNames));
+            RowFingerprint.FingerprintSet existingRowKeys = batchCheckExistingRows(
+                    dataSourceName, tableName, dataList, columnNames, fingerprint);
             
             // 在内存中过滤重复数据
-            List<Map<String, Object>> uniqueList = dataList.stream()
-                    .filter(record -> {
-                        String rowKey = buildCompositeRowKey(record, columnNames);
-                        return !existingRowKeys.contains(rowKey);
-                    })
-                    .collect(java.util.stream.Collectors.toList());
+            List<Map<String, Object>> uniqueList = new ArrayList<>(dataList.size());
+            for (Map<String, Object> record : dataList) {
+                if (!existingRowKeys.contains(fingerprint.compute(record, columnNames))) {
+                    uniqueList.add(record);
+                }
+            }
             
             long endTime = System.currentTimeMillis();
             logger.info("批量检测重复数据(所有列)完成 - 原始: {}, 去重后: {}, 耗时: {}ms", 
@@ -3298,55 +4148,76 @@ public class DatabaseService {
     /**
      * 批量检查已存在的完整行记录
      */
-    private Set<String> batchCheckExistingRows(String dataSourceName, String tableName, 
-            List<Map<String, Object>> dataList, List<String> columnNames) {
+    private RowFingerprint.FingerprintSet batchCheckExistingRows(String dataSourceName, String tableName, 
+            List<Map<String, Object>> dataList, List<String> columnNames, RowFingerprint fingerprint) {
         
         if (dataList.isEmpty() || columnNames.isEmpty()) {
-            return new HashSet<>();
+            return new RowFingerprint.FingerprintSet();
         }
         
         try {
             JdbcTemplate jdbcTemplate;
             
             if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(dataSourceName);
             } else {
                 jdbcTemplate = getJdbcTemplate(dataSourceName);
             }
             
-            // 由于全列比较复杂性高，采用较小的批次
-            int batchSize = 200;
-            Set<String> existingKeys = new HashSet<>();
+            String tableRef = isUserCreatedDatabase(dataSourceName)
+                    ? String.format("`%s`.`%s`", dataSourceName, tableName) : String.format("`%s`", tableName);
+            String allColumns = columnNames.stream()
+                    .map(col -> "`" + col + "`")
+                    .collect(java.util.stream.Collectors.joining(", "));
+            RowFingerprint.FingerprintSet existingKeys = new RowFingerprint.FingerprintSet();
             
-            for (int i = 0; i < dataList.size(); i += batchSize) {
-                int endIndex = Math.min(i + batchSize, dataList.size());
-                List<Map<String, Object>> batch = dataList.subList(i, endIndex);
-                
-                if (batch.isEmpty()) {
-                    continue;
+            // 行构造器IN不能匹配NULL：按值为NULL的列分组，组内其余列用(a, b) IN ((?, ?), ...)比较，NULL列用IS NULL比较
+            Map<BitSet, List<Map<String, Object>>> groups = new LinkedHashMap<>();
+            for (Map<String, Object> record : dataList) {
+                BitSet nullColumns = new BitSet(columnNames.size());
+                for (int c = 0; c < columnNames.size(); c++) {
+                    if (record.get(columnNames.get(c)) == null) {
+                        nullColumns.set(c);
+                    }
                 }
-                
-                // 构建批量查询SQL - 使用OR条件连接每行的AND条件
-                String sql = buildBatchCheckAllColumnsSql(dataSourceName, tableName, columnNames, batch.size());
-                
-                // 准备参数
-                List<Object> params = new ArrayList<>();
-                for (Map<String, Object> record : batch) {
-                    // 每个记录的每个列需要两个参数（用于null处理）
-                    for (String col : columnNames) {
-                        Object value = record.get(col);
-                        params.add(value);
-                        params.add(value);
+                groups.computeIfAbsent(nullColumns, key -> new ArrayList<>()).add(record);
+            }
+            
+            for (Map.Entry<BitSet, List<Map<String, Object>>> group : groups.entrySet()) {
+                List<String> valueColumns = new ArrayList<>();
+                List<String> nullConditions = new ArrayList<>();
+                for (int c = 0; c < columnNames.size(); c++) {
+                    if (group.getKey().get(c)) {
+                        nullConditions.add("`" + columnNames.get(c) + "` IS NULL");
+                    } else {
+                        valueColumns.add(columnNames.get(c));
                     }
                 }
+                List<Map<String, Object>> records = group.getValue();
+                if (valueColumns.isEmpty()) {
+                    // 全部列都为NULL，一条查询即可
+                    collectExistingRows(jdbcTemplate, "SELECT " + allColumns + " FROM " + tableRef + " WHERE "
+                            + String.join(" AND ", nullConditions) + " LIMIT 1", new Object[0], columnNames, fingerprint, existingKeys);
+                    continue;
+                }
                 
-                // 执行查询 - 返回所有列以构建行标识
-                List<Map<String, Object>> existingRecords = jdbcTemplate.queryForList(sql, params.toArray());
-                
-                // 构建行标识字符串
-                for (Map<String, Object> record : existingRecords) {
-                    String rowKey = buildCompositeRowKey(record, columnNames);
-                    existingKeys.add(rowKey);
+                // 单条语句的参数不超过预编译语句的上限
+                int batchSize = Math.max(1, Math.min(1000, 60000 / valueColumns.size()));
+                String rowPlaceholders = "(" + String.join(", ", Collections.nCopies(valueColumns.size(), "?")) + ")";
+                String prefix = "SELECT " + allColumns + " FROM " + tableRef + " WHERE ("
+                        + valueColumns.stream().map(col -> "`" + col + "`").collect(java.util.stream.Collectors.joining(", "))
+                        + ") IN (";
+                String suffix = ")" + (nullConditions.isEmpty() ? "" : " AND " + String.join(" AND ", nullConditions));
+                for (int i = 0; i < records.size(); i += batchSize) {
+                    List<Map<String, Object>> batch = records.subList(i, Math.min(i + batchSize, records.size()));
+                    List<Object> params = new ArrayList<>(batch.size() * valueColumns.size());
+                    for (Map<String, Object> record : batch) {
+                        for (String col : valueColumns) {
+                            params.add(record.get(col));
+                        }
+                    }
+                    String sql = prefix + String.join(", ", Collections.nCopies(batch.size(), rowPlaceholders)) + suffix;
+                    collectExistingRows(jdbcTemplate, sql, params.toArray(), columnNames, fingerprint, existingKeys);
                 }
             }
             
@@ -3355,51 +4226,20 @@ public class DatabaseService {
             
         } catch (Exception e) {
             logger.error("批量检查行记录失败: {}", e.getMessage(), e);
-            return new HashSet<>();
+            return new RowFingerprint.FingerprintSet();
         }
     }
     
     /**
-     * 构建全列批量检查SQL
+     * 执行查询并记录返回的已存在行的指纹
      */
-    private String buildBatchCheckAllColumnsSql(String dataSourceName, String tableName, 
-            List<String> columnNames, int recordCount) {
-        
-        String allColumns = columnNames.stream()
-                .map(col -> "`" + col + "`")
-                .collect(java.util.stream.Collectors.joining(", "));
-        
-        // 构建单行的条件 - 处理null值
-        String singleRowCondition = columnNames.stream()
-                .map(col -> String.format("((`%s` = ?) OR (`%s` IS NULL AND ? IS NULL))", col, col))
-                .collect(java.util.stream.Collectors.joining(" AND "));
-        
-        // 构建多行的OR条件
-        String allRowsCondition = java.util.stream.IntStream.range(0, recordCount)
-                .mapToObj(i -> "(" + singleRowCondition + ")")
-                .collect(java.util.stream.Collectors.joining(" OR "));
-        
-        if (isUserCreatedDatabase(dataSourceName)) {
-            return String.format("SELECT %s FROM `%s`.`%s` WHERE %s", 
-                    allColumns, dataSourceName, tableName, allRowsCondition);
-        } else {
-            return String.format("SELECT %s FROM `%s` WHERE %s", 
-                    allColumns, tableName, allRowsCondition);
+    private void collectExistingRows(JdbcTemplate jdbcTemplate, String sql, Object[] params, List<String> columnNames,
+            RowFingerprint fingerprint, RowFingerprint.FingerprintSet existingKeys) {
+        for (Map<String, Object> record : jdbcTemplate.queryForList(sql, params)) {
+            existingKeys.add(fingerprint.compute(record, columnNames));
         }
     }
     
-    /**
-     * 构建行标识字符串（基于所有列）
-     */
-    private String buildCompositeRowKey(Map<String, Object> record, List<String> columnNames) {
-        return columnNames.stream()
-                .map(col -> {
-                    Object value = record.get(col);
-                    return value != null ? value.toString() : "NULL";
-                })
-                .collect(java.util.stream.Collectors.joining("||"));
-    }
-    
     /**
      * 旧版基于所有列的逐条检测方法（作为备用）
      */
@@ -3432,7 +4272,7 @@ public class DatabaseService {
                     .collect(java.util.stream.Collectors.joining(" AND "));
             
             if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(dataSourceName);
                 sql = String.format("SELECT COUNT(*) FROM `%s`.`%s` WHERE %s", dataSourceName, tableName, whereClause);
             } else {
                 jdbcTemplate = getJdbcTemplate(dataSourceName);
@@ -3482,22 +4322,44 @@ public class DatabaseService {
             // 1. 检查表是否已存在
             boolean tableExists = checkTableExists(dataSourceName, tableName);
             
+            // 新建的表在导入完成前没有其他写入者，外键和索引可以延后创建
+            boolean deferIndexes = !tableExists && deferAutoCreateIndexes;
+            List<DeferredForeignKey> deferredForeignKeys = deferIndexes ? new ArrayList<>() : null;
+            long createTableMs = 0;
             if (!tableExists) {
                 // 2. 表不存在，创建表
-                createTableFromCsvColumns(dataSourceName, tableName, csvColumns, csvData);
+                long createStart = System.currentTimeMillis();
+                createTableFromCsvColumns(dataSourceName, tableName, csvColumns, csvData, deferredForeignKeys);
+                createTableMs = System.currentTimeMillis() - createStart;
                 logger.info("成功创建表: {}", tableName);
             } else {
                 logger.info("表已存在: {}，将根据策略进行导入", tableName);
             }
             
-            // 3. 导入数据
+            // 3. 导入数据（延后建索引时表上只有主键，写入不需要关闭唯一性和外键检查）
+            long loadStart = System.currentTimeMillis();
             Map<String, Object> importResult;
             if ("overwrite".equals(importStrategy)) {
                 importResult = batchInsertTableDataWithOverwrite(dataSourceName, tableName, csvData);
+            } else if ("upsert".equals(importStrategy)) {
+                importResult = upsertRows(dataSourceName, tableName, csvData, autoCreateUpsertKeys(dataSourceName, tableName, csvColumns), false, "更新模式");
             } else {
                 // 对于自动建表的追加模式，需要传递CSV列信息以获取用户选择的主键
                 importResult = batchInsertTableDataWithAppendForAutoCreate(dataSourceName, tableName, csvData, csvColumns);
             }
+            long loadMs = System.currentTimeMillis() - loadStart;
+            
+            if (deferIndexes) {
+                long indexStart = System.currentTimeMillis();
+                int orphanRows = buildDeferredForeignKeys(dataSourceName, tableName, deferredForeignKeys, importResult);
+                Map<String, Object> indexBuild = new LinkedHashMap<>();
+                indexBuild.put("createTableMs", createTableMs);
+                indexBuild.put("loadMs", loadMs);
+                indexBuild.put("indexBuildMs", System.currentTimeMillis() - indexStart);
+                indexBuild.put("deferredForeignKeys", deferredForeignKeys.size());
+                indexBuild.put("orphanRows", orphanRows);
+                importResult.put("indexBuild", indexBuild);
+            }
             
             // 4. 更新结果信息
             long endTime = System.currentTimeMillis();
@@ -3531,7 +4393,7 @@ public class DatabaseService {
             
             if (!tableExists) {
                 // 2. 表不存在，创建表
-                createTableFromCsvColumns(dataSourceName, tableName, csvColumns, csvData);
+                createTableFromCsvColumns(dataSourceName, tableName, csvColumns, csvData, null);
                 logger.info("成功创建表: {}", tableName);
             } else {
                 logger.info("表已存在: {}，将根据策略进行导入", tableName);
@@ -3541,6 +4403,8 @@ public class DatabaseService {
             Map<String, Object> importResult;
             if ("overwrite".equals(importStrategy)) {
                 importResult = batchInsertTableDataTransactionWithOverwrite(dataSourceName, tableName, csvData);
+            } else if ("upsert".equals(importStrategy)) {
+                importResult = upsertRows(dataSourceName, tableName, csvData, autoCreateUpsertKeys(dataSourceName, tableName, csvColumns), true, "事务性更新模式");
             } else {
                 // 对于自动建表的追加模式，需要传递CSV列信息以获取用户选择的主键
                 importResult = batchInsertTableDataTransactionWithAppendForAutoCreate(dataSourceName, tableName, csvData, csvColumns);
@@ -3568,20 +4432,8 @@ public class DatabaseService {
      */
     public boolean checkTableExists(String dataSourceName, String databaseName, String tableName) {
         try {
-            JdbcTemplate jdbcTemplate;
-            String sql;
-            
-            if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
-                sql = "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?";
-                Integer count = jdbcTemplate.queryForObject(sql, Integer.class, databaseName, tableName);
-                return count != null && count > 0;
-            } else {
-                jdbcTemplate = getJdbcTemplate(dataSourceName);
-                sql = "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
-                Integer count = jdbcTemplate.queryForObject(sql, Integer.class, tableName);
-                return count != null && count > 0;
-            }
+            String schemaName = isUserCreatedDatabase(dataSourceName) ? databaseName : schemaKey(dataSourceName);
+            return schemaMetadataCache.tableExists(schemaName, tableName, () -> queryAllTables(schemaName));
         } catch (Exception e) {
             logger.warn("检查表是否存在时出错: {}", e.getMessage());
             return false;
@@ -3593,20 +4445,8 @@ public class DatabaseService {
      */
     private boolean checkTableExists(String dataSourceName, String tableName) {
         try {
-            JdbcTemplate jdbcTemplate;
-            String sql;
-            
-            if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
-                sql = "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?";
-                Integer count = jdbcTemplate.queryForObject(sql, Integer.class, dataSourceName, tableName);
-                return count != null && count > 0;
-            } else {
-                jdbcTemplate = getJdbcTemplate(dataSourceName);
-                sql = "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
-                Integer count = jdbcTemplate.queryForObject(sql, Integer.class, tableName);
-                return count != null && count > 0;
-            }
+            String schemaName = schemaKey(dataSourceName);
+            return schemaMetadataCache.tableExists(schemaName, tableName, () -> queryAllTables(schemaName));
         } catch (Exception e) {
             logger.warn("检查表是否存在时出错: {}", e.getMessage());
             return false;
@@ -3616,12 +4456,91 @@ public class DatabaseService {
     /**
      * 根据CSV列信息创建表
      */
-    private void createTableFromCsvColumns(String dataSourceName, String tableName, List<Map<String, Object>> csvColumns, List<Map<String, Object>> csvData) {
+    /**
+     * 延后创建的外键
+     */
+    private static class DeferredForeignKey {
+        private final String constraintName;
+        private final String columnName;
+        private final String referenceTable;
+        private final String referenceColumn;
+        private final String definition;
+
+        DeferredForeignKey(String constraintName, String columnName, String referenceTable, String referenceColumn, String definition) {
+            this.constraintName = constraintName;
+            this.columnName = columnName;
+            this.referenceTable = referenceTable;
+            this.referenceColumn = referenceColumn;
+            this.definition = definition;
+        }
+    }
+
+    /**
+     * 数据写入后建立延后的外键：先删除引用不存在记录的行（计入失败数），
+     * 然后在一条ALTER TABLE中建立外键列的索引和外键约束；数据已校验过，建立时关闭外键检查，避免复制整表
+     * @return 删除的行数
+     */
+    private int buildDeferredForeignKeys(String dataSourceName, String tableName, List<DeferredForeignKey> foreignKeys,
+                                         Map<String, Object> importResult) {
+        if (foreignKeys.isEmpty()) {
+            return 0;
+        }
+        JdbcTemplate jdbcTemplate = getTableJdbcTemplate(dataSourceName);
+        String qualifiedName = qualifiedTableName(dataSourceName, tableName);
+        
+        int orphanRows = 0;
+        List<Object> errors = new ArrayList<>((List<?>) importResult.getOrDefault("errors", new ArrayList<>()));
+        for (DeferredForeignKey foreignKey : foreignKeys) {
+            int deleted = jdbcTemplate.update(String.format(
+                    "DELETE c FROM %s c WHERE c.`%s` IS NOT NULL AND NOT EXISTS (SELECT 1 FROM %s r WHERE r.`%s` = c.`%s`)",
+                    qualifiedName, foreignKey.columnName, foreignKey.referenceTable, foreignKey.referenceColumn, foreignKey.columnName));
+            if (deleted > 0) {
+                orphanRows += deleted;
+                errors.add(String.format("%d 行的 %s 在 %s.%s 中不存在，违反外键约束，未导入",
+                        deleted, foreignKey.columnName, foreignKey.referenceTable, foreignKey.referenceColumn));
+            }
+        }
+        if (orphanRows > 0) {
+            importResult.put("successCount", ((Number) importResult.get("successCount")).longValue() - orphanRows);
+            importResult.put("failureCount", ((Number) importResult.get("failureCount")).longValue() + orphanRows);
+            importResult.put("errors", errors);
+            clearTableSearchCache(dataSourceName, tableName, -orphanRows);
+        }
+        
+        List<String> clauses = new ArrayList<>();
+        for (DeferredForeignKey foreignKey : foreignKeys) {
+            clauses.add("ADD INDEX `" + foreignKey.constraintName + "` (`" + foreignKey.columnName + "`)");
+        }
+        for (DeferredForeignKey foreignKey : foreignKeys) {
+            clauses.add("ADD " + foreignKey.definition);
+        }
+        String alterSql = "ALTER TABLE " + qualifiedName + " " + String.join(", ", clauses);
+        logger.info("建立延后的外键: {}", alterSql);
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET SESSION foreign_key_checks = 0");
+                try {
+                    statement.execute(alterSql);
+                } finally {
+                    statement.execute("SET SESSION foreign_key_checks = DEFAULT");
+                }
+            }
+            return null;
+        });
+        schemaMetadataCache.invalidateTable(schemaKey(dataSourceName), tableName);
+        return orphanRows;
+    }
+    
+    /**
+     * @param deferredForeignKeys 不为null时外键不在建表语句中创建，而是加入该列表，由调用方在数据写入后建立
+     */
+    private void createTableFromCsvColumns(String dataSourceName, String tableName, List<Map<String, Object>> csvColumns,
+                                           List<Map<String, Object>> csvData, List<DeferredForeignKey> deferredForeignKeys) {
         try {
             JdbcTemplate jdbcTemplate;
             
             if (isUserCreatedDatabase(dataSourceName)) {
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(dataSourceName);
             } else {
                 jdbcTemplate = getJdbcTemplate(dataSourceName);
             }
@@ -3732,8 +4651,14 @@ public class DatabaseService {
                             fkSql.append(" ON DELETE ").append(onDelete);
                         }
                         
-                        foreignKeyConstraints.add(fkSql.toString());
-                        logger.info("添加外键约束: {} -> {}.{}", columnName, referenceTable, referenceColumn);
+                        if (deferredForeignKeys != null) {
+                            deferredForeignKeys.add(new DeferredForeignKey(constraintName, columnName,
+                                    qualifiedTableName(dataSourceName, referenceTable), referenceColumn, fkSql.toString()));
+                            logger.info("外键约束延后到数据写入后创建: {} -> {}.{}", columnName, referenceTable, referenceColumn);
+                        } else {
+                            foreignKeyConstraints.add(fkSql.toString());
+                            logger.info("添加外键约束: {} -> {}.{}", columnName, referenceTable, referenceColumn);
+                        }
                     }
                 }
             }
@@ -3751,6 +4676,7 @@ public class DatabaseService {
             
             // 执行创建表SQL
             jdbcTemplate.execute(createTableSql.toString());
+            schemaMetadataCache.invalidateTable(schemaKey(dataSourceName), tableName);
             
             logger.info("成功创建表: {} 包含 {} 个字段", tableName, csvColumns.size());
             
@@ -3794,67 +4720,7 @@ public class DatabaseService {
      */
     private Map<String, Object> batchInsertTableDataWithAppendForAutoCreate(String dataSourceName, String tableName, 
             List<Map<String, Object>> dataList, List<Map<String, Object>> csvColumns) {
-        long startTime = System.currentTimeMillis();
-        int totalRecords = dataList.size();
-        int skippedCount = 0;
-        List<String> errors = new ArrayList<>();
-        
-        try {
-            logger.info("自动建表追加模式：开始检测重复数据 - 数据源: {}, 表名: {}, 记录数: {}", dataSourceName, tableName, totalRecords);
-            
-            // 获取用户选择的主键列
-            List<String> userSelectedPrimaryKeys = getUserSelectedPrimaryKeys(csvColumns);
-            
-            List<Map<String, Object>> uniqueDataList = new ArrayList<>();
-            
-            if (userSelectedPrimaryKeys.isEmpty()) {
-                // 没有选择主键，使用所有列进行重复检测
-                logger.info("自动建表追加模式：用户未选择主键，使用全行比较检测重复");
-                uniqueDataList = filterDuplicatesByAllColumns(dataSourceName, tableName, dataList);
-                skippedCount = totalRecords - uniqueDataList.size();
-            } else {
-                // 有用户选择的主键，使用主键进行重复检测
-                logger.info("自动建表追加模式：使用用户选择的主键进行重复检测 - 主键列: {}", userSelectedPrimaryKeys);
-                uniqueDataList = filterDuplicatesByPrimaryKeys(dataSourceName, tableName, dataList, userSelectedPrimaryKeys);
-                skippedCount = totalRecords - uniqueDataList.size();
-            }
-            
-            logger.info("自动建表追加模式：重复检测完成 - 原始记录: {}, 去重后: {}, 跳过: {}", totalRecords, uniqueDataList.size(), skippedCount);
-            
-            if (uniqueDataList.isEmpty()) {
-                // 所有数据都是重复的
-                Map<String, Object> result = new HashMap<>();
-                result.put("totalRecords", totalRecords);
-                result.put("successCount", 0);
-                result.put("failureCount", 0);
-                result.put("skippedCount", skippedCount);
-                result.put("duration", System.currentTimeMillis() - startTime);
-                result.put("errors", errors);
-                result.put("importStrategy", "append");
-                result.put("message", "所有数据都已存在，无需导入");
-                
-                logger.info("自动建表追加模式：所有数据都是重复的，跳过导入");
-                return result;
-            }
-            
-            // 调用正常的批量插入处理去重后的数据
-            Map<String, Object> insertResult = batchInsertTableData(dataSourceName, tableName, uniqueDataList);
-            
-            // 更新结果信息
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            insertResult.put("duration", duration);
-            insertResult.put("skippedCount", skippedCount);
-            insertResult.put("importStrategy", "append");
-            
-            logger.info("自动建表追加模式批量插入完成 - 跳过重复: {}, 插入结果: {}", skippedCount, insertResult);
-            
-            return insertResult;
-            
-        } catch (Exception e) {
-            logger.error("自动建表追加模式批量插入失败: {}", e.getMessage(), e);
-            throw new RuntimeException("自动建表追加模式批量插入失败: " + e.getMessage(), e);
-        }
+        return appendRows(dataSourceName, tableName, dataList, getUserSelectedPrimaryKeys(csvColumns), false, "自动建表追加模式");
     }
     
     /**
@@ -3863,66 +4729,7 @@ public class DatabaseService {
     @Transactional
     private Map<String, Object> batchInsertTableDataTransactionWithAppendForAutoCreate(String dataSourceName, String tableName, 
             List<Map<String, Object>> dataList, List<Map<String, Object>> csvColumns) {
-        long startTime = System.currentTimeMillis();
-        int totalRecords = dataList.size();
-        int skippedCount = 0;
-        
-        try {
-            logger.info("事务性自动建表追加模式：开始检测重复数据 - 数据源: {}, 表名: {}, 记录数: {}", dataSourceName, tableName, totalRecords);
-            
-            // 获取用户选择的主键列
-            List<String> userSelectedPrimaryKeys = getUserSelectedPrimaryKeys(csvColumns);
-            
-            List<Map<String, Object>> uniqueDataList = new ArrayList<>();
-            
-            if (userSelectedPrimaryKeys.isEmpty()) {
-                // 没有选择主键，使用所有列进行重复检测
-                logger.info("事务性自动建表追加模式：用户未选择主键，使用全行比较检测重复");
-                uniqueDataList = filterDuplicatesByAllColumns(dataSourceName, tableName, dataList);
-                skippedCount = totalRecords - uniqueDataList.size();
-            } else {
-                // 有用户选择的主键，使用主键进行重复检测
-                logger.info("事务性自动建表追加模式：使用用户选择的主键进行重复检测 - 主键列: {}", userSelectedPrimaryKeys);
-                uniqueDataList = filterDuplicatesByPrimaryKeys(dataSourceName, tableName, dataList, userSelectedPrimaryKeys);
-                skippedCount = totalRecords - uniqueDataList.size();
-            }
-            
-            logger.info("事务性自动建表追加模式：重复检测完成 - 原始记录: {}, 去重后: {}, 跳过: {}", totalRecords, uniqueDataList.size(), skippedCount);
-            
-            if (uniqueDataList.isEmpty()) {
-                // 所有数据都是重复的
-                Map<String, Object> result = new HashMap<>();
-                result.put("totalRecords", totalRecords);
-                result.put("successCount", 0);
-                result.put("failureCount", 0);
-                result.put("skippedCount", skippedCount);
-                result.put("duration", System.currentTimeMillis() - startTime);
-                result.put("errors", new ArrayList<>());
-                result.put("importStrategy", "append");
-                result.put("message", "所有数据都已存在，无需导入");
-                
-                logger.info("事务性自动建表追加模式：所有数据都是重复的，跳过导入");
-                return result;
-            }
-            
-            // 调用事务性批量插入处理去重后的数据
-            Map<String, Object> insertResult = batchInsertTableDataTransaction(dataSourceName, tableName, uniqueDataList);
-            
-            // 更新结果信息
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            insertResult.put("duration", duration);
-            insertResult.put("skippedCount", skippedCount);
-            insertResult.put("importStrategy", "append");
-            
-            logger.info("事务性自动建表追加模式批量插入完成 - 跳过重复: {}, 插入结果: {}", skippedCount, insertResult);
-            
-            return insertResult;
-            
-        } catch (Exception e) {
-            logger.error("事务性自动建表追加模式批量插入失败: {}", e.getMessage(), e);
-            throw new RuntimeException("事务性自动建表追加模式批量插入失败: " + e.getMessage(), e);
-        }
+        return appendRows(dataSourceName, tableName, dataList, getUserSelectedPrimaryKeys(csvColumns), true, "事务性自动建表追加模式");
     }
     
     /**
@@ -4119,7 +4926,6 @@ public class DatabaseService {
         
         List<Map<String, Object>> resultTables = new ArrayList<>();
         long startTime = System.currentTimeMillis();
-        final long TIMEOUT_MS = 600000; // 10分钟超时
         
         try {
             // 发送开始事件
@@ -4143,128 +4949,99 @@ public class DatabaseService {
             totalEvent.put("totalTables", allTables.size());
             emitter.send(SseEmitter.event().name("total").data(totalEvent));
             
-            int searchedCount = 0;
-            int foundCount = 0;
-            
-            for (Map<String, Object> table : allTables) {
-                // 检查SSE连接是否还活跃
-                if (emitter == null) {
-                    logger.warn("SSE连接已断开，停止搜索");
-                    break;
-                }
-                
-                // 检查超时
-                if (System.currentTimeMillis() - startTime > TIMEOUT_MS) {
-                    logger.warn("字段值搜索超时，已搜索 {} 个表，找到 {} 个匹配表", searchedCount, foundCount);
-                    Map<String, Object> timeoutEvent = new HashMap<>();
-                    timeoutEvent.put("type", "timeout");
-                    timeoutEvent.put("message", "搜索超时");
-                    timeoutEvent.put("searchedCount", searchedCount);
-                    timeoutEvent.put("foundCount", foundCount);
-                    emitter.send(SseEmitter.event().name("timeout").data(timeoutEvent));
-                    break;
-                }
-                
-                String tableName = (String) table.get("TABLE_NAME");
-                searchedCount++;
-                
-                logger.info("正在搜索表 {} ({}/{})", tableName, searchedCount, allTables.size());
-                
-                // 发送当前搜索进度 
-                Map<String, Object> progressEvent = new HashMap<>();
-                progressEvent.put("type", "progress");
-                progressEvent.put("currentTable", tableName);
-                progressEvent.put("searchedCount", searchedCount);
-                progressEvent.put("totalCount", allTables.size());
-                progressEvent.put("foundCount", foundCount);
-                progressEvent.put("percentage", Math.round((searchedCount * 100.0) / allTables.size()));
-                progressEvent.put("elapsedTime", System.currentTimeMillis() - startTime);
-                
-                try {
-                    emitter.send(SseEmitter.event().name("progress").data(progressEvent));
-                } catch (IOException e) {
-                    logger.warn("发送进度事件失败，客户端可能已断开连接: {}", e.getMessage());
-                    break;
-                }
-                
-                try {
-                    // 检查表是否包含匹配值（支持搜索模式和搜索类型）
-                    boolean hasMatch = checkTableForValueWithMode(dataSourceName, tableName, searchValue, searchMode, searchType);
-                    
-                    if (hasMatch) {
-                        foundCount++;
-                        // 获取匹配记录的准确数量
-                        int actualCount = getActualMatchCountWithMode(dataSourceName, tableName, searchValue, searchMode, searchType);
-                        
-                        Map<String, Object> resultTable = new HashMap<>();
-                        resultTable.put("TABLE_NAME", tableName);
-                        resultTable.put("TABLE_ROWS", table.get("TABLE_ROWS"));
-                        resultTable.put("TABLE_COMMENT", table.get("TABLE_COMMENT"));
-                        resultTable.put("DATA_LENGTH", table.get("DATA_LENGTH"));
-                        resultTable.put("CREATE_TIME", table.get("CREATE_TIME"));
-                        resultTable.put("MATCH_COUNT", actualCount);
-                        resultTable.put("SEARCH_VALUE", searchValue);
-                        resultTable.put("DATA_SOURCE", dataSourceName);
-                        resultTable.put("SEARCH_MODE", searchMode);
-                        resultTable.put("IS_COMPLETE", true);
-                        resultTable.put("SEARCH_TYPE", getSearchTypeInfo(searchMode, searchValue));
-                        
-                        resultTables.add(resultTable);
-                        
-                        // 发送找到匹配表的事件
-                        Map<String, Object> foundEvent = new HashMap<>();
-                        foundEvent.put("type", "found");
-                        foundEvent.put("table", resultTable);
-                        foundEvent.put("foundCount", foundCount);
-                        
+            final String finalSearchMode = searchMode;
+            final String finalSearchType = searchType;
+            final int totalTables = allTables.size();
+            int[] foundCount = {0};
+            
+            // 表探测在工作线程上并行执行，SSE事件只在当前线程上发送
+            ParallelSearchExecutor.FanOutResult<Integer> fanOutResult = parallelSearchExecutor.fanOut(allTables,
+                    (table, context) -> searchSingleTable(dataSourceName, (String) table.get("TABLE_NAME"),
+                            searchValue, finalSearchMode, finalSearchType, context),
+                    PROGRESS_SEARCH_TIMEOUT_MS,
+                    (table, actualCount, error, searchedCount) -> {
+                        String tableName = (String) table.get("TABLE_NAME");
                         try {
-                            emitter.send(SseEmitter.event().name("found").data(foundEvent));
+                            if (error != null) {
+                                // 某个表查询失败，记录日志但继续处理其他表
+                                logger.warn("搜索表 {} 时出现错误: {}", tableName, error.getMessage());
+                                
+                                Map<String, Object> tableErrorEvent = new HashMap<>();
+                                tableErrorEvent.put("type", "table_error");
+                                tableErrorEvent.put("tableName", tableName);
+                                tableErrorEvent.put("error", error.getMessage());
+                                emitter.send(SseEmitter.event().name("table_error").data(tableErrorEvent));
+                            } else if (actualCount != null) {
+                                foundCount[0]++;
+                                Map<String, Object> resultTable = buildProgressResultTable(table, actualCount, 
+                                        dataSourceName, searchValue, finalSearchMode);
+                                
+                                // 发送找到匹配表的事件
+                                Map<String, Object> foundEvent = new HashMap<>();
+                                foundEvent.put("type", "found");
+                                foundEvent.put("table", resultTable);
+                                foundEvent.put("foundCount", foundCount[0]);
+                                emitter.send(SseEmitter.event().name("found").data(foundEvent));
+                            }
+                            
+                            // 发送当前搜索进度
+                            Map<String, Object> progressEvent = new HashMap<>();
+                            progressEvent.put("type", "progress");
+                            progressEvent.put("currentTable", tableName);
+                            progressEvent.put("searchedCount", searchedCount);
+                            progressEvent.put("totalCount", totalTables);
+                            progressEvent.put("foundCount", foundCount[0]);
+                            progressEvent.put("percentage", Math.round((searchedCount * 100.0) / totalTables));
+                            progressEvent.put("elapsedTime", System.currentTimeMillis() - startTime);
+                            emitter.send(SseEmitter.event().name("progress").data(progressEvent));
+                            return true;
                         } catch (IOException e) {
-                            logger.warn("发送找到事件失败，客户端可能已断开连接: {}", e.getMessage());
-                            break;
+                            logger.warn("发送搜索事件失败，客户端可能已断开连接: {}", e.getMessage());
+                            return false;
                         }
-                        
-                        logger.info("在表 {} 中找到 {} 条匹配记录", tableName, actualCount);
-                    }
-                    
-                } catch (Exception e) {
-                    // 某个表查询失败，记录日志但继续处理其他表
-                    logger.warn("搜索表 {} 时出现错误: {}", tableName, e.getMessage());
-                    
-                    // 发送表搜索错误事件
-                    Map<String, Object> tableErrorEvent = new HashMap<>();
-                    tableErrorEvent.put("type", "table_error");
-                    tableErrorEvent.put("tableName", tableName);
-                    tableErrorEvent.put("error", e.getMessage());
-                    
-                    try {
-                        emitter.send(SseEmitter.event().name("table_error").data(tableErrorEvent));
-                    } catch (IOException ioException) {
-                        logger.warn("发送表错误事件失败: {}", ioException.getMessage());
-                        break;
-                    }
-                }
-                
-                // 添加小延迟，避免过于频繁的事件发送
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
+                    });
+            
+            int searchedCount = fanOutResult.getCompletedCount();
+            
+            // 按表的原始顺序汇总匹配结果
+            List<Integer> matchCounts = fanOutResult.getResults();
+            for (int i = 0; i < totalTables; i++) {
+                Integer actualCount = matchCounts.get(i);
+                if (actualCount == null) {
+                    continue;
                 }
+                resultTables.add(buildProgressResultTable(allTables.get(i), actualCount, 
+                        dataSourceName, searchValue, searchMode));
+            }
+            int foundTotal = resultTables.size();
+            
+            if (fanOutResult.isStopped()) {
+                logger.warn("SSE连接已断开，停止搜索");
+                emitter.complete();
+                return;
+            }
+            
+            if (fanOutResult.isTimedOut()) {
+                logger.warn("字段值搜索超时，已搜索 {} 个表，找到 {} 个匹配表", searchedCount, foundTotal);
+                Map<String, Object> timeoutEvent = new HashMap<>();
+                timeoutEvent.put("type", "timeout");
+                timeoutEvent.put("message", "搜索超时");
+                timeoutEvent.put("searchedCount", searchedCount);
+                timeoutEvent.put("foundCount", foundTotal);
+                emitter.send(SseEmitter.event().name("timeout").data(timeoutEvent));
             }
             
             long endTime = System.currentTimeMillis();
             logger.info("完整字段值搜索完成，用时：{}ms，搜索了 {} 个表，找到 {} 个匹配表", 
-                    (endTime - startTime), searchedCount, foundCount);
+                    (endTime - startTime), searchedCount, foundTotal);
             
             // 发送完成事件
             Map<String, Object> completeEvent = new HashMap<>();
             completeEvent.put("type", "complete");
             completeEvent.put("message", "搜索完成");
             completeEvent.put("searchedCount", searchedCount);
-            completeEvent.put("foundCount", foundCount);
-            completeEvent.put("totalCount", foundCount); // 添加totalCount字段，与foundCount保持一致
+            completeEvent.put("foundCount", foundTotal);
+            completeEvent.put("totalCount", foundTotal); // 添加totalCount字段，与foundCount保持一致
             completeEvent.put("totalTime", endTime - startTime);
             completeEvent.put("tables", resultTables);
             completeEvent.put("searchValue", searchValue);
@@ -4291,6 +5068,26 @@ public class DatabaseService {
         }
     }
 
+    /**
+     * 构建带进度搜索的匹配表信息
+     */
+    private Map<String, Object> buildProgressResultTable(Map<String, Object> table, Integer actualCount, 
+                                                         String dataSourceName, String searchValue, String searchMode) {
+        Map<String, Object> resultTable = new HashMap<>();
+        resultTable.put("TABLE_NAME", table.get("TABLE_NAME"));
+        resultTable.put("TABLE_ROWS", table.get("TABLE_ROWS"));
+        resultTable.put("TABLE_COMMENT", table.get("TABLE_COMMENT"));
+        resultTable.put("DATA_LENGTH", table.get("DATA_LENGTH"));
+        resultTable.put("CREATE_TIME", table.get("CREATE_TIME"));
+        resultTable.put("MATCH_COUNT", actualCount);
+        resultTable.put("SEARCH_VALUE", searchValue);
+        resultTable.put("DATA_SOURCE", dataSourceName);
+        resultTable.put("SEARCH_MODE", searchMode);
+        resultTable.put("IS_COMPLETE", true);
+        resultTable.put("SEARCH_TYPE", getSearchTypeInfo(searchMode, searchValue));
+        return resultTable;
+    }
+
     /**
      * 保持向后兼容的方法（不带搜索模式）
      */
@@ -4383,7 +5180,7 @@ public class DatabaseService {
             
             if (isUserCreatedDatabase(databaseName)) {
                 alterSql.append("`").append(databaseName).append("`.`").append(tableName).append("` ");
-                jdbcTemplate = getJdbcTemplate(DEFAULT_DATASOURCE);
+                jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(databaseName);
             } else {
                 alterSql.append("`").append(tableName).append("` ");
                 jdbcTemplate = getJdbcTemplate(dataSourceName);
@@ -4458,6 +5255,8 @@ public class DatabaseService {
             
             // 执行修改
             jdbcTemplate.execute(alterSql.toString());
+            schemaMetadataCache.invalidateTable(isUserCreatedDatabase(databaseName) ? databaseName : schemaKey(dataSourceName), tableName);
+            valueIndexService.onTableChanged(databaseName, tableName);
             
             logger.info("成功修改表结构: {}.{}.{} -> {}", databaseName, tableName, columnName, fullDataType);
             return true;
@@ -1,16 +1,29 @@
 package com.example.bio_data.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Service;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.util.WorkbookUtil;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
-import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ExportService {
@@ -18,61 +31,71 @@ public class ExportService {
     @Autowired
     private DatabaseService databaseService;
 
+    // Excel导出时内存中保留的行数，超出部分写入临时文件
+    @Value("${export.excel.row-access-window:100}")
+    private int excelRowAccessWindow;
+
+    // 是否压缩Excel导出的临时文件（大数据量导出时显著减少磁盘占用）
+    @Value("${export.excel.compress-temp-files:true}")
+    private boolean excelCompressTempFiles;
+
+    // 用于估算列宽的采样行数
+    @Value("${export.excel.width-sample-rows:500}")
+    private int excelWidthSampleRows;
+
+    // CSV导出写缓冲区大小
+    private static final int CSV_BUFFER_SIZE = 64 * 1024;
+
+    // CSV导出每写入多少行主动刷新一次，让客户端尽早收到数据
+    private static final int CSV_FLUSH_ROWS = 5000;
+
     /**
      * 导出表数据为CSV格式
+     * 通过流式结果集逐行读取并直接写入输出流，内存占用与表大小无关
+     * limit为空或小于等于0时导出全表
      */
     public StreamingResponseBody exportTableToCsv(String dataSource, String tableName, 
                                                   Long userId, String userType, 
                                                   Integer limit) {
         return outputStream -> {
-            OutputStreamWriter writer = null;
+            BufferedWriter writer = null;
             try {
-                writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+                writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), CSV_BUFFER_SIZE);
                 // 添加BOM以支持Excel正确显示中文
-                outputStream.write(0xEF);
-                outputStream.write(0xBB);
-                outputStream.write(0xBF);
+                writer.write('\uFEFF');
                 
                 // 获取表列信息
-                List<Map<String, Object>> columns = databaseService.getTableColumns(dataSource, tableName);
+                List<String> columnNames = new ArrayList<>();
+                for (SchemaMetadataCache.ColumnDescriptor column : databaseService.getColumnDescriptors(dataSource, tableName)) {
+                    columnNames.add(column.getColumnName());
+                }
                 
-                // 写入CSV头部
-                StringBuilder header = new StringBuilder();
-                for (int i = 0; i < columns.size(); i++) {
-                    if (i > 0) header.append(",");
-                    header.append("\"").append(columns.get(i).get("COLUMN_NAME")).append("\"");
+                // 写入CSV头部并立即发送
+                for (int i = 0; i < columnNames.size(); i++) {
+                    if (i > 0) writer.write(',');
+                    writeCsvValue(writer, columnNames.get(i));
                 }
-                writer.write(header.toString());
-                writer.write("\n");
+                writer.write('\n');
                 writer.flush();
                 
-                // 获取表数据
-                List<Map<String, Object>> data = databaseService.getTableData(dataSource, tableName, limit);
-                
-                // 写入数据行 - 分批处理避免内存问题
-                int batchSize = 1000; // 每批处理1000行
-                for (int i = 0; i < data.size(); i += batchSize) {
-                    int endIndex = Math.min(i + batchSize, data.size());
-                    List<Map<String, Object>> batch = data.subList(i, endIndex);
-                    
-                    for (Map<String, Object> row : batch) {
-                        StringBuilder rowData = new StringBuilder();
-                        for (int j = 0; j < columns.size(); j++) {
-                            if (j > 0) rowData.append(",");
-                            String columnName = (String) columns.get(j).get("COLUMN_NAME");
-                            Object value = row.get(columnName);
-                            String cellValue = (value != null) ? value.toString() : "";
-                            // 转义CSV特殊字符
-                            cellValue = cellValue.replace("\"", "\"\"");
-                            rowData.append("\"").append(cellValue).append("\"");
-                        }
-                        writer.write(rowData.toString());
-                        writer.write("\n");
+                // 逐行读取并写入数据，不构建行Map
+                final BufferedWriter out = writer;
+                final int[] columnIndexes = new int[columnNames.size()];
+                databaseService.streamTableData(dataSource, tableName, null, null, limit, (resultSet, rowNumber) -> {
+                    if (rowNumber == 1) {
+                        resolveColumnIndexes(resultSet.getMetaData(), columnNames, columnIndexes);
                     }
+                    for (int j = 0; j < columnIndexes.length; j++) {
+                        if (j > 0) out.write(',');
+                        Object value = columnIndexes[j] > 0 ? JdbcUtils.getResultSetValue(resultSet, columnIndexes[j]) : null;
+                        writeCsvValue(out, value != null ? value.toString() : "");
+                    }
+                    out.write('\n');
                     
-                    // 每处理一批后刷新输出流
-                    writer.flush();
-                }
+                    if (rowNumber % CSV_FLUSH_ROWS == 0) {
+                        out.flush();
+                    }
+                });
                 
             } catch (Exception e) {
                 throw new RuntimeException("CSV导出失败: " + e.getMessage(), e);
@@ -88,88 +111,68 @@ public class ExportService {
         };
     }
 
+    /**
+     * 按列名定位结果集中的列序号（从1开始），找不到的列为0
+     */
+    private void resolveColumnIndexes(ResultSetMetaData metaData, List<String> columnNames, int[] columnIndexes) throws SQLException {
+        Map<String, Integer> labelIndexes = new HashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            labelIndexes.putIfAbsent(JdbcUtils.lookupColumnName(metaData, i).toLowerCase(), i);
+        }
+        for (int j = 0; j < columnNames.size(); j++) {
+            columnIndexes[j] = labelIndexes.getOrDefault(columnNames.get(j).toLowerCase(), 0);
+        }
+    }
+
+    /**
+     * 写入一个CSV字段（始终加引号，转义内部的双引号）
+     */
+    private void writeCsvValue(Writer writer, String value) throws IOException {
+        writer.write('"');
+        int start = 0;
+        int quoteIndex;
+        while ((quoteIndex = value.indexOf('"', start)) >= 0) {
+            writer.write(value, start, quoteIndex - start + 1);
+            writer.write('"');
+            start = quoteIndex + 1;
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+
     /**
      * 导出表数据为Excel格式
+     * 通过流式结果集逐行写入SXSSFWorkbook，超过单个工作表行数上限时自动拆分到新的工作表
+     * limit为空或小于等于0时导出全表
      */
     public StreamingResponseBody exportTableToExcel(String dataSource, String tableName, 
                                                     Long userId, String userType, 
                                                     Integer limit) {
         return outputStream -> {
-            Workbook workbook = null;
+            SXSSFWorkbook workbook = null;
             try {
-                // 使用SXSSFWorkbook支持大数据量导出，在内存中只保留100行
-                workbook = new SXSSFWorkbook(100);
-                Sheet sheet = workbook.createSheet(tableName);
-                
-                // 对于SXSSFWorkbook，需要跟踪列才能自动调整列宽
-                if (sheet instanceof SXSSFSheet) {
-                    ((SXSSFSheet) sheet).trackAllColumnsForAutoSizing();
-                }
-                
-                // 创建样式
-                CellStyle headerStyle = workbook.createCellStyle();
-                Font headerFont = workbook.createFont();
-                headerFont.setBold(true);
-                headerStyle.setFont(headerFont);
-                headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-                headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+                workbook = createStreamingWorkbook();
                 
                 // 获取表列信息
-                List<Map<String, Object>> columns = databaseService.getTableColumns(dataSource, tableName);
-                
-                // 创建表头
-                Row headerRow = sheet.createRow(0);
-                for (int i = 0; i < columns.size(); i++) {
-                    Cell cell = headerRow.createCell(i);
-                    cell.setCellValue((String) columns.get(i).get("COLUMN_NAME"));
-                    cell.setCellStyle(headerStyle);
+                List<String> columnNames = new ArrayList<>();
+                for (SchemaMetadataCache.ColumnDescriptor column : databaseService.getColumnDescriptors(dataSource, tableName)) {
+                    columnNames.add(column.getColumnName());
                 }
+                ExcelSheetWriter sheetWriter = new ExcelSheetWriter(workbook, tableName, columnNames, excelWidthSampleRows);
                 
-                // 获取表数据
-                List<Map<String, Object>> data = databaseService.getTableData(dataSource, tableName, limit);
-                
-                // 写入数据行 - SXSSFWorkbook自动管理内存
-                int rowIndex = 1;
-                
-                for (Map<String, Object> row : data) {
-                    Row excelRow = sheet.createRow(rowIndex++);
-                    for (int j = 0; j < columns.size(); j++) {
-                        Cell cell = excelRow.createCell(j);
-                        String columnName = (String) columns.get(j).get("COLUMN_NAME");
-                        Object value = row.get(columnName);
-                        
-                        if (value != null) {
-                            if (value instanceof Number) {
-                                cell.setCellValue(((Number) value).doubleValue());
-                            } else if (value instanceof java.util.Date) {
-                                cell.setCellValue((java.util.Date) value);
-                            } else {
-                                cell.setCellValue(value.toString());
-                            }
-                        }
-                    }
-                    
-                    // 每1000行刷新一次输出流
-                    if (rowIndex % 1000 == 0) {
-                        try {
-                            outputStream.flush();
-                        } catch (Exception e) {
-                            // 如果连接已断开，停止处理
-                            throw new RuntimeException("连接已断开，导出中断", e);
-                        }
+                // 逐行读取并写入工作表
+                final Object[] values = new Object[columnNames.size()];
+                final int[] columnIndexes = new int[columnNames.size()];
+                databaseService.streamTableData(dataSource, tableName, null, null, limit, (resultSet, rowNumber) -> {
+                    if (rowNumber == 1) {
+                        resolveColumnIndexes(resultSet.getMetaData(), columnNames, columnIndexes);
                     }
-                }
-                
-                // 自动调整列宽（只对前50列进行调整，避免性能问题）
-                int maxColumns = Math.min(columns.size(), 50);
-                for (int i = 0; i < maxColumns; i++) {
-                    try {
-                        sheet.autoSizeColumn(i);
-                    } catch (Exception e) {
-                        // 如果自动调整列宽失败，设置默认列宽
-                        sheet.setColumnWidth(i, 4000); // 默认列宽
+                    for (int j = 0; j < columnIndexes.length; j++) {
+                        values[j] = columnIndexes[j] > 0 ? JdbcUtils.getResultSetValue(resultSet, columnIndexes[j]) : null;
                     }
-                }
+                    sheetWriter.writeRow(values);
+                });
+                sheetWriter.finish();
                 
                 // 写入工作簿
                 workbook.write(outputStream);
@@ -178,17 +181,166 @@ public class ExportService {
             } catch (Exception e) {
                 throw new RuntimeException("Excel导出失败: " + e.getMessage(), e);
             } finally {
-                if (workbook != null) {
-                    try {
-                        workbook.close();
-                    } catch (Exception e) {
-                        // 忽略关闭时的异常
-                    }
-                }
+                closeWorkbook(workbook);
             }
         };
     }
 
+    /**
+     * 创建流式工作簿：内存中只保留固定行数的窗口，其余行写入（可压缩的）临时文件
+     */
+    private SXSSFWorkbook createStreamingWorkbook() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(excelRowAccessWindow);
+        workbook.setCompressTempFiles(excelCompressTempFiles);
+        return workbook;
+    }
+
+    /**
+     * 关闭工作簿并删除临时文件
+     */
+    private void closeWorkbook(SXSSFWorkbook workbook) {
+        if (workbook == null) {
+            return;
+        }
+        try {
+            workbook.close();
+        } catch (Exception e) {
+            // 忽略关闭时的异常
+        }
+        workbook.dispose();
+    }
+
+    /**
+     * 流式Excel工作表写入器
+     * 列宽根据表头和前若干行数据估算，不使用autoSizeColumn（需要跟踪每一行的单元格宽度）；
+     * 单个工作表达到行数上限后自动创建新的工作表继续写入
+     */
+    private static class ExcelSheetWriter {
+        // 每个工作表最多的数据行数（Excel上限1048576行，其中一行为表头）
+        private static final int MAX_DATA_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+        // 估算列宽的上下限（字符数）
+        private static final int MIN_COLUMN_CHARS = 8;
+        private static final int MAX_COLUMN_CHARS = 60;
+
+        private final SXSSFWorkbook workbook;
+        private final String baseSheetName;
+        private final List<String> columnNames;
+        private final CellStyle headerStyle;
+        private final int[] columnChars;
+        private final int sampleRows;
+
+        private Sheet sheet;
+        private int sheetCount = 0;
+        private int rowIndex = 0;
+        private long totalRows = 0;
+        private boolean widthsApplied = false;
+
+        ExcelSheetWriter(SXSSFWorkbook workbook, String baseSheetName, List<String> columnNames, int sampleRows) {
+            this.workbook = workbook;
+            this.baseSheetName = WorkbookUtil.createSafeSheetName(baseSheetName);
+            this.columnNames = columnNames;
+            this.sampleRows = sampleRows;
+            this.columnChars = new int[columnNames.size()];
+            for (int i = 0; i < columnNames.size(); i++) {
+                columnChars[i] = displayChars(columnNames.get(i));
+            }
+
+            // 创建样式
+            headerStyle = workbook.createCellStyle();
+            Font headerFont = workbook.createFont();
+            headerFont.setBold(true);
+            headerStyle.setFont(headerFont);
+            headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+            headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+
+            newSheet();
+        }
+
+        void writeRow(Object[] values) {
+            if (rowIndex > MAX_DATA_ROWS_PER_SHEET) {
+                newSheet();
+            }
+
+            Row excelRow = sheet.createRow(rowIndex++);
+            boolean sampling = !widthsApplied;
+            for (int j = 0; j < values.length; j++) {
+                Object value = values[j];
+                if (value == null) {
+                    continue;
+                }
+                Cell cell = excelRow.createCell(j);
+                if (value instanceof Number) {
+                    cell.setCellValue(((Number) value).doubleValue());
+                } else if (value instanceof java.util.Date) {
+                    cell.setCellValue((java.util.Date) value);
+                } else {
+                    cell.setCellValue(value.toString());
+                }
+                if (sampling) {
+                    columnChars[j] = Math.max(columnChars[j], displayChars(value.toString()));
+                }
+            }
+
+            if (++totalRows == sampleRows) {
+                applyColumnWidths(sheet);
+                widthsApplied = true;
+            }
+        }
+
+        void finish() {
+            if (!widthsApplied) {
+                applyColumnWidths(sheet);
+                widthsApplied = true;
+            }
+        }
+
+        long getTotalRows() {
+            return totalRows;
+        }
+
+        private void newSheet() {
+            sheetCount++;
+            String name = baseSheetName;
+            if (sheetCount > 1) {
+                String suffix = "_" + sheetCount;
+                int maxLength = 31 - suffix.length();
+                name = (name.length() > maxLength ? name.substring(0, maxLength) : name) + suffix;
+            }
+            sheet = workbook.createSheet(name);
+            if (widthsApplied) {
+                applyColumnWidths(sheet);
+            }
+
+            // 创建表头
+            Row headerRow = sheet.createRow(0);
+            for (int i = 0; i < columnNames.size(); i++) {
+                Cell cell = headerRow.createCell(i);
+                cell.setCellValue(columnNames.get(i));
+                cell.setCellStyle(headerStyle);
+            }
+            rowIndex = 1;
+        }
+
+        private void applyColumnWidths(Sheet target) {
+            for (int i = 0; i < columnChars.length; i++) {
+                int chars = Math.min(MAX_COLUMN_CHARS, Math.max(MIN_COLUMN_CHARS, columnChars[i] + 2));
+                target.setColumnWidth(i, chars * 256);
+            }
+        }
+
+        /**
+         * 估算显示宽度：中文等全角字符按两个字符计算
+         */
+        private static int displayChars(String text) {
+            int chars = 0;
+            int length = Math.min(text.length(), MAX_COLUMN_CHARS);
+            for (int i = 0; i < length; i++) {
+                chars += text.charAt(i) > 0x7F ? 2 : 1;
+            }
+            return chars;
+        }
+    }
+
     /**
      * 获取导出文件的基本信息
      */
@@ -198,14 +350,16 @@ public class ExportService {
             // 获取表列信息
             List<Map<String, Object>> columns = databaseService.getTableColumns(dataSource, tableName);
             
-            // 获取数据行数
-            Integer totalRows = databaseService.getTableRowCount(dataSource, tableName);
+            // 获取数据行数（缓存的精确值或估算值，不阻塞）
+            RowCountService.RowCount rowCount = databaseService.getTableRowCountInfo(dataSource, tableName);
+            long totalRows = rowCount.getCount() != null ? rowCount.getCount() : 0;
             
             return Map.of(
                 "tableName", tableName,
                 "dataSource", dataSource,
                 "columnCount", columns.size(),
                 "totalRows", totalRows,
+                "rowCountApproximate", rowCount.isApproximate(),
                 "columns", columns.stream().map(col -> Map.of(
                     "name", col.get("COLUMN_NAME"),
                     "type", col.get("DATA_TYPE"),
@@ -219,63 +373,59 @@ public class ExportService {
 
     /**
      * 导出搜索结果为CSV格式
+     * 复用搜索缓存中的WHERE条件，通过流式结果集导出全部匹配行（limit小于等于0时不限制）
      */
     public StreamingResponseBody exportSearchResultToCsv(String dataSource, String tableName, 
                                                          Long userId, String userType, 
-                                                         String searchValue, String searchType, Integer limit) {
+                                                         String searchValue, String searchType, Integer limit,
+                                                         String exportId) {
+        ExportProgress progress = registerProgress(exportId, tableName, userId);
         return outputStream -> {
-            OutputStreamWriter writer = null;
+            BufferedWriter writer = null;
             try {
-                writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+                writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), CSV_BUFFER_SIZE);
                 // 添加BOM以支持Excel正确显示中文
-                outputStream.write(0xEF);
-                outputStream.write(0xBB);
-                outputStream.write(0xBF);
+                writer.write('\uFEFF');
                 
                 // 获取表列信息
-                List<Map<String, Object>> columns = databaseService.getTableColumns(dataSource, tableName);
+                List<String> columnNames = new ArrayList<>();
+                for (SchemaMetadataCache.ColumnDescriptor column : databaseService.getColumnDescriptors(dataSource, tableName)) {
+                    columnNames.add(column.getColumnName());
+                }
                 
-                // 写入CSV头部
-                StringBuilder header = new StringBuilder();
-                for (int i = 0; i < columns.size(); i++) {
-                    if (i > 0) header.append(",");
-                    header.append("\"").append(columns.get(i).get("COLUMN_NAME")).append("\"");
+                // 写入CSV头部并立即发送
+                for (int i = 0; i < columnNames.size(); i++) {
+                    if (i > 0) writer.write(',');
+                    writeCsvValue(writer, columnNames.get(i));
                 }
-                writer.write(header.toString());
-                writer.write("\n");
+                writer.write('\n');
                 writer.flush();
                 
-                // 获取搜索结果数据
-                Map<String, Object> searchResult = databaseService.getTableDataByValueWithPagination(
-                    dataSource, tableName, searchValue, 1, limit, "auto", searchType);
-                List<Map<String, Object>> data = (List<Map<String, Object>>) searchResult.get("data");
-                
-                // 写入数据行 - 分批处理避免内存问题
-                int batchSize = 1000; // 每批处理1000行
-                for (int i = 0; i < data.size(); i += batchSize) {
-                    int endIndex = Math.min(i + batchSize, data.size());
-                    List<Map<String, Object>> batch = data.subList(i, endIndex);
-                    
-                    for (Map<String, Object> row : batch) {
-                        StringBuilder rowData = new StringBuilder();
-                        for (int j = 0; j < columns.size(); j++) {
-                            if (j > 0) rowData.append(",");
-                            String columnName = (String) columns.get(j).get("COLUMN_NAME");
-                            Object value = row.get(columnName);
-                            String cellValue = (value != null) ? value.toString() : "";
-                            // 转义CSV特殊字符
-                            cellValue = cellValue.replace("\"", "\"\"");
-                            rowData.append("\"").append(cellValue).append("\"");
-                        }
-                        writer.write(rowData.toString());
-                        writer.write("\n");
+                // 逐行读取全部搜索结果并写入
+                final BufferedWriter out = writer;
+                final int[] columnIndexes = new int[columnNames.size()];
+                progress.setTotalRows(expectedSearchRows(dataSource, tableName, searchValue, searchType, limit));
+                long exported = databaseService.streamSearchResults(dataSource, tableName, searchValue, "auto", searchType, limit, 
+                        (resultSet, rowNumber) -> {
+                    if (rowNumber == 1) {
+                        resolveColumnIndexes(resultSet.getMetaData(), columnNames, columnIndexes);
+                    }
+                    for (int j = 0; j < columnIndexes.length; j++) {
+                        if (j > 0) out.write(',');
+                        Object value = columnIndexes[j] > 0 ? JdbcUtils.getResultSetValue(resultSet, columnIndexes[j]) : null;
+                        writeCsvValue(out, value != null ? value.toString() : "");
                     }
+                    out.write('\n');
+                    progress.setExportedRows(rowNumber);
                     
-                    // 每处理一批后刷新输出流
-                    writer.flush();
-                }
+                    if (rowNumber % CSV_FLUSH_ROWS == 0) {
+                        out.flush();
+                    }
+                });
+                progress.complete(exported);
                 
             } catch (Exception e) {
+                progress.fail(e.getMessage());
                 throw new RuntimeException("搜索结果CSV导出失败: " + e.getMessage(), e);
             } finally {
                 if (writer != null) {
@@ -294,100 +444,48 @@ public class ExportService {
      */
     public StreamingResponseBody exportSearchResultToExcel(String dataSource, String tableName, 
                                                            Long userId, String userType, 
-                                                           String searchValue, String searchType, Integer limit) {
+                                                           String searchValue, String searchType, Integer limit,
+                                                           String exportId) {
+        ExportProgress progress = registerProgress(exportId, tableName, userId);
         return outputStream -> {
-            Workbook workbook = null;
+            SXSSFWorkbook workbook = null;
             try {
-                // 使用SXSSFWorkbook支持大数据量导出，在内存中只保留100行
-                workbook = new SXSSFWorkbook(100);
-                Sheet sheet = workbook.createSheet(tableName);
-                
-                // 对于SXSSFWorkbook，需要跟踪列才能自动调整列宽
-                if (sheet instanceof SXSSFSheet) {
-                    ((SXSSFSheet) sheet).trackAllColumnsForAutoSizing();
-                }
-                
-                // 创建样式
-                CellStyle headerStyle = workbook.createCellStyle();
-                Font headerFont = workbook.createFont();
-                headerFont.setBold(true);
-                headerStyle.setFont(headerFont);
-                headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-                headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+                workbook = createStreamingWorkbook();
                 
                 // 获取表列信息
-                List<Map<String, Object>> columns = databaseService.getTableColumns(dataSource, tableName);
-                
-                // 创建表头
-                Row headerRow = sheet.createRow(0);
-                for (int i = 0; i < columns.size(); i++) {
-                    Cell cell = headerRow.createCell(i);
-                    cell.setCellValue((String) columns.get(i).get("COLUMN_NAME"));
-                    cell.setCellStyle(headerStyle);
+                List<String> columnNames = new ArrayList<>();
+                for (SchemaMetadataCache.ColumnDescriptor column : databaseService.getColumnDescriptors(dataSource, tableName)) {
+                    columnNames.add(column.getColumnName());
                 }
+                ExcelSheetWriter sheetWriter = new ExcelSheetWriter(workbook, tableName, columnNames, excelWidthSampleRows);
                 
-                // 获取搜索结果数据
-                Map<String, Object> searchResult = databaseService.getTableDataByValueWithPagination(
-                    dataSource, tableName, searchValue, 1, limit, "auto", searchType);
-                List<Map<String, Object>> data = (List<Map<String, Object>>) searchResult.get("data");
-                
-                // 写入数据行 - SXSSFWorkbook自动管理内存
-                int rowIndex = 1;
-                
-                for (Map<String, Object> row : data) {
-                    Row excelRow = sheet.createRow(rowIndex++);
-                    for (int j = 0; j < columns.size(); j++) {
-                        Cell cell = excelRow.createCell(j);
-                        String columnName = (String) columns.get(j).get("COLUMN_NAME");
-                        Object value = row.get(columnName);
-                        
-                        if (value != null) {
-                            if (value instanceof Number) {
-                                cell.setCellValue(((Number) value).doubleValue());
-                            } else if (value instanceof java.util.Date) {
-                                cell.setCellValue((java.util.Date) value);
-                            } else {
-                                cell.setCellValue(value.toString());
-                            }
-                        }
-                    }
-                    
-                    // 每1000行刷新一次输出流
-                    if (rowIndex % 1000 == 0) {
-                        try {
-                            outputStream.flush();
-                        } catch (Exception e) {
-                            // 如果连接已断开，停止处理
-                            throw new RuntimeException("连接已断开，导出中断", e);
-                        }
+                // 逐行读取全部搜索结果并写入工作表
+                final Object[] values = new Object[columnNames.size()];
+                final int[] columnIndexes = new int[columnNames.size()];
+                progress.setTotalRows(expectedSearchRows(dataSource, tableName, searchValue, searchType, limit));
+                long exported = databaseService.streamSearchResults(dataSource, tableName, searchValue, "auto", searchType, limit, 
+                        (resultSet, rowNumber) -> {
+                    if (rowNumber == 1) {
+                        resolveColumnIndexes(resultSet.getMetaData(), columnNames, columnIndexes);
                     }
-                }
-                
-                // 自动调整列宽（只对前50列进行调整，避免性能问题）
-                int maxColumns = Math.min(columns.size(), 50);
-                for (int i = 0; i < maxColumns; i++) {
-                    try {
-                        sheet.autoSizeColumn(i);
-                    } catch (Exception e) {
-                        // 如果自动调整列宽失败，设置默认列宽
-                        sheet.setColumnWidth(i, 4000); // 默认列宽
+                    for (int j = 0; j < columnIndexes.length; j++) {
+                        values[j] = columnIndexes[j] > 0 ? JdbcUtils.getResultSetValue(resultSet, columnIndexes[j]) : null;
                     }
-                }
+                    sheetWriter.writeRow(values);
+                    progress.setExportedRows(rowNumber);
+                });
+                sheetWriter.finish();
                 
-                // 写入工作簿
+                // 写入工作簿（数据行已全部读取，此阶段只是打包输出）
                 workbook.write(outputStream);
                 outputStream.flush();
+                progress.complete(exported);
                 
             } catch (Exception e) {
+                progress.fail(e.getMessage());
                 throw new RuntimeException("搜索结果Excel导出失败: " + e.getMessage(), e);
             } finally {
-                if (workbook != null) {
-                    try {
-                        workbook.close();
-                    } catch (Exception e) {
-                        // 忽略关闭时的异常
-                    }
-                }
+                closeWorkbook(workbook);
             }
         };
     }
@@ -402,10 +500,9 @@ public class ExportService {
             // 获取表列信息
             List<Map<String, Object>> columns = databaseService.getTableColumns(dataSource, tableName);
             
-            // 获取搜索结果数据行数
-            Map<String, Object> searchResult = databaseService.getTableDataByValueWithPagination(
-                dataSource, tableName, searchValue, 1, 1, "auto", searchType);
-            Integer totalRows = (Integer) searchResult.get("totalCount");
+            // 获取搜索结果数据行数（与导出使用同一个缓存的搜索条件）
+            Integer totalRows = databaseService.getSearchCondition(
+                dataSource, tableName, searchValue, "auto", searchType).getTotalCount();
             
             return Map.of(
                 "tableName", tableName,
@@ -422,4 +519,135 @@ public class ExportService {
             throw new RuntimeException("获取搜索结果导出信息失败: " + e.getMessage(), e);
         }
     }
+
+    // =============================================================================
+    // 导出进度
+    // =============================================================================
+
+    // 已结束的导出进度保留时间
+    private static final long PROGRESS_RETENTION_MS = 10 * 60 * 1000L;
+    // 未结束的导出进度最长保留时间（客户端未开始下载等情况）
+    private static final long PROGRESS_MAX_AGE_MS = 6 * 60 * 60 * 1000L;
+
+    private final ConcurrentHashMap<String, ExportProgress> exportProgress = new ConcurrentHashMap<>();
+
+    /**
+     * 单次导出的进度
+     */
+    public static class ExportProgress {
+        private final String exportId;
+        private final String tableName;
+        // 发起导出的用户，只有该用户可以查询进度
+        private final Long ownerId;
+        private final long startTime = System.currentTimeMillis();
+        private volatile String status = "running";
+        private volatile long exportedRows = 0;
+        private volatile long totalRows = -1;
+        private volatile long finishTime = 0;
+        private volatile String error;
+
+        ExportProgress(String exportId, String tableName, Long ownerId) {
+            this.exportId = exportId;
+            this.tableName = tableName;
+            this.ownerId = ownerId;
+        }
+
+        boolean isOwnedBy(Long userId) {
+            return userId != null && userId.equals(ownerId);
+        }
+
+        void setExportedRows(long exportedRows) { this.exportedRows = exportedRows; }
+        void setTotalRows(long totalRows) { this.totalRows = totalRows; }
+
+        void complete(long exportedRows) {
+            this.exportedRows = exportedRows;
+            this.status = "completed";
+            this.finishTime = System.currentTimeMillis();
+        }
+
+        void fail(String error) {
+            this.error = error;
+            this.status = "failed";
+            this.finishTime = System.currentTimeMillis();
+        }
+
+        boolean isFinishedBefore(long time) {
+            return finishTime > 0 && finishTime < time;
+        }
+
+        boolean isStartedBefore(long time) {
+            return startTime < time;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("exportId", exportId);
+            map.put("tableName", tableName);
+            map.put("status", status);
+            map.put("exportedRows", exportedRows);
+            map.put("totalRows", totalRows);
+            if (totalRows > 0) {
+                map.put("percent", Math.min(100, exportedRows * 100 / totalRows));
+            }
+            map.put("elapsedMs", (finishTime > 0 ? finishTime : System.currentTimeMillis()) - startTime);
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * 生成导出ID
+     */
+    public String newExportId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * 获取导出进度，不存在或不属于该用户时返回null
+     */
+    public Map<String, Object> getExportProgress(String exportId, Long userId) {
+        ExportProgress progress = exportId != null ? exportProgress.get(exportId) : null;
+        return progress != null && progress.isOwnedBy(userId) ? progress.toMap() : null;
+    }
+
+    /**
+     * 登记导出进度，导出ID由客户端指定时不能覆盖其他用户的进度
+     */
+    private ExportProgress registerProgress(String exportId, String tableName, Long userId) {
+        String id = (exportId != null && !exportId.trim().isEmpty()) ? exportId : newExportId();
+        ExportProgress progress = new ExportProgress(id, tableName, userId);
+        ExportProgress existing = exportProgress.putIfAbsent(id, progress);
+        if (existing != null) {
+            if (!existing.isOwnedBy(userId)) {
+                throw new IllegalArgumentException("导出ID已被使用: " + id);
+            }
+            exportProgress.put(id, progress);
+        }
+        return progress;
+    }
+
+    /**
+     * 预计导出的行数：缓存的匹配总数与limit中较小者
+     * 搜索条件未缓存时不为进度阻塞执行COUNT，没有limit时总数未知（-1），进度只报告已导出的行数
+     */
+    private long expectedSearchRows(String dataSource, String tableName, String searchValue, String searchType, Integer limit) {
+        Integer totalCount = databaseService.getCachedSearchCount(dataSource, tableName, searchValue, "auto", searchType);
+        long total = totalCount != null ? totalCount : -1;
+        if (limit != null && limit > 0 && (total < 0 || limit < total)) {
+            total = limit;
+        }
+        return total;
+    }
+
+    /**
+     * 定期清理已结束的导出进度
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void cleanupExportProgress() {
+        long now = System.currentTimeMillis();
+        exportProgress.values().removeIf(progress -> progress.isFinishedBefore(now - PROGRESS_RETENTION_MS)
+                || progress.isStartedBefore(now - PROGRESS_MAX_AGE_MS));
+    }
 }
@@ -0,0 +1,680 @@
+package com.example.bio_data.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 异步导入任务服务
+ * 上传的文件先保存到任务目录，再由专用线程池在后台导入，提交请求立即返回任务ID；
+ * 进度通过SSE推送，任务可以取消。导入过程中定期把已连续写入的记录数作为断点保存到任务目录，
+ * 失败、取消或服务重启后的任务可以从断点继续，而不需要从头导入
+ */
+@Service
+public class ImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+
+    private static final String DATA_FILE = "data";
+    private static final String JOB_FILE = "job.json";
+    private static final int MAX_JOB_ERRORS = 100;
+
+    @Autowired
+    private StreamingImportService streamingImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BulkheadService bulkheadService;
+
+    // 同时执行的导入任务数
+    @Value("${import.jobs.threads:2}")
+    private int jobThreads;
+
+    // 排队等待执行的任务数上限，队列已满时拒绝提交（429）
+    @Value("${import.jobs.max-queued:20}")
+    private int maxQueuedJobs;
+
+    // 队列已满时建议客户端等待的秒数
+    @Value("${import.jobs.retry-after-seconds:30}")
+    private int retryAfterSeconds;
+
+    // 任务文件目录，为空时使用系统临时目录
+    @Value("${import.jobs.work-dir:}")
+    private String workDir;
+
+    // 断点写入任务文件的最小间隔
+    @Value("${import.jobs.checkpoint-interval-ms:2000}")
+    private long checkpointIntervalMs;
+
+    // 结束的任务保留时间，超过后删除任务目录
+    @Value("${import.jobs.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${import.jobs.sse-timeout-ms:1800000}")
+    private long sseTimeoutMs;
+
+    private Path jobsDir;
+    private ThreadPoolExecutor jobPool;
+    private final ConcurrentHashMap<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public enum JobStatus {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    /**
+     * 导入任务
+     */
+    public static class ImportJob {
+        private String jobId;
+        private String dataSource;
+        private String tableName;
+        private Long userId;
+        private String fileName;
+        private long fileSize;
+        private String delimiter;
+        private String encoding;
+        private boolean hasHeader;
+        private String importStrategy;
+        private boolean bulkLoad;
+        private String nullValue;
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile long committedRecords;
+        private volatile long successCount;
+        private volatile long failureCount;
+        private volatile long skippedCount;
+        private volatile long bytesRead;
+        private boolean tableCleared;
+        private int attempts;
+        private String error;
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        private long createdAt;
+        private long startedAt;
+        private long finishedAt;
+
+        private volatile boolean cancelRequested;
+        private volatile long lastCheckpointSaved;
+        private volatile long progressVersion;
+        private long sentVersion = -1;
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        public String getJobId() { return jobId; }
+        public String getDataSource() { return dataSource; }
+        public String getTableName() { return tableName; }
+        public Long getUserId() { return userId; }
+        public JobStatus getStatus() { return status; }
+
+        /**
+         * 任务状态快照（用于接口返回、SSE事件和持久化）
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("jobId", jobId);
+            map.put("dataSource", dataSource);
+            map.put("tableName", tableName);
+            map.put("userId", userId);
+            map.put("fileName", fileName);
+            map.put("fileSize", fileSize);
+            map.put("delimiter", delimiter);
+            map.put("encoding", encoding);
+            map.put("hasHeader", hasHeader);
+            map.put("importStrategy", importStrategy);
+            map.put("bulkLoad", bulkLoad);
+            map.put("nullValue", nullValue);
+            map.put("status", status.name());
+            map.put("committedRecords", committedRecords);
+            map.put("successCount", successCount);
+            map.put("failureCount", failureCount);
+            map.put("skippedCount", skippedCount);
+            map.put("percent", status == JobStatus.COMPLETED ? 100
+                    : fileSize > 0 ? Math.min(99, (int) (bytesRead * 100 / fileSize)) : 0);
+            map.put("tableCleared", tableCleared);
+            map.put("attempts", attempts);
+            map.put("error", error);
+            synchronized (errors) {
+                map.put("errors", new ArrayList<>(errors));
+            }
+            map.put("createdAt", createdAt);
+            map.put("startedAt", startedAt);
+            map.put("finishedAt", finishedAt);
+            map.put("resumable", (status == JobStatus.FAILED || status == JobStatus.CANCELLED));
+            return map;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        jobsDir = (workDir == null || workDir.trim().isEmpty())
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "bio_data_import_jobs")
+                : Paths.get(workDir.trim());
+        try {
+            Files.createDirectories(jobsDir);
+        } catch (IOException e) {
+            throw new IllegalStateException("无法创建导入任务目录: " + jobsDir, e);
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        jobPool = new ThreadPoolExecutor(jobThreads, jobThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(maxQueuedJobs), runnable -> {
+                    Thread thread = new Thread(runnable, "import-job-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        jobPool.allowCoreThreadTimeOut(true);
+
+        loadPersistedJobs();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ImportJob job : jobs.values()) {
+            if (job.status == JobStatus.RUNNING) {
+                job.cancelRequested = true;
+            }
+        }
+        if (jobPool != null) {
+            jobPool.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交导入任务：先把上传的文件保存到任务目录，然后在后台执行
+     */
+    public ImportJob submit(String dataSource, String tableName, Long userId, InputStream file, String fileName,
+                            String delimiter, String encoding, boolean hasHeader,
+                            String importStrategy, boolean bulkLoad, String nullValue) throws IOException {
+        // 保存上传文件之前先检查队列，避免接收完大文件后才拒绝
+        if (jobPool.getQueue().remainingCapacity() == 0) {
+            throw new BulkheadService.BulkheadFullException(BulkheadService.IMPORT, retryAfterSeconds);
+        }
+        ImportJob job = new ImportJob();
+        job.jobId = UUID.randomUUID().toString().replace("-", "");
+        job.dataSource = dataSource;
+        job.tableName = tableName;
+        job.userId = userId;
+        job.fileName = fileName;
+        job.delimiter = delimiter;
+        job.encoding = encoding;
+        job.hasHeader = hasHeader;
+        job.importStrategy = importStrategy;
+        job.bulkLoad = bulkLoad;
+        job.nullValue = nullValue;
+        job.createdAt = System.currentTimeMillis();
+
+        Path jobDir = jobsDir.resolve(job.jobId);
+        Files.createDirectories(jobDir);
+        try {
+            Files.copy(file, jobDir.resolve(DATA_FILE), StandardCopyOption.REPLACE_EXISTING);
+            job.fileSize = Files.size(jobDir.resolve(DATA_FILE));
+            if (job.fileSize == 0) {
+                throw new IllegalArgumentException("上传文件不能为空");
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(jobDir.resolve(DATA_FILE));
+            deleteQuietly(jobDir);
+            throw e;
+        }
+
+        jobs.put(job.jobId, job);
+        saveJob(job);
+        try {
+            jobPool.execute(() -> runJob(job));
+        } catch (RejectedExecutionException e) {
+            // 检查队列之后其他请求占满了队列
+            jobs.remove(job.jobId);
+            deleteQuietly(jobDir.resolve(DATA_FILE));
+            deleteQuietly(jobDir.resolve(JOB_FILE));
+            deleteQuietly(jobDir);
+            throw new BulkheadService.BulkheadFullException(BulkheadService.IMPORT, retryAfterSeconds);
+        }
+        logger.info("提交导入任务 - 任务ID: {}, 表: {}, 文件: {}, 大小: {} 字节", job.jobId, tableName, job.fileName, job.fileSize);
+        return job;
+    }
+
+    /**
+     * 获取任务，只有提交任务的用户可以访问；没有记录提交用户的任务不对任何用户开放
+     */
+    public ImportJob getJob(String jobId, Long userId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null || !isOwnedBy(job, userId)) {
+            throw new IllegalArgumentException("导入任务不存在: " + jobId);
+        }
+        return job;
+    }
+
+    private boolean isOwnedBy(ImportJob job, Long userId) {
+        return job.userId != null && job.userId.equals(userId);
+    }
+
+    /**
+     * 列出用户的导入任务（按提交时间倒序）
+     */
+    public List<Map<String, Object>> listJobs(Long userId) {
+        return jobs.values().stream()
+                .filter(job -> isOwnedBy(job, userId))
+                .sorted(Comparator.comparingLong((ImportJob job) -> job.createdAt).reversed())
+                .map(ImportJob::toMap)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 取消任务：排队中的任务直接结束，执行中的任务在当前数据块写入完成后停止
+     */
+    public ImportJob cancel(String jobId, Long userId) {
+        ImportJob job = getJob(jobId, userId);
+        synchronized (job) {
+            if (job.status.isFinished()) {
+                throw new IllegalArgumentException("任务已结束，无法取消");
+            }
+            job.cancelRequested = true;
+            if (job.status == JobStatus.QUEUED) {
+                finishJob(job, JobStatus.CANCELLED, null);
+            }
+        }
+        logger.info("请求取消导入任务: {}", jobId);
+        return job;
+    }
+
+    /**
+     * 从断点继续失败或已取消的任务
+     */
+    public ImportJob resume(String jobId, Long userId) {
+        ImportJob job = getJob(jobId, userId);
+        synchronized (job) {
+            if (job.status != JobStatus.FAILED && job.status != JobStatus.CANCELLED) {
+                throw new IllegalArgumentException("只有失败或已取消的任务可以继续");
+            }
+            if (!Files.exists(jobsDir.resolve(jobId).resolve(DATA_FILE))) {
+                throw new IllegalArgumentException("任务的导入文件已被清理，无法继续");
+            }
+            if (jobPool.getQueue().remainingCapacity() == 0) {
+                throw new BulkheadService.BulkheadFullException(BulkheadService.IMPORT, retryAfterSeconds);
+            }
+            job.status = JobStatus.QUEUED;
+            job.cancelRequested = false;
+            job.error = null;
+            job.finishedAt = 0;
+            job.progressVersion++;
+        }
+        saveJob(job);
+        try {
+            jobPool.execute(() -> runJob(job));
+        } catch (RejectedExecutionException e) {
+            finishJob(job, JobStatus.FAILED, "任务队列已满，请稍后继续");
+            throw new BulkheadService.BulkheadFullException(BulkheadService.IMPORT, retryAfterSeconds);
+        }
+        logger.info("从断点继续导入任务 - 任务ID: {}, 已完成记录: {}", jobId, job.committedRecords);
+        return job;
+    }
+
+    /**
+     * 订阅任务进度（SSE），立即推送一次当前状态
+     */
+    public SseEmitter subscribe(String jobId, Long userId) {
+        ImportJob job = getJob(jobId, userId);
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        emitter.onCompletion(() -> job.emitters.remove(emitter));
+        emitter.onTimeout(() -> job.emitters.remove(emitter));
+        emitter.onError(e -> job.emitters.remove(emitter));
+
+        try {
+            if (!job.status.isFinished()) {
+                emitter.send(SseEmitter.event().name("progress").data(job.toMap()));
+                job.emitters.add(emitter);
+                // finishJob可能在加入之前已经通知完订阅者：加入后再检查一次，结束事件由成功移除订阅者的一方发送
+                if (!job.status.isFinished() || !job.emitters.remove(emitter)) {
+                    return emitter;
+                }
+            }
+            emitter.send(SseEmitter.event().name(terminalEventName(job.status)).data(job.toMap()));
+            emitter.complete();
+        } catch (IOException e) {
+            job.emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    private void runJob(ImportJob job) {
+        // 与同步导入接口共用导入操作的并发名额，名额已满时任务保持排队状态等待
+        BulkheadService.Permit permit = acquirePermit(job);
+        if (permit == null) {
+            return;
+        }
+        try (permit) {
+            runJobWithPermit(job);
+        }
+    }
+
+    /**
+     * 等待导入操作名额，任务被取消或线程被中断时返回null
+     */
+    private BulkheadService.Permit acquirePermit(ImportJob job) {
+        while (!job.cancelRequested) {
+            int waitSeconds;
+            try {
+                return bulkheadService.acquire(BulkheadService.IMPORT);
+            } catch (BulkheadService.BulkheadFullException e) {
+                waitSeconds = Math.min(e.getRetryAfterSeconds(), 10);
+                logger.debug("导入任务等待导入名额 - 任务ID: {}, {}秒后重试", job.jobId, waitSeconds);
+            }
+            try {
+                // 按秒检查取消请求
+                for (int i = 0; i < waitSeconds && !job.cancelRequested; i++) {
+                    Thread.sleep(1000);
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void runJobWithPermit(ImportJob job) {
+        synchronized (job) {
+            if (job.status != JobStatus.QUEUED || job.cancelRequested) {
+                return;
+            }
+            job.status = JobStatus.RUNNING;
+            job.attempts++;
+            job.startedAt = System.currentTimeMillis();
+            job.progressVersion++;
+        }
+        saveJob(job);
+
+        Path dataFile = jobsDir.resolve(job.jobId).resolve(DATA_FILE);
+        // 覆盖导入写入影子表时原表在交换前不变，未完成的影子表已删除，之前的断点没有对应的数据，从头重新导入
+        if ("overwrite".equals(job.importStrategy) && !job.tableCleared && job.committedRecords > 0) {
+            logger.info("覆盖导入任务从头重新导入 - 任务ID: {}, 之前的断点: {}", job.jobId, job.committedRecords);
+            job.committedRecords = 0;
+            job.successCount = 0;
+            job.failureCount = 0;
+            job.skippedCount = 0;
+            job.errors.clear();
+        }
+        long baseSuccess = job.successCount;
+        long baseFailure = job.failureCount;
+        long baseSkipped = job.skippedCount;
+
+        StreamingImportService.ImportOptions options = new StreamingImportService.ImportOptions();
+        options.setFileName(job.fileName);
+        options.setDelimiter(job.delimiter);
+        options.setEncoding(job.encoding);
+        options.setHasHeader(job.hasHeader);
+        options.setImportStrategy(job.importStrategy);
+        options.setBulkLoad(job.bulkLoad);
+        options.setNullValue(job.nullValue);
+        options.setSkipRecords(job.committedRecords);
+        // 表已清空过或之前执行过，都可能已有部分数据写入，按断点续传处理；没有清空过原表的覆盖导入重新写入影子表
+        options.setResume(job.tableCleared || (job.attempts > 1 && !"overwrite".equals(job.importStrategy)));
+        options.setProgressListener(new StreamingImportService.ImportProgressListener() {
+            @Override
+            public void onTableCleared(long deletedRows) {
+                job.tableCleared = true;
+                saveJob(job);
+            }
+
+            @Override
+            public void onCheckpoint(long committedRecords, long successCount, long failureCount, long skippedCount) {
+                job.committedRecords = committedRecords;
+                job.successCount = baseSuccess + successCount;
+                job.failureCount = baseFailure + failureCount;
+                job.skippedCount = baseSkipped + skippedCount;
+                job.progressVersion++;
+                long now = System.currentTimeMillis();
+                if (now - job.lastCheckpointSaved >= checkpointIntervalMs) {
+                    job.lastCheckpointSaved = now;
+                    saveJob(job);
+                }
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return job.cancelRequested;
+            }
+        });
+
+        try (InputStream in = new CountingInputStream(new BufferedInputStream(Files.newInputStream(dataFile), 64 * 1024), job)) {
+            Map<String, Object> result = streamingImportService.importStream(job.dataSource, job.tableName, in, options);
+            Object errors = result.get("errors");
+            if (errors instanceof List) {
+                for (Object error : (List<?>) errors) {
+                    if (job.errors.size() >= MAX_JOB_ERRORS) {
+                        break;
+                    }
+                    job.errors.add(String.valueOf(error));
+                }
+            }
+            if (Boolean.TRUE.equals(result.get("cancelled"))) {
+                finishJob(job, JobStatus.CANCELLED, null);
+            } else {
+                finishJob(job, JobStatus.COMPLETED, null);
+                deleteQuietly(dataFile);
+            }
+        } catch (Exception e) {
+            logger.error("导入任务失败 - 任务ID: {}, 已完成记录: {}, 错误: {}", job.jobId, job.committedRecords, e.getMessage(), e);
+            finishJob(job, job.cancelRequested ? JobStatus.CANCELLED : JobStatus.FAILED, e.getMessage());
+        }
+    }
+
+    private void finishJob(ImportJob job, JobStatus status, String error) {
+        synchronized (job) {
+            job.status = status;
+            job.error = error;
+            job.finishedAt = System.currentTimeMillis();
+            job.progressVersion++;
+        }
+        saveJob(job);
+        logger.info("导入任务结束 - 任务ID: {}, 状态: {}, 成功: {}, 失败: {}, 跳过: {}",
+                job.jobId, status, job.successCount, job.failureCount, job.skippedCount);
+
+        Map<String, Object> snapshot = job.toMap();
+        for (SseEmitter emitter : job.emitters) {
+            // 与subscribe()并发时只有成功移除的一方发送结束事件
+            if (!job.emitters.remove(emitter)) {
+                continue;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(terminalEventName(status)).data(snapshot));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private String terminalEventName(JobStatus status) {
+        switch (status) {
+            case COMPLETED: return "complete";
+            case CANCELLED: return "cancelled";
+            default: return "error";
+        }
+    }
+
+    /**
+     * 定期向订阅者推送有变化的任务进度，写入线程只更新计数
+     */
+    @Scheduled(fixedDelayString = "${import.jobs.progress-interval-ms:1000}")
+    public void publishProgress() {
+        for (ImportJob job : jobs.values()) {
+            if (job.emitters.isEmpty() || job.status.isFinished() || job.sentVersion == job.progressVersion) {
+                continue;
+            }
+            job.sentVersion = job.progressVersion;
+            Map<String, Object> snapshot = job.toMap();
+            for (SseEmitter emitter : job.emitters) {
+                try {
+                    emitter.send(SseEmitter.event().name("progress").data(snapshot));
+                } catch (Exception e) {
+                    job.emitters.remove(emitter);
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 清理超过保留时间的已结束任务
+     */
+    @Scheduled(fixedDelay = 3600000)
+    public void cleanupFinishedJobs() {
+        long expireBefore = System.currentTimeMillis() - retentionHours * 3600_000L;
+        for (ImportJob job : jobs.values()) {
+            if (job.status.isFinished() && job.finishedAt > 0 && job.finishedAt < expireBefore) {
+                jobs.remove(job.jobId);
+                Path jobDir = jobsDir.resolve(job.jobId);
+                deleteQuietly(jobDir.resolve(DATA_FILE));
+                deleteQuietly(jobDir.resolve(JOB_FILE));
+                deleteQuietly(jobDir);
+                logger.info("清理过期导入任务: {}", job.jobId);
+            }
+        }
+    }
+
+    /**
+     * 保存任务状态（断点）到任务目录，先写临时文件再替换，避免中途失败留下不完整的文件
+     */
+    private void saveJob(ImportJob job) {
+        Path jobDir = jobsDir.resolve(job.jobId);
+        Path tmpFile = jobDir.resolve(JOB_FILE + ".tmp");
+        try {
+            synchronized (job) {
+                objectMapper.writeValue(tmpFile.toFile(), job.toMap());
+                Files.move(tmpFile, jobDir.resolve(JOB_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            logger.warn("保存导入任务状态失败 - 任务ID: {}, 错误: {}", job.jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * 启动时加载任务目录中的任务，重启前未结束的任务标记为失败，可以从断点继续
+     */
+    @SuppressWarnings("unchecked")
+    private void loadPersistedJobs() {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(jobsDir)) {
+            for (Path jobDir : dirs) {
+                Path jobFile = jobDir.resolve(JOB_FILE);
+                if (!Files.isRegularFile(jobFile)) {
+                    continue;
+                }
+                try {
+                    Map<String, Object> map = objectMapper.readValue(jobFile.toFile(), Map.class);
+                    ImportJob job = fromMap(map);
+                    if (!job.status.isFinished()) {
+                        job.status = JobStatus.FAILED;
+                        job.error = "服务重启导致导入中断";
+                        job.finishedAt = System.currentTimeMillis();
+                        saveJob(job);
+                    }
+                    jobs.put(job.jobId, job);
+                } catch (Exception e) {
+                    logger.warn("加载导入任务失败: {} - {}", jobFile, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("读取导入任务目录失败: {}", e.getMessage());
+        }
+        if (!jobs.isEmpty()) {
+            logger.info("已加载 {} 个导入任务", jobs.size());
+        }
+    }
+
+    private ImportJob fromMap(Map<String, Object> map) {
+        ImportJob job = new ImportJob();
+        job.jobId = (String) map.get("jobId");
+        job.dataSource = (String) map.get("dataSource");
+        job.tableName = (String) map.get("tableName");
+        job.userId = map.get("userId") != null ? ((Number) map.get("userId")).longValue() : null;
+        job.fileName = (String) map.get("fileName");
+        job.fileSize = toLong(map.get("fileSize"));
+        job.delimiter = (String) map.get("delimiter");
+        job.encoding = (String) map.get("encoding");
+        job.hasHeader = Boolean.TRUE.equals(map.get("hasHeader"));
+        job.importStrategy = (String) map.get("importStrategy");
+        job.bulkLoad = Boolean.TRUE.equals(map.get("bulkLoad"));
+        job.nullValue = (String) map.get("nullValue");
+        job.status = JobStatus.valueOf((String) map.get("status"));
+        job.committedRecords = toLong(map.get("committedRecords"));
+        job.successCount = toLong(map.get("successCount"));
+        job.failureCount = toLong(map.get("failureCount"));
+        job.skippedCount = toLong(map.get("skippedCount"));
+        job.tableCleared = Boolean.TRUE.equals(map.get("tableCleared"));
+        job.attempts = (int) toLong(map.get("attempts"));
+        job.error = (String) map.get("error");
+        Object errors = map.get("errors");
+        if (errors instanceof List) {
+            for (Object error : (List<?>) errors) {
+                job.errors.add(String.valueOf(error));
+            }
+        }
+        job.createdAt = toLong(map.get("createdAt"));
+        job.startedAt = toLong(map.get("startedAt"));
+        job.finishedAt = toLong(map.get("finishedAt"));
+        return job;
+    }
+
+    private long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("删除导入任务文件失败: {} - {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 统计已读取的字节数，用于估算进度百分比
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final ImportJob job;
+        private long count;
+
+        CountingInputStream(InputStream in, ImportJob job) {
+            super(in);
+            this.job = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                job.bytesRead = ++count;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+                job.bytesRead = count;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.example.bio_data.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 分阶段导入流水线
+ * 读取（调用线程）→ 过滤与转换（转换线程）→ 插入（多个插入线程）三个阶段之间使用有界队列连接，
+ * 下游处理不过来时上游阻塞等待（背压），内存中最多只有队列容量加上各线程正在处理的数据块。
+ * 插入线程各自从连接池获取连接，写入互不重叠的数据块，使解析和转换的CPU开销与数据库往返重叠
+ */
+@Service
+public class ImportPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportPipeline.class);
+
+    // 队列结束标记
+    private static final Chunk<?> END = new Chunk<>(-1, null);
+
+    @Value("${import.pipeline.convert-workers:1}")
+    private int convertWorkers;
+
+    @Value("${import.pipeline.insert-workers:4}")
+    private int insertWorkers;
+
+    // 阶段之间每个队列最多缓存的数据块数
+    @Value("${import.pipeline.queue-capacity:4}")
+    private int queueCapacity;
+
+    // 同时运行的流水线数量，超过时由调用方顺序执行，避免占满连接池
+    @Value("${import.pipeline.max-concurrent:2}")
+    private int maxConcurrent;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private Semaphore permits;
+    private ExecutorService workerPool;
+
+    // 所有运行中流水线的队列深度之和
+    private final AtomicInteger convertQueueDepth = new AtomicInteger();
+    private final AtomicInteger insertQueueDepth = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(Math.max(1, maxConcurrent));
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerPool = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "import-pipeline-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (meterRegistry != null) {
+            Gauge.builder("import.pipeline.queue.depth", convertQueueDepth, AtomicInteger::get)
+                    .tag("queue", "convert")
+                    .description("等待过滤转换的数据块数").register(meterRegistry);
+            Gauge.builder("import.pipeline.queue.depth", insertQueueDepth, AtomicInteger::get)
+                    .tag("queue", "insert")
+                    .description("等待插入的数据块数").register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (workerPool != null) {
+            workerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * 读取阶段：在调用线程中执行，返回null表示结束
+     */
+    public interface ChunkSource<T> {
+        List<T> nextChunk() throws Exception;
+    }
+
+    /**
+     * 过滤转换阶段：返回需要插入的行（可以少于输入，差值计为跳过）
+     */
+    public interface ChunkConverter<T> {
+        List<Object[]> convert(List<T> chunk) throws Exception;
+    }
+
+    /**
+     * 插入阶段：可能在多个线程中并发调用
+     */
+    public interface ChunkWriter {
+        BatchInsertEngine.InsertResult write(List<Object[]> rows) throws Exception;
+    }
+
+    /**
+     * 提交进度回调：从第一个数据块起连续完成写入的数据块数增加时调用（可能在插入线程中调用）
+     * 并行插入时数据块的完成顺序不确定，只有连续完成的部分可以作为断点
+     */
+    public interface ChunkListener {
+        void onCommitted(long committedChunks, PipelineResult result);
+    }
+
+    private static class Chunk<V> {
+        final long seq;
+        final List<V> rows;
+
+        Chunk(long seq, List<V> rows) {
+            this.seq = seq;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * 记录连续完成的数据块数
+     */
+    private static class CommitTracker {
+        private final ChunkListener listener;
+        private final PipelineResult result;
+        private final TreeSet<Long> completed = new TreeSet<>();
+        private long committedChunks = 0;
+
+        CommitTracker(ChunkListener listener, PipelineResult result) {
+            this.listener = listener;
+            this.result = result;
+        }
+
+        void complete(long seq) {
+            if (listener == null) {
+                return;
+            }
+            synchronized (this) {
+                completed.add(seq);
+                long before = committedChunks;
+                while (!completed.isEmpty() && completed.first() == committedChunks) {
+                    completed.pollFirst();
+                    committedChunks++;
+                }
+                if (committedChunks == before) {
+                    return;
+                }
+                // 在锁内回调，保证断点按递增顺序上报
+                listener.onCommitted(committedChunks, result);
+            }
+        }
+    }
+
+    /**
+     * 各阶段的处理量和耗时
+     */
+    public static class StageStats {
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong chunks = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+        void record(int rowCount, long nanos) {
+            rows.addAndGet(rowCount);
+            chunks.incrementAndGet();
+            busyNanos.addAndGet(nanos);
+        }
+
+        void observeQueue(int depth) {
+            maxQueueDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long busyMs = busyNanos.get() / 1_000_000;
+            map.put("rows", rows.get());
+            map.put("chunks", chunks.get());
+            map.put("busyMs", busyMs);
+            map.put("rowsPerSecond", busyMs > 0 ? rows.get() * 1000 / busyMs : rows.get());
+            map.put("maxQueueDepth", maxQueueDepth.get());
+            return map;
+        }
+    }
+
+    /**
+     * 流水线执行结果
+     */
+    public static class PipelineResult {
+        private final AtomicLong totalRecords = new AtomicLong();
+        private final AtomicLong successCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final AtomicLong skippedCount = new AtomicLong();
+        private final AtomicLong updatedCount = new AtomicLong();
+        private final AtomicLong unchangedCount = new AtomicLong();
+        private final AtomicLong batchCount = new AtomicLong();
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        private final Map<String, StageStats> stages = new LinkedHashMap<>();
+        private boolean parallel;
+
+        PipelineResult() {
+            stages.put("read", new StageStats());
+            stages.put("convert", new StageStats());
+            stages.put("insert", new StageStats());
+        }
+
+        public long getTotalRecords() { return totalRecords.get(); }
+        public long getSuccessCount() { return successCount.get(); }
+        public long getFailureCount() { return failureCount.get(); }
+        public long getSkippedCount() { return skippedCount.get(); }
+        public long getUpdatedCount() { return updatedCount.get(); }
+        public long getUnchangedCount() { return unchangedCount.get(); }
+        public long getBatchCount() { return batchCount.get(); }
+        public List<String> getErrors() { return errors; }
+        public boolean isParallel() { return parallel; }
+
+        public Map<String, Object> getStageStats() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            stages.forEach((name, stats) -> map.put(name, stats.toMap()));
+            return map;
+        }
+    }
+
+    /**
+     * 执行流水线，全部数据处理完成（或某个阶段出现异常）后返回
+     * 单批插入失败由ChunkWriter计入结果；读取或转换抛出的异常会中止流水线并抛给调用方
+     * @param maxErrors 结果中最多保留的错误信息条数
+     */
+    public <T> PipelineResult run(ChunkSource<T> source, ChunkConverter<T> converter, ChunkWriter writer, int maxErrors) {
+        return run(source, converter, writer, maxErrors, null);
+    }
+
+    /**
+     * 执行流水线，并在连续完成写入的数据块数增加时通知listener（可以为null）
+     */
+    public <T> PipelineResult run(ChunkSource<T> source, ChunkConverter<T> converter, ChunkWriter writer,
+                                  int maxErrors, ChunkListener listener) {
+        PipelineResult result = new PipelineResult();
+        CommitTracker tracker = new CommitTracker(listener, result);
+        if (!permits.tryAcquire()) {
+            logger.info("并发导入流水线已达上限 {}，本次顺序执行", maxConcurrent);
+            runSequential(source, converter, writer, maxErrors, result, tracker);
+            return result;
+        }
+        try {
+            result.parallel = true;
+            runParallel(source, converter, writer, maxErrors, result, tracker);
+            return result;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private <T> void runSequential(ChunkSource<T> source, ChunkConverter<T> converter, ChunkWriter writer,
+                                   int maxErrors, PipelineResult result, CommitTracker tracker) {
+        try {
+            long seq = 0;
+            while (true) {
+                List<T> chunk = timed(result, "read", () -> source.nextChunk());
+                if (chunk == null) {
+                    break;
+                }
+                result.totalRecords.addAndGet(chunk.size());
+                List<Object[]> rows = timedConvert(result, converter, chunk);
+                writeChunk(result, writer, rows, maxErrors);
+                tracker.complete(seq++);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("导入失败: " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void runParallel(ChunkSource<T> source, ChunkConverter<T> converter, ChunkWriter writer,
+                                 int maxErrors, PipelineResult result, CommitTracker tracker) {
+        BlockingQueue<Chunk<T>> convertQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Chunk<Object[]>> insertQueue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        int converters = Math.max(1, convertWorkers);
+        int inserters = Math.max(1, insertWorkers);
+        CountDownLatch convertDone = new CountDownLatch(converters);
+        CountDownLatch insertDone = new CountDownLatch(inserters);
+
+        for (int i = 0; i < converters; i++) {
+            workerPool.execute(() -> {
+                try {
+                    while (failure.get() == null) {
+                        Chunk<T> chunk = poll(convertQueue, convertQueueDepth, failure);
+                        if (chunk == null || chunk == END) {
+                            break;
+                        }
+                        List<Object[]> rows = timedConvert(result, converter, chunk.rows);
+                        if (!offer(insertQueue, new Chunk<>(chunk.seq, rows), insertQueueDepth, failure)) {
+                            break;
+                        }
+                        result.stages.get("insert").observeQueue(insertQueue.size());
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    convertDone.countDown();
+                }
+            });
+        }
+        for (int i = 0; i < inserters; i++) {
+            workerPool.execute(() -> {
+                try {
+                    while (failure.get() == null) {
+                        Chunk<Object[]> chunk = poll(insertQueue, insertQueueDepth, failure);
+                        if (chunk == null || chunk == END) {
+                            break;
+                        }
+                        writeChunk(result, writer, chunk.rows, maxErrors);
+                        tracker.complete(chunk.seq);
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    insertDone.countDown();
+                }
+            });
+        }
+
+        try {
+            // 读取阶段在调用线程中执行
+            long seq = 0;
+            while (failure.get() == null) {
+                List<T> chunk = timed(result, "read", () -> source.nextChunk());
+                if (chunk == null) {
+                    break;
+                }
+                result.totalRecords.addAndGet(chunk.size());
+                if (!offer(convertQueue, new Chunk<>(seq++, chunk), convertQueueDepth, failure)) {
+                    break;
+                }
+                result.stages.get("convert").observeQueue(convertQueue.size());
+            }
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+        }
+
+        try {
+            for (int i = 0; i < converters; i++) {
+                offer(convertQueue, (Chunk<T>) END, convertQueueDepth, failure);
+            }
+            convertDone.await();
+            for (int i = 0; i < inserters; i++) {
+                offer(insertQueue, (Chunk<Object[]>) END, insertQueueDepth, failure);
+            }
+            insertDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            // 中止时丢弃队列中剩余的数据块
+            convertQueueDepth.addAndGet(-drain(convertQueue));
+            insertQueueDepth.addAndGet(-drain(insertQueue));
+        }
+
+        if (failure.get() != null) {
+            Exception e = failure.get();
+            logger.error("导入流水线中止: {}", e.getMessage(), e);
+            throw new RuntimeException("导入失败: " + e.getMessage(), e);
+        }
+    }
+
+    private <T> List<Object[]> timedConvert(PipelineResult result, ChunkConverter<T> converter, List<T> chunk) throws Exception {
+        long start = System.nanoTime();
+        List<Object[]> rows = converter.convert(chunk);
+        long nanos = System.nanoTime() - start;
+        result.stages.get("convert").record(chunk.size(), nanos);
+        result.skippedCount.addAndGet(chunk.size() - rows.size());
+        recordTimer("convert", nanos);
+        return rows;
+    }
+
+    private void writeChunk(PipelineResult result, ChunkWriter writer, List<Object[]> rows, int maxErrors) throws Exception {
+        if (rows.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        BatchInsertEngine.InsertResult insertResult = writer.write(rows);
+        long nanos = System.nanoTime() - start;
+        result.stages.get("insert").record(rows.size(), nanos);
+        recordTimer("insert", nanos);
+        result.successCount.addAndGet(insertResult.getSuccessCount());
+        result.failureCount.addAndGet(insertResult.getFailureCount());
+        result.skippedCount.addAndGet(insertResult.getSkippedCount());
+        result.updatedCount.addAndGet(insertResult.getUpdatedCount());
+        result.unchangedCount.addAndGet(insertResult.getUnchangedCount());
+        result.batchCount.addAndGet(insertResult.getBatchCount());
+        for (String error : insertResult.getErrors()) {
+            if (result.errors.size() >= maxErrors) {
+                break;
+            }
+            result.errors.add(error);
+        }
+    }
+
+    private <T> List<T> timed(PipelineResult result, String stage, Callable<List<T>> reader) throws Exception {
+        long start = System.nanoTime();
+        List<T> chunk = reader.call();
+        long nanos = System.nanoTime() - start;
+        if (chunk != null) {
+            result.stages.get(stage).record(chunk.size(), nanos);
+            recordTimer(stage, nanos);
+        }
+        return chunk;
+    }
+
+    private void recordTimer(String stage, long nanos) {
+        if (meterRegistry != null) {
+            Timer.builder("import.pipeline.stage")
+                    .tag("stage", stage)
+                    .description("导入流水线各阶段处理单个数据块的耗时")
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 放入队列，队列满时等待；流水线已中止时返回false
+     */
+    private <V> boolean offer(BlockingQueue<V> queue, V item, AtomicInteger depth,
+                              AtomicReference<Exception> failure) throws InterruptedException {
+        while (failure.get() == null) {
+            if (queue.offer(item, 200, TimeUnit.MILLISECONDS)) {
+                depth.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从队列取出，队列空时等待；流水线已中止时返回null
+     */
+    private <V> V poll(BlockingQueue<V> queue, AtomicInteger depth, AtomicReference<Exception> failure) throws InterruptedException {
+        while (failure.get() == null) {
+            V item = queue.poll(200, TimeUnit.MILLISECONDS);
+            if (item != null) {
+                depth.decrementAndGet();
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private int drain(BlockingQueue<?> queue) {
+        List<Object> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        return remaining.size();
+    }
+}
@@ -1,10 +1,16 @@
 package com.example.bio_data.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -12,6 +18,9 @@ public class KnowledgeGraphService {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Autowired
+    private KnowledgeGraphStore knowledgeGraphStore;
+
     /**
      * 解析JSON格式的知识图谱
      */
@@ -303,8 +312,16 @@ public class KnowledgeGraphService {
      * 获取节点的邻居节点
      */
     public Map<String, Object> getNodeNeighbors(Map<String, Object> graphData, String nodeId, int depth) {
-        Map<String, Object> result = new HashMap<>();
-        
+        return getNodeNeighbors(graphData, nodeId, depth, 0, null);
+    }
+
+    /**
+     * 获取节点的邻居节点：先为提交的图谱建立邻接索引，再按层遍历，耗时与节点数加关系数成正比
+     * @param maxFanOut 每个节点每一跳最多扩展的新邻居数，0表示不限制
+     * @param relationTypes 只沿relation或type属于该集合的关系扩展，为空表示不过滤
+     */
+    public Map<String, Object> getNodeNeighbors(Map<String, Object> graphData, String nodeId, int depth,
+                                                int maxFanOut, Collection<String> relationTypes) {
         try {
             @SuppressWarnings("unchecked")
             List<Map<String, Object>> nodes = (List<Map<String, Object>>) graphData.get("nodes");
@@ -312,67 +329,23 @@ public class KnowledgeGraphService {
             List<Map<String, Object>> links = (List<Map<String, Object>>) graphData.get("links");
             
             if (nodes == null || links == null) {
+                Map<String, Object> result = new HashMap<>();
                 result.put("nodes", new ArrayList<>());
                 result.put("links", new ArrayList<>());
                 return result;
             }
             
-            Set<String> neighborIds = new HashSet<>();
-            Set<String> currentLevel = new HashSet<>();
-            currentLevel.add(nodeId);
-            
-            // 递归查找指定深度的邻居
-            for (int level = 0; level < depth; level++) {
-                Set<String> nextLevel = new HashSet<>();
-                
-                for (String currentNodeId : currentLevel) {
-                    for (Map<String, Object> link : links) {
-                        String source = (String) link.get("source");
-                        String target = (String) link.get("target");
-                        
-                        if (currentNodeId.equals(source)) {
-                            nextLevel.add(target);
-                            neighborIds.add(target);
-                        } else if (currentNodeId.equals(target)) {
-                            nextLevel.add(source);
-                            neighborIds.add(source);
-                        }
-                    }
-                }
-                
-                currentLevel = nextLevel;
-            }
-            
-            // 添加原始节点
-            neighborIds.add(nodeId);
-            
-            // 过滤节点
-            List<Map<String, Object>> neighborNodes = nodes.stream()
-                .filter(node -> neighborIds.contains(node.get("id")))
-                .collect(Collectors.toList());
-            
-            // 过滤链接
-            List<Map<String, Object>> neighborLinks = links.stream()
-                .filter(link -> {
-                    String source = (String) link.get("source");
-                    String target = (String) link.get("target");
-                    return neighborIds.contains(source) && neighborIds.contains(target);
-                })
-                .collect(Collectors.toList());
-            
-            result.put("nodes", neighborNodes);
-            result.put("links", neighborLinks);
-            result.put("centerNodeId", nodeId);
-            result.put("depth", depth);
-            result.put("neighborCount", neighborIds.size() - 1); // 排除中心节点
+            return getNodeNeighbors(knowledgeGraphStore.compactWithinBudget(nodes, links), nodeId, depth, maxFanOut, relationTypes);
             
+        } catch (KnowledgeGraphStore.GraphTooLargeException e) {
+            throw e;
         } catch (Exception e) {
+            Map<String, Object> result = new HashMap<>();
             result.put("error", "获取邻居节点失败: " + e.getMessage());
             result.put("nodes", new ArrayList<>());
             result.put("links", new ArrayList<>());
+            return result;
         }
-        
-        return result;
     }
 
     /**
@@ -444,6 +417,286 @@ public class KnowledgeGraphService {
         return result;
     }
 
+    // ========== 服务端保存的图谱（按graphId查询） ==========
+
+    /**
+     * 计算已保存图谱的统计信息，结果与calculateStatistics相同
+     */
+    public Map<String, Object> calculateStatistics(KnowledgeGraphStore.CompactGraph graph) {
+        Map<String, Object> stats = new HashMap<>();
+        int nodeCount = graph.getNodeRowCount();
+        int linkCount = graph.getLinkRowCount();
+
+        stats.put("nodeCount", nodeCount);
+        stats.put("nodeTypes", graph.countNodeValues("type"));
+        stats.put("nodeLabelCounts", graph.countNodeValues("label"));
+        stats.put("linkCount", linkCount);
+        stats.put("relationTypes", graph.countLinkValues("relation"));
+        stats.put("linkTypes", graph.countLinkValues("type"));
+
+        if (nodeCount > 0) {
+            double maxPossibleLinks = nodeCount * (nodeCount - 1.0) / 2.0;
+            double density = maxPossibleLinks > 0 ? linkCount / maxPossibleLinks : 0.0;
+            stats.put("networkDensity", Math.round(density * 10000.0) / 10000.0);
+        }
+
+        // 度数：每条关系的两个端点各加1
+        int[] degree = new int[graph.getNodeIdCount()];
+        for (int row = 0; row < linkCount; row++) {
+            if (graph.linkSource(row) >= 0) {
+                degree[graph.linkSource(row)]++;
+            }
+            if (graph.linkTarget(row) >= 0) {
+                degree[graph.linkTarget(row)]++;
+            }
+        }
+        Map<String, Integer> degreeMap = new HashMap<>();
+        int maxDegreeId = -1;
+        for (int id = 0; id < degree.length; id++) {
+            degreeMap.put(graph.getNodeId(id), degree[id]);
+            if (maxDegreeId < 0 || degree[id] > degree[maxDegreeId]) {
+                maxDegreeId = id;
+            }
+        }
+        stats.put("degreeDistribution", degreeMap);
+        if (maxDegreeId >= 0) {
+            stats.put("maxDegreeNode", graph.getNodeId(maxDegreeId));
+            stats.put("maxDegree", degree[maxDegreeId]);
+        }
+
+        stats.put("calculatedAt", System.currentTimeMillis());
+        return stats;
+    }
+
+    /**
+     * 接收遍历中产生的节点行或关系行
+     */
+    private interface RowSink {
+        void accept(int row) throws IOException;
+    }
+
+    /**
+     * 把行号收集到数组中，用于按原顺序返回结果
+     */
+    private static class RowList implements RowSink {
+        private int[] rows = new int[16];
+        private int size;
+
+        @Override
+        public void accept(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            rows[size++] = row;
+        }
+
+        int[] sorted() {
+            int[] result = Arrays.copyOf(rows, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    /**
+     * 邻居遍历结果：访问到的节点编号按访问顺序保存在queue的前visitedCount个元素中
+     */
+    private static class NeighborTraversal {
+        private final boolean[] visited;
+        private final int[] queue;
+        private final int visitedCount;
+        private final boolean truncated;
+
+        NeighborTraversal(boolean[] visited, int[] queue, int visitedCount, boolean truncated) {
+            this.visited = visited;
+            this.queue = queue;
+            this.visitedCount = visitedCount;
+            this.truncated = truncated;
+        }
+    }
+
+    /**
+     * 在已保存图谱的邻接表上按层遍历，获取指定深度内的邻居
+     */
+    public Map<String, Object> getNodeNeighbors(KnowledgeGraphStore.CompactGraph graph, String nodeId, int depth) {
+        return getNodeNeighbors(graph, nodeId, depth, 0, null);
+    }
+
+    /**
+     * 节点和关系按上传时的顺序返回
+     * @param relationTypes 只沿relation或type属于该集合的关系扩展；返回的关系为访问到的节点之间的全部关系，不按类型过滤
+     */
+    public Map<String, Object> getNodeNeighbors(KnowledgeGraphStore.CompactGraph graph, String nodeId, int depth,
+                                                int maxFanOut, Collection<String> relationTypes) {
+        RowList nodeRows = new RowList();
+        RowList linkRows = new RowList();
+        NeighborTraversal traversal;
+        try {
+            traversal = traverseNeighbors(graph, nodeId, depth, maxFanOut, relationTypes, nodeRows);
+            if (traversal != null) {
+                forEachInducedLink(graph, traversal, linkRows);
+            }
+        } catch (IOException e) {
+            // 收集到数组中不会产生I/O异常
+            throw new UncheckedIOException(e);
+        }
+
+        int[] sortedNodeRows = nodeRows.sorted();
+        List<Map<String, Object>> neighborNodes = new ArrayList<>(sortedNodeRows.length);
+        for (int row : sortedNodeRows) {
+            neighborNodes.add(graph.nodeRow(row));
+        }
+        int[] sortedLinkRows = linkRows.sorted();
+        List<Map<String, Object>> neighborLinks = new ArrayList<>(sortedLinkRows.length);
+        for (int row : sortedLinkRows) {
+            neighborLinks.add(graph.linkRow(row));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("nodes", neighborNodes);
+        result.put("links", neighborLinks);
+        result.put("centerNodeId", nodeId);
+        result.put("depth", depth);
+        result.put("neighborCount", traversal != null ? traversal.visitedCount - 1 : 0); // 排除中心节点
+        result.put("truncated", traversal != null && traversal.truncated);
+        return result;
+    }
+
+    /**
+     * 以JSON流的形式输出邻居子图：节点行在遍历访问到时立即写出（按访问顺序），遍历结束后再逐条写出关系，
+     * 不在内存中组装结果列表；neighborCount和truncated在遍历结束后写在最后
+     */
+    public void writeNodeNeighbors(KnowledgeGraphStore.CompactGraph graph, String nodeId, int depth, int maxFanOut,
+                                   Collection<String> relationTypes, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeStringField("centerNodeId", nodeId);
+            generator.writeNumberField("depth", depth);
+            generator.writeArrayFieldStart("nodes");
+            NeighborTraversal traversal = traverseNeighbors(graph, nodeId, depth, maxFanOut, relationTypes,
+                    row -> generator.writeObject(graph.nodeRow(row)));
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("links");
+            if (traversal != null) {
+                forEachInducedLink(graph, traversal, row -> generator.writeObject(graph.linkRow(row)));
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("neighborCount", traversal != null ? traversal.visitedCount - 1 : 0);
+            generator.writeBooleanField("truncated", traversal != null && traversal.truncated);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * 按层遍历邻接表：每个节点只访问一次，耗时只与访问到的节点及其关系数有关
+     * 每访问到一个节点（包括中心节点）就把它的节点行交给nodeRows；中心节点不存在时返回null
+     */
+    private NeighborTraversal traverseNeighbors(KnowledgeGraphStore.CompactGraph graph, String nodeId, int depth,
+                                                int maxFanOut, Collection<String> relationTypes,
+                                                RowSink nodeRows) throws IOException {
+        int center = graph.indexOf(nodeId);
+        if (center < 0) {
+            return null;
+        }
+        IntPredicate linkAllowed = relationTypes == null || relationTypes.isEmpty()
+                ? row -> true : graph.linkTypeFilter(relationTypes);
+
+        boolean[] visited = new boolean[graph.getNodeIdCount()];
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = center;
+        visited[center] = true;
+        emitNodeRows(graph, center, nodeRows);
+        boolean truncated = false;
+
+        for (int level = 0; level < depth && head < tail; level++) {
+            int levelEnd = tail;
+            while (head < levelEnd) {
+                int current = queue[head++];
+                int added = 0;
+                for (int slot = graph.adjacencyStart(current); slot < graph.adjacencyEnd(current); slot++) {
+                    int neighbor = graph.adjacentId(slot);
+                    if (visited[neighbor] || !linkAllowed.test(graph.adjacentLink(slot))) {
+                        continue;
+                    }
+                    if (maxFanOut > 0 && added >= maxFanOut) {
+                        truncated = true;
+                        break;
+                    }
+                    visited[neighbor] = true;
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, queue.length * 2);
+                    }
+                    queue[tail++] = neighbor;
+                    emitNodeRows(graph, neighbor, nodeRows);
+                    added++;
+                }
+            }
+        }
+        return new NeighborTraversal(visited, queue, tail, truncated);
+    }
+
+    private void emitNodeRows(KnowledgeGraphStore.CompactGraph graph, int id, RowSink nodeRows) throws IOException {
+        for (int position = graph.nodeRowStart(id); position < graph.nodeRowEnd(id); position++) {
+            nodeRows.accept(graph.nodeRowAt(position));
+        }
+    }
+
+    /**
+     * 诱导子图的关系：两端都被访问到的全部关系（与关系类型无关），每条关系只在较小编号的端点处输出一次
+     */
+    private void forEachInducedLink(KnowledgeGraphStore.CompactGraph graph, NeighborTraversal traversal,
+                                    RowSink linkRows) throws IOException {
+        for (int i = 0; i < traversal.visitedCount; i++) {
+            int id = traversal.queue[i];
+            for (int slot = graph.adjacencyStart(id); slot < graph.adjacencyEnd(id); slot++) {
+                int other = graph.adjacentId(slot);
+                if (other >= id && traversal.visited[other]) {
+                    linkRows.accept(graph.adjacentLink(slot));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 过滤已保存的图谱，条件与filterKnowledgeGraph相同
+     */
+    public Map<String, Object> filterKnowledgeGraph(KnowledgeGraphStore.CompactGraph graph, Map<String, Object> filters) {
+        Map<String, Object> filteredData = new HashMap<>();
+        boolean[] keptIds = new boolean[graph.getNodeIdCount()];
+
+        List<Map<String, Object>> filteredNodes = new ArrayList<>();
+        for (int row = 0; row < graph.getNodeRowCount(); row++) {
+            Map<String, Object> node = graph.nodeRow(row);
+            if (matchesNodeFilter(node, filters)) {
+                filteredNodes.add(node);
+                if (graph.nodeRowId(row) >= 0) {
+                    keptIds[graph.nodeRowId(row)] = true;
+                }
+            }
+        }
+
+        // 只保留两端节点都存在的链接
+        List<Map<String, Object>> filteredLinks = new ArrayList<>();
+        for (int row = 0; row < graph.getLinkRowCount(); row++) {
+            int source = graph.linkSource(row);
+            int target = graph.linkTarget(row);
+            if (source >= 0 && target >= 0 && keptIds[source] && keptIds[target]) {
+                Map<String, Object> link = graph.linkRow(row);
+                if (matchesLinkFilter(link, filters)) {
+                    filteredLinks.add(link);
+                }
+            }
+        }
+
+        filteredData.put("nodes", filteredNodes);
+        filteredData.put("links", filteredLinks);
+        filteredData.put("filterApplied", true);
+        filteredData.put("filteredAt", System.currentTimeMillis());
+        return filteredData;
+    }
+
     // ========== 私有辅助方法 ==========
 
     private List<Map<String, Object>> parseNodes(JsonNode nodesNode) {
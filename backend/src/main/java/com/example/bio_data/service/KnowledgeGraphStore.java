@@ -0,0 +1,467 @@
+package com.example.bio_data.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * 服务端知识图谱存储
+ * 图谱上传一次后按graphId保存在内存中，后续统计、邻居、过滤查询只传graphId，不再每次提交并解析整个图谱JSON。
+ * 节点ID统一映射为连续的int，邻接关系以CSR（压缩稀疏行）的int数组保存，节点和关系的属性按列字典编码存储
+ */
+@Service
+public class KnowledgeGraphStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnowledgeGraphStore.class);
+
+    @Value("${knowledge-graph.store.max-graphs:20}")
+    private int maxGraphs;
+
+    @Value("${knowledge-graph.store.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    // 单个图谱估算占用的上限，属性列按"行数×属性名数"分配int数组，属性名很多的稀疏图谱也按此计算
+    @Value("${knowledge-graph.store.max-graph-bytes:134217728}")
+    private long maxGraphBytes;
+
+    // 所有图谱估算占用之和的上限，超过时淘汰最久未访问的图谱
+    @Value("${knowledge-graph.store.max-total-bytes:536870912}")
+    private long maxTotalBytes;
+
+    private final ConcurrentHashMap<String, StoredGraph> graphs = new ConcurrentHashMap<>();
+
+    /**
+     * 图谱超过大小上限，拒绝保存
+     */
+    public static class GraphTooLargeException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public GraphTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 按列存储的属性：每行保存字典编号，-1表示该行没有这个属性
+     */
+    static final class Column {
+        private final int[] codes;
+        private final List<Object> dictionary = new ArrayList<>();
+
+        Column(int rows) {
+            codes = new int[rows];
+            Arrays.fill(codes, -1);
+        }
+
+        Object get(int row) {
+            int code = codes[row];
+            return code < 0 ? null : dictionary.get(code);
+        }
+    }
+
+    /**
+     * 紧凑图结构
+     * 节点行和关系行保持上传时的顺序；nodeIds为去重后的节点ID（包括只出现在关系中的端点），
+     * 邻接表offsets/adjacentIds/adjacentLinks按无向图保存，第i个节点的邻居为offsets[i]到offsets[i+1]之间的元素，
+     * 节点编号到节点行的对应关系nodeRowOffsets/nodeRowsById同样按CSR保存
+     */
+    public static final class CompactGraph {
+        private final String[] nodeIds;
+        private final Map<String, Integer> nodeIndex;
+        private final int[] nodeRowIds;
+        private final int[] nodeRowOffsets;
+        private final int[] nodeRowsById;
+        private final int[] linkSources;
+        private final int[] linkTargets;
+        private final int[] offsets;
+        private final int[] adjacentIds;
+        private final int[] adjacentLinks;
+        private final Map<String, Column> nodeColumns;
+        private final Map<String, Column> linkColumns;
+
+        private CompactGraph(String[] nodeIds, Map<String, Integer> nodeIndex, int[] nodeRowIds,
+                             int[] nodeRowOffsets, int[] nodeRowsById, int[] linkSources, int[] linkTargets,
+                             int[] offsets, int[] adjacentIds, int[] adjacentLinks,
+                             Map<String, Column> nodeColumns, Map<String, Column> linkColumns) {
+            this.nodeIds = nodeIds;
+            this.nodeIndex = nodeIndex;
+            this.nodeRowIds = nodeRowIds;
+            this.nodeRowOffsets = nodeRowOffsets;
+            this.nodeRowsById = nodeRowsById;
+            this.linkSources = linkSources;
+            this.linkTargets = linkTargets;
+            this.offsets = offsets;
+            this.adjacentIds = adjacentIds;
+            this.adjacentLinks = adjacentLinks;
+            this.nodeColumns = nodeColumns;
+            this.linkColumns = linkColumns;
+        }
+
+        /** 去重后的节点ID数 */
+        public int getNodeIdCount() { return nodeIds.length; }
+        /** 上传的节点行数 */
+        public int getNodeRowCount() { return nodeRowIds.length; }
+        public int getLinkRowCount() { return linkSources.length; }
+
+        public String getNodeId(int id) { return nodeIds[id]; }
+
+        /** 节点ID对应的编号，不存在时返回-1 */
+        public int indexOf(String nodeId) {
+            Integer id = nodeIndex.get(nodeId);
+            return id != null ? id : -1;
+        }
+
+        /** 节点行的节点编号，行中没有id时为-1 */
+        public int nodeRowId(int row) { return nodeRowIds[row]; }
+        /** 节点编号对应的节点行（通常只有一行），位置在nodeRowStart(id)到nodeRowEnd(id)之间 */
+        public int nodeRowStart(int id) { return nodeRowOffsets[id]; }
+        public int nodeRowEnd(int id) { return nodeRowOffsets[id + 1]; }
+        public int nodeRowAt(int position) { return nodeRowsById[position]; }
+
+        public int linkSource(int row) { return linkSources[row]; }
+        public int linkTarget(int row) { return linkTargets[row]; }
+
+        public int adjacencyStart(int id) { return offsets[id]; }
+        public int adjacencyEnd(int id) { return offsets[id + 1]; }
+        public int adjacentId(int slot) { return adjacentIds[slot]; }
+        public int adjacentLink(int slot) { return adjacentLinks[slot]; }
+
+        /** 节点行某个属性的值 */
+        public Object nodeValue(int row, String key) {
+            Column column = nodeColumns.get(key);
+            return column != null ? column.get(row) : null;
+        }
+
+        public Object linkValue(int row, String key) {
+            Column column = linkColumns.get(key);
+            return column != null ? column.get(row) : null;
+        }
+
+        /**
+         * 关系类型过滤：relation或type属于给定集合的关系行返回true
+         * 先把字典中匹配的编号标记出来，逐行判断时只比较int
+         */
+        public IntPredicate linkTypeFilter(Collection<String> types) {
+            boolean[] relationMatches = matchingCodes(linkColumns.get("relation"), types);
+            boolean[] typeMatches = matchingCodes(linkColumns.get("type"), types);
+            Column relationColumn = linkColumns.get("relation");
+            Column typeColumn = linkColumns.get("type");
+            return row -> (relationColumn != null && relationColumn.codes[row] >= 0 && relationMatches[relationColumn.codes[row]])
+                    || (typeColumn != null && typeColumn.codes[row] >= 0 && typeMatches[typeColumn.codes[row]]);
+        }
+
+        private static boolean[] matchingCodes(Column column, Collection<String> values) {
+            if (column == null) {
+                return new boolean[0];
+            }
+            boolean[] matches = new boolean[column.dictionary.size()];
+            for (int code = 0; code < matches.length; code++) {
+                matches[code] = values.contains(column.dictionary.get(code).toString());
+            }
+            return matches;
+        }
+
+        /**
+         * 按字典编号统计某列各取值的行数（值按字符串汇总）
+         */
+        public Map<String, Integer> countNodeValues(String key) {
+            return countValues(nodeColumns.get(key));
+        }
+
+        public Map<String, Integer> countLinkValues(String key) {
+            return countValues(linkColumns.get(key));
+        }
+
+        /** 还原节点行为Map，用于返回给前端 */
+        public Map<String, Object> nodeRow(int row) {
+            return toRow(nodeColumns, row);
+        }
+
+        public Map<String, Object> linkRow(int row) {
+            return toRow(linkColumns, row);
+        }
+
+        private static Map<String, Integer> countValues(Column column) {
+            Map<String, Integer> counts = new HashMap<>();
+            if (column == null) {
+                return counts;
+            }
+            int[] perCode = new int[column.dictionary.size()];
+            for (int code : column.codes) {
+                if (code >= 0) {
+                    perCode[code]++;
+                }
+            }
+            for (int code = 0; code < perCode.length; code++) {
+                if (perCode[code] > 0) {
+                    counts.merge(column.dictionary.get(code).toString(), perCode[code], Integer::sum);
+                }
+            }
+            return counts;
+        }
+
+        private static Map<String, Object> toRow(Map<String, Column> columns, int row) {
+            Map<String, Object> values = new HashMap<>();
+            for (Map.Entry<String, Column> column : columns.entrySet()) {
+                int code = column.getValue().codes[row];
+                if (code >= 0) {
+                    values.put(column.getKey(), column.getValue().dictionary.get(code));
+                }
+            }
+            return values;
+        }
+    }
+
+    /**
+     * 保存的图谱及其所有者
+     */
+    private static class StoredGraph {
+        private final String graphId;
+        private final Long ownerId;
+        private final CompactGraph graph;
+        private final long estimatedBytes;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastAccess = createdAt;
+
+        StoredGraph(String graphId, Long ownerId, CompactGraph graph, long estimatedBytes) {
+            this.graphId = graphId;
+            this.ownerId = ownerId;
+            this.graph = graph;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    /**
+     * 保存图谱，返回graphId
+     * 转换前先估算占用，超过单个图谱的上限时拒绝；数量或总占用达到上限时淘汰最久未访问的图谱
+     */
+    public String put(Long ownerId, List<Map<String, Object>> nodes, List<Map<String, Object>> links) {
+        if (ownerId == null) {
+            throw new IllegalArgumentException("用户未登录，无法保存图谱");
+        }
+        long startTime = System.currentTimeMillis();
+        long estimatedBytes = checkBudget(nodes, links);
+        CompactGraph graph = compact(nodes, links);
+
+        synchronized (graphs) {
+            long totalBytes = graphs.values().stream().mapToLong(stored -> stored.estimatedBytes).sum();
+            while (!graphs.isEmpty() && (graphs.size() >= maxGraphs || totalBytes + estimatedBytes > maxTotalBytes)) {
+                StoredGraph oldest = graphs.values().stream()
+                        .min(Comparator.comparingLong(stored -> stored.lastAccess)).orElse(null);
+                if (oldest == null || !graphs.remove(oldest.graphId, oldest)) {
+                    break;
+                }
+                totalBytes -= oldest.estimatedBytes;
+                logger.info("图谱数量或占用已达上限，已移除最久未访问的图谱: {}", oldest.graphId);
+            }
+
+            String graphId = UUID.randomUUID().toString().replace("-", "");
+            graphs.put(graphId, new StoredGraph(graphId, ownerId, graph, estimatedBytes));
+            logger.info("已保存图谱 {} - 节点: {}, 关系: {}, 估算占用: {}KB, 耗时: {}ms", graphId, graph.getNodeRowCount(),
+                    graph.getLinkRowCount(), estimatedBytes >> 10, System.currentTimeMillis() - startTime);
+            return graphId;
+        }
+    }
+
+    /**
+     * 在大小上限内把请求中直接提交的图谱转换为紧凑图结构（不保存），超过上限时抛出GraphTooLargeException
+     */
+    public CompactGraph compactWithinBudget(List<Map<String, Object>> nodes, List<Map<String, Object>> links) {
+        checkBudget(nodes, links);
+        return compact(nodes, links);
+    }
+
+    private long checkBudget(List<Map<String, Object>> nodes, List<Map<String, Object>> links) {
+        long estimatedBytes = estimateBytes(nodes, links);
+        long limit = Math.min(maxGraphBytes, maxTotalBytes);
+        if (estimatedBytes > limit) {
+            throw new GraphTooLargeException("图谱过大: 估算占用" + (estimatedBytes >> 20) + "MB，上限"
+                    + (limit >> 20) + "MB，请减少节点、关系或属性数量");
+        }
+        return estimatedBytes;
+    }
+
+    /**
+     * 估算图谱转换后的内存占用（字节），只遍历属性不分配列数组
+     * 属性列每个属性名占"行数×4"字节；属性值按上传的对象计入（字典去重前，偏大）；
+     * 邻接表和节点行索引每个关系、节点各占若干个int
+     */
+    static long estimateBytes(List<Map<String, Object>> nodes, List<Map<String, Object>> links) {
+        long bytes = 0;
+        if (nodes != null) {
+            bytes += columnBytes(nodes) + 16L * nodes.size();
+        }
+        if (links != null) {
+            bytes += columnBytes(links) + 24L * links.size();
+        }
+        return bytes;
+    }
+
+    private static long columnBytes(List<Map<String, Object>> rows) {
+        Set<String> keys = new HashSet<>();
+        long valueBytes = 0;
+        for (Map<String, Object> row : rows) {
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                keys.add(entry.getKey());
+                valueBytes += entry.getValue() instanceof CharSequence
+                        ? 40 + 2L * ((CharSequence) entry.getValue()).length() : 24;
+            }
+        }
+        return 4L * rows.size() * keys.size() + valueBytes;
+    }
+
+    /**
+     * 获取图谱，只有上传者可以访问
+     */
+    public CompactGraph get(Long ownerId, String graphId) {
+        StoredGraph stored = graphId != null ? graphs.get(graphId) : null;
+        if (stored == null || !Objects.equals(stored.ownerId, ownerId)) {
+            throw new IllegalArgumentException("图谱不存在或已过期: " + graphId);
+        }
+        stored.lastAccess = System.currentTimeMillis();
+        return stored.graph;
+    }
+
+    public boolean remove(Long ownerId, String graphId) {
+        StoredGraph stored = graphs.get(graphId);
+        return stored != null && Objects.equals(stored.ownerId, ownerId) && graphs.remove(graphId, stored);
+    }
+
+    /**
+     * 定期移除超过保留时间未访问的图谱
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void cleanupExpiredGraphs() {
+        long expireBefore = System.currentTimeMillis() - ttlMinutes * 60_000L;
+        graphs.values().removeIf(stored -> stored.lastAccess < expireBefore);
+    }
+
+    /**
+     * 把节点和关系列表转换为紧凑图结构，耗时与节点数加关系数成正比
+     */
+    public static CompactGraph compact(List<Map<String, Object>> nodes, List<Map<String, Object>> links) {
+        if (nodes == null) {
+            nodes = List.of();
+        }
+        if (links == null) {
+            links = List.of();
+        }
+        Map<String, Integer> nodeIndex = new HashMap<>();
+        List<String> nodeIds = new ArrayList<>();
+
+        int[] nodeRowIds = new int[nodes.size()];
+        for (int row = 0; row < nodes.size(); row++) {
+            nodeRowIds[row] = intern(nodes.get(row).get("id"), nodeIndex, nodeIds);
+        }
+
+        int[] linkSources = new int[links.size()];
+        int[] linkTargets = new int[links.size()];
+        int[] degree = new int[Math.max(16, nodeIds.size())];
+        int slots = 0;
+        for (int row = 0; row < links.size(); row++) {
+            linkSources[row] = intern(links.get(row).get("source"), nodeIndex, nodeIds);
+            linkTargets[row] = intern(links.get(row).get("target"), nodeIndex, nodeIds);
+            if (linkSources[row] < 0 || linkTargets[row] < 0) {
+                continue;
+            }
+            if (nodeIds.size() > degree.length) {
+                degree = Arrays.copyOf(degree, Math.max(nodeIds.size(), degree.length * 2));
+            }
+            degree[linkSources[row]]++;
+            slots++;
+            if (linkSources[row] != linkTargets[row]) {
+                degree[linkTargets[row]]++;
+                slots++;
+            }
+        }
+
+        // CSR：先按度数计算每个节点的起始位置，再依次填入邻居
+        int idCount = nodeIds.size();
+        int[] offsets = new int[idCount + 1];
+        for (int id = 0; id < idCount; id++) {
+            offsets[id + 1] = offsets[id] + degree[id];
+        }
+        int[] adjacentIds = new int[slots];
+        int[] adjacentLinks = new int[slots];
+        int[] cursor = Arrays.copyOf(offsets, idCount);
+        for (int row = 0; row < links.size(); row++) {
+            int source = linkSources[row];
+            int target = linkTargets[row];
+            if (source < 0 || target < 0) {
+                continue;
+            }
+            adjacentIds[cursor[source]] = target;
+            adjacentLinks[cursor[source]++] = row;
+            if (source != target) {
+                adjacentIds[cursor[target]] = source;
+                adjacentLinks[cursor[target]++] = row;
+            }
+        }
+
+        int[] nodeRowOffsets = new int[idCount + 1];
+        for (int id : nodeRowIds) {
+            if (id >= 0) {
+                nodeRowOffsets[id + 1]++;
+            }
+        }
+        for (int id = 0; id < idCount; id++) {
+            nodeRowOffsets[id + 1] += nodeRowOffsets[id];
+        }
+        int[] nodeRowsById = new int[nodeRowOffsets[idCount]];
+        int[] rowCursor = Arrays.copyOf(nodeRowOffsets, idCount);
+        for (int row = 0; row < nodeRowIds.length; row++) {
+            if (nodeRowIds[row] >= 0) {
+                nodeRowsById[rowCursor[nodeRowIds[row]]++] = row;
+            }
+        }
+
+        return new CompactGraph(nodeIds.toArray(new String[0]), nodeIndex, nodeRowIds,
+                nodeRowOffsets, nodeRowsById, linkSources, linkTargets, offsets, adjacentIds, adjacentLinks,
+                buildColumns(nodes), buildColumns(links));
+    }
+
+    private static int intern(Object value, Map<String, Integer> nodeIndex, List<String> nodeIds) {
+        if (value == null) {
+            return -1;
+        }
+        String nodeId = value.toString();
+        Integer id = nodeIndex.get(nodeId);
+        if (id == null) {
+            id = nodeIds.size();
+            nodeIndex.put(nodeId, id);
+            nodeIds.add(nodeId);
+        }
+        return id;
+    }
+
+    private static Map<String, Column> buildColumns(List<Map<String, Object>> rows) {
+        Map<String, Column> columns = new LinkedHashMap<>();
+        Map<String, Map<Object, Integer>> dictionaries = new HashMap<>();
+        for (int row = 0; row < rows.size(); row++) {
+            for (Map.Entry<String, Object> entry : rows.get(row).entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                Column column = columns.computeIfAbsent(entry.getKey(), key -> new Column(rows.size()));
+                Map<Object, Integer> dictionary = dictionaries.computeIfAbsent(entry.getKey(), key -> new HashMap<>());
+                Integer code = dictionary.get(entry.getValue());
+                if (code == null) {
+                    code = column.dictionary.size();
+                    dictionary.put(entry.getValue(), code);
+                    column.dictionary.add(entry.getValue());
+                }
+                column.codes[row] = code;
+            }
+        }
+        return columns;
+    }
+}
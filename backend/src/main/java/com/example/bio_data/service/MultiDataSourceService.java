@@ -1,13 +1,26 @@
 package com.example.bio_data.service;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class MultiDataSourceService {
@@ -18,6 +31,112 @@ public class MultiDataSourceService {
     private final DataSource loginDataSource;
     private final JdbcTemplate loginJdbcTemplate;
 
+    // 用户创建的数据库各自的连接池，首次访问时创建，空闲后关闭
+    private final Map<String, PoolEntry> databasePools = new ConcurrentHashMap<>();
+
+    // 只读副本连接池，配置了datasource.replica.jdbcUrl时首次读查询创建
+    private volatile PoolEntry replicaPool;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${datasource.pools.enabled:true}")
+    private boolean poolsEnabled;
+
+    @Value("${datasource.pools.maximum-pool-size:5}")
+    private int databasePoolSize;
+
+    @Value("${datasource.pools.max-pools:20}")
+    private int maxPools;
+
+    @Value("${datasource.pools.idle-evict-minutes:10}")
+    private long idleEvictMinutes;
+
+    @Value("${datasource.replica.jdbcUrl:}")
+    private String replicaJdbcUrl;
+
+    @Value("${datasource.replica.username:}")
+    private String replicaUsername;
+
+    @Value("${datasource.replica.password:}")
+    private String replicaPassword;
+
+    @Value("${datasource.replica.maximum-pool-size:10}")
+    private int replicaPoolSize;
+
+    // 刚使用过的连接池即使当前没有活动连接也不按容量淘汰，避免关闭调用方刚取到的连接池
+    private static final long EVICT_GRACE_MS = 30_000;
+
+    /**
+     * 长时间操作（导入、影子表交换等）对连接池的租约，持有期间连接池不会被空闲淘汰或容量淘汰关闭
+     * 关闭即归还，重复关闭无影响
+     */
+    public interface PoolLease extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // 使用login数据源时不需要租约
+    private static final PoolLease NO_LEASE = () -> { };
+
+    /**
+     * 一个连接池及其最近使用时间
+     * leases和closed在synchronized(entry)中读写，淘汰和获取租约不会交错
+     */
+    private static class PoolEntry {
+        private final HikariDataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private int leases;
+        private boolean closed;
+
+        PoolEntry(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+
+        int activeConnections() {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return pool != null ? pool.getActiveConnections() : 0;
+        }
+
+        boolean isIdleSince(long threshold) {
+            return lastUsed < threshold && activeConnections() == 0;
+        }
+
+        /**
+         * 没有租约且空闲时标记为已关闭，返回true表示调用方可以从表中移除并关闭它
+         */
+        synchronized boolean markClosedIfIdle(long threshold) {
+            if (closed || leases > 0 || !isIdleSince(threshold)) {
+                return false;
+            }
+            closed = true;
+            return true;
+        }
+
+        synchronized boolean tryLease() {
+            if (closed) {
+                return false;
+            }
+            leases++;
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+        synchronized void release() {
+            leases--;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        synchronized int leaseCount() {
+            return leases;
+        }
+    }
+
     public MultiDataSourceService(@Qualifier("loginDataSource") DataSource loginDataSource,
                                   @Qualifier("loginJdbcTemplate") JdbcTemplate loginJdbcTemplate) {
         
@@ -85,4 +204,221 @@ public class MultiDataSourceService {
         
         return overview;
     }
-} 
\ No newline at end of file
+
+    /**
+     * 获取用户创建的数据库使用的JdbcTemplate
+     * 每个数据库有自己的连接池，一个库上的大查询或导入不会占满其他库的连接。
+     * 连接池沿用login数据源的URL和参数，SQL仍使用`库名`.`表名`访问，
+     * 因此在事务中（事务绑定的是login数据源的连接）、未启用或连接池数量已满时直接返回login数据源
+     */
+    public JdbcTemplate getDatabaseJdbcTemplate(String databaseName) {
+        if (!poolsEnabled || databaseName == null || "login".equals(databaseName)
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loginJdbcTemplate;
+        }
+        PoolEntry entry = databasePools.get(databaseName);
+        if (entry == null) {
+            entry = createDatabasePool(databaseName);
+            if (entry == null) {
+                return loginJdbcTemplate;
+            }
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry.jdbcTemplate;
+    }
+
+    /**
+     * 获取只读查询使用的JdbcTemplate：配置了只读副本时走副本，否则与getDatabaseJdbcTemplate相同
+     * 副本存在复制延迟，只用于分页浏览、计数、搜索这类可以接受短暂旧数据的查询
+     */
+    public JdbcTemplate getReadJdbcTemplate(String databaseName) {
+        if (replicaJdbcUrl == null || replicaJdbcUrl.isEmpty()
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return getDatabaseJdbcTemplate(databaseName);
+        }
+        PoolEntry entry = replicaPool;
+        if (entry == null) {
+            synchronized (this) {
+                if (replicaPool == null) {
+                    HikariConfig config = copyLoginConfig("replica", replicaPoolSize);
+                    config.setJdbcUrl(replicaJdbcUrl);
+                    if (!replicaUsername.isEmpty()) {
+                        config.setUsername(replicaUsername);
+                        config.setPassword(replicaPassword);
+                    }
+                    config.setReadOnly(true);
+                    replicaPool = new PoolEntry(new HikariDataSource(config));
+                    logger.info("已创建只读副本连接池，最大连接数: {}", replicaPoolSize);
+                }
+                entry = replicaPool;
+            }
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry.jdbcTemplate;
+    }
+
+    /**
+     * 为长时间操作获取数据库连接池的租约，操作结束后关闭租约
+     * 与getDatabaseJdbcTemplate使用同一个连接池；返回login数据源时不占用租约
+     */
+    public PoolLease leaseDatabasePool(String databaseName) {
+        if (!poolsEnabled || databaseName == null || "login".equals(databaseName)
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return NO_LEASE;
+        }
+        while (true) {
+            PoolEntry entry = databasePools.get(databaseName);
+            if (entry == null) {
+                entry = createDatabasePool(databaseName);
+                if (entry == null) {
+                    return NO_LEASE;
+                }
+            }
+            if (entry.tryLease()) {
+                PoolEntry leased = entry;
+                AtomicBoolean released = new AtomicBoolean();
+                return () -> {
+                    if (released.compareAndSet(false, true)) {
+                        leased.release();
+                    }
+                };
+            }
+            // 刚被淘汰，表中已移除，重新创建
+        }
+    }
+
+    /**
+     * 数据库被删除后关闭它的连接池
+     */
+    public void evictDatabase(String databaseName) {
+        PoolEntry entry = databasePools.remove(databaseName);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.closed = true;
+            }
+            entry.dataSource.close();
+            logger.info("已关闭数据库连接池: {}", databaseName);
+        }
+    }
+
+    /**
+     * 定期关闭长时间没有使用的数据库连接池
+     */
+    @Scheduled(fixedDelayString = "${datasource.pools.evict-check-interval-ms:60000}")
+    public void evictIdlePools() {
+        long threshold = System.currentTimeMillis() - idleEvictMinutes * 60_000L;
+        for (Map.Entry<String, PoolEntry> entry : databasePools.entrySet()) {
+            if (entry.getValue().markClosedIfIdle(threshold) && databasePools.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().dataSource.close();
+                logger.info("数据库连接池空闲超过{}分钟，已关闭: {}", idleEvictMinutes, entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * 各连接池的使用情况
+     */
+    public Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", poolsEnabled);
+        stats.put("maxPools", maxPools);
+        stats.put("login", poolStats((HikariDataSource) loginDataSource, null));
+
+        Map<String, Object> databases = new TreeMap<>();
+        for (Map.Entry<String, PoolEntry> entry : databasePools.entrySet()) {
+            databases.put(entry.getKey(), poolStats(entry.getValue().dataSource, entry.getValue()));
+        }
+        stats.put("databases", databases);
+        if (replicaPool != null) {
+            stats.put("replica", poolStats(replicaPool.dataSource, replicaPool));
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void closePools() {
+        databasePools.values().forEach(entry -> entry.dataSource.close());
+        databasePools.clear();
+        if (replicaPool != null) {
+            replicaPool.dataSource.close();
+        }
+    }
+
+    private synchronized PoolEntry createDatabasePool(String databaseName) {
+        PoolEntry existing = databasePools.get(databaseName);
+        if (existing != null) {
+            return existing;
+        }
+        if (databasePools.size() >= maxPools && !evictLeastRecentlyUsed()) {
+            logger.warn("数据库连接池数量已达上限{}且都在使用中，{} 暂时使用login数据源", maxPools, databaseName);
+            return null;
+        }
+
+        // 单个库可以通过datasource.pools.size.<库名>单独设置连接数
+        int poolSize = environment.getProperty("datasource.pools.size." + databaseName, Integer.class, databasePoolSize);
+        try {
+            PoolEntry entry = new PoolEntry(new HikariDataSource(copyLoginConfig("db-" + databaseName, poolSize)));
+            databasePools.put(databaseName, entry);
+            logger.info("已创建数据库连接池: {}，最大连接数: {}", databaseName, poolSize);
+            return entry;
+        } catch (Exception e) {
+            logger.error("创建数据库连接池失败: {} - {}", databaseName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 淘汰最久未使用、没有租约且没有活动连接的连接池
+     */
+    private boolean evictLeastRecentlyUsed() {
+        long threshold = System.currentTimeMillis() - EVICT_GRACE_MS;
+        Map.Entry<String, PoolEntry> oldest = null;
+        for (Map.Entry<String, PoolEntry> entry : databasePools.entrySet()) {
+            if (entry.getValue().leaseCount() == 0 && entry.getValue().isIdleSince(threshold)
+                    && (oldest == null || entry.getValue().lastUsed < oldest.getValue().lastUsed)) {
+                oldest = entry;
+            }
+        }
+        if (oldest == null || !oldest.getValue().markClosedIfIdle(threshold)
+                || !databasePools.remove(oldest.getKey(), oldest.getValue())) {
+            return false;
+        }
+        oldest.getValue().dataSource.close();
+        logger.info("数据库连接池数量已达上限，已关闭最久未使用的连接池: {}", oldest.getKey());
+        return true;
+    }
+
+    /**
+     * 复制login连接池的URL、账号、超时和驱动参数，连接池名称和大小单独设置
+     */
+    private HikariConfig copyLoginConfig(String poolName, int maximumPoolSize) {
+        HikariConfig config = new HikariConfig();
+        ((HikariDataSource) loginDataSource).copyStateTo(config);
+        config.setPoolName(poolName);
+        config.setMaximumPoolSize(maximumPoolSize);
+        // 空闲时不保留连接，避免库多时占用大量服务器连接
+        config.setMinimumIdle(0);
+        if (config.getMetricsTrackerFactory() == null && config.getMetricRegistry() == null && meterRegistry != null) {
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        }
+        return config;
+    }
+
+    private Map<String, Object> poolStats(HikariDataSource dataSource, PoolEntry entry) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolName", dataSource.getPoolName());
+        stats.put("maximumPoolSize", dataSource.getMaximumPoolSize());
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            stats.put("activeConnections", pool.getActiveConnections());
+            stats.put("idleConnections", pool.getIdleConnections());
+            stats.put("totalConnections", pool.getTotalConnections());
+            stats.put("threadsAwaitingConnection", pool.getThreadsAwaitingConnection());
+        }
+        if (entry != null) {
+            stats.put("lastUsed", entry.lastUsed);
+            stats.put("leases", entry.leaseCount());
+        }
+        return stats;
+    }
+}
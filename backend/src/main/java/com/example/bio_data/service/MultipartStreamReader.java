@@ -0,0 +1,333 @@
+package com.example.bio_data.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * multipart/form-data请求体的流式解析
+ * 按顺序读取各个部分，文件部分直接以输入流交给调用方，不在内存或临时文件中缓存整个文件；
+ * 读取下一个部分时会跳过当前部分未读完的内容
+ */
+public class MultipartStreamReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 单个部分的头部最大字节数
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    // 普通表单字段的最大字节数
+    private static final int MAX_FIELD_BYTES = 64 * 1024;
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private boolean finished;
+    private PartInputStream current;
+
+    public MultipartStreamReader(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[BUFFER_SIZE + delimiter.length];
+        // 请求体以"--boundary"开头，补上CRLF后第一个分隔符与其余分隔符格式一致；分隔符之前的内容（preamble）直接跳过
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        limit = 2;
+        current = new PartInputStream();
+    }
+
+    /**
+     * 从Content-Type中取出boundary参数
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                String trimmed = param.trim();
+                if (trimmed.toLowerCase(Locale.ROOT).startsWith("boundary=")) {
+                    String boundary = unquote(trimmed.substring("boundary=".length()).trim());
+                    if (!boundary.isEmpty()) {
+                        return boundary;
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("请求不是有效的multipart/form-data格式");
+    }
+
+    /**
+     * 请求体中的一个部分
+     */
+    public static class Part {
+        private final String name;
+        private final String fileName;
+        private final String contentType;
+        private final InputStream body;
+
+        Part(String name, String fileName, String contentType, InputStream body) {
+            this.name = name;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public String getName() { return name; }
+        public String getFileName() { return fileName; }
+        public String getContentType() { return contentType; }
+        public InputStream getInputStream() { return body; }
+
+        public boolean isFile() {
+            return fileName != null;
+        }
+
+        /**
+         * 读取普通表单字段的值
+         */
+        public String readString(Charset charset) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int n;
+            while ((n = body.read(chunk)) != -1) {
+                out.write(chunk, 0, n);
+                if (out.size() > MAX_FIELD_BYTES) {
+                    throw new IllegalArgumentException("表单字段过长: " + name);
+                }
+            }
+            return out.toString(charset);
+        }
+    }
+
+    /**
+     * 读取下一个部分，已到达结束分隔符时返回null
+     */
+    public Part nextPart() throws IOException {
+        if (current != null) {
+            current.drain();
+            current = null;
+        }
+        if (finished) {
+            return null;
+        }
+
+        // 分隔符之后为"--"表示结束，否则为（可能带空白的）CRLF和部分的头部
+        if (!fill(2)) {
+            throw incomplete();
+        }
+        if (buffer[pos] == '-' && buffer[pos + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        while (fill(1) && (buffer[pos] == ' ' || buffer[pos] == '\t')) {
+            pos++;
+        }
+        if (!fill(2) || buffer[pos] != '\r' || buffer[pos + 1] != '\n') {
+            throw new IOException("multipart分隔符格式错误");
+        }
+        pos += 2;
+
+        Map<String, String> headers = readHeaders();
+        Map<String, String> disposition = parseDisposition(headers.get("content-disposition"));
+        current = new PartInputStream();
+        return new Part(disposition.get("name"), disposition.get("filename"), headers.get("content-type"), current);
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        if (!fill(2)) {
+            throw incomplete();
+        }
+        // 没有头部的部分直接以CRLF开始正文
+        if (buffer[pos] == '\r' && buffer[pos + 1] == '\n') {
+            pos += 2;
+            return new HashMap<>();
+        }
+        int end;
+        while ((end = indexOf(HEADER_END, pos, limit)) < 0) {
+            if (limit - pos > MAX_HEADER_BYTES) {
+                throw new IOException("multipart部分头部过长");
+            }
+            if (!readMore()) {
+                throw incomplete();
+            }
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        String block = new String(buffer, pos, end - pos, StandardCharsets.UTF_8);
+        pos = end + 4;
+        for (String line : block.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * 解析Content-Disposition的参数（name、filename），参数值可以带引号
+     */
+    static Map<String, String> parseDisposition(String value) {
+        Map<String, String> params = new HashMap<>();
+        if (value == null) {
+            return params;
+        }
+        int i = value.indexOf(';');
+        while (i >= 0 && i < value.length()) {
+            i++;
+            int eq = value.indexOf('=', i);
+            if (eq < 0) {
+                break;
+            }
+            String key = value.substring(i, eq).trim().toLowerCase(Locale.ROOT);
+            int start = eq + 1;
+            while (start < value.length() && value.charAt(start) == ' ') {
+                start++;
+            }
+            String paramValue;
+            int next;
+            if (start < value.length() && value.charAt(start) == '"') {
+                StringBuilder sb = new StringBuilder();
+                int j = start + 1;
+                while (j < value.length() && value.charAt(j) != '"') {
+                    if (value.charAt(j) == '\\' && j + 1 < value.length()
+                            && (value.charAt(j + 1) == '"' || value.charAt(j + 1) == '\\')) {
+                        j++;
+                    }
+                    sb.append(value.charAt(j++));
+                }
+                paramValue = sb.toString();
+                next = value.indexOf(';', j);
+            } else {
+                next = value.indexOf(';', start);
+                paramValue = (next < 0 ? value.substring(start) : value.substring(start, next)).trim();
+            }
+            params.putIfAbsent(key, paramValue);
+            i = next;
+        }
+        return params;
+    }
+
+    /**
+     * 保证缓冲区中至少有n个未读字节，流已结束且不足n个时返回false
+     */
+    private boolean fill(int n) throws IOException {
+        while (limit - pos < n) {
+            if (!readMore()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readMore() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buffer.length) {
+            throw new IOException("multipart部分头部过长");
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    private int indexOf(byte[] target, int from, int to) {
+        outer:
+        for (int i = from; i <= to - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (buffer[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static IOException incomplete() {
+        return new IOException("multipart请求体不完整");
+    }
+
+    /**
+     * 当前部分的正文，读到下一个分隔符为止
+     * 缓冲区末尾可能是分隔符前缀的字节暂不返回，等读入更多数据后再判断
+     */
+    private class PartInputStream extends InputStream {
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                int index = indexOf(delimiter, pos, limit);
+                if (index >= 0) {
+                    int available = index - pos;
+                    if (available == 0) {
+                        pos += delimiter.length;
+                        done = true;
+                        return -1;
+                    }
+                    return copy(b, off, Math.min(len, available));
+                }
+                int safe = limit - pos - (delimiter.length - 1);
+                if (safe > 0) {
+                    return copy(b, off, Math.min(len, safe));
+                }
+                if (!readMore()) {
+                    throw incomplete();
+                }
+            }
+        }
+
+        private int copy(byte[] b, int off, int n) {
+            System.arraycopy(buffer, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        void drain() throws IOException {
+            byte[] skip = new byte[8192];
+            while (read(skip, 0, skip.length) != -1) {
+                // 丢弃未读完的内容
+            }
+        }
+
+        @Override
+        public void close() {
+            // 由nextPart()负责跳过剩余内容，关闭部分流不关闭请求体
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.bio_data.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 跨表并行搜索执行器
+ * 将逐表探测任务分发到有界线程池中执行：线程池大小即全局并发预算（按Hikari连接池大小预留后计算），
+ * 每次搜索同时在途的任务数受单次搜索并发预算限制，超时后协作式取消，结果按表的原始顺序返回
+ */
+@Service
+public class ParallelSearchExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelSearchExecutor.class);
+
+    private final DataSource loginDataSource;
+
+    // 全局工作线程数，0表示根据连接池大小自动计算
+    @Value("${search.parallel.max-workers:0}")
+    private int configuredMaxWorkers;
+
+    // 单次搜索最多同时在途的表探测任务数
+    @Value("${search.parallel.per-search-concurrency:4}")
+    private int perSearchConcurrency;
+
+    // 为登录、元数据等轻量请求预留的连接数
+    @Value("${search.parallel.reserved-connections:4}")
+    private int reservedConnections;
+
+    private ThreadPoolExecutor workerPool;
+    private int maxWorkers;
+
+    public ParallelSearchExecutor(@Qualifier("loginDataSource") DataSource loginDataSource) {
+        this.loginDataSource = loginDataSource;
+    }
+
+    @PostConstruct
+    public void init() {
+        int poolSize = 10;
+        if (loginDataSource instanceof HikariDataSource) {
+            poolSize = ((HikariDataSource) loginDataSource).getMaximumPoolSize();
+        }
+        int budget = Math.max(1, poolSize - reservedConnections);
+        maxWorkers = configuredMaxWorkers > 0 ? Math.min(configuredMaxWorkers, budget) : budget;
+        perSearchConcurrency = Math.max(1, Math.min(perSearchConcurrency, maxWorkers));
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerPool = new ThreadPoolExecutor(maxWorkers, maxWorkers, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "table-search-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        workerPool.allowCoreThreadTimeOut(true);
+
+        logger.info("初始化并行搜索执行器 - 连接池大小: {}, 全局工作线程: {}, 单次搜索并发: {}",
+                poolSize, maxWorkers, perSearchConcurrency);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (workerPool != null) {
+            workerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * 搜索上下文，供表探测任务协作式检查取消状态
+     * 探测任务执行的语句登记在上下文中，取消时逐个调用Statement.cancel()终止数据库端的查询
+     */
+    public static class SearchContext {
+        private final long deadline;
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+        SearchContext(long timeoutMs) {
+            this.deadline = System.currentTimeMillis() + timeoutMs;
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get() || System.currentTimeMillis() > deadline;
+        }
+
+        public long remainingMillis() {
+            return Math.max(0, deadline - System.currentTimeMillis());
+        }
+
+        /**
+         * 单条语句的查询超时（秒），按剩余时间向上取整，至少1秒
+         */
+        public int queryTimeoutSeconds() {
+            return (int) Math.max(1, (remainingMillis() + 999) / 1000);
+        }
+
+        /**
+         * 登记正在执行的语句，搜索已取消时立即取消该语句
+         */
+        public void register(Statement statement) {
+            statements.add(statement);
+            if (cancelled.get()) {
+                cancelStatement(statement);
+            }
+        }
+
+        public void unregister(Statement statement) {
+            statements.remove(statement);
+        }
+
+        void cancel() {
+            cancelled.set(true);
+            for (Statement statement : statements) {
+                cancelStatement(statement);
+            }
+        }
+
+        private static void cancelStatement(Statement statement) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                logger.debug("取消表探测语句失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 单个探测任务的执行结果，只由调用搜索的线程读取后写入结果列表
+     */
+    private static class ProbeOutcome<T> {
+        private final int index;
+        private final T result;
+        private final Exception error;
+
+        ProbeOutcome(int index, T result, Exception error) {
+            this.index = index;
+            this.result = result;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 单表探测任务
+     */
+    @FunctionalInterface
+    public interface TableProbe<T> {
+        T probe(Map<String, Object> table, SearchContext context) throws Exception;
+    }
+
+    /**
+     * 探测完成回调，始终在调用搜索的线程上执行，返回false表示停止搜索（如客户端断开）
+     */
+    @FunctionalInterface
+    public interface ProbeListener<T> {
+        boolean onCompleted(Map<String, Object> table, T result, Exception error, int completedCount);
+    }
+
+    /**
+     * 并行搜索结果，results与输入表列表一一对应
+     */
+    public static class FanOutResult<T> {
+        private final List<T> results;
+        private final int completedCount;
+        private final boolean timedOut;
+        private final boolean stopped;
+
+        FanOutResult(List<T> results, int completedCount, boolean timedOut, boolean stopped) {
+            this.results = results;
+            this.completedCount = completedCount;
+            this.timedOut = timedOut;
+            this.stopped = stopped;
+        }
+
+        public List<T> getResults() { return results; }
+        public int getCompletedCount() { return completedCount; }
+        public boolean isTimedOut() { return timedOut; }
+        public boolean isStopped() { return stopped; }
+    }
+
+    /**
+     * 将表探测任务并行分发执行
+     */
+    public <T> FanOutResult<T> fanOut(List<Map<String, Object>> tables, TableProbe<T> probe,
+                                      long timeoutMs, ProbeListener<T> listener) {
+        int total = tables.size();
+        List<T> results = new ArrayList<>(Collections.nCopies(total, (T) null));
+        if (total == 0) {
+            return new FanOutResult<>(Collections.unmodifiableList(results), 0, false, false);
+        }
+
+        SearchContext context = new SearchContext(timeoutMs);
+        CompletionService<ProbeOutcome<T>> completionService = new ExecutorCompletionService<>(workerPool);
+        List<Future<ProbeOutcome<T>>> inFlight = new ArrayList<>();
+
+        int nextIndex = 0;
+        int completedCount = 0;
+        boolean timedOut = false;
+        boolean stopped = false;
+
+        try {
+            while (completedCount < total) {
+                // 滑动窗口：保持单次搜索在途任务数不超过预算
+                while (nextIndex < total && inFlight.size() < perSearchConcurrency) {
+                    final int index = nextIndex++;
+                    // 任务只返回结果，不写共享列表，超时后迟到的任务不会影响已返回的结果
+                    inFlight.add(completionService.submit(() -> {
+                        if (context.isCancelled()) {
+                            return new ProbeOutcome<T>(index, null, null);
+                        }
+                        try {
+                            return new ProbeOutcome<>(index, probe.probe(tables.get(index), context), null);
+                        } catch (Exception e) {
+                            return new ProbeOutcome<T>(index, null, e);
+                        }
+                    }));
+                }
+
+                Future<ProbeOutcome<T>> done = completionService.poll(context.remainingMillis(), TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    timedOut = true;
+                    break;
+                }
+
+                inFlight.remove(done);
+                ProbeOutcome<T> outcome = done.get();
+                results.set(outcome.index, outcome.result);
+                completedCount++;
+
+                if (listener != null && !listener.onCompleted(tables.get(outcome.index), outcome.result, outcome.error, completedCount)) {
+                    stopped = true;
+                    break;
+                }
+
+                if (context.isCancelled()) {
+                    timedOut = true;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        } catch (ExecutionException e) {
+            // 探测任务内部已捕获异常，这里仅作防御
+            logger.warn("表探测任务执行异常: {}", e.getMessage());
+            stopped = true;
+        } finally {
+            if (!inFlight.isEmpty()) {
+                // 取消在途语句（JDBC查询不响应线程中断），未完成的任务结果保持为null
+                context.cancel();
+                for (Future<ProbeOutcome<T>> future : inFlight) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        return new FanOutResult<>(Collections.unmodifiableList(results), completedCount, timedOut, stopped);
+    }
+
+    /**
+     * 获取执行器状态
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxWorkers", maxWorkers);
+        stats.put("perSearchConcurrency", perSearchConcurrency);
+        stats.put("activeWorkers", workerPool.getActiveCount());
+        stats.put("queuedTasks", workerPool.getQueue().size());
+        return stats;
+    }
+}
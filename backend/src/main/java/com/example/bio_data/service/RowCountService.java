@@ -0,0 +1,305 @@
+package com.example.bio_data.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 行数统计服务
+ * 精确的COUNT(*)在大表上可能需要数秒，这里在后台线程中异步计算并缓存，
+ * 请求只读取缓存结果；计算完成前返回估算值（如information_schema中的TABLE_ROWS）。
+ * 已知的写入路径（插入、删除、批量导入）会按影响行数调整缓存值并标记为过期，由定时任务在后台刷新
+ */
+@Service
+public class RowCountService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowCountService.class);
+
+    // 全表计数使用的条件键
+    public static final String ALL_ROWS = "*";
+
+    // 后台计算精确行数的线程数
+    @Value("${rowcount.async-threads:2}")
+    private int asyncThreads;
+
+    // 精确行数缓存有效期，超过后视为过期并在后台刷新
+    @Value("${rowcount.exact-ttl-seconds:300}")
+    private long exactTtlSeconds;
+
+    // 超过该时间未被访问的计数不再刷新并移出缓存
+    @Value("${rowcount.idle-seconds:1800}")
+    private long idleSeconds;
+
+    private final ConcurrentHashMap<String, CachedCount> countCache = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    // 每次删除缓存项时递增，后台计算期间缓存项被删除过的结果不写入缓存
+    private final AtomicLong generation = new AtomicLong();
+
+    private ThreadPoolExecutor countPool;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        countPool = new ThreadPoolExecutor(asyncThreads, asyncThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(256), runnable -> {
+                    Thread thread = new Thread(runnable, "row-count-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        countPool.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (countPool != null) {
+            countPool.shutdownNow();
+        }
+    }
+
+    /**
+     * 行数结果
+     * exact表示数值来自COUNT(*)（可能已按写入行数调整），stale表示之后可能有未统计到的变化
+     */
+    public static class RowCount {
+        private final Long count;
+        private final boolean exact;
+        private final boolean stale;
+        private final boolean pending;
+        private final long computedAt;
+
+        RowCount(Long count, boolean exact, boolean stale, boolean pending, long computedAt) {
+            this.count = count;
+            this.exact = exact;
+            this.stale = stale;
+            this.pending = pending;
+            this.computedAt = computedAt;
+        }
+
+        public Long getCount() { return count; }
+        public boolean isExact() { return exact; }
+        public boolean isStale() { return stale; }
+        public boolean isPending() { return pending; }
+        public long getComputedAt() { return computedAt; }
+
+        /**
+         * 是否为近似值（估算值、或精确值之后有过写入）
+         */
+        public boolean isApproximate() {
+            return !exact || stale;
+        }
+    }
+
+    private static class CachedCount {
+        final Supplier<Long> counter;
+        long count;
+        long computedAt;
+        boolean dirty;
+        // 每次写入递增，用于判断后台计算期间是否发生过写入
+        long version;
+        volatile long lastAccess;
+
+        CachedCount(long count, Supplier<Long> counter) {
+            this.counter = counter;
+            this.count = count;
+            this.computedAt = System.currentTimeMillis();
+            this.lastAccess = this.computedAt;
+        }
+    }
+
+    /**
+     * 获取行数：缓存中有未过期的精确值时直接返回，否则提交后台计算，先返回缓存值或估算值
+     * @param conditionKey 区分同一张表上不同查询条件的键（全表计数使用ALL_ROWS）
+     * @param exactCounter 执行精确COUNT查询
+     * @param estimator 估算行数，可以为null或返回null
+     */
+    public RowCount getCount(String schemaName, String tableName, String conditionKey,
+                             Supplier<Long> exactCounter, Supplier<Long> estimator) {
+        String key = countKey(schemaName, tableName, conditionKey);
+        CachedCount cached = countCache.get(key);
+        if (cached != null) {
+            cached.lastAccess = System.currentTimeMillis();
+            long count;
+            long computedAt;
+            boolean stale;
+            synchronized (cached) {
+                count = cached.count;
+                computedAt = cached.computedAt;
+                stale = cached.dirty || isExpired(cached);
+            }
+            if (stale) {
+                submitCount(key, exactCounter);
+            }
+            return new RowCount(count, true, stale, stale && inFlight.contains(key), computedAt);
+        }
+
+        submitCount(key, exactCounter);
+
+        Long estimate = null;
+        if (estimator != null) {
+            try {
+                estimate = estimator.get();
+            } catch (Exception e) {
+                logger.debug("估算表 {} 行数失败: {}", tableName, e.getMessage());
+            }
+        }
+        return new RowCount(estimate, false, false, true, 0);
+    }
+
+    /**
+     * 获取全表行数
+     */
+    public RowCount getTableCount(String schemaName, String tableName, Supplier<Long> exactCounter, Supplier<Long> estimator) {
+        return getCount(schemaName, tableName, ALL_ROWS, exactCounter, estimator);
+    }
+
+    private void submitCount(String key, Supplier<Long> exactCounter) {
+        if (!inFlight.add(key)) {
+            return;
+        }
+        CachedCount existing = countCache.get(key);
+        long submittedVersion = -1;
+        if (existing != null) {
+            synchronized (existing) {
+                submittedVersion = existing.version;
+            }
+        }
+        final long version = submittedVersion;
+        final long submittedGeneration = generation.get();
+        try {
+            countPool.execute(() -> {
+                long start = System.currentTimeMillis();
+                try {
+                    Long count = exactCounter.get();
+                    if (count != null) {
+                        storeCount(key, count, exactCounter, version, submittedGeneration);
+                    }
+                    logger.debug("后台计算行数完成: {} = {}，耗时 {}ms", key, count, System.currentTimeMillis() - start);
+                } catch (Exception e) {
+                    logger.warn("后台计算行数失败: {} - {}", key, e.getMessage());
+                } finally {
+                    inFlight.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 队列已满，下次请求或定时刷新时再提交
+            inFlight.remove(key);
+        }
+    }
+
+    private void storeCount(String key, long count, Supplier<Long> exactCounter, long submittedVersion, long submittedGeneration) {
+        countCache.compute(key, (k, existing) -> {
+            if (existing == null) {
+                return generation.get() == submittedGeneration ? new CachedCount(count, exactCounter) : null;
+            }
+            synchronized (existing) {
+                // 计算期间有写入时保留调整后的值，等待下次刷新
+                if (existing.version == submittedVersion) {
+                    existing.count = count;
+                    existing.computedAt = System.currentTimeMillis();
+                    existing.dirty = false;
+                }
+            }
+            return existing;
+        });
+    }
+
+    /**
+     * 记录已知的数据写入
+     * 全表计数按影响行数调整（rowDelta未知时传0）并标记为过期；带条件的计数无法调整，直接删除
+     */
+    public void recordWrite(String schemaName, String tableName, long rowDelta) {
+        String allRowsKey = countKey(schemaName, tableName, ALL_ROWS);
+        String prefix = countKey(schemaName, tableName, "");
+        generation.incrementAndGet();
+        countCache.keySet().removeIf(key -> key.startsWith(prefix) && !key.equals(allRowsKey));
+
+        CachedCount cached = countCache.get(allRowsKey);
+        if (cached != null) {
+            synchronized (cached) {
+                cached.count = Math.max(0, cached.count + rowDelta);
+                cached.dirty = true;
+                cached.version++;
+            }
+        }
+    }
+
+    /**
+     * 表被删除或结构变化，清除该表的所有行数缓存
+     */
+    public void invalidateTable(String schemaName, String tableName) {
+        String prefix = countKey(schemaName, tableName, "");
+        generation.incrementAndGet();
+        countCache.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 数据库被删除
+     */
+    public void invalidateDatabase(String schemaName) {
+        String prefix = normalize(schemaName) + "\u0000";
+        generation.incrementAndGet();
+        countCache.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 定期在后台刷新过期的计数，长时间未访问的计数移出缓存
+     */
+    @Scheduled(fixedDelayString = "${rowcount.refresh-interval-ms:60000}")
+    public void refreshStaleCounts() {
+        long now = System.currentTimeMillis();
+        int submitted = 0;
+        for (Map.Entry<String, CachedCount> entry : countCache.entrySet()) {
+            CachedCount cached = entry.getValue();
+            if (now - cached.lastAccess > idleSeconds * 1000) {
+                countCache.remove(entry.getKey(), cached);
+                continue;
+            }
+            boolean stale;
+            synchronized (cached) {
+                stale = cached.dirty || isExpired(cached);
+            }
+            if (stale && !inFlight.contains(entry.getKey())) {
+                submitCount(entry.getKey(), cached.counter);
+                submitted++;
+            }
+        }
+        if (submitted > 0) {
+            logger.debug("提交 {} 个过期行数的后台刷新", submitted);
+        }
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("cachedCounts", countCache.size());
+        stats.put("pendingCounts", inFlight.size());
+        stats.put("exactTtlSeconds", exactTtlSeconds);
+        return stats;
+    }
+
+    private boolean isExpired(CachedCount cached) {
+        return System.currentTimeMillis() - cached.computedAt > exactTtlSeconds * 1000;
+    }
+
+    private String countKey(String schemaName, String tableName, String conditionKey) {
+        return normalize(schemaName) + "\u0000" + normalize(tableName) + "\u0000" + conditionKey;
+    }
+
+    private String normalize(String name) {
+        return name == null ? "" : name.toLowerCase();
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.bio_data.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行指纹
+ * 对一行中指定列的值计算128位哈希，用于重复检测，代替把各列toString后用"||"拼接的字符串键。
+ * 每个值按类型标记和长度前缀编码后参与哈希，不同的值序列不会因为分隔符产生相同的编码；
+ * 数字类型列的值统一按数值比较（"1"、1、1.00视为相同）。
+ * 实例不是线程安全的，每个线程各自创建
+ */
+public final class RowFingerprint {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_NUMBER = 1;
+    private static final int TAG_TEXT = 2;
+    private static final int TAG_BINARY = 3;
+
+    private final boolean[] numericColumns;
+    private long h1;
+    private long h2;
+    private long length;
+
+    /**
+     * @param numericColumns 与计算时传入的列一一对应，标记数字类型的列
+     */
+    public RowFingerprint(boolean[] numericColumns) {
+        this.numericColumns = numericColumns;
+    }
+
+    /**
+     * 计算一行的指纹，结果通过high()/low()获取
+     */
+    public RowFingerprint compute(Map<String, Object> record, List<String> columnNames) {
+        h1 = 0;
+        h2 = 0;
+        length = 0;
+        for (int i = 0; i < columnNames.size(); i++) {
+            putValue(record.get(columnNames.get(i)), numericColumns != null && i < numericColumns.length && numericColumns[i]);
+        }
+        finish();
+        return this;
+    }
+
+    public long high() { return h1; }
+    public long low() { return h2; }
+
+    private void putValue(Object value, boolean numeric) {
+        if (value == null) {
+            mix(TAG_NULL);
+            return;
+        }
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            mix(((long) TAG_BINARY << 32) | bytes.length);
+            long word = 0;
+            int shift = 0;
+            for (byte b : bytes) {
+                word |= (b & 0xffL) << shift;
+                shift += 8;
+                if (shift == 64) {
+                    mix(word);
+                    word = 0;
+                    shift = 0;
+                }
+            }
+            if (shift > 0) {
+                mix(word);
+            }
+            return;
+        }
+        if (numeric || value instanceof Number) {
+            String canonical = canonicalNumber(value);
+            if (canonical != null) {
+                putChars(TAG_NUMBER, canonical);
+                return;
+            }
+        }
+        putChars(TAG_TEXT, value.toString());
+    }
+
+    /**
+     * 数值的规范形式：去掉末尾的0，不使用科学计数法；无法解析为数字时返回null
+     */
+    private String canonicalNumber(Object value) {
+        try {
+            BigDecimal decimal;
+            if (value instanceof BigDecimal) {
+                decimal = (BigDecimal) value;
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return Long.toString(((Number) value).longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                double d = ((Number) value).doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    return null;
+                }
+                decimal = new BigDecimal(Double.toString(d));
+            } else {
+                String text = value.toString().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                decimal = new BigDecimal(text);
+            }
+            return decimal.signum() == 0 ? "0" : decimal.stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void putChars(int tag, String text) {
+        int n = text.length();
+        mix(((long) tag << 32) | n);
+        int i = 0;
+        for (; i + 4 <= n; i += 4) {
+            mix(text.charAt(i) | (long) text.charAt(i + 1) << 16
+                    | (long) text.charAt(i + 2) << 32 | (long) text.charAt(i + 3) << 48);
+        }
+        long tail = 0;
+        int shift = 0;
+        for (; i < n; i++) {
+            tail |= (long) text.charAt(i) << shift;
+            shift += 16;
+        }
+        if (shift > 0) {
+            mix(tail);
+        }
+    }
+
+    /**
+     * MurmurHash3 x64_128的分组混合，每次输入一个64位分组
+     */
+    private void mix(long k) {
+        long k1 = Long.rotateLeft(k * C1, 31) * C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        long k2 = Long.rotateLeft(k * C2, 33) * C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        h2 = h2 * 5 + 0x38495ab5;
+
+        length += 8;
+    }
+
+    private void finish() {
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * 128位指纹集合，开放寻址（线性探测），指纹直接存放在long数组中，不为每个元素分配对象
+     * 数组中的(0, 0)表示空槽，指纹(0, 0)本身用单独的标记记录
+     */
+    public static final class FingerprintSet {
+
+        private long[] slots;
+        private int mask;
+        private int size;
+        private boolean containsZero;
+
+        public FingerprintSet() {
+            this(16);
+        }
+
+        public FingerprintSet(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+            slots = new long[capacity * 2];
+            mask = capacity - 1;
+        }
+
+        public boolean add(RowFingerprint fingerprint) {
+            return add(fingerprint.high(), fingerprint.low());
+        }
+
+        public boolean contains(RowFingerprint fingerprint) {
+            return contains(fingerprint.high(), fingerprint.low());
+        }
+
+        /**
+         * @return 集合中原来没有该指纹时返回true
+         */
+        public boolean add(long high, long low) {
+            if (high == 0 && low == 0) {
+                if (containsZero) {
+                    return false;
+                }
+                containsZero = true;
+                size++;
+                return true;
+            }
+            int index = (int) high & mask;
+            while (true) {
+                long slotHigh = slots[index * 2];
+                long slotLow = slots[index * 2 + 1];
+                if (slotHigh == 0 && slotLow == 0) {
+                    slots[index * 2] = high;
+                    slots[index * 2 + 1] = low;
+                    if (++size * 2 > mask + 1) {
+                        resize();
+                    }
+                    return true;
+                }
+                if (slotHigh == high && slotLow == low) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        public boolean contains(long high, long low) {
+            if (high == 0 && low == 0) {
+                return containsZero;
+            }
+            int index = (int) high & mask;
+            while (true) {
+                long slotHigh = slots[index * 2];
+                long slotLow = slots[index * 2 + 1];
+                if (slotHigh == 0 && slotLow == 0) {
+                    return false;
+                }
+                if (slotHigh == high && slotLow == low) {
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private void resize() {
+            long[] oldSlots = slots;
+            int capacity = (mask + 1) << 1;
+            slots = new long[capacity * 2];
+            mask = capacity - 1;
+            size = containsZero ? 1 : 0;
+            for (int i = 0; i < oldSlots.length; i += 2) {
+                if (oldSlots[i] != 0 || oldSlots[i + 1] != 0) {
+                    add(oldSlots[i], oldSlots[i + 1]);
+                }
+            }
+        }
+    }
+}
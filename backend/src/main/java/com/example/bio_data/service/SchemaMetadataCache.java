@@ -0,0 +1,352 @@
+package com.example.bio_data.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 表结构元数据缓存服务
+ * 缓存information_schema中的列信息和表列表，按(数据库, 表)组织；
+ * 建表、删表、修改列、建库、删库时主动失效，并以TTL作为兜底
+ *
+ * 失效时从失效时钟取一个新值记录在对应的表或数据库上，缓存项记录加载开始时的时钟值；
+ * 加载期间发生过失效的缓存项视为过期，避免慢加载在失效之后把旧的结构写回缓存。
+ * 写入时在compute内检查时钟，失效先记录时钟再移除缓存项：同一个键上两者串行，
+ * 检查通过后写入的旧结构会被随后的移除清掉，检查晚于失效则不会写入
+ */
+@Service
+public class SchemaMetadataCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMetadataCache.class);
+
+    // 列信息缓存有效期
+    @Value("${metadata.cache.columns-ttl-seconds:600}")
+    private long columnsTtlSeconds;
+
+    // 表列表缓存有效期（包含行数估算等统计信息，有效期较短）
+    @Value("${metadata.cache.tables-ttl-seconds:60}")
+    private long tablesTtlSeconds;
+
+    private final ConcurrentHashMap<String, TableSchema> columnCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TableList> tableListCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, KeyColumns> keyColumnCache = new ConcurrentHashMap<>();
+
+    private final AtomicLong invalidationClock = new AtomicLong();
+    private final ConcurrentHashMap<String, Long> tableInvalidatedAt = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> tableListInvalidatedAt = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> schemaInvalidatedAt = new ConcurrentHashMap<>();
+    private volatile long clearedAt;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * 不可变的列描述
+     */
+    public static class ColumnDescriptor {
+        private final String columnName;
+        private final String dataType;
+        private final String columnType;
+        private final boolean nullable;
+        private final String columnDefault;
+        private final String columnKey;
+        private final String extra;
+        private final String columnComment;
+
+        ColumnDescriptor(Map<String, Object> row) {
+            this.columnName = (String) row.get("COLUMN_NAME");
+            this.dataType = (String) row.get("DATA_TYPE");
+            this.columnType = (String) row.get("COLUMN_TYPE");
+            this.nullable = "YES".equalsIgnoreCase((String) row.get("IS_NULLABLE"));
+            Object defaultValue = row.get("COLUMN_DEFAULT");
+            this.columnDefault = defaultValue != null ? defaultValue.toString() : null;
+            this.columnKey = (String) row.get("COLUMN_KEY");
+            this.extra = (String) row.get("EXTRA");
+            this.columnComment = (String) row.get("COLUMN_COMMENT");
+        }
+
+        public String getColumnName() { return columnName; }
+        public String getDataType() { return dataType; }
+        public String getColumnType() { return columnType; }
+        public boolean isNullable() { return nullable; }
+        public String getColumnDefault() { return columnDefault; }
+        public String getColumnKey() { return columnKey; }
+        public String getExtra() { return extra; }
+        public String getColumnComment() { return columnComment; }
+
+        public boolean isPrimaryKey() {
+            return "PRI".equals(columnKey);
+        }
+
+        /**
+         * 转换为与information_schema查询结果相同结构的Map（每次返回新副本）
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedCaseInsensitiveMap<>();
+            map.put("COLUMN_NAME", columnName);
+            map.put("DATA_TYPE", dataType);
+            map.put("COLUMN_TYPE", columnType);
+            map.put("IS_NULLABLE", nullable ? "YES" : "NO");
+            map.put("COLUMN_DEFAULT", columnDefault);
+            map.put("COLUMN_KEY", columnKey);
+            map.put("EXTRA", extra);
+            map.put("COLUMN_COMMENT", columnComment);
+            return map;
+        }
+    }
+
+    /**
+     * 单表的列信息
+     */
+    private static class TableSchema {
+        final List<ColumnDescriptor> columns;
+        final long loadedAt;
+        final long generation;
+
+        TableSchema(List<ColumnDescriptor> columns, long generation) {
+            this.columns = Collections.unmodifiableList(columns);
+            this.loadedAt = System.currentTimeMillis();
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * 单个数据库的表列表
+     */
+    private static class TableList {
+        final List<Map<String, Object>> tables;
+        final Set<String> tableNames;
+        final long loadedAt;
+        final long generation;
+
+        TableList(List<Map<String, Object>> tables, long generation) {
+            List<Map<String, Object>> copies = new ArrayList<>(tables.size());
+            Set<String> names = new HashSet<>();
+            for (Map<String, Object> table : tables) {
+                Map<String, Object> copy = new LinkedCaseInsensitiveMap<>();
+                copy.putAll(table);
+                copies.add(copy);
+                names.add(((String) table.get("TABLE_NAME")).toLowerCase());
+            }
+            this.tables = Collections.unmodifiableList(copies);
+            this.tableNames = Collections.unmodifiableSet(names);
+            this.loadedAt = System.currentTimeMillis();
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * 单表用于键集分页的唯一键列
+     */
+    private static class KeyColumns {
+        final List<String> columns;
+        final long loadedAt;
+        final long generation;
+
+        KeyColumns(List<String> columns, long generation) {
+            this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+            this.loadedAt = System.currentTimeMillis();
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * 获取表的唯一键列（主键或非空唯一索引），没有可用的唯一键时返回空列表
+     */
+    public List<String> getKeyColumns(String schemaName, String tableName, Supplier<List<String>> loader) {
+        String key = tableKey(schemaName, tableName);
+        KeyColumns keyColumns = keyColumnCache.get(key);
+        if (keyColumns != null && !isExpired(keyColumns.loadedAt, columnsTtlSeconds)
+                && isCurrent(keyColumns.generation, schemaName, key)) {
+            hitCount.incrementAndGet();
+            return keyColumns.columns;
+        }
+
+        missCount.incrementAndGet();
+        long generation = invalidationClock.get();
+        KeyColumns loaded = new KeyColumns(loader.get(), generation);
+        keyColumnCache.compute(key, (k, existing) -> isCurrent(generation, schemaName, key) ? loaded : existing);
+        return loaded.columns;
+    }
+
+    /**
+     * 获取表的列描述，缓存未命中时通过loader查询information_schema
+     */
+    public List<ColumnDescriptor> getColumns(String schemaName, String tableName, Supplier<List<Map<String, Object>>> loader) {
+        String key = tableKey(schemaName, tableName);
+        TableSchema schema = columnCache.get(key);
+        if (schema != null && !isExpired(schema.loadedAt, columnsTtlSeconds)
+                && isCurrent(schema.generation, schemaName, key)) {
+            hitCount.incrementAndGet();
+            return schema.columns;
+        }
+
+        missCount.incrementAndGet();
+        long generation = invalidationClock.get();
+        List<ColumnDescriptor> columns = new ArrayList<>();
+        for (Map<String, Object> row : loader.get()) {
+            columns.add(new ColumnDescriptor(row));
+        }
+        TableSchema loaded = new TableSchema(columns, generation);
+
+        // 不存在的表不缓存，避免建表后短时间内仍然查不到
+        if (!columns.isEmpty()) {
+            columnCache.compute(key, (k, existing) -> isCurrent(generation, schemaName, key) ? loaded : existing);
+        }
+        return loaded.columns;
+    }
+
+    /**
+     * 获取表的列信息（Map副本形式，兼容原有调用方）
+     */
+    public List<Map<String, Object>> getColumnMaps(String schemaName, String tableName, Supplier<List<Map<String, Object>>> loader) {
+        List<ColumnDescriptor> columns = getColumns(schemaName, tableName, loader);
+        List<Map<String, Object>> result = new ArrayList<>(columns.size());
+        for (ColumnDescriptor column : columns) {
+            result.add(column.toMap());
+        }
+        return result;
+    }
+
+    /**
+     * 获取数据库的表列表（每次返回新副本）
+     */
+    public List<Map<String, Object>> getTables(String schemaName, Supplier<List<Map<String, Object>>> loader) {
+        TableList tableList = getTableList(schemaName, loader);
+        List<Map<String, Object>> result = new ArrayList<>(tableList.tables.size());
+        for (Map<String, Object> table : tableList.tables) {
+            Map<String, Object> copy = new LinkedCaseInsensitiveMap<>();
+            copy.putAll(table);
+            result.add(copy);
+        }
+        return result;
+    }
+
+    /**
+     * 判断表是否存在（基于缓存的表列表）
+     * 缓存中不存在时重新加载一次，避免外部刚创建的表被误判为不存在
+     */
+    public boolean tableExists(String schemaName, String tableName, Supplier<List<Map<String, Object>>> loader) {
+        if (tableName == null) {
+            return false;
+        }
+        String name = tableName.toLowerCase();
+        TableList tableList = getTableList(schemaName, loader);
+        if (tableList.tableNames.contains(name)) {
+            return true;
+        }
+        if (System.currentTimeMillis() - tableList.loadedAt < 1000) {
+            return false;
+        }
+        tableListCache.remove(normalizeSchema(schemaName));
+        return getTableList(schemaName, loader).tableNames.contains(name);
+    }
+
+    private TableList getTableList(String schemaName, Supplier<List<Map<String, Object>>> loader) {
+        String key = normalizeSchema(schemaName);
+        TableList tableList = tableListCache.get(key);
+        if (tableList != null && !isExpired(tableList.loadedAt, tablesTtlSeconds)
+                && isTableListCurrent(tableList.generation, key)) {
+            hitCount.incrementAndGet();
+            return tableList;
+        }
+
+        missCount.incrementAndGet();
+        long generation = invalidationClock.get();
+        TableList loaded = new TableList(loader.get(), generation);
+        tableListCache.compute(key, (k, existing) -> isTableListCurrent(generation, key) ? loaded : existing);
+        return loaded;
+    }
+
+    /**
+     * 表结构发生变化（建表、删表、修改列）
+     */
+    public void invalidateTable(String schemaName, String tableName) {
+        long now = invalidationClock.incrementAndGet();
+        tableInvalidatedAt.put(tableKey(schemaName, tableName), now);
+        tableListInvalidatedAt.put(normalizeSchema(schemaName), now);
+        columnCache.remove(tableKey(schemaName, tableName));
+        keyColumnCache.remove(tableKey(schemaName, tableName));
+        tableListCache.remove(normalizeSchema(schemaName));
+        logger.debug("失效表结构缓存: {}.{}", schemaName, tableName);
+    }
+
+    /**
+     * 表统计信息发生变化（数据写入），只失效表列表
+     */
+    public void invalidateTableList(String schemaName) {
+        tableListInvalidatedAt.put(normalizeSchema(schemaName), invalidationClock.incrementAndGet());
+        tableListCache.remove(normalizeSchema(schemaName));
+    }
+
+    /**
+     * 数据库被创建或删除
+     */
+    public void invalidateDatabase(String schemaName) {
+        String schema = normalizeSchema(schemaName);
+        schemaInvalidatedAt.put(schema, invalidationClock.incrementAndGet());
+        String prefix = schema + "\u0000";
+        columnCache.keySet().removeIf(key -> key.startsWith(prefix));
+        keyColumnCache.keySet().removeIf(key -> key.startsWith(prefix));
+        tableListCache.remove(schema);
+        logger.debug("失效数据库结构缓存: {}", schemaName);
+    }
+
+    /**
+     * 清空全部缓存
+     */
+    public void clearAll() {
+        clearedAt = invalidationClock.incrementAndGet();
+        columnCache.clear();
+        tableListCache.clear();
+        keyColumnCache.clear();
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("cachedTables", columnCache.size());
+        stats.put("cachedDatabases", tableListCache.size());
+        stats.put("hitCount", hitCount.get());
+        stats.put("missCount", missCount.get());
+        stats.put("columnsTtlSeconds", columnsTtlSeconds);
+        stats.put("tablesTtlSeconds", tablesTtlSeconds);
+        return stats;
+    }
+
+    /**
+     * 表级缓存项加载开始后，该表、所在数据库都没有失效过
+     */
+    private boolean isCurrent(long generation, String schemaName, String tableKey) {
+        return generation >= clearedAt
+                && generation >= schemaInvalidatedAt.getOrDefault(normalizeSchema(schemaName), 0L)
+                && generation >= tableInvalidatedAt.getOrDefault(tableKey, 0L);
+    }
+
+    private boolean isTableListCurrent(long generation, String schema) {
+        return generation >= clearedAt
+                && generation >= schemaInvalidatedAt.getOrDefault(schema, 0L)
+                && generation >= tableListInvalidatedAt.getOrDefault(schema, 0L);
+    }
+
+    private boolean isExpired(long loadedAt, long ttlSeconds) {
+        return System.currentTimeMillis() - loadedAt > ttlSeconds * 1000;
+    }
+
+    private String normalizeSchema(String schemaName) {
+        return schemaName == null ? "" : schemaName.toLowerCase();
+    }
+
+    private String tableKey(String schemaName, String tableName) {
+        return normalizeSchema(schemaName) + "\u0000" + (tableName == null ? "" : tableName.toLowerCase());
+    }
+}
@@ -1,164 +1,532 @@
 package com.example.bio_data.service;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 搜索缓存服务
+ * 分段LRU（试用区 + 保护区）淘汰，按估算内存权重限制容量；
+ * 维护按表的二级索引，表数据变化时只清理该表的条目；可选缓存前N页查询结果
+ */
 @Service
 public class SearchCacheService {
-    
+
     // 搜索缓存数据结构
     public static class SearchCacheEntry {
         private String whereClause;
         private List<Object> params;
         private Integer totalCount;
         private long createTime;
-        private long lastAccessTime;
-        
+        private volatile long lastAccessTime;
+        // 已缓存的结果页，key = "offset:size"
+        private final Map<String, List<Map<String, Object>>> pages = new HashMap<>();
+        private long weight;
+
         public SearchCacheEntry(String whereClause, List<Object> params, Integer totalCount) {
             this.whereClause = whereClause;
             this.params = new ArrayList<>(params);
             this.totalCount = totalCount;
             this.createTime = System.currentTimeMillis();
             this.lastAccessTime = this.createTime;
+            this.weight = estimateBaseWeight(whereClause, this.params);
         }
-        
+
         public String getWhereClause() { return whereClause; }
         public List<Object> getParams() { return new ArrayList<>(params); }
         public Integer getTotalCount() { return totalCount; }
         public long getCreateTime() { return createTime; }
         public long getLastAccessTime() { return lastAccessTime; }
-        
+
         public void updateLastAccessTime() {
             this.lastAccessTime = System.currentTimeMillis();
         }
-        
+
         public boolean isExpired(long timeoutMs) {
             return System.currentTimeMillis() - createTime > timeoutMs;
         }
-        
+
         public boolean isIdle(long idleTimeoutMs) {
             return System.currentTimeMillis() - lastAccessTime > idleTimeoutMs;
         }
     }
-    
-    // 缓存存储：key = "dataSource:tableName:searchValue", value = SearchCacheEntry
-    private final Map<String, SearchCacheEntry> searchCache = new ConcurrentHashMap<>();
-    
+
+    /**
+     * 表标识（数据源 + 表名），按字段比较，不拼接字符串
+     */
+    private static final class TableKey {
+        private final String dataSource;
+        private final String tableName;
+
+        TableKey(String dataSource, String tableName) {
+            this.dataSource = dataSource != null ? dataSource : "default";
+            this.tableName = tableName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TableKey)) return false;
+            TableKey other = (TableKey) o;
+            return dataSource.equals(other.dataSource) && Objects.equals(tableName, other.tableName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dataSource, tableName);
+        }
+    }
+
+    /**
+     * 缓存键：表标识 + 搜索值、搜索模式、搜索类型；按字段比较，表名或搜索值中包含分隔符也不会混淆
+     */
+    private static final class CacheKey {
+        private final TableKey table;
+        private final String searchValue;
+        private final String searchMode;
+        private final String searchType;
+
+        CacheKey(TableKey table, String searchValue, String searchMode, String searchType) {
+            this.table = table;
+            this.searchValue = searchValue;
+            this.searchMode = searchMode;
+            this.searchType = searchType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CacheKey)) return false;
+            CacheKey other = (CacheKey) o;
+            return table.equals(other.table) && Objects.equals(searchValue, other.searchValue)
+                    && Objects.equals(searchMode, other.searchMode) && Objects.equals(searchType, other.searchType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(table, searchValue, searchMode, searchType);
+        }
+    }
+
+    /**
+     * 缓存分片：每个分片是一个独立加锁的分段LRU
+     */
+    private class Shard {
+        // 试用区：新写入的条目，按插入顺序淘汰
+        private final LinkedHashMap<CacheKey, SearchCacheEntry> probation = new LinkedHashMap<>();
+        // 保护区：至少被再次访问过一次的条目，按访问顺序淘汰
+        private final LinkedHashMap<CacheKey, SearchCacheEntry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        private long probationWeight;
+        private long protectedWeight;
+
+        synchronized SearchCacheEntry get(CacheKey key) {
+            SearchCacheEntry entry = protectedSegment.get(key);
+            if (entry != null) {
+                return entry;
+            }
+            entry = probation.remove(key);
+            if (entry != null) {
+                // 再次访问，晋升到保护区
+                probationWeight -= entry.weight;
+                protectedSegment.put(key, entry);
+                protectedWeight += entry.weight;
+                demoteProtectedOverflow();
+            }
+            return entry;
+        }
+
+        synchronized void put(CacheKey key, SearchCacheEntry entry) {
+            removeInternal(key);
+            probation.put(key, entry);
+            probationWeight += entry.weight;
+            evictOverflow();
+        }
+
+        synchronized SearchCacheEntry remove(CacheKey key) {
+            return removeInternal(key);
+        }
+
+        synchronized List<Map<String, Object>> getPage(CacheKey key, String pageKey) {
+            SearchCacheEntry entry = protectedSegment.get(key);
+            if (entry == null) {
+                entry = probation.get(key);
+            }
+            return entry != null ? entry.pages.get(pageKey) : null;
+        }
+
+        synchronized boolean addPage(CacheKey key, String pageKey, List<Map<String, Object>> rows) {
+            SearchCacheEntry entry = protectedSegment.get(key);
+            boolean inProtected = entry != null;
+            if (entry == null) {
+                entry = probation.get(key);
+            }
+            if (entry == null || entry.pages.containsKey(pageKey)) {
+                return false;
+            }
+
+            long pageWeight = estimatePageWeight(rows);
+            entry.pages.put(pageKey, Collections.unmodifiableList(new ArrayList<>(rows)));
+            entry.weight += pageWeight;
+            if (inProtected) {
+                protectedWeight += pageWeight;
+                demoteProtectedOverflow();
+            } else {
+                probationWeight += pageWeight;
+            }
+            evictOverflow();
+            return true;
+        }
+
+        synchronized List<CacheKey> expiredKeys() {
+            List<CacheKey> keys = new ArrayList<>();
+            for (Map.Entry<CacheKey, SearchCacheEntry> e : probation.entrySet()) {
+                if (isStale(e.getValue())) keys.add(e.getKey());
+            }
+            for (Map.Entry<CacheKey, SearchCacheEntry> e : protectedSegment.entrySet()) {
+                if (isStale(e.getValue())) keys.add(e.getKey());
+            }
+            return keys;
+        }
+
+        synchronized void clear() {
+            probation.clear();
+            protectedSegment.clear();
+            probationWeight = 0;
+            protectedWeight = 0;
+        }
+
+        synchronized int size() {
+            return probation.size() + protectedSegment.size();
+        }
+
+        synchronized long weight() {
+            return probationWeight + protectedWeight;
+        }
+
+        private SearchCacheEntry removeInternal(CacheKey key) {
+            SearchCacheEntry entry = probation.remove(key);
+            if (entry != null) {
+                probationWeight -= entry.weight;
+                return entry;
+            }
+            entry = protectedSegment.remove(key);
+            if (entry != null) {
+                protectedWeight -= entry.weight;
+            }
+            return entry;
+        }
+
+        /**
+         * 保护区超过配额时，将最久未访问的条目降级回试用区
+         */
+        private void demoteProtectedOverflow() {
+            long protectedLimit = shardMaxWeight * PROTECTED_RATIO_PERCENT / 100;
+            Iterator<Map.Entry<CacheKey, SearchCacheEntry>> it = protectedSegment.entrySet().iterator();
+            while (protectedWeight > protectedLimit && it.hasNext()) {
+                Map.Entry<CacheKey, SearchCacheEntry> eldest = it.next();
+                it.remove();
+                protectedWeight -= eldest.getValue().weight;
+                probation.put(eldest.getKey(), eldest.getValue());
+                probationWeight += eldest.getValue().weight;
+            }
+        }
+
+        /**
+         * 总权重超过分片上限时，优先淘汰试用区，其次淘汰保护区
+         */
+        private void evictOverflow() {
+            while (probationWeight + protectedWeight > shardMaxWeight) {
+                LinkedHashMap<CacheKey, SearchCacheEntry> segment = !probation.isEmpty() ? probation : protectedSegment;
+                if (segment.isEmpty()) {
+                    break;
+                }
+                Map.Entry<CacheKey, SearchCacheEntry> eldest = segment.entrySet().iterator().next();
+                removeInternal(eldest.getKey());
+                unindexKey(eldest.getKey());
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
     // 缓存配置
     private static final long CACHE_TIMEOUT_MS = 30 * 60 * 1000; // 30分钟过期
     private static final long IDLE_TIMEOUT_MS = 10 * 60 * 1000; // 10分钟空闲过期
-    private static final int MAX_CACHE_SIZE = 1000; // 最大缓存条数
-    
+    private static final int SHARD_COUNT = 8;
+    private static final long PROTECTED_RATIO_PERCENT = 80; // 保护区占分片容量的比例
+
+    // 缓存总权重上限（估算字节数）
+    @Value("${search.cache.max-weight-bytes:67108864}")
+    private long maxWeightBytes;
+
+    // 缓存结果页的最大页码，0表示不缓存结果页
+    @Value("${search.cache.max-cached-pages:3}")
+    private int maxCachedPages;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final Shard[] shards = new Shard[SHARD_COUNT];
+    private long shardMaxWeight;
+
+    // 二级索引：表 -> 该表的缓存键集合
+    private final ConcurrentHashMap<TableKey, Set<CacheKey>> tableIndex = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public SearchCacheService() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        shardMaxWeight = Math.max(1, maxWeightBytes / SHARD_COUNT);
+
+        if (meterRegistry != null) {
+            FunctionCounter.builder("cache.gets", hitCount, AtomicLong::get)
+                    .tag("cache", "search").tag("result", "hit")
+                    .description("搜索缓存命中次数").register(meterRegistry);
+            FunctionCounter.builder("cache.gets", missCount, AtomicLong::get)
+                    .tag("cache", "search").tag("result", "miss")
+                    .description("搜索缓存未命中次数").register(meterRegistry);
+            FunctionCounter.builder("cache.evictions", evictionCount, AtomicLong::get)
+                    .tag("cache", "search")
+                    .description("搜索缓存淘汰次数").register(meterRegistry);
+            Gauge.builder("cache.size", this, SearchCacheService::getEntryCount)
+                    .tag("cache", "search")
+                    .description("搜索缓存条目数").register(meterRegistry);
+            Gauge.builder("cache.weight", this, SearchCacheService::getTotalWeight)
+                    .tag("cache", "search").baseUnit("bytes")
+                    .description("搜索缓存估算占用").register(meterRegistry);
+        }
+    }
+
     /**
      * 生成缓存键
      */
-    private String generateCacheKey(String dataSource, String tableName, String searchValue) {
-        String safeDataSource = dataSource != null ? dataSource : "default";
-        return String.format("%s:%s:%s", safeDataSource, tableName, searchValue);
+    private CacheKey generateCacheKey(String dataSource, String tableName, String searchValue,
+                                      String searchMode, String searchType) {
+        return new CacheKey(generateTableKey(dataSource, tableName), searchValue, searchMode, searchType);
     }
-    
+
+    private TableKey generateTableKey(String dataSource, String tableName) {
+        return new TableKey(dataSource, tableName);
+    }
+
+    private Shard shardFor(CacheKey cacheKey) {
+        return shards[(cacheKey.hashCode() & 0x7fffffff) % SHARD_COUNT];
+    }
+
     /**
      * 获取缓存的搜索条件
      */
-    public SearchCacheEntry getSearchCache(String dataSource, String tableName, String searchValue) {
-        String cacheKey = generateCacheKey(dataSource, tableName, searchValue);
-        SearchCacheEntry entry = searchCache.get(cacheKey);
-        
+    public SearchCacheEntry getSearchCache(String dataSource, String tableName, String searchValue,
+                                           String searchMode, String searchType) {
+        CacheKey cacheKey = generateCacheKey(dataSource, tableName, searchValue, searchMode, searchType);
+        Shard shard = shardFor(cacheKey);
+        SearchCacheEntry entry = shard.get(cacheKey);
+
         if (entry != null) {
             // 检查是否过期
-            if (entry.isExpired(CACHE_TIMEOUT_MS) || entry.isIdle(IDLE_TIMEOUT_MS)) {
-                searchCache.remove(cacheKey);
+            if (isStale(entry)) {
+                shard.remove(cacheKey);
+                unindexKey(cacheKey);
+                missCount.incrementAndGet();
                 return null;
             }
-            
+
             // 更新访问时间
             entry.updateLastAccessTime();
+            hitCount.incrementAndGet();
             return entry;
         }
-        
+
+        missCount.incrementAndGet();
         return null;
     }
-    
+
     /**
      * 缓存搜索条件
+     * 先登记到表索引再写入分片，写入后确认登记的键集合仍在表索引中：
+     * 期间该表被清理时，清理可能早于写入而漏掉这个条目，由这里移除
      */
-    public void putSearchCache(String dataSource, String tableName, String searchValue, 
-                              String whereClause, List<Object> params, Integer totalCount) {
-        // 检查缓存大小，如果超过限制则清理
-        if (searchCache.size() >= MAX_CACHE_SIZE) {
-            cleanupExpiredEntries();
-            
-            // 如果清理后还是超过限制，清理最老的条目
-            if (searchCache.size() >= MAX_CACHE_SIZE) {
-                cleanupOldestEntries();
-            }
-        }
-        
-        String cacheKey = generateCacheKey(dataSource, tableName, searchValue);
+    public void putSearchCache(String dataSource, String tableName, String searchValue, String searchMode,
+                               String searchType, String whereClause, List<Object> params, Integer totalCount) {
+        CacheKey cacheKey = generateCacheKey(dataSource, tableName, searchValue, searchMode, searchType);
         SearchCacheEntry entry = new SearchCacheEntry(whereClause, params, totalCount);
-        searchCache.put(cacheKey, entry);
+        Set<CacheKey> tableKeys = tableIndex.computeIfAbsent(cacheKey.table, k -> ConcurrentHashMap.newKeySet());
+        tableKeys.add(cacheKey);
+        Shard shard = shardFor(cacheKey);
+        shard.put(cacheKey, entry);
+        if (tableIndex.get(cacheKey.table) != tableKeys) {
+            shard.remove(cacheKey);
+        }
     }
-    
+
     /**
-     * 清理过期的缓存条目
+     * 页码是否在结果页缓存范围内
      */
-    public void cleanupExpiredEntries() {
-        //long currentTime = System.currentTimeMillis();
-        searchCache.entrySet().removeIf(entry -> 
-            entry.getValue().isExpired(CACHE_TIMEOUT_MS) || 
-            entry.getValue().isIdle(IDLE_TIMEOUT_MS)
-        );
+    public boolean isPageCacheable(int page) {
+        return page >= 1 && page <= maxCachedPages;
+    }
+
+    /**
+     * 获取缓存的结果页，未缓存时返回null
+     */
+    public List<Map<String, Object>> getCachedPage(String dataSource, String tableName, String searchValue,
+                                                   String searchMode, String searchType, int offset, int size) {
+        CacheKey cacheKey = generateCacheKey(dataSource, tableName, searchValue, searchMode, searchType);
+        List<Map<String, Object>> rows = shardFor(cacheKey).getPage(cacheKey, offset + ":" + size);
+        return rows != null ? new ArrayList<>(rows) : null;
     }
-    
+
     /**
-     * 清理最老的缓存条目（当缓存满时）
+     * 缓存一页查询结果（仅当搜索条件仍在缓存中）
      */
-    private void cleanupOldestEntries() {
-        // 移除最老的25%的条目
-        int removeCount = Math.max(1, searchCache.size() / 4);
-        
-        List<Map.Entry<String, SearchCacheEntry>> entries = new ArrayList<>(searchCache.entrySet());
-        entries.sort(Comparator.comparing(e -> e.getValue().getCreateTime()));
-        
-        for (int i = 0; i < removeCount && i < entries.size(); i++) {
-            searchCache.remove(entries.get(i).getKey());
+    public void putCachedPage(String dataSource, String tableName, String searchValue, String searchMode,
+                              String searchType, int offset, int size, List<Map<String, Object>> rows) {
+        CacheKey cacheKey = generateCacheKey(dataSource, tableName, searchValue, searchMode, searchType);
+        shardFor(cacheKey).addPage(cacheKey, offset + ":" + size, rows);
+    }
+
+    /**
+     * 清理过期的缓存条目
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void cleanupExpiredEntries() {
+        for (Shard shard : shards) {
+            for (CacheKey key : shard.expiredKeys()) {
+                shard.remove(key);
+                unindexKey(key);
+            }
         }
     }
-    
+
     /**
      * 清空特定表的缓存（当表结构发生变化时）
      */
     public void clearTableCache(String dataSource, String tableName) {
-        String prefix = generateCacheKey(dataSource, tableName, "");
-        searchCache.entrySet().removeIf(entry -> 
-            entry.getKey().startsWith(prefix.substring(0, prefix.length() - 1))
-        );
+        Set<CacheKey> keys = tableIndex.remove(generateTableKey(dataSource, tableName));
+        if (keys == null) {
+            return;
+        }
+        for (CacheKey key : keys) {
+            shardFor(key).remove(key);
+        }
     }
-    
+
     /**
      * 清空所有缓存
      */
     public void clearAllCache() {
-        searchCache.clear();
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+        tableIndex.clear();
     }
-    
+
     /**
      * 获取缓存统计信息
      */
     public Map<String, Object> getCacheStats() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalEntries", searchCache.size());
-        stats.put("maxCacheSize", MAX_CACHE_SIZE);
+        stats.put("totalEntries", getEntryCount());
+        stats.put("totalWeightBytes", getTotalWeight());
+        stats.put("maxWeightBytes", maxWeightBytes);
+        stats.put("maxCachedPages", maxCachedPages);
         stats.put("cacheTimeoutMinutes", CACHE_TIMEOUT_MS / (60 * 1000));
         stats.put("idleTimeoutMinutes", IDLE_TIMEOUT_MS / (60 * 1000));
-        
-        //long currentTime = System.currentTimeMillis();
-        long expiredCount = searchCache.values().stream()
-            .mapToLong(entry -> entry.isExpired(CACHE_TIMEOUT_MS) || entry.isIdle(IDLE_TIMEOUT_MS) ? 1 : 0)
-            .sum();
+        stats.put("hitCount", hitCount.get());
+        stats.put("missCount", missCount.get());
+        stats.put("evictionCount", evictionCount.get());
+        stats.put("cachedTables", tableIndex.size());
+
+        long expiredCount = 0;
+        for (Shard shard : shards) {
+            expiredCount += shard.expiredKeys().size();
+        }
         stats.put("expiredEntries", expiredCount);
-        
+
         return stats;
     }
-} 
\ No newline at end of file
+
+    private int getEntryCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.size();
+        }
+        return count;
+    }
+
+    private long getTotalWeight() {
+        long weight = 0;
+        for (Shard shard : shards) {
+            weight += shard.weight();
+        }
+        return weight;
+    }
+
+    private boolean isStale(SearchCacheEntry entry) {
+        return entry.isExpired(CACHE_TIMEOUT_MS) || entry.isIdle(IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * 从二级索引中移除缓存键
+     */
+    private void unindexKey(CacheKey cacheKey) {
+        Set<CacheKey> keys = tableIndex.get(cacheKey.table);
+        if (keys != null) {
+            keys.remove(cacheKey);
+        }
+    }
+
+    /**
+     * 估算搜索条件本身的内存占用
+     */
+    private static long estimateBaseWeight(String whereClause, List<Object> params) {
+        long weight = 128;
+        weight += whereClause != null ? 40 + whereClause.length() * 2L : 0;
+        for (Object param : params) {
+            weight += estimateValueWeight(param);
+        }
+        return weight;
+    }
+
+    /**
+     * 估算结果页的内存占用
+     */
+    private static long estimatePageWeight(List<Map<String, Object>> rows) {
+        long weight = 64;
+        for (Map<String, Object> row : rows) {
+            weight += 64;
+            for (Map.Entry<String, Object> column : row.entrySet()) {
+                weight += 48 + estimateValueWeight(column.getValue());
+            }
+        }
+        return weight;
+    }
+
+    private static long estimateValueWeight(Object value) {
+        if (value == null) {
+            return 8;
+        }
+        if (value instanceof CharSequence) {
+            return 40 + ((CharSequence) value).length() * 2L;
+        }
+        if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        }
+        return 24;
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.bio_data.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 影子表服务
+ * 覆盖导入时先把数据写入按目标表结构创建的影子表，写入完成后再建立二级索引，
+ * 然后用一条RENAME TABLE原子地与目标表交换，旧表在后台删除。
+ * 导入期间读者看到的始终是完整的旧数据，也不需要逐行DELETE。
+ * 每次导入的影子表和旧表名带有随机后缀，同一张表上并发的覆盖导入互不干扰（后交换的一次生效）；
+ * 交换前把目标表当前的AUTO_INCREMENT值带到影子表上，二级索引重建时保留注释和不可见属性
+ */
+@Service
+public class ShadowTableService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShadowTableService.class);
+
+    private static final String SHADOW_MARK = "__s";
+    private static final String OLD_MARK = "__o";
+    // 后缀中的随机部分（8位十六进制）
+    private static final int SUFFIX_ID_LENGTH = 8;
+    private static final int MAX_TABLE_NAME_LENGTH = 64;
+    private static final Pattern AUTO_INCREMENT = Pattern.compile("\\bAUTO_INCREMENT=(\\d+)");
+
+    @Autowired
+    private MultiDataSourceService multiDataSourceService;
+
+    // 删除交换出的旧表，单线程依次执行，避免多个大表同时删除
+    private ExecutorService dropExecutor;
+
+    @PostConstruct
+    public void init() {
+        dropExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shadow-table-drop");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (dropExecutor != null) {
+            dropExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 表不适合用影子表交换（有外键或触发器、表名过长、没有建表权限等），调用方应改用DELETE方式
+     */
+    public static class ShadowTableUnavailableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ShadowTableUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * 一次覆盖导入使用的影子表
+     */
+    public static class ShadowTable {
+        private final JdbcTemplate jdbcTemplate;
+        private final String schemaName;
+        // 用户创建的数据库（使用该库自己的连接池），使用默认库时为null
+        private final String poolDatabase;
+        private final String tableName;
+        private final String shadowName;
+        private final String oldName;
+        private final List<String> deferredIndexes = new ArrayList<>();
+
+        ShadowTable(JdbcTemplate jdbcTemplate, String schemaName, String poolDatabase, String tableName, String suffixId) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.schemaName = schemaName;
+            this.poolDatabase = poolDatabase;
+            this.tableName = tableName;
+            this.shadowName = derivedName(tableName, SHADOW_MARK, suffixId);
+            this.oldName = derivedName(tableName, OLD_MARK, suffixId);
+        }
+
+        public String getTableName() { return tableName; }
+        public String getShadowName() { return shadowName; }
+        public String getOldName() { return oldName; }
+        public List<String> getDeferredIndexes() { return deferredIndexes; }
+
+        public String getQualifiedShadowName() {
+            return qualify(getShadowName());
+        }
+
+        String qualify(String name) {
+            return String.format("`%s`.`%s`", schemaName, name);
+        }
+    }
+
+    /**
+     * 影子表和旧表的名称：表名加标记和随机后缀，超过MySQL表名长度上限时截短表名部分（后缀保证唯一）
+     */
+    static String derivedName(String tableName, String mark, String suffixId) {
+        String suffix = mark + suffixId;
+        int keep = Math.min(tableName.length(), MAX_TABLE_NAME_LENGTH - suffix.length());
+        if (keep < tableName.length() && Character.isHighSurrogate(tableName.charAt(keep - 1))) {
+            keep--;
+        }
+        return tableName.substring(0, keep) + suffix;
+    }
+
+    /**
+     * 按目标表结构创建影子表，并删除其中的非唯一二级索引（写入完成后由buildIndexes重建）
+     * 唯一索引保留，重复数据在写入时按批次报错，与直接写入目标表的行为一致
+     * @param schemaName 目标表所在的库，为null时使用连接的默认库
+     */
+    public ShadowTable create(JdbcTemplate jdbcTemplate, String schemaName, String tableName) {
+        try {
+            String schema = schemaName != null ? schemaName : jdbcTemplate.queryForObject("SELECT DATABASE()", String.class);
+            String suffixId = String.format("%08x", ThreadLocalRandom.current().nextInt());
+            ShadowTable shadow = new ShadowTable(jdbcTemplate, schema, schemaName, tableName, suffixId);
+
+            // CREATE TABLE ... LIKE不复制外键，RENAME后触发器和引用本表的外键会跟随旧表，这两种情况不能交换
+            Integer foreignKeys = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.KEY_COLUMN_USAGE WHERE REFERENCED_TABLE_NAME IS NOT NULL " +
+                    "AND ((TABLE_SCHEMA = ? AND TABLE_NAME = ?) OR (REFERENCED_TABLE_SCHEMA = ? AND REFERENCED_TABLE_NAME = ?))",
+                    Integer.class, schema, tableName, schema, tableName);
+            if (foreignKeys != null && foreignKeys > 0) {
+                throw new ShadowTableUnavailableException("表存在外键约束", null);
+            }
+            Integer triggers = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.TRIGGERS WHERE EVENT_OBJECT_SCHEMA = ? AND EVENT_OBJECT_TABLE = ?",
+                    Integer.class, schema, tableName);
+            if (triggers != null && triggers > 0) {
+                throw new ShadowTableUnavailableException("表存在触发器", null);
+            }
+
+            jdbcTemplate.execute("CREATE TABLE " + shadow.getQualifiedShadowName() + " LIKE " + shadow.qualify(tableName));
+
+            deferSecondaryIndexes(shadow);
+            logger.info("已创建影子表 {}，延后创建的索引: {}", shadow.getQualifiedShadowName(), shadow.deferredIndexes.size());
+            return shadow;
+        } catch (ShadowTableUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ShadowTableUnavailableException("创建影子表失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 数据写入完成后，用一条ALTER TABLE建立延后的索引
+     */
+    public void buildIndexes(ShadowTable shadow) {
+        if (shadow.deferredIndexes.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        String sql = "ALTER TABLE " + shadow.getQualifiedShadowName() + " " + String.join(", ", shadow.deferredIndexes);
+        shadow.jdbcTemplate.execute(sql);
+        logger.info("影子表索引创建完成 - 表: {}, 索引数: {}, 耗时: {}ms",
+                shadow.getShadowName(), shadow.deferredIndexes.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 原子地交换影子表与目标表，旧表在后台删除
+     * 交换前把目标表的AUTO_INCREMENT带到影子表上，已分配过的自增值不会被重新使用
+     * @return 被替换掉的行数，取自information_schema.TABLES的TABLE_ROWS（InnoDB为估算值），不对旧表做COUNT扫描
+     */
+    public long swap(ShadowTable shadow) {
+        String target = shadow.qualify(shadow.tableName);
+        String old = shadow.qualify(shadow.oldName);
+
+        Long autoIncrement = readAutoIncrement(shadow.jdbcTemplate, target);
+        if (autoIncrement != null) {
+            // InnoDB取该值与影子表当前最大值加1中较大的一个
+            shadow.jdbcTemplate.execute("ALTER TABLE " + shadow.getQualifiedShadowName() + " AUTO_INCREMENT = " + autoIncrement);
+        }
+        Long replacedRows = readEstimatedRows(shadow);
+        shadow.jdbcTemplate.execute("RENAME TABLE " + target + " TO " + old + ", "
+                + shadow.getQualifiedShadowName() + " TO " + target);
+        logger.info("影子表已交换 - 表: {}", target);
+
+        // 删除大表可能耗时较长，不阻塞导入请求；删除完成前持有连接池租约，连接池不会被淘汰关闭
+        MultiDataSourceService.PoolLease lease = multiDataSourceService.leaseDatabasePool(shadow.poolDatabase);
+        try {
+            dropExecutor.execute(() -> {
+                try {
+                    shadow.jdbcTemplate.execute("DROP TABLE IF EXISTS " + old);
+                    logger.info("已删除交换出的旧表: {}", old);
+                } catch (Exception e) {
+                    logger.warn("删除旧表失败: {} - {}", old, e.getMessage());
+                } finally {
+                    lease.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            lease.close();
+            logger.warn("应用正在关闭，交换出的旧表未删除: {}", old);
+        }
+        return replacedRows != null ? replacedRows : 0;
+    }
+
+    private Long readEstimatedRows(ShadowTable shadow) {
+        try {
+            return shadow.jdbcTemplate.queryForObject(
+                    "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?",
+                    Long.class, shadow.schemaName, shadow.tableName);
+        } catch (Exception e) {
+            logger.debug("读取表行数估算值失败: {} - {}", shadow.tableName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 从SHOW CREATE TABLE读取表当前的AUTO_INCREMENT（information_schema中的值可能是缓存的），没有自增列时返回null
+     */
+    private Long readAutoIncrement(JdbcTemplate jdbcTemplate, String qualifiedName) {
+        Map<String, Object> row = jdbcTemplate.queryForMap("SHOW CREATE TABLE " + qualifiedName);
+        Object ddl = row.get("Create Table");
+        if (ddl == null) {
+            return null;
+        }
+        Matcher matcher = AUTO_INCREMENT.matcher(ddl.toString());
+        return matcher.find() ? Long.valueOf(matcher.group(1)) : null;
+    }
+
+    /**
+     * 导入失败时删除影子表，目标表保持不变
+     */
+    public void discard(ShadowTable shadow) {
+        try {
+            shadow.jdbcTemplate.execute("DROP TABLE IF EXISTS " + shadow.getQualifiedShadowName());
+        } catch (Exception e) {
+            logger.warn("删除影子表失败: {} - {}", shadow.getShadowName(), e.getMessage());
+        }
+    }
+
+    /**
+     * 读取影子表的非唯一二级索引定义，删除后记下重建语句（包括索引注释和不可见属性）
+     * 函数索引（列名为空）保留不动
+     */
+    private void deferSecondaryIndexes(ShadowTable shadow) {
+        List<Map<String, Object>> rows = shadow.jdbcTemplate.queryForList(
+                "SELECT INDEX_NAME, NON_UNIQUE, SEQ_IN_INDEX, COLUMN_NAME, SUB_PART, COLLATION, INDEX_TYPE, INDEX_COMMENT, IS_VISIBLE " +
+                "FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? " +
+                "AND INDEX_NAME <> 'PRIMARY' ORDER BY INDEX_NAME, SEQ_IN_INDEX",
+                shadow.schemaName, shadow.getShadowName());
+
+        Map<String, List<Map<String, Object>>> indexes = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) {
+            indexes.computeIfAbsent((String) row.get("INDEX_NAME"), name -> new ArrayList<>()).add(row);
+        }
+
+        List<String> dropClauses = new ArrayList<>();
+        for (Map.Entry<String, List<Map<String, Object>>> index : indexes.entrySet()) {
+            List<Map<String, Object>> parts = index.getValue();
+            Map<String, Object> first = parts.get(0);
+            boolean nonUnique = ((Number) first.get("NON_UNIQUE")).intValue() == 1;
+            boolean functional = parts.stream().anyMatch(part -> part.get("COLUMN_NAME") == null);
+            if (!nonUnique || functional) {
+                continue;
+            }
+
+            String indexType = (String) first.get("INDEX_TYPE");
+            String kind = "FULLTEXT".equals(indexType) ? "FULLTEXT INDEX" : "SPATIAL".equals(indexType) ? "SPATIAL INDEX" : "INDEX";
+            List<String> columns = new ArrayList<>();
+            for (Map<String, Object> part : parts) {
+                StringBuilder column = new StringBuilder("`").append(part.get("COLUMN_NAME")).append("`");
+                if (part.get("SUB_PART") != null) {
+                    column.append("(").append(part.get("SUB_PART")).append(")");
+                }
+                if ("D".equals(part.get("COLLATION"))) {
+                    column.append(" DESC");
+                }
+                columns.add(column.toString());
+            }
+            StringBuilder options = new StringBuilder();
+            Object comment = first.get("INDEX_COMMENT");
+            if (comment != null && !comment.toString().isEmpty()) {
+                options.append(" COMMENT '").append(comment.toString().replace("\\", "\\\\").replace("'", "''")).append("'");
+            }
+            if ("NO".equals(first.get("IS_VISIBLE"))) {
+                options.append(" INVISIBLE");
+            }
+            dropClauses.add("DROP INDEX `" + index.getKey() + "`");
+            shadow.deferredIndexes.add("ADD " + kind + " `" + index.getKey() + "` (" + String.join(", ", columns) + ")" + options);
+        }
+
+        if (!dropClauses.isEmpty()) {
+            shadow.jdbcTemplate.execute("ALTER TABLE " + shadow.getQualifiedShadowName() + " " + String.join(", ", dropClauses));
+        }
+    }
+}
@@ -0,0 +1,621 @@
+package com.example.bio_data.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 流式文件导入服务
+ * 直接从上传的文件流中逐行解析CSV/TSV，按固定大小的数据块交给导入流水线写入数据库，
+ * 内存占用只与数据块大小和流水线队列容量有关，不受文件大小和行数限制
+ */
+@Service
+public class StreamingImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingImportService.class);
+
+    // 空字符串需要转换为NULL的列类型
+    private static final Set<String> NULL_ON_EMPTY_TYPES = Set.of(
+            "tinyint", "smallint", "mediumint", "int", "integer", "bigint", "decimal", "numeric",
+            "float", "double", "real", "bit", "date", "time", "datetime", "timestamp", "year");
+
+    private static final Set<String> INTEGER_TYPES = Set.of(
+            "tinyint", "smallint", "mediumint", "int", "integer", "bigint");
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Autowired
+    private BulkLoadService bulkLoadService;
+
+    // 每批写入的行数
+    @Value("${import.stream.batch-size:5000}")
+    private int batchSize;
+
+    // 结果中最多保留的错误信息条数
+    @Value("${import.stream.max-errors:100}")
+    private int maxErrors;
+
+    // 导入接口单次上传的最大字节数（导入接口自行流式读取请求体，不受全局multipart大小限制）
+    @Value("${import.stream.max-upload-bytes:21474836480}")
+    private long maxUploadBytes;
+
+    /**
+     * 上传内容超过导入接口的大小上限
+     */
+    public static class UploadTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public UploadTooLargeException(long maxBytes) {
+            super("上传文件超过大小上限: " + maxBytes + " 字节");
+        }
+    }
+
+    /**
+     * 为上传内容加上大小上限，读取超过上限时抛出UploadTooLargeException
+     */
+    public InputStream limitUploadSize(InputStream inputStream) {
+        return new FilterInputStream(inputStream) {
+            private long count;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    count(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    count(n);
+                }
+                return n;
+            }
+
+            private void count(int n) throws UploadTooLargeException {
+                count += n;
+                if (maxUploadBytes > 0 && count > maxUploadBytes) {
+                    throw new UploadTooLargeException(maxUploadBytes);
+                }
+            }
+        };
+    }
+
+    /**
+     * 导入参数
+     */
+    public static class ImportOptions {
+        private String fileName;
+        private String delimiter;
+        private String encoding;
+        private boolean hasHeader = true;
+        private String importStrategy = "append";
+        private boolean bulkLoad;
+        // 表示NULL的文本（如\N），为空时不做转换，所有文本按原样导入
+        private String nullValue;
+        private long skipRecords;
+        private boolean resume;
+        private ImportProgressListener progressListener;
+
+        public String getFileName() { return fileName; }
+        public void setFileName(String fileName) { this.fileName = fileName; }
+        public String getDelimiter() { return delimiter; }
+        public void setDelimiter(String delimiter) { this.delimiter = delimiter; }
+        public String getEncoding() { return encoding; }
+        public void setEncoding(String encoding) { this.encoding = encoding; }
+        public boolean isHasHeader() { return hasHeader; }
+        public void setHasHeader(boolean hasHeader) { this.hasHeader = hasHeader; }
+        public String getImportStrategy() { return importStrategy; }
+        public void setImportStrategy(String importStrategy) { this.importStrategy = importStrategy; }
+        public boolean isBulkLoad() { return bulkLoad; }
+        public void setBulkLoad(boolean bulkLoad) { this.bulkLoad = bulkLoad; }
+        public String getNullValue() { return nullValue; }
+        public void setNullValue(String nullValue) { this.nullValue = nullValue; }
+        public long getSkipRecords() { return skipRecords; }
+        public void setSkipRecords(long skipRecords) { this.skipRecords = skipRecords; }
+        public boolean isResume() { return resume; }
+        public void setResume(boolean resume) { this.resume = resume; }
+        public ImportProgressListener getProgressListener() { return progressListener; }
+        public void setProgressListener(ImportProgressListener progressListener) { this.progressListener = progressListener; }
+    }
+
+    /**
+     * 导入进度回调（供导入任务记录断点和取消导入）
+     */
+    public interface ImportProgressListener {
+        /**
+         * 覆盖模式清空表数据或影子表交换之后调用
+         */
+        void onTableCleared(long deletedRows);
+
+        /**
+         * 断点推进：committedRecords为从第一条数据记录起已完成写入的记录数，可能在插入线程中调用
+         */
+        void onCheckpoint(long committedRecords, long successCount, long failureCount, long skippedCount);
+
+        boolean isCancelled();
+    }
+
+    /**
+     * 从输入流导入CSV/TSV数据到已存在的表
+     */
+    @SuppressWarnings("try")
+    public Map<String, Object> importStream(String dataSourceName, String tableName, InputStream inputStream,
+                                            ImportOptions options) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("表名不能为空");
+        }
+
+        long startTime = System.currentTimeMillis();
+        String importStrategy = (options.getImportStrategy() == null || options.getImportStrategy().trim().isEmpty())
+                ? "append" : options.getImportStrategy();
+        char delimiter = resolveDelimiter(options.getDelimiter(), options.getFileName());
+        Charset charset = resolveCharset(options.getEncoding());
+
+        List<SchemaMetadataCache.ColumnDescriptor> tableColumns = databaseService.getColumnDescriptors(dataSourceName, tableName);
+        if (tableColumns.isEmpty()) {
+            throw new IllegalArgumentException("表不存在或没有字段: " + tableName);
+        }
+
+        logger.info("开始流式导入 - 数据源: {}, 表名: {}, 文件: {}, 分隔符: {}, 策略: {}",
+                dataSourceName, tableName, options.getFileName(), delimiter == '\t' ? "TAB" : String.valueOf(delimiter), importStrategy);
+
+        ImportStats stats = new ImportStats();
+        // 导入期间持有连接池租约，连接池不会因空闲检测或数量上限被关闭
+        try (MultiDataSourceService.PoolLease lease = databaseService.leaseTablePool(dataSourceName);
+             CsvTokenizer tokenizer = new CsvTokenizer(new InputStreamReader(inputStream, charset), delimiter)) {
+            // 确定文件列与表字段的对应关系
+            List<SchemaMetadataCache.ColumnDescriptor> fileColumns;
+            if (options.isHasHeader()) {
+                String[] header = tokenizer.nextRecord();
+                if (header == null) {
+                    throw new IllegalArgumentException("文件为空");
+                }
+                fileColumns = mapHeaderToColumns(header, tableColumns);
+            } else {
+                fileColumns = tableColumns;
+            }
+
+            ImportProgressListener progressListener = options.getProgressListener();
+            String nullValue = options.getNullValue() != null && !options.getNullValue().isEmpty() ? options.getNullValue() : null;
+            RecordSource source = new RecordSource(tokenizer, fileColumns, stats, options.getSkipRecords(), progressListener, nullValue);
+            if (source.getColumnNames().isEmpty()) {
+                throw new IllegalArgumentException("文件中没有可导入的列");
+            }
+
+            // 断点续传时表已经在首次执行时清空过，之前的执行可能已写入断点之后的部分数据块，统一按追加模式去重；
+            // 更新模式重复写入同样的数据不会产生重复行，保持不变
+            String writeStrategy = options.isResume() && !"upsert".equals(importStrategy) ? "append" : importStrategy;
+            // 覆盖模式优先写入影子表，完成后与原表交换，导入失败或取消时原表不变；不能使用影子表时清空原表后写入
+            ShadowTableService.ShadowTable shadow = null;
+            if ("overwrite".equals(writeStrategy)) {
+                shadow = databaseService.beginOverwriteShadow(dataSourceName, tableName);
+                if (shadow == null) {
+                    stats.deletedRows = databaseService.deleteAllTableData(dataSourceName, tableName);
+                    if (progressListener != null) {
+                        progressListener.onTableCleared(stats.deletedRows);
+                    }
+                }
+            }
+            String qualifiedTarget = shadow != null ? shadow.getQualifiedShadowName() : null;
+
+            boolean swapped = false;
+            try {
+                if (options.isBulkLoad() && canBulkLoad(dataSourceName, tableName, writeStrategy)) {
+                    try {
+                        bulkLoad(dataSourceName, tableName, qualifiedTarget, source, stats);
+                        stats.loadMethod = "bulk-load";
+                    } catch (BulkLoadService.BulkLoadUnavailableException e) {
+                        logger.warn("批量装载不可用，改用批量插入: {}", e.getMessage());
+                        batchInsert(dataSourceName, tableName, qualifiedTarget, source, writeStrategy, stats, progressListener);
+                    }
+                } else {
+                    batchInsert(dataSourceName, tableName, qualifiedTarget, source, writeStrategy, stats, progressListener);
+                }
+
+                if (shadow != null && !stats.cancelled) {
+                    stats.deletedRows = databaseService.swapOverwriteShadow(dataSourceName, shadow);
+                    stats.overwriteMethod = "shadow-table";
+                    swapped = true;
+                    if (progressListener != null) {
+                        progressListener.onTableCleared(stats.deletedRows);
+                    }
+                }
+            } finally {
+                if (shadow != null && !swapped) {
+                    databaseService.discardOverwriteShadow(shadow);
+                    logger.info("覆盖导入未完成，已删除影子表，原表未改变 - 表: {}", tableName);
+                }
+            }
+
+            // 正常结束（包括取消）时已读取的记录都已完成写入
+            stats.committedRecords = source.getRecordsRead();
+            if (progressListener != null) {
+                progressListener.onCheckpoint(stats.committedRecords, stats.successCount, stats.failureCount, stats.skippedCount);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("读取导入文件失败: " + e.getMessage(), e);
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalRecords", stats.totalRecords);
+        result.put("successCount", stats.successCount);
+        result.put("failureCount", stats.failureCount);
+        result.put("skippedCount", stats.skippedCount);
+        result.put("batchCount", stats.batchCount);
+        result.put("duration", duration);
+        result.put("errors", stats.errors);
+        result.put("tableName", tableName);
+        result.put("dataSource", dataSourceName);
+        result.put("importStrategy", importStrategy);
+        result.put("loadMethod", stats.loadMethod);
+        result.put("committedRecords", stats.committedRecords);
+        result.put("cancelled", stats.cancelled);
+        if (stats.pipeline != null) {
+            result.put("pipeline", stats.pipeline);
+        }
+        if ("overwrite".equals(importStrategy)) {
+            result.put("deletedRows", stats.deletedRows);
+            if (stats.overwriteMethod != null) {
+                result.put("overwriteMethod", stats.overwriteMethod);
+            }
+        }
+        if ("upsert".equals(importStrategy)) {
+            result.put("insertedCount", stats.successCount - stats.updatedCount - stats.unchangedCount);
+            result.put("updatedCount", stats.updatedCount);
+            result.put("unchangedCount", stats.unchangedCount);
+        }
+
+        logger.info("流式导入完成 - 表: {}, 总记录数: {}, 成功: {}, 失败: {}, 跳过: {}, 耗时: {}ms",
+                tableName, stats.totalRecords, stats.successCount, stats.failureCount, stats.skippedCount, duration);
+        return result;
+    }
+
+    /**
+     * 追加模式下只有存在主键时才能使用批量装载（依靠IGNORE跳过重复行），
+     * 没有主键的表需要按全部字段检测重复，仍走批量插入；更新模式需要统计更新的行数，也走批量插入
+     */
+    private boolean canBulkLoad(String dataSourceName, String tableName, String importStrategy) {
+        if (!bulkLoadService.isAvailable() || "upsert".equals(importStrategy)) {
+            return false;
+        }
+        return "overwrite".equals(importStrategy) || !databaseService.getTablePrimaryKeys(dataSourceName, tableName).isEmpty();
+    }
+
+    /**
+     * @param qualifiedTarget 实际写入的表（覆盖导入的影子表），为null时写入tableName
+     */
+    private void bulkLoad(String dataSourceName, String tableName, String qualifiedTarget, RecordSource source, ImportStats stats) {
+        int maxWarnings = maxErrors - stats.errors.size();
+        BulkLoadService.LoadResult loadResult = qualifiedTarget != null
+                ? bulkLoadService.load(dataSourceName, tableName, qualifiedTarget, source.getColumnNames(), source, maxWarnings)
+                : bulkLoadService.load(dataSourceName, tableName, source.getColumnNames(), source, maxWarnings);
+        stats.batchCount = 1;
+        stats.successCount += loadResult.getLoadedRows() - loadResult.getFailedRows();
+        stats.failureCount += loadResult.getFailedRows();
+        stats.skippedCount += loadResult.getRowsSent() - loadResult.getLoadedRows();
+        for (String warning : loadResult.getWarnings()) {
+            addError(stats, warning);
+        }
+    }
+
+    /**
+     * 通过导入流水线写入：读取和解析在当前线程，去重、转换和插入在流水线的工作线程中执行，
+     * 追加模式在每个数据块写入前检测与已有数据重复的行
+     * @param qualifiedTarget 覆盖导入写入的影子表，为null时写入tableName
+     */
+    private void batchInsert(String dataSourceName, String tableName, String qualifiedTarget, RecordSource source,
+                             String importStrategy, ImportStats stats, ImportProgressListener progressListener) {
+        List<String> columnNames = source.getColumnNames();
+        boolean upsert = "upsert".equals(importStrategy);
+        List<String> dedupKeys = "overwrite".equals(importStrategy)
+                ? null : databaseService.getTablePrimaryKeys(dataSourceName, tableName);
+        if (upsert) {
+            if (dedupKeys.isEmpty()) {
+                throw new IllegalArgumentException("表 " + tableName + " 没有主键，无法使用更新导入策略");
+            }
+            List<String> missingKeys = dedupKeys.stream().filter(pk -> !columnNames.contains(pk)).collect(Collectors.toList());
+            if (!missingKeys.isEmpty()) {
+                throw new IllegalArgumentException("导入文件缺少主键列: " + String.join(", ", missingKeys));
+            }
+        }
+
+        // 每个数据块结束时在文件中的记录位置，用于把连续完成的数据块数换算为断点
+        Map<Long, Long> chunkEndPositions = new ConcurrentHashMap<>();
+        long[] nextSeq = {0};
+        long[] reportedChunks = {0};
+        ImportPipeline.ChunkListener chunkListener = progressListener == null ? null : (committedChunks, pipelineResult) -> {
+            Long position = null;
+            for (long seq = reportedChunks[0]; seq < committedChunks; seq++) {
+                position = chunkEndPositions.remove(seq);
+            }
+            reportedChunks[0] = committedChunks;
+            if (position != null) {
+                progressListener.onCheckpoint(position,
+                        stats.successCount + pipelineResult.getSuccessCount(),
+                        stats.failureCount + pipelineResult.getFailureCount(),
+                        stats.skippedCount + pipelineResult.getSkippedCount());
+            }
+        };
+
+        ImportPipeline.ChunkSource<Map<String, Object>> chunkSource = () -> {
+            List<Map<String, Object>> chunk = new ArrayList<>(batchSize);
+            Object[] values;
+            while (chunk.size() < batchSize && (values = source.nextRow()) != null) {
+                Map<String, Object> row = new LinkedHashMap<>(columnNames.size() * 2);
+                for (int i = 0; i < values.length; i++) {
+                    row.put(columnNames.get(i), values[i]);
+                }
+                chunk.add(row);
+            }
+            if (chunk.isEmpty()) {
+                return null;
+            }
+            chunkEndPositions.put(nextSeq[0]++, source.getRecordsRead());
+            return chunk;
+        };
+        int errorLimit = Math.max(0, maxErrors - stats.errors.size());
+        Map<String, Object> result = upsert
+                ? databaseService.pipelinedUpsert(dataSourceName, tableName, columnNames, chunkSource, dedupKeys, errorLimit, chunkListener)
+                : qualifiedTarget != null
+                ? databaseService.pipelinedInsertInto(dataSourceName, tableName, qualifiedTarget, columnNames, chunkSource, errorLimit, chunkListener)
+                : databaseService.pipelinedInsert(dataSourceName, tableName, columnNames, chunkSource, dedupKeys, errorLimit, chunkListener);
+
+        stats.successCount += toLong(result.get("successCount"));
+        stats.failureCount += toLong(result.get("failureCount"));
+        stats.skippedCount += toLong(result.get("skippedCount"));
+        stats.updatedCount += toLong(result.get("updatedCount"));
+        stats.unchangedCount += toLong(result.get("unchangedCount"));
+        stats.batchCount += toLong(result.get("batchCount"));
+        stats.pipeline = result.get("pipeline");
+        Object errors = result.get("errors");
+        if (errors instanceof List) {
+            for (Object error : (List<?>) errors) {
+                addError(stats, String.valueOf(error));
+            }
+        }
+    }
+
+    /**
+     * 将文件表头映射到表字段（忽略大小写），文件中存在表中没有的列时报错
+     */
+    private List<SchemaMetadataCache.ColumnDescriptor> mapHeaderToColumns(String[] header,
+                                                                          List<SchemaMetadataCache.ColumnDescriptor> tableColumns) {
+        Map<String, SchemaMetadataCache.ColumnDescriptor> columnsByName = new HashMap<>();
+        for (SchemaMetadataCache.ColumnDescriptor column : tableColumns) {
+            columnsByName.put(column.getColumnName().toLowerCase(), column);
+        }
+
+        List<SchemaMetadataCache.ColumnDescriptor> fileColumns = new ArrayList<>(header.length);
+        List<String> unknownColumns = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String name : header) {
+            String columnName = name.trim();
+            SchemaMetadataCache.ColumnDescriptor column = columnsByName.get(columnName.toLowerCase());
+            if (column == null) {
+                if (!columnName.isEmpty()) {
+                    unknownColumns.add(columnName);
+                }
+                fileColumns.add(null);
+                continue;
+            }
+            if (!seen.add(columnName.toLowerCase())) {
+                throw new IllegalArgumentException("文件表头中存在重复的列: " + columnName);
+            }
+            fileColumns.add(column);
+        }
+
+        if (!unknownColumns.isEmpty()) {
+            throw new IllegalArgumentException("文件中的列在表中不存在: " + String.join(", ", unknownColumns));
+        }
+        return fileColumns;
+    }
+
+    private boolean isTrailingEmpty(String[] record, int from) {
+        for (int i = from; i < record.length; i++) {
+            if (!record[i].isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private char resolveDelimiter(String delimiter, String fileName) {
+        if (delimiter != null && !delimiter.isEmpty()) {
+            if ("tab".equalsIgnoreCase(delimiter) || "\\t".equals(delimiter) || "\t".equals(delimiter)) {
+                return '\t';
+            }
+            if (delimiter.length() != 1) {
+                throw new IllegalArgumentException("不支持的分隔符: " + delimiter);
+            }
+            return delimiter.charAt(0);
+        }
+        if (fileName != null) {
+            String lower = fileName.toLowerCase();
+            if (lower.endsWith(".tsv") || lower.endsWith(".tab") || lower.endsWith(".txt")) {
+                return '\t';
+            }
+        }
+        return ',';
+    }
+
+    private Charset resolveCharset(String encoding) {
+        if (encoding == null || encoding.trim().isEmpty()) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(encoding.trim());
+        } catch (Exception e) {
+            throw new IllegalArgumentException("不支持的文件编码: " + encoding);
+        }
+    }
+
+    private void addError(ImportStats stats, String error) {
+        if (stats.errors.size() < maxErrors) {
+            stats.errors.add(error);
+        }
+    }
+
+    private long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    /**
+     * 从分词器逐条读取记录并按列类型转换，字段数超过列数的记录计为失败并跳过
+     */
+    private class RecordSource implements BulkLoadService.RowSource {
+        private final CsvTokenizer tokenizer;
+        private final ImportStats stats;
+        private final int fileColumnCount;
+        // 文件中第i个导入列所在的位置
+        private final int[] positions;
+        private final ColumnConverter[] converters;
+        private final List<String> columnNames = new ArrayList<>();
+        private final long skipRecords;
+        private final ImportProgressListener progressListener;
+        // 已从文件中读取的数据记录数（包括断点之前跳过的记录）
+        private volatile long recordsRead;
+
+        RecordSource(CsvTokenizer tokenizer, List<SchemaMetadataCache.ColumnDescriptor> fileColumns, ImportStats stats,
+                     long skipRecords, ImportProgressListener progressListener, String nullValue) {
+            this.tokenizer = tokenizer;
+            this.stats = stats;
+            this.skipRecords = skipRecords;
+            this.progressListener = progressListener;
+            this.fileColumnCount = fileColumns.size();
+            List<Integer> positionList = new ArrayList<>();
+            List<ColumnConverter> converterList = new ArrayList<>();
+            for (int i = 0; i < fileColumns.size(); i++) {
+                if (fileColumns.get(i) != null) {
+                    positionList.add(i);
+                    converterList.add(new ColumnConverter(fileColumns.get(i), nullValue));
+                    columnNames.add(fileColumns.get(i).getColumnName());
+                }
+            }
+            this.positions = positionList.stream().mapToInt(Integer::intValue).toArray();
+            this.converters = converterList.toArray(new ColumnConverter[0]);
+        }
+
+        List<String> getColumnNames() {
+            return columnNames;
+        }
+
+        long getRecordsRead() {
+            return recordsRead;
+        }
+
+        @Override
+        public Object[] nextRow() throws IOException {
+            // 跳过断点之前已导入的记录
+            while (recordsRead < skipRecords) {
+                if (tokenizer.nextRecord() == null) {
+                    return null;
+                }
+                recordsRead++;
+            }
+            if (progressListener != null && progressListener.isCancelled()) {
+                stats.cancelled = true;
+                return null;
+            }
+            String[] record;
+            while ((record = tokenizer.nextRecord()) != null) {
+                recordsRead++;
+                stats.totalRecords++;
+                if (record.length > fileColumnCount && !isTrailingEmpty(record, fileColumnCount)) {
+                    stats.failureCount++;
+                    addError(stats, String.format("第%d行: 字段数(%d)超过列数(%d)",
+                            tokenizer.getLineNumber(), record.length, fileColumnCount));
+                    continue;
+                }
+                Object[] values = new Object[converters.length];
+                for (int i = 0; i < converters.length; i++) {
+                    int position = positions[i];
+                    values[i] = converters[i].convert(position < record.length ? record[position] : null);
+                }
+                return values;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 导入统计
+     */
+    private static class ImportStats {
+        // 读取线程写入，进度回调可能在插入线程中读取
+        volatile long totalRecords;
+        long successCount;
+        volatile long failureCount;
+        long skippedCount;
+        long updatedCount;
+        long unchangedCount;
+        long batchCount;
+        long deletedRows;
+        String loadMethod = "batch-insert";
+        String overwriteMethod;
+        Object pipeline;
+        long committedRecords;
+        volatile boolean cancelled;
+        final List<String> errors = new ArrayList<>();
+    }
+
+    /**
+     * 单列的值转换：按列类型把文本转换为对应的Java类型，无法转换时保留原文本由数据库判断
+     * 只有指定了nullValue时，与之相同的文本才转换为NULL；否则"\\N"等文本按原样导入
+     */
+    private static class ColumnConverter {
+        final String columnName;
+        final String dataType;
+        final boolean nullOnEmpty;
+        final String nullValue;
+
+        ColumnConverter(SchemaMetadataCache.ColumnDescriptor column, String nullValue) {
+            this.columnName = column.getColumnName();
+            this.dataType = column.getDataType() != null ? column.getDataType().toLowerCase() : "";
+            this.nullOnEmpty = NULL_ON_EMPTY_TYPES.contains(dataType);
+            this.nullValue = nullValue;
+        }
+
+        Object convert(String value) {
+            if (value == null || value.equals(nullValue)) {
+                return null;
+            }
+            if (!nullOnEmpty) {
+                return value;
+            }
+            String trimmed = value.trim();
+            if (trimmed.isEmpty()) {
+                return null;
+            }
+            try {
+                if (INTEGER_TYPES.contains(dataType)) {
+                    return Long.parseLong(trimmed);
+                }
+                if ("decimal".equals(dataType) || "numeric".equals(dataType)) {
+                    return new BigDecimal(trimmed);
+                }
+            } catch (NumberFormatException e) {
+                // 保留原文本
+            }
+            return trimmed;
+        }
+    }
+}
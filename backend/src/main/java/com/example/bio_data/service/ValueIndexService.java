@@ -0,0 +1,1310 @@
+package com.example.bio_data.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 字段值倒排索引服务
+ * 为用户创建数据库中的表建立"单元格值 -> 行定位(主键)"的倒排索引并持久化到磁盘，
+ * 用于精确匹配和前缀匹配的字段值搜索；每列另建三元组(trigram)索引，模糊（包含）搜索先由三元组求交得到候选值，
+ * 再逐个校验候选值；索引未就绪或不适用时由调用方回退到SQL查询
+ *
+ * 知道主键的单行写入（onRowsChanged）按主键重新读取变更行，作为增量叠加在已加载的索引上，不重建整表；
+ * 增量累计超过max-delta-rows后在后台整表重建，重建完成前继续使用当前索引。
+ * 只知道表发生了变化的写入（导入、批量删除等，onTableChanged）删除旧索引并在rebuild-delay-ms后整表重建，
+ * 期间该表的搜索回退到SQL。重建的代价是一次按主键顺序的全表流式扫描，内存与表中不同值的数量成正比
+ */
+@Service
+public class ValueIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValueIndexService.class);
+
+    // 索引文件格式版本，格式变化时递增以丢弃旧文件；与魔数一起以明文写在文件头，加载时先于反序列化比较
+    static final int INDEX_FORMAT_VERSION = 3;
+
+    private static final int INDEX_FILE_MAGIC = 0x56494458;
+
+    // 与SQL搜索中按数值等值匹配的搜索值格式保持一致（整数或带小数点的小数）
+    private static final Pattern NUMERIC_SEARCH_VALUE = Pattern.compile("[+-]?(\\d+|\\d*\\.\\d+|\\d+\\.\\d*)");
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    // 增量更新时按主键重新读取变更行的每批行数
+    private static final int ROW_FETCH_BATCH_SIZE = 500;
+
+    // 比较MySQL启动时间时允许的误差（秒），启动时间由当前时间减去Uptime得到
+    private static final long SERVER_START_TOLERANCE_SECONDS = 2;
+
+    private static final Set<String> SYSTEM_DATABASES = Set.of(
+            "login", "information_schema", "mysql", "performance_schema", "sys");
+
+    @Autowired
+    private MultiDataSourceService multiDataSourceService;
+
+    @Value("${search.value-index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${search.value-index.dir:./data/value-index}")
+    private String indexDir;
+
+    // 单表最大索引行数，超过则该表不建立索引
+    @Value("${search.value-index.max-rows-per-table:5000000}")
+    private int maxRowsPerTable;
+
+    // 内存中最多保留的表索引数量，超出后按最近最少使用淘汰（磁盘文件保留）
+    @Value("${search.value-index.max-loaded-tables:64}")
+    private int maxLoadedTables;
+
+    // 超过该长度的单元格值不拆分三元组，模糊搜索时直接逐个校验
+    @Value("${search.value-index.max-trigram-term-length:4096}")
+    private int maxTrigramTermLength;
+
+    // 数据变更后延迟重建的时间，合并短时间内的多次写入
+    @Value("${search.value-index.rebuild-delay-ms:5000}")
+    private long rebuildDelayMs;
+
+    // 已加载索引上累计的增量变更行数上限，超过后在后台整表重建；单次变更超过该行数时直接按整表变化处理
+    @Value("${search.value-index.max-delta-rows:10000}")
+    private int maxDeltaRows;
+
+    private final Map<String, TableValueIndex> loadedIndexes = Collections.synchronizedMap(
+            new LinkedHashMap<String, TableValueIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TableValueIndex> eldest) {
+                    return size() > maxLoadedTables;
+                }
+            });
+
+    // 每个表的数据版本号，写入时递增，用于丢弃构建期间已过期的索引
+    private final ConcurrentHashMap<String, AtomicInteger> tableVersions = new ConcurrentHashMap<>();
+
+    // 已排队或正在构建的表
+    private final Set<String> pendingBuilds = ConcurrentHashMap.newKeySet();
+
+    // 正在构建的表在构建期间按行变更的主键，构建完成后重新读取这些行应用到新索引
+    private final ConcurrentHashMap<String, List<Map<String, Object>>> changesDuringBuild = new ConcurrentHashMap<>();
+
+    // 按表串行化增量变更、整表变化和索引发布
+    private final ConcurrentHashMap<String, Object> tableLocks = new ConcurrentHashMap<>();
+
+    // 无法建立索引的表（无主键、行数超限等），记录判定时间以便稍后重试
+    private final ConcurrentHashMap<String, Long> unindexableTables = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService builder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "value-index-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 判断搜索类型是否可以由索引回答
+     */
+    public boolean supportsSearchType(String searchType) {
+        return "exact".equals(searchType) || "prefix".equals(searchType) || "fuzzy".equals(searchType);
+    }
+
+    /**
+     * 单列索引：按字典序排列的单元格值及其对应的行号列表，
+     * 以及三元组到单元格值序号的倒排表（三元组按升序排列，值序号升序）
+     */
+    static class ColumnValueIndex implements Serializable {
+        private static final long serialVersionUID = 2L;
+
+        final String columnName;
+        final boolean numeric;
+        final String[] terms;
+        final int[][] postings;
+        final long[] trigrams;
+        final int[][] trigramTerms;
+        // 过长未拆分三元组的单元格值序号
+        final int[] longTermIds;
+
+        ColumnValueIndex(String columnName, boolean numeric, String[] terms, int[][] postings,
+                         long[] trigrams, int[][] trigramTerms, int[] longTermIds) {
+            this.columnName = columnName;
+            this.numeric = numeric;
+            this.terms = terms;
+            this.postings = postings;
+            this.trigrams = trigrams;
+            this.trigramTerms = trigramTerms;
+            this.longTermIds = longTermIds;
+        }
+    }
+
+    /**
+     * 单表索引：行号到主键值的映射以及各列的倒排表
+     */
+    static class TableValueIndex implements Serializable {
+        private static final long serialVersionUID = 2L;
+
+        final String databaseName;
+        final String tableName;
+        final String[] primaryKeys;
+        // 单列主键时元素为主键值，复合主键时元素为Object[]
+        final Object[] rowKeys;
+        final ColumnValueIndex[] columns;
+        // 开始扫描的时间
+        final long builtAt;
+        // 构建时MySQL的启动时间（秒），用于判断UPDATE_TIME为空时表是否可能在构建后被修改
+        final long serverStartedAt;
+        // 构建后按行应用的变更，不写入磁盘
+        transient volatile IndexDelta delta;
+
+        TableValueIndex(String databaseName, String tableName, String[] primaryKeys, Object[] rowKeys,
+                        ColumnValueIndex[] columns, long builtAt, long serverStartedAt) {
+            this.databaseName = databaseName;
+            this.tableName = tableName;
+            this.primaryKeys = primaryKeys;
+            this.rowKeys = rowKeys;
+            this.columns = columns;
+            this.builtAt = builtAt;
+            this.serverStartedAt = serverStartedAt;
+        }
+
+        int getRowCount() {
+            return rowKeys.length;
+        }
+
+        IndexDelta getDelta() {
+            IndexDelta current = delta;
+            return current != null ? current : IndexDelta.EMPTY;
+        }
+    }
+
+    /**
+     * 构建后按行应用到索引的变更，每次应用都生成新对象，查询读到的是一致的快照
+     * 基础索引中被修改或删除的行按主键文本记录并从结果中排除，变更后仍存在的行保存各列的当前值，行号接在基础索引之后
+     */
+    static class IndexDelta {
+        static final IndexDelta EMPTY = new IndexDelta(Set.of(), new Object[0], new String[0][]);
+
+        final Set<String> supersededKeys;
+        final Object[] rowKeys;
+        // values[i][c]为第i个变更行在columns[c]上的规范化值，空值为null
+        final String[][] values;
+
+        IndexDelta(Set<String> supersededKeys, Object[] rowKeys, String[][] values) {
+            this.supersededKeys = supersededKeys;
+            this.rowKeys = rowKeys;
+            this.values = values;
+        }
+
+        /**
+         * 应用一批行变更：changedKeys对应的旧值（包括此前的变更行）全部失效，再追加这些行的当前值
+         */
+        IndexDelta apply(Set<String> changedKeys, List<Object> currentKeys, List<String[]> currentValues) {
+            Set<String> superseded = new HashSet<>(supersededKeys);
+            superseded.addAll(changedKeys);
+            List<Object> keys = new ArrayList<>(rowKeys.length + currentKeys.size());
+            List<String[]> rows = new ArrayList<>(rowKeys.length + currentKeys.size());
+            for (int i = 0; i < rowKeys.length; i++) {
+                if (!changedKeys.contains(keyOf(rowKeys[i]))) {
+                    keys.add(rowKeys[i]);
+                    rows.add(values[i]);
+                }
+            }
+            keys.addAll(currentKeys);
+            rows.addAll(currentValues);
+            return new IndexDelta(superseded, keys.toArray(), rows.toArray(new String[0][]));
+        }
+
+        int size() {
+            return supersededKeys.size();
+        }
+    }
+
+    /**
+     * 索引查询结果，基础索引中的行按主键顺序排列，增量变更行排在其后
+     */
+    public static class ValueIndexMatch {
+        private final TableValueIndex index;
+        private final IndexDelta delta;
+        private final int[] rowIds;
+
+        ValueIndexMatch(TableValueIndex index, IndexDelta delta, int[] rowIds) {
+            this.index = index;
+            this.delta = delta;
+            this.rowIds = rowIds;
+        }
+
+        public int getCount() {
+            return rowIds.length;
+        }
+
+        Object rowKey(int rowId) {
+            int baseRows = index.getRowCount();
+            return rowId < baseRows ? index.rowKeys[rowId] : delta.rowKeys[rowId - baseRows];
+        }
+    }
+
+    /**
+     * 在索引中查找匹配的行，索引不可用时返回null，由调用方回退到SQL
+     * @param columnNames 参与搜索的列（已按搜索模式过滤）
+     */
+    public ValueIndexMatch lookup(String databaseName, String tableName, String searchValue,
+                                  String searchType, Collection<String> columnNames) {
+        if (!enabled || !supportsSearchType(searchType) || !isIndexableDatabase(databaseName)) {
+            return null;
+        }
+
+        TableValueIndex index = getReadyIndex(databaseName, tableName);
+        if (index == null) {
+            return null;
+        }
+
+        String term = normalize(searchValue);
+        BigDecimal numericValue = NUMERIC_SEARCH_VALUE.matcher(searchValue).matches() ? parseNumber(searchValue) : null;
+        boolean prefix = "prefix".equals(searchType);
+        boolean fuzzy = "fuzzy".equals(searchType);
+
+        Set<String> searchColumns = new HashSet<>(columnNames);
+        IndexDelta delta = index.getDelta();
+        int baseRows = index.getRowCount();
+        BitSet matched = new BitSet(baseRows + delta.rowKeys.length);
+
+        for (int c = 0; c < index.columns.length; c++) {
+            ColumnValueIndex column = index.columns[c];
+            if (!searchColumns.contains(column.columnName)) {
+                continue;
+            }
+
+            for (int i = 0; i < delta.rowKeys.length; i++) {
+                String value = delta.values[i][c];
+                if (value != null && matchesValue(column, value, term, numericValue, prefix, fuzzy)) {
+                    matched.set(baseRows + i);
+                }
+            }
+
+            if (fuzzy) {
+                collectContains(column, term, matched);
+                // 数值列同时按数值相等匹配，与SQL中 (col = ? OR CAST(col AS CHAR) LIKE ?) 一致
+                if (column.numeric && numericValue != null) {
+                    collectNumericEquals(column, numericValue, matched);
+                }
+            } else if (prefix) {
+                collectPrefix(column, term, matched);
+            } else if (column.numeric && numericValue != null) {
+                // 数值列按数值相等比较，与SQL中 col = ? 的语义一致（1 与 1.00 相等）
+                collectNumericEquals(column, numericValue, matched);
+            } else {
+                int pos = Arrays.binarySearch(column.terms, term);
+                if (pos >= 0) {
+                    setAll(matched, column.postings[pos]);
+                }
+            }
+        }
+
+        // 基础索引中已被修改或删除的行以增量中的当前值为准
+        if (!delta.supersededKeys.isEmpty()) {
+            for (int rowId = matched.nextSetBit(0); rowId >= 0 && rowId < baseRows; rowId = matched.nextSetBit(rowId + 1)) {
+                if (delta.supersededKeys.contains(keyOf(index.rowKeys[rowId]))) {
+                    matched.clear(rowId);
+                }
+            }
+        }
+
+        return new ValueIndexMatch(index, delta, matched.stream().toArray());
+    }
+
+    /**
+     * 按分页读取匹配行的完整数据，保持索引中的主键顺序
+     */
+    public List<Map<String, Object>> fetchRows(ValueIndexMatch match, int offset, int size) {
+        TableValueIndex index = match.index;
+        int from = Math.min(offset, match.rowIds.length);
+        int to = Math.min(from + size, match.rowIds.length);
+        if (from >= to) {
+            return new ArrayList<>();
+        }
+
+        String placeholder = keyPlaceholder(index);
+
+        List<Object> params = new ArrayList<>();
+        List<String> orderKeys = new ArrayList<>();
+        StringBuilder inClause = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (inClause.length() > 0) {
+                inClause.append(", ");
+            }
+            inClause.append(placeholder);
+
+            Object rowKey = match.rowKey(match.rowIds[i]);
+            if (rowKey instanceof Object[]) {
+                params.addAll(Arrays.asList((Object[]) rowKey));
+            } else {
+                params.add(rowKey);
+            }
+            orderKeys.add(keyOf(rowKey));
+        }
+
+        String sql = String.format("SELECT * FROM `%s`.`%s` WHERE %s IN (%s)",
+                index.databaseName, index.tableName, keyExpression(index), inClause);
+
+        List<Map<String, Object>> rows = multiDataSourceService.getReadJdbcTemplate(index.databaseName)
+                .queryForList(sql, params.toArray());
+
+        // 按索引中的顺序重新排列
+        Map<String, Map<String, Object>> rowsByKey = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            Object rowKey;
+            if (index.primaryKeys.length == 1) {
+                rowKey = row.get(index.primaryKeys[0]);
+            } else {
+                Object[] values = new Object[index.primaryKeys.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = row.get(index.primaryKeys[i]);
+                }
+                rowKey = values;
+            }
+            rowsByKey.put(keyOf(rowKey), row);
+        }
+
+        List<Map<String, Object>> ordered = new ArrayList<>(orderKeys.size());
+        for (String key : orderKeys) {
+            Map<String, Object> row = rowsByKey.get(key);
+            if (row != null) {
+                ordered.add(row);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * 表数据发生变化：删除内存和磁盘中的旧索引并延迟重建
+     * 磁盘文件必须同时删除，否则重建完成前（或进程重启后）仍可能加载到过期的索引
+     */
+    public void onTableChanged(String databaseName, String tableName) {
+        if (!enabled || !isIndexableDatabase(databaseName)) {
+            return;
+        }
+        String key = indexKey(databaseName, tableName);
+        synchronized (tableLock(key)) {
+            tableVersions.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            loadedIndexes.remove(key);
+        }
+        unindexableTables.remove(key);
+        deleteIndexFile(databaseName, tableName);
+        scheduleBuild(databaseName, tableName, rebuildDelayMs);
+    }
+
+    /**
+     * 表中指定主键的行被插入、修改或删除：重新读取这些行并应用到已加载的索引，不重建整表
+     * 索引未加载、主键不完整、写入处于事务中（提交前其他连接读不到）或一次变更的行数超过max-delta-rows时按onTableChanged处理
+     * @param rowKeys 变更行的主键值（列名 -> 值），修改了主键的更新需同时包含修改前后的主键
+     */
+    public void onRowsChanged(String databaseName, String tableName, Collection<Map<String, Object>> rowKeys) {
+        if (!enabled || !isIndexableDatabase(databaseName)) {
+            return;
+        }
+        if (rowKeys == null || rowKeys.size() > maxDeltaRows
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            onTableChanged(databaseName, tableName);
+            return;
+        }
+
+        String key = indexKey(databaseName, tableName);
+        boolean applied;
+        try {
+            synchronized (tableLock(key)) {
+                applied = applyRowChanges(key, rowKeys);
+            }
+        } catch (Exception e) {
+            logger.warn("表 {}.{} 的字段值索引增量更新失败，整表重建: {}", databaseName, tableName, e.getMessage());
+            applied = false;
+        }
+        if (!applied) {
+            onTableChanged(databaseName, tableName);
+        }
+    }
+
+    /**
+     * 已加载索引的表的主键列，写入方据此收集变更行的主键；索引未加载时返回null
+     */
+    public List<String> getIndexedPrimaryKeys(String databaseName, String tableName) {
+        if (!enabled || !isIndexableDatabase(databaseName)) {
+            return null;
+        }
+        TableValueIndex index = loadedIndexes.get(indexKey(databaseName, tableName));
+        return index != null ? Arrays.asList(index.primaryKeys) : null;
+    }
+
+    public int getMaxDeltaRows() {
+        return maxDeltaRows;
+    }
+
+    /**
+     * 表被删除：移除内存和磁盘中的索引
+     */
+    public void removeTable(String databaseName, String tableName) {
+        String key = indexKey(databaseName, tableName);
+        // 移除版本号而不是递增，使正在进行的构建既不保存结果也不再安排重建
+        synchronized (tableLock(key)) {
+            tableVersions.remove(key);
+            loadedIndexes.remove(key);
+        }
+        unindexableTables.remove(key);
+        deleteIndexFile(databaseName, tableName);
+    }
+
+    /**
+     * 数据库被删除：移除该库下所有索引
+     */
+    public void removeDatabase(String databaseName) {
+        String prefix = databaseName + ".";
+        synchronized (loadedIndexes) {
+            loadedIndexes.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+        tableVersions.keySet().removeIf(key -> key.startsWith(prefix));
+        unindexableTables.keySet().removeIf(key -> key.startsWith(prefix));
+
+        Path dir = Paths.get(indexDir, encode(databaseName));
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(dir);
+            } catch (IOException e) {
+                logger.warn("删除数据库 {} 的索引目录失败: {}", databaseName, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 为数据库中的所有表安排索引重建
+     */
+    public int rebuildDatabase(String databaseName) {
+        if (!enabled) {
+            throw new IllegalArgumentException("字段值索引未启用");
+        }
+        if (!isIndexableDatabase(databaseName)) {
+            throw new IllegalArgumentException("只能为用户创建的数据库建立索引");
+        }
+
+        List<String> tables = multiDataSourceService.getDatabaseJdbcTemplate(databaseName).queryForList(
+                "SELECT TABLE_NAME FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'BASE TABLE'",
+                String.class, databaseName);
+        for (String tableName : tables) {
+            String key = indexKey(databaseName, tableName);
+            tableVersions.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            unindexableTables.remove(key);
+            scheduleBuild(databaseName, tableName, 0);
+        }
+        return tables.size();
+    }
+
+    /**
+     * 获取索引状态
+     */
+    public Map<String, Object> getStatus(String databaseName) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("pendingBuilds", pendingBuilds.size());
+
+        List<Map<String, Object>> tables = new ArrayList<>();
+        synchronized (loadedIndexes) {
+            for (TableValueIndex index : loadedIndexes.values()) {
+                if (databaseName != null && !databaseName.equals(index.databaseName)) {
+                    continue;
+                }
+                Map<String, Object> table = new HashMap<>();
+                table.put("tableName", index.tableName);
+                table.put("rowCount", index.getRowCount());
+                table.put("changedRows", index.getDelta().size());
+                table.put("columnCount", index.columns.length);
+                table.put("builtAt", index.builtAt);
+                tables.add(table);
+            }
+        }
+        status.put("loadedTables", tables);
+        status.put("unindexableTables", unindexableTables.size());
+        return status;
+    }
+
+    // =============================================================================
+    // 索引加载与构建
+    // =============================================================================
+
+    /**
+     * 获取可用的表索引：优先内存，其次磁盘；都不可用时安排后台构建并返回null
+     */
+    private TableValueIndex getReadyIndex(String databaseName, String tableName) {
+        String key = indexKey(databaseName, tableName);
+        TableValueIndex index = loadedIndexes.get(key);
+        if (index != null) {
+            return index;
+        }
+        if (pendingBuilds.contains(key) || unindexableTables.containsKey(key)) {
+            return null;
+        }
+
+        index = loadFromDisk(databaseName, tableName);
+        if (index != null) {
+            loadedIndexes.put(key, index);
+            return index;
+        }
+
+        scheduleBuild(databaseName, tableName, 0);
+        return null;
+    }
+
+    void scheduleBuild(String databaseName, String tableName, long delayMs) {
+        String key = indexKey(databaseName, tableName);
+        if (!pendingBuilds.add(key)) {
+            return;
+        }
+        builder.schedule(() -> {
+            AtomicInteger version;
+            int versionAtStart;
+            // 从扫描开始前记录按行变更，发布时应用到新索引
+            synchronized (tableLock(key)) {
+                version = tableVersions.computeIfAbsent(key, k -> new AtomicInteger());
+                versionAtStart = version.get();
+                changesDuringBuild.put(key, new ArrayList<>());
+            }
+            try {
+                buildIndex(databaseName, tableName, version, versionAtStart);
+            } catch (Exception e) {
+                logger.warn("构建表 {}.{} 的字段值索引失败: {}", databaseName, tableName, e.getMessage());
+            } finally {
+                synchronized (tableLock(key)) {
+                    changesDuringBuild.remove(key);
+                }
+                pendingBuilds.remove(key);
+                // 构建期间发生的写入因为构建已在排队而没有安排新的重建，这里补上；表已删除时版本号不再是同一个对象
+                if (tableVersions.get(key) == version && version.get() != versionAtStart) {
+                    scheduleBuild(databaseName, tableName, rebuildDelayMs);
+                }
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 流式扫描全表构建索引并写入磁盘，扫描期间版本号变化（表被写入或删除）时丢弃结果
+     */
+    @SuppressWarnings("try")
+    void buildIndex(String databaseName, String tableName, AtomicInteger version, int versionAtStart) throws IOException {
+        // 扫描整表期间持有该库连接池的租约，连接池不会被淘汰关闭
+        try (MultiDataSourceService.PoolLease lease = multiDataSourceService.leaseDatabasePool(databaseName)) {
+            buildIndexLeased(databaseName, tableName, version, versionAtStart);
+        }
+    }
+
+    private void buildIndexLeased(String databaseName, String tableName, AtomicInteger version, int versionAtStart) throws IOException {
+        String key = indexKey(databaseName, tableName);
+        long startTime = System.currentTimeMillis();
+        JdbcTemplate jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(databaseName);
+        TableState tableState = readTableState(databaseName, tableName);
+        if (tableState == null) {
+            return;
+        }
+
+        List<String> primaryKeys = jdbcTemplate.queryForList(
+                "SELECT COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE " +
+                "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? AND CONSTRAINT_NAME = 'PRIMARY' ORDER BY ORDINAL_POSITION",
+                String.class, databaseName, tableName);
+        if (primaryKeys.isEmpty()) {
+            logger.info("表 {}.{} 没有主键，不建立字段值索引", databaseName, tableName);
+            unindexableTables.put(key, System.currentTimeMillis());
+            return;
+        }
+
+        List<Map<String, Object>> columnInfos = jdbcTemplate.queryForList(
+                "SELECT COLUMN_NAME, DATA_TYPE FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? ORDER BY ORDINAL_POSITION",
+                databaseName, tableName);
+
+        Map<String, Boolean> numericColumns = new HashMap<>();
+        for (Map<String, Object> column : columnInfos) {
+            numericColumns.put((String) column.get("COLUMN_NAME"), isNumericType((String) column.get("DATA_TYPE")));
+        }
+
+        // 使用流式结果集，避免一次性加载整表
+        JdbcTemplate streamingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streamingTemplate.setFetchSize(Integer.MIN_VALUE);
+
+        StringBuilder orderBy = new StringBuilder();
+        for (String primaryKey : primaryKeys) {
+            if (orderBy.length() > 0) {
+                orderBy.append(", ");
+            }
+            orderBy.append("`").append(primaryKey).append("`");
+        }
+        String sql = String.format("SELECT * FROM `%s`.`%s` ORDER BY %s", databaseName, tableName, orderBy);
+
+        List<Object> rowKeys = new ArrayList<>();
+        Map<String, Map<String, IntList>> columnTerms = new LinkedHashMap<>();
+        int[] keyPositions = new int[primaryKeys.size()];
+        boolean[] tooLarge = {false};
+
+        streamingTemplate.query(sql, rs -> {
+            if (tooLarge[0]) {
+                return;
+            }
+            int rowId = rowKeys.size();
+            if (rowId >= maxRowsPerTable) {
+                tooLarge[0] = true;
+                return;
+            }
+
+            ResultSetMetaData metaData = rs.getMetaData();
+            if (columnTerms.isEmpty()) {
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columnTerms.put(metaData.getColumnLabel(i), new HashMap<>());
+                }
+                for (int k = 0; k < primaryKeys.size(); k++) {
+                    keyPositions[k] = rs.findColumn(primaryKeys.get(k));
+                }
+            }
+
+            if (keyPositions.length == 1) {
+                rowKeys.add(rs.getObject(keyPositions[0]));
+            } else {
+                Object[] values = new Object[keyPositions.length];
+                for (int k = 0; k < keyPositions.length; k++) {
+                    values[k] = rs.getObject(keyPositions[k]);
+                }
+                rowKeys.add(values);
+            }
+
+            int columnIndex = 1;
+            for (Map<String, IntList> terms : columnTerms.values()) {
+                String value = rs.getString(columnIndex++);
+                if (value != null) {
+                    terms.computeIfAbsent(normalize(value), t -> new IntList()).add(rowId);
+                }
+            }
+        });
+
+        if (tooLarge[0]) {
+            logger.info("表 {}.{} 超过索引行数上限 {}，不建立字段值索引", databaseName, tableName, maxRowsPerTable);
+            unindexableTables.put(key, System.currentTimeMillis());
+            return;
+        }
+
+        List<ColumnValueIndex> columns = new ArrayList<>();
+        for (Map.Entry<String, Map<String, IntList>> entry : columnTerms.entrySet()) {
+            Map<String, IntList> terms = entry.getValue();
+            String[] sortedTerms = terms.keySet().toArray(new String[0]);
+            Arrays.sort(sortedTerms);
+            int[][] postings = new int[sortedTerms.length][];
+            for (int i = 0; i < sortedTerms.length; i++) {
+                postings[i] = terms.get(sortedTerms[i]).toArray();
+            }
+            boolean numeric = Boolean.TRUE.equals(numericColumns.get(entry.getKey()));
+            columns.add(buildColumnIndex(entry.getKey(), numeric, sortedTerms, postings));
+        }
+
+        TableValueIndex index = new TableValueIndex(databaseName, tableName, primaryKeys.toArray(new String[0]),
+                rowKeys.toArray(), columns.toArray(new ColumnValueIndex[0]), startTime, tableState.serverStartedAt);
+
+        synchronized (tableLock(key)) {
+            // 构建期间表发生了整表变化，丢弃本次结果（构建结束后会重新安排）
+            if (tableVersions.get(key) != version || version.get() != versionAtStart) {
+                logger.info("表 {}.{} 在索引构建期间发生变化，丢弃本次构建结果", databaseName, tableName);
+                return;
+            }
+
+            // 构建期间按行变更的行可能已被扫描过也可能没有，统一重新读取后作为增量应用
+            List<Map<String, Object>> changes = changesDuringBuild.get(key);
+            if (changes != null && !changes.isEmpty()) {
+                if (!applyToIndex(index, changes)) {
+                    version.incrementAndGet();
+                    logger.info("表 {}.{} 构建期间的变更无法增量应用，丢弃本次构建结果", databaseName, tableName);
+                    return;
+                }
+                changes.clear();
+            } else {
+                // 带增量的索引与磁盘文件不一致，只保存没有增量的索引
+                saveToDisk(index);
+            }
+            loadedIndexes.put(key, index);
+        }
+        logger.info("表 {}.{} 字段值索引构建完成，行数: {}，用时: {}ms",
+                databaseName, tableName, rowKeys.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 为单列的值字典建立三元组倒排表
+     */
+    private ColumnValueIndex buildColumnIndex(String columnName, boolean numeric, String[] terms, int[][] postings) {
+        Map<Long, IntList> trigramMap = new HashMap<>();
+        IntList longTerms = new IntList();
+
+        for (int termId = 0; termId < terms.length; termId++) {
+            String term = terms[termId];
+            if (term.length() > maxTrigramTermLength) {
+                longTerms.add(termId);
+                continue;
+            }
+            for (int i = 0; i + 3 <= term.length(); i++) {
+                IntList termIds = trigramMap.computeIfAbsent(trigramKey(term, i), k -> new IntList());
+                // 同一值中重复出现的三元组只记录一次
+                if (!termIds.endsWith(termId)) {
+                    termIds.add(termId);
+                }
+            }
+        }
+
+        long[] trigrams = new long[trigramMap.size()];
+        int n = 0;
+        for (Long trigram : trigramMap.keySet()) {
+            trigrams[n++] = trigram;
+        }
+        Arrays.sort(trigrams);
+        int[][] trigramTerms = new int[trigrams.length][];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigramTerms[i] = trigramMap.get(trigrams[i]).toArray();
+        }
+
+        return new ColumnValueIndex(columnName, numeric, terms, postings, trigrams, trigramTerms, longTerms.toArray());
+    }
+
+    private void saveToDisk(TableValueIndex index) throws IOException {
+        writeIndexFile(indexFile(index.databaseName, index.tableName), index, INDEX_FORMAT_VERSION);
+    }
+
+    /**
+     * 写入索引文件：文件头为魔数和格式版本，其后是压缩的序列化索引
+     */
+    static void writeIndexFile(Path file, TableValueIndex index, int formatVersion) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+            DataOutputStream header = new DataOutputStream(raw);
+            header.writeInt(INDEX_FILE_MAGIC);
+            header.writeInt(formatVersion);
+            header.flush();
+            try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(raw))) {
+                out.writeObject(index);
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取索引文件，文件头的魔数或格式版本不符时返回null（不反序列化文件内容）
+     */
+    static TableValueIndex readIndexFile(Path file) throws IOException, ClassNotFoundException {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream header = new DataInputStream(raw);
+            if (header.readInt() != INDEX_FILE_MAGIC || header.readInt() != INDEX_FORMAT_VERSION) {
+                return null;
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(raw))) {
+                return (TableValueIndex) in.readObject();
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 从磁盘加载索引，文件版本不符或表在索引构建后被外部修改时删除文件并返回null
+     */
+    private TableValueIndex loadFromDisk(String databaseName, String tableName) {
+        Path file = indexFile(databaseName, tableName);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            TableValueIndex index = readIndexFile(file);
+            if (index == null) {
+                logger.info("表 {}.{} 的索引文件格式版本不符，重新构建", databaseName, tableName);
+                deleteIndexFile(databaseName, tableName);
+                return null;
+            }
+
+            TableState tableState = readTableState(databaseName, tableName);
+            if (tableState == null) {
+                return null;
+            }
+            if (!isIndexFresh(index.builtAt, index.serverStartedAt, tableState.updateTime, tableState.serverStartedAt)) {
+                logger.info("表 {}.{} 的索引文件已过期", databaseName, tableName);
+                deleteIndexFile(databaseName, tableName);
+                return null;
+            }
+            return index;
+        } catch (Exception e) {
+            logger.warn("加载表 {}.{} 的索引文件失败: {}", databaseName, tableName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 表的最后修改时间和MySQL的启动时间
+     */
+    private static class TableState {
+        // 为空表示MySQL启动以来该表没有被修改过
+        final Long updateTime;
+        final long serverStartedAt;
+
+        TableState(Long updateTime, long serverStartedAt) {
+            this.updateTime = updateTime;
+            this.serverStartedAt = serverStartedAt;
+        }
+    }
+
+    /**
+     * 读取表的UPDATE_TIME和MySQL启动时间，表不存在时返回null
+     * MySQL 8默认缓存information_schema中的表统计信息（information_schema_stats_expiry），读取前在当前会话关闭缓存
+     */
+    private TableState readTableState(String databaseName, String tableName) {
+        return multiDataSourceService.getDatabaseJdbcTemplate(databaseName).execute((ConnectionCallback<TableState>) connection -> {
+            boolean expiryChanged = false;
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET SESSION information_schema_stats_expiry = 0");
+                expiryChanged = true;
+            } catch (SQLException e) {
+                // MySQL 5.7没有该变量，统计信息本身不缓存
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT UPDATE_TIME, UNIX_TIMESTAMP() FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?")) {
+                ps.setString(1, databaseName);
+                ps.setString(2, tableName);
+                Long updateTime;
+                long now;
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    Timestamp timestamp = rs.getTimestamp(1);
+                    updateTime = timestamp != null ? timestamp.getTime() : null;
+                    now = rs.getLong(2);
+                }
+                long uptime = 0;
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery("SHOW GLOBAL STATUS LIKE 'Uptime'")) {
+                    if (rs.next()) {
+                        uptime = Long.parseLong(rs.getString(2));
+                    }
+                }
+                return new TableState(updateTime, now - uptime);
+            } finally {
+                if (expiryChanged) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("SET SESSION information_schema_stats_expiry = DEFAULT");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 判断磁盘上的索引是否仍然有效
+     * UPDATE_TIME只精确到秒，与构建开始时间在同一秒内的写入可能发生在扫描之后，因此要求早于构建开始至少1秒；
+     * UPDATE_TIME不会在MySQL重启后保留，为空时只有MySQL自构建以来没有重启过才能确定表没有被修改
+     */
+    static boolean isIndexFresh(long builtAt, long builtServerStartedAt, Long updateTime, long serverStartedAt) {
+        if (updateTime == null) {
+            return Math.abs(serverStartedAt - builtServerStartedAt) <= SERVER_START_TOLERANCE_SECONDS;
+        }
+        return updateTime + 1000 <= builtAt;
+    }
+
+    // =============================================================================
+    // 增量变更
+    // =============================================================================
+
+    /**
+     * 在表锁内应用按行变更：记录到正在进行的构建，并应用到已加载的索引；需要整表重建时返回false
+     */
+    private boolean applyRowChanges(String key, Collection<Map<String, Object>> rowKeys) {
+        List<Map<String, Object>> changes = changesDuringBuild.get(key);
+        TableValueIndex index = loadedIndexes.get(key);
+        if (index == null && changes == null) {
+            return false;
+        }
+        if (changes != null) {
+            if (changes.size() + rowKeys.size() > maxDeltaRows) {
+                return false;
+            }
+            changes.addAll(rowKeys);
+        }
+        if (index != null) {
+            boolean firstChange = index.getDelta().size() == 0;
+            if (!applyToIndex(index, rowKeys)) {
+                return false;
+            }
+            if (firstChange) {
+                deleteIndexFile(index.databaseName, index.tableName);
+            }
+            if (index.getDelta().size() > maxDeltaRows) {
+                scheduleBuild(index.databaseName, index.tableName, rebuildDelayMs);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按主键重新读取变更行并生成新的增量，读不到的行视为已删除；主键不完整或表结构与索引不符时返回false
+     */
+    private boolean applyToIndex(TableValueIndex index, Collection<Map<String, Object>> rowKeys) {
+        List<Object[]> keyValues = new ArrayList<>(rowKeys.size());
+        Set<String> changedKeys = new HashSet<>();
+        for (Map<String, Object> rowKey : rowKeys) {
+            // 列名不区分大小写，与MySQL一致
+            Map<String, Object> columns = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            columns.putAll(rowKey);
+            Object[] values = new Object[index.primaryKeys.length];
+            for (int k = 0; k < values.length; k++) {
+                values[k] = columns.get(index.primaryKeys[k]);
+                if (values[k] == null) {
+                    return false;
+                }
+            }
+            keyValues.add(values);
+            changedKeys.add(keyOf(values.length == 1 ? values[0] : values));
+        }
+
+        List<Object> currentKeys = new ArrayList<>();
+        List<String[]> currentValues = new ArrayList<>();
+        if (!readRows(index, keyValues, currentKeys, currentValues)) {
+            return false;
+        }
+        // 传入的主键值与数据库返回的类型可能不同（如字符串"1"与整数1），两种文本形式都视为已变更
+        for (Object currentKey : currentKeys) {
+            changedKeys.add(keyOf(currentKey));
+        }
+        index.delta = index.getDelta().apply(changedKeys, currentKeys, currentValues);
+        return true;
+    }
+
+    /**
+     * 从主库读取指定主键的行，按索引的列顺序取出规范化后的值
+     */
+    private boolean readRows(TableValueIndex index, List<Object[]> keyValues, List<Object> rowKeys, List<String[]> values) {
+        JdbcTemplate jdbcTemplate = multiDataSourceService.getDatabaseJdbcTemplate(index.databaseName);
+        String placeholder = keyPlaceholder(index);
+
+        for (int from = 0; from < keyValues.size(); from += ROW_FETCH_BATCH_SIZE) {
+            List<Object[]> batch = keyValues.subList(from, Math.min(from + ROW_FETCH_BATCH_SIZE, keyValues.size()));
+            List<Object> params = new ArrayList<>();
+            for (Object[] key : batch) {
+                params.addAll(Arrays.asList(key));
+            }
+            String sql = String.format("SELECT * FROM `%s`.`%s` WHERE %s IN (%s)", index.databaseName, index.tableName,
+                    keyExpression(index), String.join(", ", Collections.nCopies(batch.size(), placeholder)));
+
+            Boolean matches = jdbcTemplate.query(sql, rs -> {
+                ResultSetMetaData metaData = rs.getMetaData();
+                Map<String, Integer> positions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    positions.put(metaData.getColumnLabel(i), i);
+                }
+                int[] columnPositions = new int[index.columns.length];
+                for (int c = 0; c < columnPositions.length; c++) {
+                    Integer position = positions.get(index.columns[c].columnName);
+                    if (position == null) {
+                        return false;
+                    }
+                    columnPositions[c] = position;
+                }
+                int[] keyPositions = new int[index.primaryKeys.length];
+                for (int k = 0; k < keyPositions.length; k++) {
+                    Integer position = positions.get(index.primaryKeys[k]);
+                    if (position == null) {
+                        return false;
+                    }
+                    keyPositions[k] = position;
+                }
+
+                while (rs.next()) {
+                    if (keyPositions.length == 1) {
+                        rowKeys.add(rs.getObject(keyPositions[0]));
+                    } else {
+                        Object[] key = new Object[keyPositions.length];
+                        for (int k = 0; k < keyPositions.length; k++) {
+                            key[k] = rs.getObject(keyPositions[k]);
+                        }
+                        rowKeys.add(key);
+                    }
+                    String[] row = new String[columnPositions.length];
+                    for (int c = 0; c < columnPositions.length; c++) {
+                        String value = rs.getString(columnPositions[c]);
+                        row[c] = value != null ? normalize(value) : null;
+                    }
+                    values.add(row);
+                }
+                return true;
+            }, params.toArray());
+            if (!Boolean.TRUE.equals(matches)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 单个值是否匹配，语义与基于值字典的查找一致
+     */
+    private boolean matchesValue(ColumnValueIndex column, String value, String term, BigDecimal numericValue,
+                                 boolean prefix, boolean fuzzy) {
+        if (fuzzy) {
+            return value.contains(term) || (column.numeric && numericValue != null && numericEquals(value, numericValue));
+        }
+        if (prefix) {
+            return value.startsWith(term);
+        }
+        if (column.numeric && numericValue != null) {
+            return numericEquals(value, numericValue);
+        }
+        return value.equals(term);
+    }
+
+    private boolean numericEquals(String value, BigDecimal number) {
+        BigDecimal valueNumber = parseNumber(value);
+        return valueNumber != null && valueNumber.compareTo(number) == 0;
+    }
+
+    // =============================================================================
+    // 辅助方法
+    // =============================================================================
+
+    private void collectPrefix(ColumnValueIndex column, String prefix, BitSet matched) {
+        int start = lowerBound(column.terms, prefix);
+        for (int i = start; i < column.terms.length && column.terms[i].startsWith(prefix); i++) {
+            setAll(matched, column.postings[i]);
+        }
+    }
+
+    /**
+     * 包含匹配：三元组求交得到候选值，再校验候选值是否真正包含搜索值
+     */
+    private void collectContains(ColumnValueIndex column, String query, BitSet matched) {
+        if (query.length() < 3) {
+            // 搜索值过短无法使用三元组，直接扫描值字典（仍然无需扫描表）
+            for (int termId = 0; termId < column.terms.length; termId++) {
+                if (column.terms[termId].contains(query)) {
+                    setAll(matched, column.postings[termId]);
+                }
+            }
+            return;
+        }
+
+        List<int[]> lists = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        boolean missing = false;
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            long trigram = trigramKey(query, i);
+            if (!seen.add(trigram)) {
+                continue;
+            }
+            int pos = Arrays.binarySearch(column.trigrams, trigram);
+            if (pos < 0) {
+                missing = true;
+                break;
+            }
+            lists.add(column.trigramTerms[pos]);
+        }
+
+        if (!missing) {
+            // 从最短的列表开始求交，尽快缩小候选集
+            lists.sort(Comparator.comparingInt(list -> list.length));
+            int[] candidates = lists.get(0);
+            for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+                candidates = intersect(candidates, lists.get(i));
+            }
+            for (int termId : candidates) {
+                if (column.terms[termId].contains(query)) {
+                    setAll(matched, column.postings[termId]);
+                }
+            }
+        }
+
+        for (int termId : column.longTermIds) {
+            if (column.terms[termId].contains(query)) {
+                setAll(matched, column.postings[termId]);
+            }
+        }
+    }
+
+    private int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private long trigramKey(String value, int offset) {
+        return ((long) value.charAt(offset) << 32) | ((long) value.charAt(offset + 1) << 16) | value.charAt(offset + 2);
+    }
+
+    private void collectNumericEquals(ColumnValueIndex column, BigDecimal value, BitSet matched) {
+        // 数值的文本形式只可能在末尾多出小数位，因此按去掉末尾零后的文本做前缀定位再逐个比较
+        String prefix = value.stripTrailingZeros().toPlainString();
+        int start = lowerBound(column.terms, prefix);
+        for (int i = start; i < column.terms.length && column.terms[i].startsWith(prefix); i++) {
+            BigDecimal termValue = parseNumber(column.terms[i]);
+            if (termValue != null && termValue.compareTo(value) == 0) {
+                setAll(matched, column.postings[i]);
+            }
+        }
+    }
+
+    private int lowerBound(String[] terms, String key) {
+        int pos = Arrays.binarySearch(terms, key);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    private void setAll(BitSet bits, int[] rowIds) {
+        for (int rowId : rowIds) {
+            bits.set(rowId);
+        }
+    }
+
+    /**
+     * 规范化单元格值，与SQL搜索使用的排序规则（utf8_general_ci，以及MySQL 8连接默认的utf8mb4_0900_ai_ci）保持一致：
+     * 不区分大小写，也不区分重音（é与e相等）
+     */
+    static String normalize(String value) {
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private BigDecimal parseNumber(String value) {
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private boolean isNumericType(String dataType) {
+        if (dataType == null) return false;
+        String type = dataType.toLowerCase();
+        return type.contains("int") || type.contains("decimal") || type.contains("float") ||
+               type.contains("double") || type.contains("numeric");
+    }
+
+    private boolean isIndexableDatabase(String databaseName) {
+        return databaseName != null && !SYSTEM_DATABASES.contains(databaseName.toLowerCase());
+    }
+
+    private static String keyOf(Object rowKey) {
+        if (rowKey instanceof Object[]) {
+            StringBuilder sb = new StringBuilder();
+            for (Object value : (Object[]) rowKey) {
+                sb.append(value).append('\u0001');
+            }
+            return sb.toString();
+        }
+        return String.valueOf(rowKey);
+    }
+
+    private String indexKey(String databaseName, String tableName) {
+        return databaseName + "." + tableName;
+    }
+
+    private Object tableLock(String key) {
+        return tableLocks.computeIfAbsent(key, k -> new Object());
+    }
+
+    /**
+     * 主键列表达式，复合主键为 (`a`, `b`)
+     */
+    private String keyExpression(TableValueIndex index) {
+        StringBuilder keyColumns = new StringBuilder();
+        for (int i = 0; i < index.primaryKeys.length; i++) {
+            if (i > 0) {
+                keyColumns.append(", ");
+            }
+            keyColumns.append("`").append(index.primaryKeys[i]).append("`");
+        }
+        return index.primaryKeys.length == 1 ? keyColumns.toString() : "(" + keyColumns + ")";
+    }
+
+    private String keyPlaceholder(TableValueIndex index) {
+        return index.primaryKeys.length == 1 ? "?"
+                : "(" + String.join(", ", Collections.nCopies(index.primaryKeys.length, "?")) + ")";
+    }
+
+    private void deleteIndexFile(String databaseName, String tableName) {
+        try {
+            Files.deleteIfExists(indexFile(databaseName, tableName));
+        } catch (IOException e) {
+            logger.warn("删除表 {}.{} 的索引文件失败: {}", databaseName, tableName, e.getMessage());
+        }
+    }
+
+    private Path indexFile(String databaseName, String tableName) {
+        return Paths.get(indexDir, encode(databaseName), encode(tableName) + ".vidx");
+    }
+
+    private String encode(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 简单的可增长int数组
+     */
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        boolean endsWith(int value) {
+            return size > 0 && values[size - 1] == value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
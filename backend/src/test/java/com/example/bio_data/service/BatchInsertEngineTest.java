@@ -0,0 +1,162 @@
+package com.example.bio_data.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BatchInsertEngineTest {
+
+	private BatchInsertEngine engine;
+
+	@BeforeEach
+	void setUp() {
+		engine = new BatchInsertEngine();
+		ReflectionTestUtils.setField(engine, "targetLatencyMs", 1000L);
+		ReflectionTestUtils.setField(engine, "minBatchRows", 100);
+		ReflectionTestUtils.setField(engine, "maxBatchRows", 20000);
+		ReflectionTestUtils.setField(engine, "targetBatchBytes", 4194304L);
+	}
+
+	@Test
+	void fastBatchGrowsOnlyUpToByteLimit() {
+		assertEquals(20000, engine.nextBatchRows(10000, 10000, 100, Integer.MAX_VALUE));
+		assertEquals(12000, engine.nextBatchRows(10000, 10000, 100, 12000));
+	}
+
+	@Test
+	void slowBatchShrinksAtMostByHalf() {
+		assertEquals(5000, engine.nextBatchRows(10000, 10000, 60_000, 12000));
+	}
+
+	@Test
+	void shortLastBatchIsStillClampedByByteLimit() {
+		assertEquals(8000, engine.nextBatchRows(15000, 300, 10, 8000));
+	}
+
+	@Test
+	void byteLimitWinsOverMinimumRows() {
+		// 行很宽时字节上限对应的行数可能小于minBatchRows
+		assertEquals(40, engine.nextBatchRows(40, 40, 10_000, 40));
+		assertEquals(40, engine.nextBatchRows(40, 40, 10, 40));
+	}
+
+	@Test
+	void insertIfAbsentWritesEachRowOnceAcrossConcurrentChunks() throws Exception {
+		List<List<Object>> table = Collections.synchronizedList(new ArrayList<>());
+		table.add(List.of("a", 1));
+		JdbcTemplate jdbcTemplate = simulatedTemplate(table);
+
+		// 两个插入线程的数据块：块内有重复行，块之间也有重复行，"a"已在表中
+		List<Object[]> first = rows("a", 1, "b", 2, "b", 2, "c", 3);
+		List<Object[]> second = rows("c", 3, "d", 4, "d", 4, "b", 2);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			Future<BatchInsertEngine.InsertResult> firstResult = executor.submit(() -> {
+				start.await();
+				return engine.insertIfAbsent(jdbcTemplate, "`t`", List.of("name", "value"), first, false);
+			});
+			Future<BatchInsertEngine.InsertResult> secondResult = executor.submit(() -> {
+				start.await();
+				return engine.insertIfAbsent(jdbcTemplate, "`t`", List.of("name", "value"), second, false);
+			});
+			start.countDown();
+
+			BatchInsertEngine.InsertResult a = firstResult.get(10, TimeUnit.SECONDS);
+			BatchInsertEngine.InsertResult b = secondResult.get(10, TimeUnit.SECONDS);
+			assertEquals(List.of(List.of("a", 1), List.of("b", 2), List.of("c", 3), List.of("d", 4)),
+					table.stream().sorted((x, y) -> x.toString().compareTo(y.toString())).toList());
+			assertEquals(3, a.getSuccessCount() + b.getSuccessCount());
+			assertEquals(8, a.getSuccessCount() + b.getSuccessCount() + a.getSkippedCount() + b.getSkippedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 模拟数据库：每个连接有自己的临时表，合并语句先读取目标表再写入（中间停顿，放大并发窗口），
+	 * 只有语句带DISTINCT时才合并临时表中的重复行
+	 */
+	private JdbcTemplate simulatedTemplate(List<List<Object>> table) throws Exception {
+		JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+		when(jdbcTemplate.queryForObject("SELECT @@max_allowed_packet", Long.class)).thenReturn(64L << 20);
+		when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(invocation ->
+				((ConnectionCallback<?>) invocation.getArgument(0)).doInConnection(simulatedConnection(table)));
+		return jdbcTemplate;
+	}
+
+	private Connection simulatedConnection(List<List<Object>> table) throws Exception {
+		List<List<Object>> staging = new ArrayList<>();
+		List<Object> current = new ArrayList<>();
+		int[] pending = new int[1];
+
+		PreparedStatement prepared = mock(PreparedStatement.class);
+		doAnswer(invocation -> current.add(invocation.getArgument(1))).when(prepared).setObject(anyInt(), any());
+		doAnswer(invocation -> {
+			staging.add(new ArrayList<>(current));
+			current.clear();
+			pending[0]++;
+			return null;
+		}).when(prepared).addBatch();
+		when(prepared.executeBatch()).thenAnswer(invocation -> {
+			int[] counts = new int[pending[0]];
+			Arrays.fill(counts, 1);
+			pending[0] = 0;
+			return counts;
+		});
+
+		Statement statement = mock(Statement.class);
+		when(statement.executeUpdate(anyString())).thenAnswer(invocation -> {
+			String sql = invocation.getArgument(0);
+			Iterable<List<Object>> candidates = sql.contains("SELECT DISTINCT") ? new LinkedHashSet<>(staging) : staging;
+			Set<List<Object>> existing;
+			synchronized (table) {
+				existing = new HashSet<>(table);
+			}
+			Thread.sleep(50);
+			int inserted = 0;
+			for (List<Object> row : candidates) {
+				if (!existing.contains(row)) {
+					table.add(row);
+					inserted++;
+				}
+			}
+			return inserted;
+		});
+
+		Connection connection = mock(Connection.class);
+		when(connection.createStatement()).thenReturn(statement);
+		when(connection.prepareStatement(anyString())).thenReturn(prepared);
+		return connection;
+	}
+
+	private static List<Object[]> rows(Object... values) {
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < values.length; i += 2) {
+			rows.add(new Object[]{values[i], values[i + 1]});
+		}
+		return rows;
+	}
+}
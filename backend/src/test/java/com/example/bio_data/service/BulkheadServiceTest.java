@@ -0,0 +1,114 @@
+package com.example.bio_data.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadServiceTest {
+
+	private BulkheadService bulkheadService;
+
+	@BeforeEach
+	void setUp() {
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("bulkhead.export.max-concurrent", "1")
+				.withProperty("bulkhead.export.queue-size", "0")
+				.withProperty("bulkhead.export.queue-timeout-ms", "50")
+				.withProperty("bulkhead.search.queue-timeout-ms", "50");
+		bulkheadService = new BulkheadService(null);
+		ReflectionTestUtils.setField(bulkheadService, "environment", environment);
+		ReflectionTestUtils.setField(bulkheadService, "reservedConnections", 4);
+		bulkheadService.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		bulkheadService.shutdown();
+	}
+
+	@Test
+	void closedPermitIsReturnedOnlyOnce() {
+		BulkheadService.Permit permit = bulkheadService.acquire(BulkheadService.EXPORT);
+		assertThrows(BulkheadService.BulkheadFullException.class, () -> bulkheadService.acquire(BulkheadService.EXPORT));
+
+		permit.close();
+		permit.close();
+
+		BulkheadService.Permit next = bulkheadService.acquire(BulkheadService.EXPORT);
+		assertThrows(BulkheadService.BulkheadFullException.class, () -> bulkheadService.acquire(BulkheadService.EXPORT));
+		next.close();
+	}
+
+	@Test
+	void failedTaskReturnsPermit() throws Exception {
+		CountDownLatch finished = new CountDownLatch(1);
+		bulkheadService.execute(BulkheadService.EXPORT, () -> {
+			try {
+				throw new IllegalStateException("写出失败");
+			} finally {
+				finished.countDown();
+			}
+		});
+		assertTrue(finished.await(5, TimeUnit.SECONDS));
+
+		// 任务线程在任务结束后归还名额，稍等片刻再获取
+		long deadline = System.currentTimeMillis() + 5000;
+		while (true) {
+			try {
+				bulkheadService.acquire(BulkheadService.EXPORT).close();
+				return;
+			} catch (BulkheadService.BulkheadFullException e) {
+				assertTrue(System.currentTimeMillis() < deadline, "任务失败后名额未归还");
+			}
+		}
+	}
+
+	@Test
+	void limitsAreScaledByConnectionsPerOperation() {
+		Map<String, int[]> limits = new LinkedHashMap<>();
+		limits.put(BulkheadService.SEARCH, new int[]{4, 8, 4});
+		limits.put(BulkheadService.EXPORT, new int[]{3, 6, 1});
+		limits.put(BulkheadService.IMPORT, new int[]{3, 6, 4});
+
+		int[] scaled = BulkheadService.scaleToBudget(limits, 16);
+
+		assertArrayEquals(new int[]{2, 1, 1}, scaled);
+		assertTrue(scaled[0] * 4 + scaled[1] + scaled[2] * 4 <= 16);
+		assertArrayEquals(new int[]{4, 3, 3}, BulkheadService.scaleToBudget(limits, 31));
+	}
+
+	@Test
+	void budgetComesFromDatabasePoolsWhenEnabled() {
+		// 默认配置：每个库5个连接、最多20个连接池，搜索、导出、导入和分页查询的默认并发都不需要缩减
+		assertEquals(100, BulkheadService.connectionBudget(true, 5, 20, 20, 4));
+		assertEquals(16, BulkheadService.connectionBudget(false, 5, 20, 20, 4));
+		assertEquals(3, BulkheadService.connectionBudget(false, 5, 20, 5, 4));
+	}
+
+	@Test
+	void pagedQueriesDoNotWaitForSearches() {
+		List<BulkheadService.Permit> searches = new ArrayList<>();
+		try {
+			while (true) {
+				searches.add(bulkheadService.acquire(BulkheadService.SEARCH));
+			}
+		} catch (BulkheadService.BulkheadFullException e) {
+			assertEquals(BulkheadService.SEARCH, e.getOperation());
+		}
+		assertEquals(4, searches.size());
+
+		bulkheadService.acquire(BulkheadService.QUERY).close();
+		searches.forEach(BulkheadService.Permit::close);
+	}
+}
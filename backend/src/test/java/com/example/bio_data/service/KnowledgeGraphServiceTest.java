@@ -0,0 +1,167 @@
+package com.example.bio_data.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KnowledgeGraphServiceTest {
+
+	private static final List<String> RELATIONS = List.of("binds", "regulates", "inhibits");
+
+	private KnowledgeGraphService service;
+
+	@BeforeEach
+	void setUp() {
+		KnowledgeGraphStore store = new KnowledgeGraphStore();
+		ReflectionTestUtils.setField(store, "maxGraphBytes", 1L << 30);
+		ReflectionTestUtils.setField(store, "maxTotalBytes", 1L << 30);
+		service = new KnowledgeGraphService();
+		ReflectionTestUtils.setField(service, "knowledgeGraphStore", store);
+	}
+
+	@Test
+	void adjacencyTraversalMatchesListScan() {
+		Random random = new Random(42);
+		for (int round = 0; round < 20; round++) {
+			List<Map<String, Object>> nodes = new ArrayList<>();
+			List<Map<String, Object>> links = new ArrayList<>();
+			randomGraph(random, nodes, links);
+			KnowledgeGraphStore.CompactGraph graph = KnowledgeGraphStore.compact(nodes, links);
+
+			for (int depth = 1; depth <= 3; depth++) {
+				String center = "n" + random.nextInt(30);
+				Collection<String> relationTypes = round % 2 == 0 ? null : List.of("binds");
+
+				Map<String, Object> expected = listScanNeighbors(nodes, links, center, depth, relationTypes);
+				Map<String, Object> actual = service.getNodeNeighbors(graph, center, depth, 0, relationTypes);
+
+				assertEquals(expected.get("nodes"), actual.get("nodes"), "round " + round + ", depth " + depth);
+				assertEquals(expected.get("links"), actual.get("links"), "round " + round + ", depth " + depth);
+				assertEquals(expected.get("neighborCount"), actual.get("neighborCount"));
+				assertEquals(false, actual.get("truncated"));
+			}
+		}
+	}
+
+	@Test
+	void streamedNeighborsMatchCollectedNeighbors() throws Exception {
+		List<Map<String, Object>> nodes = new ArrayList<>();
+		List<Map<String, Object>> links = new ArrayList<>();
+		randomGraph(new Random(7), nodes, links);
+		KnowledgeGraphStore.CompactGraph graph = KnowledgeGraphStore.compact(nodes, links);
+
+		Map<String, Object> collected = service.getNodeNeighbors(graph, "n3", 2, 2, List.of("binds", "regulates"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		service.writeNodeNeighbors(graph, "n3", 2, 2, List.of("binds", "regulates"), out);
+		@SuppressWarnings("unchecked")
+		Map<String, Object> streamed = new ObjectMapper().readValue(out.toByteArray(), Map.class);
+
+		// 流式输出按访问顺序写出，比较内容不比较顺序
+		assertEquals(rowSet(collected.get("nodes")), rowSet(streamed.get("nodes")));
+		assertEquals(rowSet(collected.get("links")), rowSet(streamed.get("links")));
+		assertEquals(collected.get("neighborCount"), streamed.get("neighborCount"));
+		assertEquals(collected.get("truncated"), streamed.get("truncated"));
+	}
+
+	@Test
+	void relationFilterOnlyLimitsTraversal() {
+		List<Map<String, Object>> nodes = List.of(node("a", 0), node("b", 1), node("c", 2));
+		List<Map<String, Object>> links = List.of(link("a", "b", "binds", 0), link("b", "c", "binds", 1),
+				link("a", "c", "inhibits", 2), link("c", "d", "inhibits", 3));
+
+		Map<String, Object> result = service.getNodeNeighbors(Map.of("nodes", nodes, "links", links), "a", 2, 0, List.of("binds"));
+
+		assertEquals(nodes, result.get("nodes"));
+		// a-c不用于扩展，但两端都已访问到，作为诱导子图的关系返回；c-d的d未访问到
+		assertEquals(links.subList(0, 3), result.get("links"));
+		assertEquals(2, result.get("neighborCount"));
+	}
+
+	/**
+	 * 原先基于关系列表的逐层扫描实现，作为邻接表遍历的参照：节点和关系按上传顺序返回诱导子图
+	 */
+	private Map<String, Object> listScanNeighbors(List<Map<String, Object>> nodes, List<Map<String, Object>> links,
+												  String nodeId, int depth, Collection<String> relationTypes) {
+		Set<String> present = new HashSet<>();
+		nodes.forEach(node -> present.add((String) node.get("id")));
+		links.forEach(link -> {
+			present.add((String) link.get("source"));
+			present.add((String) link.get("target"));
+		});
+
+		Set<String> neighborIds = new HashSet<>();
+		if (present.contains(nodeId)) {
+			neighborIds.add(nodeId);
+			Set<String> currentLevel = Set.of(nodeId);
+			for (int level = 0; level < depth; level++) {
+				Set<String> nextLevel = new HashSet<>();
+				for (String current : currentLevel) {
+					for (Map<String, Object> link : links) {
+						if (relationTypes != null && !relationTypes.contains(link.get("relation"))) {
+							continue;
+						}
+						String source = (String) link.get("source");
+						String target = (String) link.get("target");
+						String other = current.equals(source) ? target : current.equals(target) ? source : null;
+						if (other != null && neighborIds.add(other)) {
+							nextLevel.add(other);
+						}
+					}
+				}
+				currentLevel = nextLevel;
+			}
+		}
+
+		Map<String, Object> result = new HashMap<>();
+		result.put("nodes", nodes.stream().filter(node -> neighborIds.contains(node.get("id"))).collect(Collectors.toList()));
+		result.put("links", links.stream()
+				.filter(link -> neighborIds.contains(link.get("source")) && neighborIds.contains(link.get("target")))
+				.collect(Collectors.toList()));
+		result.put("neighborCount", Math.max(0, neighborIds.size() - 1));
+		return result;
+	}
+
+	/**
+	 * 随机图：部分节点有多行、部分关系端点没有节点行，包含自环和重复关系
+	 */
+	private void randomGraph(Random random, List<Map<String, Object>> nodes, List<Map<String, Object>> links) {
+		for (int i = 0; i < 30; i++) {
+			if (i % 7 != 6) {
+				nodes.add(node("n" + i, nodes.size()));
+			}
+			if (i % 11 == 0) {
+				nodes.add(node("n" + i, nodes.size()));
+			}
+		}
+		for (int i = 0; i < 60; i++) {
+			String source = "n" + random.nextInt(32);
+			String target = random.nextInt(10) == 0 ? source : "n" + random.nextInt(32);
+			links.add(link(source, target, RELATIONS.get(random.nextInt(RELATIONS.size())), i));
+		}
+	}
+
+	private Set<Map<?, ?>> rowSet(Object rows) {
+		Set<Map<?, ?>> set = new HashSet<>();
+		for (Object row : (List<?>) rows) {
+			Map<String, Object> normalized = new HashMap<>();
+			((Map<?, ?>) row).forEach((key, value) -> normalized.put(key.toString(), value.toString()));
+			set.add(normalized);
+		}
+		return set;
+	}
+
+	private static Map<String, Object> node(String id, int row) {
+		return Map.of("id", id, "row", row);
+	}
+
+	private static Map<String, Object> link(String source, String target, String relation, int row) {
+		return Map.of("source", source, "target", target, "relation", relation, "row", row);
+	}
+}
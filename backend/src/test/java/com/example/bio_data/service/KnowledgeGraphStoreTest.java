@@ -0,0 +1,63 @@
+package com.example.bio_data.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KnowledgeGraphStoreTest {
+
+	private KnowledgeGraphStore store;
+
+	@BeforeEach
+	void setUp() {
+		store = new KnowledgeGraphStore();
+		ReflectionTestUtils.setField(store, "maxGraphs", 20);
+		ReflectionTestUtils.setField(store, "ttlMinutes", 60L);
+		ReflectionTestUtils.setField(store, "maxGraphBytes", 1L << 20);
+		ReflectionTestUtils.setField(store, "maxTotalBytes", 2L << 20);
+	}
+
+	@Test
+	void sparseAttributesCountRowsTimesKeys() {
+		// 每行一个不同的属性名：值很少，但每个属性名都要分配一个int[行数]
+		List<Map<String, Object>> nodes = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			nodes.add(Map.of("id", "n" + i, "attr" + i, 1));
+		}
+
+		assertTrue(KnowledgeGraphStore.estimateBytes(nodes, List.of()) >= 4L * 1000 * 1001);
+		assertThrows(KnowledgeGraphStore.GraphTooLargeException.class, () -> store.put(1L, nodes, List.of()));
+		assertThrows(KnowledgeGraphStore.GraphTooLargeException.class, () -> store.compactWithinBudget(nodes, List.of()));
+	}
+
+	@Test
+	void totalBudgetEvictsLeastRecentlyUsed() throws Exception {
+		List<Map<String, Object>> nodes = new ArrayList<>();
+		for (int i = 0; i < 12000; i++) {
+			nodes.add(Map.of("id", "n" + i));
+		}
+		long bytes = KnowledgeGraphStore.estimateBytes(nodes, List.of());
+		assertTrue(bytes < 1L << 20 && bytes * 3 > 2L << 20);
+
+		String first = store.put(1L, nodes, List.of());
+		String second = store.put(1L, nodes, List.of());
+		// 访问时间按毫秒记录，隔开后再访问第一个图谱
+		Thread.sleep(5);
+		store.get(1L, first);
+		store.put(1L, nodes, List.of());
+
+		assertNotNull(store.get(1L, first));
+		assertThrows(IllegalArgumentException.class, () -> store.get(1L, second));
+	}
+
+	@Test
+	void uploadWithoutOwnerIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> store.put(null, List.of(Map.of("id", "a")), List.of()));
+	}
+}
@@ -0,0 +1,91 @@
+package com.example.bio_data.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartStreamReaderTest {
+
+	private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+	@Test
+	void readsFieldsAndFileInOrder() throws Exception {
+		String body = "preamble\r\n"
+				+ "--" + BOUNDARY + "\r\n"
+				+ "Content-Disposition: form-data; name=\"userId\"\r\n\r\n"
+				+ "42\r\n"
+				+ "--" + BOUNDARY + "\r\n"
+				+ "Content-Disposition: form-data; name=\"file\"; filename=\"genes \\\"v2\\\".csv\"\r\n"
+				+ "Content-Type: text/csv\r\n\r\n"
+				+ "id,name\r\n1,\\N\r\n--not-a-boundary\r\n"
+				+ "\r\n--" + BOUNDARY + "--\r\n";
+		MultipartStreamReader reader = new MultipartStreamReader(trickle(body), BOUNDARY);
+
+		MultipartStreamReader.Part field = reader.nextPart();
+		assertEquals("userId", field.getName());
+		assertFalse(field.isFile());
+		assertEquals("42", field.readString(StandardCharsets.UTF_8));
+
+		MultipartStreamReader.Part file = reader.nextPart();
+		assertEquals("file", file.getName());
+		assertEquals("genes \"v2\".csv", file.getFileName());
+		assertEquals("text/csv", file.getContentType());
+		assertEquals("id,name\r\n1,\\N\r\n--not-a-boundary\r\n", file.readString(StandardCharsets.UTF_8));
+
+		assertNull(reader.nextPart());
+	}
+
+	@Test
+	void unreadPartIsSkipped() throws Exception {
+		String body = "--" + BOUNDARY + "\r\n"
+				+ "Content-Disposition: form-data; name=\"skipped\"; filename=\"a.csv\"\r\n\r\n"
+				+ "x".repeat(200_000) + "\r\n"
+				+ "--" + BOUNDARY + "\r\n"
+				+ "Content-Disposition: form-data; name=\"dataSource\"\r\n\r\n"
+				+ "db1\r\n"
+				+ "--" + BOUNDARY + "--";
+		MultipartStreamReader reader = new MultipartStreamReader(trickle(body), BOUNDARY);
+
+		assertEquals("skipped", reader.nextPart().getName());
+		MultipartStreamReader.Part next = reader.nextPart();
+		assertEquals("dataSource", next.getName());
+		assertEquals("db1", next.readString(StandardCharsets.UTF_8));
+		assertNull(reader.nextPart());
+	}
+
+	@Test
+	void truncatedBodyFails() throws Exception {
+		String body = "--" + BOUNDARY + "\r\n"
+				+ "Content-Disposition: form-data; name=\"file\"; filename=\"a.csv\"\r\n\r\n"
+				+ "id\r\n1\r\n";
+		MultipartStreamReader reader = new MultipartStreamReader(trickle(body), BOUNDARY);
+
+		MultipartStreamReader.Part file = reader.nextPart();
+		assertThrows(IOException.class, () -> file.readString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void boundaryIsTakenFromContentType() {
+		assertEquals("abc", MultipartStreamReader.boundaryOf("multipart/form-data; boundary=abc"));
+		assertEquals("a b", MultipartStreamReader.boundaryOf("multipart/form-data; charset=UTF-8; boundary=\"a b\""));
+		assertThrows(IllegalArgumentException.class, () -> MultipartStreamReader.boundaryOf("text/csv"));
+	}
+
+	/**
+	 * 每次最多返回3个字节，让分隔符跨越多次读取
+	 */
+	private InputStream trickle(String body) {
+		return new FilterInputStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))) {
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return super.read(b, off, Math.min(len, 3));
+			}
+		};
+	}
+}
@@ -0,0 +1,64 @@
+package com.example.bio_data.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowFingerprintTest {
+
+	@Test
+	void zeroFingerprintDoesNotCollideWithZeroOne() {
+		RowFingerprint.FingerprintSet set = new RowFingerprint.FingerprintSet();
+		assertTrue(set.add(0, 1));
+		assertFalse(set.contains(0, 0));
+
+		assertTrue(set.add(0, 0));
+		assertTrue(set.contains(0, 0));
+		assertTrue(set.contains(0, 1));
+		assertFalse(set.add(0, 0));
+		assertEquals(2, set.size());
+	}
+
+	@Test
+	void setKeepsAllFingerprintsAcrossResize() {
+		RowFingerprint.FingerprintSet set = new RowFingerprint.FingerprintSet(4);
+		set.add(0, 0);
+		for (long i = 1; i <= 1000; i++) {
+			assertTrue(set.add(i * 31, i));
+		}
+		assertEquals(1001, set.size());
+		assertTrue(set.contains(0, 0));
+		for (long i = 1; i <= 1000; i++) {
+			assertTrue(set.contains(i * 31, i));
+			assertFalse(set.contains(i * 31, i + 1));
+		}
+	}
+
+	@Test
+	void numericColumnsCompareByValue() {
+		RowFingerprint fingerprint = new RowFingerprint(new boolean[]{true, false});
+		List<String> columns = List.of("id", "name");
+
+		fingerprint.compute(row("1.00", "a"), columns);
+		long high = fingerprint.high();
+		long low = fingerprint.low();
+
+		fingerprint.compute(row(1L, "a"), columns);
+		assertEquals(high, fingerprint.high());
+		assertEquals(low, fingerprint.low());
+
+		fingerprint.compute(row(1L, "a||"), columns);
+		assertNotEquals(low, fingerprint.low());
+	}
+
+	private Map<String, Object> row(Object id, Object name) {
+		Map<String, Object> row = new HashMap<>();
+		row.put("id", id);
+		row.put("name", name);
+		return row;
+	}
+}
@@ -0,0 +1,85 @@
+package com.example.bio_data.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMetadataCacheTest {
+
+	private SchemaMetadataCache cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new SchemaMetadataCache();
+		ReflectionTestUtils.setField(cache, "columnsTtlSeconds", 600L);
+		ReflectionTestUtils.setField(cache, "tablesTtlSeconds", 60L);
+	}
+
+	@Test
+	void loadOverlappingInvalidationIsNotServedAfterwards() {
+		AtomicInteger loads = new AtomicInteger();
+		// 加载过程中表结构被修改：返回的是修改前的列
+		cache.getColumns("db1", "genes", () -> {
+			loads.incrementAndGet();
+			cache.invalidateTable("db1", "genes");
+			return columns("old_column");
+		});
+
+		List<SchemaMetadataCache.ColumnDescriptor> columns = cache.getColumns("db1", "genes", () -> {
+			loads.incrementAndGet();
+			return columns("new_column");
+		});
+		assertEquals(2, loads.get());
+		assertEquals("new_column", columns.get(0).getColumnName());
+	}
+
+	@Test
+	void databaseInvalidationDuringLoadDiscardsTableList() {
+		cache.getTables("db1", () -> {
+			cache.invalidateDatabase("db1");
+			return tables("old_table");
+		});
+
+		List<Map<String, Object>> tables = cache.getTables("db1", () -> tables("new_table"));
+		assertEquals("new_table", tables.get(0).get("TABLE_NAME"));
+	}
+
+	@Test
+	void loadAfterInvalidationIsCached() {
+		cache.invalidateTable("db1", "genes");
+		cache.getColumns("db1", "genes", () -> columns("id"));
+
+		AtomicInteger loads = new AtomicInteger();
+		cache.getColumns("db1", "genes", () -> {
+			loads.incrementAndGet();
+			return columns("id");
+		});
+		assertEquals(0, loads.get());
+	}
+
+	private List<Map<String, Object>> columns(String name) {
+		Map<String, Object> row = new HashMap<>();
+		row.put("COLUMN_NAME", name);
+		row.put("DATA_TYPE", "varchar");
+		row.put("IS_NULLABLE", "YES");
+		List<Map<String, Object>> rows = new ArrayList<>();
+		rows.add(row);
+		return rows;
+	}
+
+	private List<Map<String, Object>> tables(String name) {
+		Map<String, Object> row = new HashMap<>();
+		row.put("TABLE_NAME", name);
+		List<Map<String, Object>> rows = new ArrayList<>();
+		rows.add(row);
+		return rows;
+	}
+}
@@ -0,0 +1,52 @@
+package com.example.bio_data.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCacheServiceTest {
+
+	private SearchCacheService cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new SearchCacheService();
+		ReflectionTestUtils.setField(cache, "maxWeightBytes", 1L << 20);
+		ReflectionTestUtils.setField(cache, "maxCachedPages", 3);
+		cache.init();
+	}
+
+	@Test
+	void namesContainingColonDoNotShareTableIndex() {
+		cache.putSearchCache("a:b", "c", "x", "all", "fuzzy", "1 = 1", List.of(), 1);
+		cache.putSearchCache("a", "b:c", "x", "all", "fuzzy", "1 = 1", List.of(), 2);
+
+		cache.clearTableCache("a", "b:c");
+
+		assertNotNull(cache.getSearchCache("a:b", "c", "x", "all", "fuzzy"));
+		assertNull(cache.getSearchCache("a", "b:c", "x", "all", "fuzzy"));
+	}
+
+	@Test
+	void searchValueContainingColonIsClearedWithItsTable() {
+		cache.putSearchCache("db1", "genes", "chr1:100", "all", "exact", "1 = 1", List.of(), 3);
+
+		cache.clearTableCache("db1", "genes");
+
+		assertNull(cache.getSearchCache("db1", "genes", "chr1:100", "all", "exact"));
+	}
+
+	@Test
+	void searchModeAndTypeAreSeparateKeyFields() {
+		// 旧的拼接键下 "x_mode_a" + "_mode_" + "b" 与 "x" + "_mode_" + "a_mode_b" 相同
+		cache.putSearchCache("db1", "genes", "x_mode_a", "b", "exact", "1 = 1", List.of(), 1);
+
+		assertNull(cache.getSearchCache("db1", "genes", "x", "a_mode_b", "exact"));
+		assertNull(cache.getSearchCache("db1", "genes", "x_mode_a", "b", "fuzzy"));
+		assertEquals(1, cache.getSearchCache("db1", "genes", "x_mode_a", "b", "exact").getTotalCount());
+	}
+}
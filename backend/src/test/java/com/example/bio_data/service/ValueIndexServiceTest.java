@@ -0,0 +1,184 @@
+package com.example.bio_data.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValueIndexServiceTest {
+
+	@TempDir
+	Path indexDir;
+
+	private RecordingValueIndexService service;
+
+	/**
+	 * 不访问数据库，只记录构建次数；第一次构建阻塞到测试放行，以便在构建期间模拟写入
+	 */
+	static class RecordingValueIndexService extends ValueIndexService {
+		final AtomicInteger builds = new AtomicInteger();
+		final CountDownLatch firstBuildStarted = new CountDownLatch(1);
+		final CountDownLatch releaseFirstBuild = new CountDownLatch(1);
+		volatile CountDownLatch buildsDone = new CountDownLatch(2);
+
+		@Override
+		void buildIndex(String databaseName, String tableName, AtomicInteger version, int versionAtStart) {
+			if (builds.incrementAndGet() == 1) {
+				firstBuildStarted.countDown();
+				try {
+					releaseFirstBuild.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			buildsDone.countDown();
+		}
+	}
+
+	@BeforeEach
+	void setUp() {
+		service = new RecordingValueIndexService();
+		ReflectionTestUtils.setField(service, "enabled", true);
+		ReflectionTestUtils.setField(service, "indexDir", indexDir.toString());
+		ReflectionTestUtils.setField(service, "rebuildDelayMs", 0L);
+		ReflectionTestUtils.setField(service, "maxLoadedTables", 4);
+	}
+
+	@AfterEach
+	void tearDown() {
+		service.shutdown();
+	}
+
+	@Test
+	void writeDuringBuildSchedulesAnotherBuild() throws Exception {
+		service.onTableChanged("db1", "genes");
+		assertTrue(service.firstBuildStarted.await(5, TimeUnit.SECONDS));
+
+		// 构建进行中再次写入：此时构建已在排队，只能由构建结束时补上重建
+		service.onTableChanged("db1", "genes");
+		service.releaseFirstBuild.countDown();
+
+		assertTrue(service.buildsDone.await(5, TimeUnit.SECONDS));
+		assertEquals(2, service.builds.get());
+	}
+
+	@Test
+	void droppedTableIsNotRebuiltAfterRunningBuild() throws Exception {
+		service.buildsDone = new CountDownLatch(1);
+		service.onTableChanged("db1", "genes");
+		assertTrue(service.firstBuildStarted.await(5, TimeUnit.SECONDS));
+
+		service.removeTable("db1", "genes");
+		service.releaseFirstBuild.countDown();
+		assertTrue(service.buildsDone.await(5, TimeUnit.SECONDS));
+
+		Thread.sleep(200);
+		assertEquals(1, service.builds.get());
+	}
+
+	@Test
+	void tableChangeDeletesIndexFile() throws Exception {
+		Path file = indexDir.resolve("db1").resolve("genes.vidx");
+		Files.createDirectories(file.getParent());
+		Files.write(file, new byte[]{1, 2, 3});
+
+		service.releaseFirstBuild.countDown();
+		service.onTableChanged("db1", "genes");
+
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	void indexIsStaleWhenWrittenInSameSecondAsBuild() {
+		long builtAt = 1_700_000_000_500L;
+		// UPDATE_TIME截断到秒，10:00:00写入可能发生在10:00:00.500开始扫描之后
+		assertFalse(ValueIndexService.isIndexFresh(builtAt, 100, 1_700_000_000_000L, 100));
+		assertFalse(ValueIndexService.isIndexFresh(builtAt, 100, 1_700_000_001_000L, 100));
+		assertTrue(ValueIndexService.isIndexFresh(builtAt, 100, 1_699_999_999_000L, 100));
+	}
+
+	@Test
+	void missingUpdateTimeIsTrustedOnlyWithoutServerRestart() {
+		long builtAt = 1_700_000_000_000L;
+		assertTrue(ValueIndexService.isIndexFresh(builtAt, 1_699_990_000L, null, 1_699_990_001L));
+		assertFalse(ValueIndexService.isIndexFresh(builtAt, 1_699_990_000L, null, 1_700_100_000L));
+	}
+
+	@Test
+	void indexFileRoundTripsWithCurrentFormatVersion() throws Exception {
+		Path file = indexDir.resolve("db1").resolve("genes.vidx");
+		ValueIndexService.writeIndexFile(file, sampleIndex(), ValueIndexService.INDEX_FORMAT_VERSION);
+
+		ValueIndexService.TableValueIndex loaded = ValueIndexService.readIndexFile(file);
+		assertNotNull(loaded);
+		assertEquals(2, loaded.getRowCount());
+		assertArrayEquals(new String[]{"brca1", "tp53"}, loaded.columns[0].terms);
+	}
+
+	@Test
+	void indexFileWithOtherFormatVersionIsRejected() throws Exception {
+		Path file = indexDir.resolve("db1").resolve("genes.vidx");
+		ValueIndexService.writeIndexFile(file, sampleIndex(), ValueIndexService.INDEX_FORMAT_VERSION - 1);
+		assertNull(ValueIndexService.readIndexFile(file));
+
+		// 没有文件头的旧格式文件
+		Files.write(file, new byte[]{0x1f, (byte) 0x8b, 8, 0});
+		assertNull(ValueIndexService.readIndexFile(file));
+	}
+
+	@Test
+	void lookupAppliesRowChangesOverBaseIndex() {
+		ValueIndexService.TableValueIndex index = sampleIndex();
+		// 删除1、把2改为BRCA2、插入3
+		index.delta = ValueIndexService.IndexDelta.EMPTY.apply(Set.of("1", "2", "3"),
+				List.of(2L, 3L), List.of(new String[]{"brca2"}, new String[]{"tp53x"}));
+		@SuppressWarnings("unchecked")
+		Map<String, ValueIndexService.TableValueIndex> loaded =
+				(Map<String, ValueIndexService.TableValueIndex>) ReflectionTestUtils.getField(service, "loadedIndexes");
+		loaded.put("db1.genes", index);
+
+		assertEquals(0, service.lookup("db1", "genes", "BRCA1", "exact", List.of("gene")).getCount());
+		assertEquals(List.of(2L), rowKeys(service.lookup("db1", "genes", "brca", "prefix", List.of("gene"))));
+		assertEquals(List.of(3L), rowKeys(service.lookup("db1", "genes", "TP5", "fuzzy", List.of("gene"))));
+
+		// 再次修改变更行：旧的变更值失效
+		index.delta = index.getDelta().apply(Set.of("3"), List.of(3L), List.<String[]>of(new String[]{"egfr"}));
+		assertEquals(0, service.lookup("db1", "genes", "tp53", "prefix", List.of("gene")).getCount());
+		assertEquals(List.of(3L), rowKeys(service.lookup("db1", "genes", "egfr", "exact", List.of("gene"))));
+	}
+
+	private List<Object> rowKeys(ValueIndexService.ValueIndexMatch match) {
+		List<Object> keys = new ArrayList<>();
+		for (int rowId : (int[]) ReflectionTestUtils.getField(match, "rowIds")) {
+			keys.add(match.rowKey(rowId));
+		}
+		return keys;
+	}
+
+	private ValueIndexService.TableValueIndex sampleIndex() {
+		ValueIndexService.ColumnValueIndex column = new ValueIndexService.ColumnValueIndex("gene", false,
+				new String[]{"brca1", "tp53"}, new int[][]{{0}, {1}}, new long[0], new int[0][], new int[0]);
+		return new ValueIndexService.TableValueIndex("db1", "genes", new String[]{"id"}, new Object[]{1L, 2L},
+				new ValueIndexService.ColumnValueIndex[]{column}, 1_700_000_000_000L, 1_699_990_000L);
+	}
+
+	@Test
+	void normalizeFoldsCaseAndAccents() {
+		assertEquals("cafe", ValueIndexService.normalize("Café"));
+		assertEquals("brca1", ValueIndexService.normalize("BRCA1"));
+		assertEquals("a_b%c", ValueIndexService.normalize("A_B%C"));
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.bio_data.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 请求处理线程模型的承载能力压测（不连接数据库，不随mvn test执行）
+ * 同时提交一批长请求（模拟阻塞在JDBC上的长搜索/导出）和一批短请求（模拟登录、元数据查询），
+ * 分别用Tomcat默认的200个平台线程、每个请求一个平台线程（参照）和每个请求一个虚拟线程处理，比较短请求的等待时间和总耗时。
+ * 数据库连接用信号量模拟，默认数量足够大，操作隔离和连接池不是瓶颈，结果只反映线程模型的差别。
+ *
+ * 运行（虚拟线程模式需要JDK 21及以上，低版本JDK只运行平台线程模式）：
+ * mvn -q test-compile
+ * java -Xmx1g -cp target/classes:target/test-classes com.example.bio_data.service.VirtualThreadCapacityBenchmark [长请求数] [短请求数] [长请求毫秒] [连接数]
+ */
+public class VirtualThreadCapacityBenchmark {
+
+	// server.tomcat.threads.max的默认值
+	private static final int TOMCAT_MAX_THREADS = 200;
+	private static final long SHORT_REQUEST_MS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int longRequests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int shortRequests = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		long longRequestMs = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+		int connections = args.length > 3 ? Integer.parseInt(args[3]) : longRequests + shortRequests;
+
+		System.out.printf("JDK %s, -Xmx %dMB, 长请求 %d x %dms, 短请求 %d x %dms, 模拟连接 %d%n",
+				System.getProperty("java.version"), Runtime.getRuntime().maxMemory() >> 20,
+				longRequests, longRequestMs, shortRequests, SHORT_REQUEST_MS, connections);
+
+		run("platform-" + TOMCAT_MAX_THREADS, platformPool(), longRequests, shortRequests, longRequestMs, connections);
+		// 每个请求一个平台线程：不受线程数限制时的参照，线程栈和创建开销远大于虚拟线程
+		run("platform-per-task", Executors.newCachedThreadPool(), longRequests, shortRequests, longRequestMs, connections);
+		if (VirtualThreads.isAvailable()) {
+			run("virtual", VirtualThreads.newThreadPerTaskExecutor("bench-"), longRequests, shortRequests, longRequestMs, connections);
+		} else {
+			System.out.println("virtual: 当前JVM不支持虚拟线程（需要JDK 21及以上），未运行");
+		}
+	}
+
+	private static ExecutorService platformPool() {
+		AtomicInteger index = new AtomicInteger();
+		return new ThreadPoolExecutor(TOMCAT_MAX_THREADS, TOMCAT_MAX_THREADS, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "bench-" + index.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	private static void run(String mode, ExecutorService executor, int longRequests, int shortRequests,
+							long longRequestMs, int connections) throws InterruptedException {
+		Semaphore pool = new Semaphore(connections);
+		CountDownLatch done = new CountDownLatch(longRequests + shortRequests);
+		long[] shortLatencies = new long[shortRequests];
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		threads.resetPeakThreadCount();
+
+		long start = System.nanoTime();
+		// 长请求先占满线程，短请求随后到达
+		for (int i = 0; i < longRequests; i++) {
+			executor.execute(() -> {
+				try {
+					blockOnConnection(pool, longRequestMs);
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		for (int i = 0; i < shortRequests; i++) {
+			int slot = i;
+			long submitted = System.nanoTime();
+			executor.execute(() -> {
+				try {
+					blockOnConnection(pool, SHORT_REQUEST_MS);
+					shortLatencies[slot] = System.nanoTime() - submitted;
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		done.await();
+		long totalMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		executor.shutdownNow();
+
+		Arrays.sort(shortLatencies);
+		System.out.printf("%s: 总耗时 %dms, 短请求耗时 p50 %dms / p99 %dms, 平台线程峰值 %d%n", mode, totalMs,
+				percentileMs(shortLatencies, 0.50), percentileMs(shortLatencies, 0.99), threads.getPeakThreadCount());
+	}
+
+	private static void blockOnConnection(Semaphore pool, long millis) {
+		try {
+			pool.acquire();
+			try {
+				Thread.sleep(millis);
+			} finally {
+				pool.release();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static long percentileMs(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+		return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+	}
+}